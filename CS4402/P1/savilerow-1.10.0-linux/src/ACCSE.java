@@ -41,13 +41,32 @@ import java.io.* ;
 
 public class ACCSE
 {
-    private LinkedHashMap<PairASTNode, ArrayList<ASTNode>> exp;
+    //  Map from a pair of terms to the list of expressions containing the pair.
+    //  Terms are numbered once (term_ids) so a pair is keyed by its two term
+    //  numbers, and its structural hash is never recomputed. 
+    private LinkedHashMap<Long, PairEntry> exp;
+    
+    private HashMap<ASTNode, Integer> term_ids;
+    private ArrayList<ASTNode> terms;      // term number -> term. 
     
     private HashMap<ASTNode, Long> expression_counts;    // If an expression only occurs once inside a sum, never add a pair containing that expression to exp.  
     // Contains MultiplyMappers
     
     private HashSet<ASTNode> done;   // for use when doing leave constraints in.
     
+    //  For the largest-list-first heuristic: entries ordered by list size, then
+    //  by insertion order, so the choice is the same as scanning exp in order. 
+    //  Entries whose list has changed since the last choice are queued in
+    //  touched and re-sorted together; only lists containing an expression
+    //  that has been replaced need to be filtered. 
+    private boolean largestFirst;
+    private TreeSet<PairEntry> bysize;
+    private IdentityHashMap<ASTNode, int[]> node_terms;
+    private ArrayList<PairEntry> touched;
+    private long pairseq;
+    
+    private long work;    //  Number of pair occurrences indexed so far, for the -ac-cse-limit budget. 
+    
     public int numcse;
     public int countcse;
     public int totallength;
@@ -56,9 +75,23 @@ public class ACCSE
     
     boolean isPlus;  // if type.equals("+") occurred a lot so using a bool. 
     
-    static boolean eagerFilterLists=false;
+    private static final class PairEntry {
+        final long key;
+        final int t1, t2;    // The two term numbers.
+        final long seq;
+        final ArrayList<ASTNode> ls=new ArrayList<ASTNode>();
+        int size;    // Size of ls when placed in bysize.
+        boolean intree, queued, filter;
+        PairEntry(long _key, int _t1, int _t2, long _seq) {
+            key=_key;
+            t1=_t1;
+            t2=_t2;
+            seq=_seq;
+        }
+    }
     
     public void flattenCSEs(Model m, String tp) {
+        CompileProfiler.Sample prof=CompileProfiler.begin(m);
         type=tp;
         
         isPlus=type.equals("+");
@@ -68,7 +101,25 @@ public class ACCSE
         countcse=0;   //  Total number of expressions replaced with auxvar.
         totallength=0;
         
-        exp=new LinkedHashMap<PairASTNode, ArrayList<ASTNode>>();
+        exp=new LinkedHashMap<Long, PairEntry>();
+        term_ids=new HashMap<ASTNode, Integer>();
+        terms=new ArrayList<ASTNode>();
+        
+        largestFirst=(CmdFlags.accse_heuristic==1 || (CmdFlags.getUseACCSEAlt() && CmdFlags.accse_heuristic!=0));
+        if(largestFirst) {
+            bysize=new TreeSet<PairEntry>(new Comparator<PairEntry>() {
+                public int compare(PairEntry a, PairEntry b) {
+                    if(a.size!=b.size) {
+                        return (a.size>b.size) ? -1 : 1;
+                    }
+                    return Long.compare(a.seq, b.seq);
+                }
+            });
+            node_terms=new IdentityHashMap<ASTNode, int[]>();
+            touched=new ArrayList<PairEntry>();
+        }
+        pairseq=0;
+        work=0;
         
         expression_counts=new HashMap<ASTNode, Long>();
         
@@ -102,40 +153,54 @@ public class ACCSE
             ArrayList<ASTNode> ls;
             
             if(CmdFlags.accse_heuristic==0) {
-                Iterator<Map.Entry<PairASTNode, ArrayList<ASTNode>>> it=exp.entrySet().iterator();
+                Iterator<PairEntry> it=exp.values().iterator();
                 
-                Map.Entry<PairASTNode, ArrayList<ASTNode>> object=it.next();
+                PairEntry object=it.next();
                 
                 it.remove();   // First in insertion order -- effectively a FIFO.
                 
-                ls=object.getValue();
+                ls=object.ls;
+            }
+            else if(largestFirst) {
+                //  The default -- largest list seen. 
+                //  Either the heuristic value is a 1 OR we are using I-CSE for Sums and Products,
+                //  and X-CSE for conjunction and disjunction, in which case use the default heuristic
+                //  for X-CSE. 
+                refreshLists();
+                
+                if(exp.isEmpty()) {
+                    // Bail out of the main loop.  
+                    break;
+                }
+                
+                PairEntry largest=bysize.first();
+                removePair(largest);
+                ls=largest.ls;
             }
-            else {   //   CmdFlags.accse_heuristic>=1
+            else {   //   CmdFlags.accse_heuristic>=2
                 // Iterate through exp, filter out detached things. Keep the ones with the longest & shortest list of occurrences. 
                 
-                Iterator<Map.Entry<PairASTNode, ArrayList<ASTNode>>> it=exp.entrySet().iterator();
+                Iterator<PairEntry> it=exp.values().iterator();
                 
-                PairASTNode largestseen=null;
+                Long largestseen=null;
                 int largestseen_size=-1;
                 
-                PairASTNode smallestseen=null;
+                Long smallestseen=null;
                 int smallestseen_size=Integer.MAX_VALUE;
                 
-                PairASTNode largestseencommonset=null;
+                Long largestseencommonset=null;
                 int largestseencommonset_size=-1;
                 
-                PairASTNode smallestseencommonset=null;
+                Long smallestseencommonset=null;
                 int smallestseencommonset_size=Integer.MAX_VALUE;
                 
                 while(it.hasNext()) {
-                    Map.Entry<PairASTNode, ArrayList<ASTNode>> object=it.next();
+                    PairEntry object=it.next();
                     
-                    PairASTNode key=object.getKey();
-                    ArrayList<ASTNode> ls2=object.getValue();
+                    Long key=object.key;
+                    ArrayList<ASTNode> ls2=object.ls;
                     
-                    if(!eagerFilterLists) {
-                        CSE.filterlist(ls2);  // updates list in place, in the hashtable.
-                    }
+                    CSE.filterlist(ls2);  // updates list in place, in the hashtable.
                     
                     if(ls2.size()<=1) {
                         it.remove();     // This pair has one or 0 occurrences, so get rid of it. 
@@ -181,32 +246,21 @@ public class ACCSE
                     break;
                 }
                 
-                if(CmdFlags.accse_heuristic==1  ||  CmdFlags.getUseACCSEAlt()) {
-                    //  The default -- largest list seen. 
-                    //  Either the heuristic value is a 1 OR we are using I-CSE for Sums and Products,
-                    //  and X-CSE for conjunction and disjunction, in which case use the default heuristic
-                    //  for X-CSE. 
-                    ls=exp.get(largestseen); 
-                    exp.remove(largestseen);
-                }
-                else if(CmdFlags.accse_heuristic==2) {
-                    ls=exp.get(smallestseen);   // Smallest list seen.
-                    exp.remove(smallestseen);
+                if(CmdFlags.accse_heuristic==2) {
+                    ls=exp.remove(smallestseen).ls;   // Smallest list seen.
                 }
                 else if(CmdFlags.accse_heuristic==3) {
                     // Largest common set
-                    ls=exp.get(largestseencommonset);
-                    exp.remove(largestseencommonset);
+                    ls=exp.remove(largestseencommonset).ls;
                 }
                 else if(CmdFlags.accse_heuristic==4) {
                     // Smallest common set
-                    ls=exp.get(smallestseencommonset);
-                    exp.remove(smallestseencommonset);
+                    ls=exp.remove(smallestseencommonset).ls;
                 }
                 else if(CmdFlags.accse_heuristic==5 || CmdFlags.accse_heuristic==6) {
                     //  heuristic is either 5 (random) or 6 (random+leave constraints in).
                     int choice=(int) (Math.random() * (exp.size()));
-                    Iterator<Map.Entry<PairASTNode, ArrayList<ASTNode>>> itt=exp.entrySet().iterator();
+                    Iterator<Long> itt=exp.keySet().iterator();
                     
                     //System.out.println("Choice: "+choice+" of "+exp.size());
                     
@@ -215,10 +269,9 @@ public class ACCSE
                         itt.next();
                     }
                     
-                    PairASTNode key=itt.next().getKey();
+                    Long key=itt.next();
                     
-                    ls=exp.get(key);
-                    exp.remove(key);
+                    ls=exp.remove(key).ls;
                 }
                 
                 ////////////////////////////////////////////////////////////////
@@ -227,64 +280,56 @@ public class ACCSE
                 
                 else if(CmdFlags.accse_heuristic==11) {
                     // heuristic is 11 (non-blocking then largest list seen)
-                    PairASTNode p1=findNonBlockingPair();
+                    Long p1=findNonBlockingPair();
                     
                     if(p1==null) {
-                        ls=exp.get(largestseen);    // Largest list seen. 
-                        exp.remove(largestseen);
+                        ls=exp.remove(largestseen).ls;    // Largest list seen. 
                     }
                     else {
-                        ls=exp.get(p1);
-                        exp.remove(p1);
+                        ls=exp.remove(p1).ls;
                     }
                 }
                 else if(CmdFlags.accse_heuristic==12) {
                     // heuristic is 12 (non-blocking then shortest list seen)
-                    PairASTNode p1=findNonBlockingPair();
+                    Long p1=findNonBlockingPair();
                     
                     if(p1==null) {
-                        ls=exp.get(smallestseen);    // Smallest list seen. 
-                        exp.remove(smallestseen);
+                        ls=exp.remove(smallestseen).ls;    // Smallest list seen. 
                     }
                     else {
-                        ls=exp.get(p1);
-                        exp.remove(p1);
+                        ls=exp.remove(p1).ls;
                     }
                 }
                 else if(CmdFlags.accse_heuristic==13) {
                     // heuristic is 13 (non-blocking then largest common set seen)
-                    PairASTNode p1=findNonBlockingPair();
+                    Long p1=findNonBlockingPair();
                     
                     if(p1==null) {
-                        ls=exp.get(largestseencommonset);    // Largest common set 
-                        exp.remove(largestseencommonset);
+                        ls=exp.remove(largestseencommonset).ls;    // Largest common set 
                     }
                     else {
-                        ls=exp.get(p1);
-                        exp.remove(p1);
+                        ls=exp.remove(p1).ls;
                     }
                 }
                 else if(CmdFlags.accse_heuristic==14) {
                     // heuristic is 14 (non-blocking then smallest common set seen)
-                    PairASTNode p1=findNonBlockingPair();
+                    Long p1=findNonBlockingPair();
                     
                     if(p1==null) {
-                        ls=exp.get(smallestseencommonset);    // Smallest common set seen. 
-                        exp.remove(smallestseencommonset);
+                        ls=exp.remove(smallestseencommonset).ls;    // Smallest common set seen. 
                     }
                     else {
-                        ls=exp.get(p1);
-                        exp.remove(p1);
+                        ls=exp.remove(p1).ls;
                     }
                 }
                 else if(CmdFlags.accse_heuristic==15) {
                     // heuristic is 15 (non-blocking then random)
-                    PairASTNode p1=findNonBlockingPair();
+                    Long p1=findNonBlockingPair();
                     
                     if(p1==null) {
                         // take a random choice. 
                         int choice=(int) (Math.random() * (exp.size()));
-                        Iterator<Map.Entry<PairASTNode, ArrayList<ASTNode>>> itt=exp.entrySet().iterator();
+                        Iterator<Long> itt=exp.keySet().iterator();
                         
                         //System.out.println("Choice: "+choice+" of "+exp.size());
                         
@@ -293,12 +338,11 @@ public class ACCSE
                             itt.next();
                         }
                         
-                        p1=itt.next().getKey();
+                        p1=itt.next();
                         
                     }
                     
-                    ls=exp.get(p1);
-                    exp.remove(p1);
+                    ls=exp.remove(p1).ls;
                 }
                 else {
                     CmdFlags.errorExit("N-ary CSE heuristic is not valid.");
@@ -314,9 +358,7 @@ public class ACCSE
             
             if(CmdFlags.accse_heuristic==0) {
                 // Remove items from ls that are no longer connected to the root because of other CSEs being flattened
-                if(!eagerFilterLists) {
-                    CSE.filterlist(ls);
-                }
+                CSE.filterlist(ls);
             }
             
             // Remove duplicate refs to same object. This can happen if same pair occurs multiple times in expression.
@@ -383,11 +425,17 @@ public class ACCSE
                     
                     if(CmdFlags.accse_heuristic!=6) {   // If NOT leaving constraints in. 
                         populate_exp(replace_a);
-                        if(eagerFilterLists) {
-                            unpopulate_exp(a);
-                        }
                         // Replaces the expression in ls with the new one.
                         a.getParent().setChild(childno, replace_a);
+                        
+                        if(largestFirst) {
+                            //  a is now detached. So is replace_a if a was inside an
+                            //  expression replaced earlier in this loop. 
+                            markDetached(a);
+                            if(replace_a.isDetached()) {
+                                markDetached(replace_a);
+                            }
+                        }
                     }
                     else {
                         // Much more complicated -- copy the whole constraint containing 'a'
@@ -457,6 +505,14 @@ public class ACCSE
         m.constraints.getChild(0).setParent(null);
         new_constraints.add(m.constraints.getChild(0));
         m.constraints.setChild(0, new And(new_constraints));
+        
+        //  Let go of the index. 
+        term_ids=null;
+        terms=null;
+        bysize=null;
+        node_terms=null;
+        
+        CompileProfiler.endRule(prof, "ACCSE "+type, m);
     }
     
     ////////////////////////////////////////////////////////////////////////////
@@ -482,44 +538,19 @@ public class ACCSE
             ArrayList<ASTNode> children=a.getChildren();
             ArrayList<Long> wts=((WeightedSum)a).getWeights();
             
-            ArrayList<ASTNode> mapped=new ArrayList<ASTNode>();
+            int[] mapped=new int[children.size()];
+            int nmapped=0;
             for(int i=0; i<children.size(); i++) {
                 ASTNode a1=new MultiplyMapper(children.get(i).copy(), NumberConstant.make(wts.get(i)));
                 
                 //assert expression_counts.containsKey(a1);  Not true for new aux vars. 
                 if( (!expression_counts.containsKey(a1)) || expression_counts.get(a1)>1L) {
-                    mapped.add(a1);    /// Only add it if it occurs more than once globally, 
+                    mapped[nmapped++]=termId(a1);    /// Only add it if it occurs more than once globally, 
                     // or it is a new aux var (not in expression_counts, and guaranteed to occur more than once).
                 }
             }
             
-            for(int i=0; i<mapped.size(); i++) {
-                for(int j=i+1; j<mapped.size(); j++) {
-                    ASTNode a1=mapped.get(i);            
-                    ASTNode a2=mapped.get(j);
-                    
-                    if(CmdFlags.accse_heuristic==6 && (((Identifier)a1.getChild(0)).isAuxiliary() || ((Identifier)a2.getChild(0)).isAuxiliary())) {
-                        continue;
-                    }
-                    
-                    if(a1.hashCode() > a2.hashCode()) {
-                        ASTNode tmp=a2;
-                        a2=a1;
-                        a1=tmp;
-                    }
-                    
-                    PairASTNode p=new PairASTNode(a1, a2);   
-                    
-                    if(exp.containsKey(p)) {
-                        exp.get(p).add(a);
-                    }
-                    else {
-                        ArrayList<ASTNode> list=new ArrayList<ASTNode>();
-                        list.add(a);
-                        exp.put(p, list);
-                    }
-                }
-            }
+            addPairs(a, Arrays.copyOf(mapped, nmapped));
         }
         
         for(int i=0; i<a.numChildren(); i++) {
@@ -533,30 +564,12 @@ public class ACCSE
             && matches_type(a)
             && !(a.getParent() instanceof Top && a instanceof And)) {  // Exclude the top-level And.
             
+            int[] mapped=new int[a.numChildren()];
             for(int i=0; i<a.numChildren(); i++) {
-                for(int j=i+1; j<a.numChildren(); j++) {
-                    
-                    ASTNode a1=a.getChild(i).copy();            
-                    ASTNode a2=a.getChild(j).copy();   // Copy so that they will not be changed and screw up the hashmap.
-                    
-                    if(a1.hashCode() > a2.hashCode()) {
-                        ASTNode tmp=a2;
-                        a2=a1;
-                        a1=tmp;
-                    }
-                    
-                    PairASTNode p=new PairASTNode(a1, a2);   
-                    
-                    if(exp.containsKey(p)) {
-                        exp.get(p).add(a);
-                    }
-                    else {
-                        ArrayList<ASTNode> list=new ArrayList<ASTNode>();
-                        list.add(a);
-                        exp.put(p, list);
-                    }
-                }
+                mapped[i]=termId(a.getChild(i));
             }
+            
+            addPairs(a, mapped);
         }
         
         for(int i=0; i<a.numChildren(); i++) {
@@ -564,105 +577,129 @@ public class ACCSE
         }
     }
     
-    
-    
-    ////////////////////////////////////////////////////////////////////////////
-    //
-    //  AC-Expression a is about to be removed from the tree. Remove references to a from exp.
-    
-    private void unpopulate_exp(ASTNode a) {
-        if(isPlus) {
-            unpopulate_exp_sum(a);
+    //  Number a term, storing a copy so that it will not be changed and screw up the hashmap.
+    private int termId(ASTNode t) {
+        Integer id=term_ids.get(t);
+        if(id==null) {
+            id=terms.size();
+            if(t.getParent()!=null) {
+                t=t.copy();
+            }
+            term_ids.put(t, id);
+            terms.add(t);
         }
-        else {
-            unpopulate_exp_nonsum(a);
+        return id;
+    }
+    
+    //  Both term numbers packed into a long, then multiplied by an odd constant
+    //  (a bijection) so that Long.hashCode spreads the keys. 
+    private static long pairKey(int t1, int t2) {
+        if(t1>t2) {
+            int tmp=t1;  t1=t2;  t2=tmp;
         }
+        return ((((long) t1)<<32) | t2) * 0x9E3779B97F4A7C15L;
     }
     
-    private void unpopulate_exp_sum(ASTNode a)  {
-        if( a instanceof WeightedSum) {
-            
-            ArrayList<ASTNode> children=a.getChildren();
-            ArrayList<Long> wts=((WeightedSum)a).getWeights();
-            
-            ArrayList<ASTNode> mapped=new ArrayList<ASTNode>();
-            for(int i=0; i<children.size(); i++) {
-                ASTNode a1=new MultiplyMapper(children.get(i).copy(), NumberConstant.make(wts.get(i)));
+    //  Add a to the list for every pair of its terms. 
+    private void addPairs(ASTNode a, int[] mapped) {
+        //  If the work budget would be exceeded, leave a out. Fewer CSEs are found, but it is still correct. 
+        long npairs=((long) mapped.length)*(mapped.length-1)/2;
+        if(CmdFlags.accse_limit>=0 && work+npairs>CmdFlags.accse_limit) {
+            return;
+        }
+        work+=npairs;
+        
+        if(largestFirst) {
+            node_terms.put(a, mapped);
+        }
+        
+        for(int i=0; i<mapped.length; i++) {
+            for(int j=i+1; j<mapped.length; j++) {
+                if(isPlus && CmdFlags.accse_heuristic==6 && (((Identifier)terms.get(mapped[i]).getChild(0)).isAuxiliary() || ((Identifier)terms.get(mapped[j]).getChild(0)).isAuxiliary())) {
+                    continue;
+                }
                 
-                //assert expression_counts.containsKey(a1);  Not true for new aux vars. 
-                if( (!expression_counts.containsKey(a1)) || expression_counts.get(a1)>1L) {
-                    mapped.add(a1);    /// Only add it if it occurs more than once globally. 
+                long key=pairKey(mapped[i], mapped[j]);
+                PairEntry e=exp.get(key);
+                if(e==null) {
+                    e=new PairEntry(key, mapped[i], mapped[j], pairseq++);
+                    exp.put(key, e);
                 }
-            }
-            
-            for(int i=0; i<mapped.size(); i++) {
-                for(int j=i+1; j<mapped.size(); j++) {
-                    ASTNode a1=mapped.get(i);            
-                    ASTNode a2=mapped.get(j);
-                    
-                    if(CmdFlags.accse_heuristic==6 && (((Identifier)a1.getChild(0)).isAuxiliary() || ((Identifier)a2.getChild(0)).isAuxiliary())) {
-                        continue;
-                    }
-                    
-                    if(a1.hashCode() > a2.hashCode()) {
-                        ASTNode tmp=a2;
-                        a2=a1;
-                        a1=tmp;
-                    }
-                    
-                    PairASTNode p=new PairASTNode(a1, a2);   
-                    
-                    if(exp.containsKey(p)) {
-                        //  Old, working version where the item is removed from the list. 
-                        exp.get(p).remove(a);
-                        if(exp.get(p).size()==0) {
-                            exp.remove(p);
-                        }
-                    }
+                e.ls.add(a);
+                if(largestFirst) {
+                    touch(e);
                 }
             }
         }
-        
-        for(int i=0; i<a.numChildren(); i++) {
-            unpopulate_exp_sum(a.getChild(i));
+    }
+    
+    private void removePair(PairEntry e) {
+        exp.remove(e.key);
+        if(e.intree) {
+            bysize.remove(e);
+            e.intree=false;
         }
     }
     
-    private void unpopulate_exp_nonsum(ASTNode a)  {
-        if( a.isCommAssoc() // Check it is both commutative and associative. And, Or, Times, etc
-            && matches_type(a)
-            && !(a.getParent() instanceof Top && a instanceof And)) {  // Exclude the top-level And.
-            
-            for(int i=0; i<a.numChildren(); i++) {
-                for(int j=i+1; j<a.numChildren(); j++) {
-                    
-                    ASTNode a1=a.getChild(i).copy();            
-                    ASTNode a2=a.getChild(j).copy();   // Copy so that they will not be changed and screw up the hashmap.
-                    
-                    if(a1.hashCode() > a2.hashCode()) {
-                        ASTNode tmp=a2;
-                        a2=a1;
-                        a1=tmp;
-                    }
-                    
-                    PairASTNode p=new PairASTNode(a1, a2);   
-                    
-                    if(exp.containsKey(p)) {
-                        //  Old, working version where the item is removed from the list. 
-                        exp.get(p).remove(a);
-                        if(exp.get(p).size()==0) {
-                            exp.remove(p);
-                        }
+    private void touch(PairEntry e) {
+        if(!e.queued) {
+            e.queued=true;
+            touched.add(e);
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  AC-Expression a has been removed from the tree. Mark the lists that contain
+    //  a (or anything inside it) so they are filtered before the next choice.
+    
+    private void markDetached(ASTNode a) {
+        int[] mapped=node_terms.get(a);
+        if(mapped!=null) {
+            for(int i=0; i<mapped.length; i++) {
+                for(int j=i+1; j<mapped.length; j++) {
+                    PairEntry e=exp.get(pairKey(mapped[i], mapped[j]));
+                    if(e!=null) {
+                        e.filter=true;
+                        touch(e);
                     }
                 }
             }
         }
         
         for(int i=0; i<a.numChildren(); i++) {
-            unpopulate_exp_nonsum(a.getChild(i));
+            markDetached(a.getChild(i));
         }
     }
     
+    //  Filter the marked lists, remove any pair with one or 0 occurrences and 
+    //  re-sort the rest, giving the same exp as filtering every list would. 
+    private void refreshLists() {
+        for(PairEntry e : touched) {
+            e.queued=false;
+            if(exp.get(e.key)!=e) {
+                continue;   // Already taken out of exp.
+            }
+            if(e.intree) {
+                bysize.remove(e);
+                e.intree=false;
+            }
+            if(e.filter) {
+                CSE.filterlist(e.ls);
+                e.filter=false;
+            }
+            if(e.ls.size()<=1) {
+                exp.remove(e.key);
+            }
+            else {
+                e.size=e.ls.size();
+                bysize.add(e);
+                e.intree=true;
+            }
+        }
+        touched.clear();
+    }
+    
     ////////////////////////////////////////////////////////////////////////////
     
     private void populate_expression_counts(ASTNode a)  {
@@ -758,45 +795,47 @@ public class ACCSE
         return commonset;
     }
     
-    private PairASTNode findNonBlockingPair() {
+    private Long findNonBlockingPair() {
         // If there is a non-blocking pair, return it, otherwise return null.
         
-        // make a new hash table with hashsets of astnodes representing all pairs in exp
+        // make a new hash table with hashsets of term numbers representing all pairs in exp
         
-        HashMap<ASTNode, HashSet<ASTNode>> pairs=new HashMap<ASTNode, HashSet<ASTNode>>();
+        HashMap<Integer, HashSet<Integer>> pairs=new HashMap<Integer, HashSet<Integer>>();
         
-        Iterator<PairASTNode> itt=exp.keySet().iterator();
+        Iterator<PairEntry> itt=exp.values().iterator();
         while(itt.hasNext()) {
-            PairASTNode pa=itt.next();
+            PairEntry pa=itt.next();
+            int e1=pa.t1;
+            int e2=pa.t2;
             
             // insert in both directions into pairs.
             
-            if(pairs.containsKey(pa.e1)) {
-                pairs.get(pa.e1).add(pa.e2);
+            if(pairs.containsKey(e1)) {
+                pairs.get(e1).add(e2);
             }
             else {
-                HashSet<ASTNode> tmp=new HashSet<ASTNode>();
-                tmp.add(pa.e2);
-                pairs.put(pa.e1, tmp);
+                HashSet<Integer> tmp=new HashSet<Integer>();
+                tmp.add(e2);
+                pairs.put(e1, tmp);
             }
             
-            if(pairs.containsKey(pa.e2)) {
-                pairs.get(pa.e2).add(pa.e1);
+            if(pairs.containsKey(e2)) {
+                pairs.get(e2).add(e1);
             }
             else {
-                HashSet<ASTNode> tmp=new HashSet<ASTNode>();
-                tmp.add(pa.e1);
-                pairs.put(pa.e2, tmp);
+                HashSet<Integer> tmp=new HashSet<Integer>();
+                tmp.add(e1);
+                pairs.put(e2, tmp);
             }
         }
         
         // Now search for non-blocking choices in exp. 
-        Iterator<Map.Entry<PairASTNode, ArrayList<ASTNode>>> it2=exp.entrySet().iterator();
+        Iterator<PairEntry> it2=exp.values().iterator();
         
         while(it2.hasNext()) {
-            Map.Entry<PairASTNode, ArrayList<ASTNode>> extentry=it2.next();
+            PairEntry extentry=it2.next();
             
-            ArrayList<ASTNode> ls=extentry.getValue();
+            ArrayList<ASTNode> ls=extentry.ls;
             
             // Remove duplicate refs to same object. This can happen if same pair occurs multiple times in expression.
             // Shouldn't happen with sums, max, min, and, or, parity because duplicates will be simplified away.  
@@ -846,9 +885,11 @@ public class ACCSE
                 //System.out.println("pair1:"+pair1);
                 
                 // Iterate through expressions that tmp is in a pair with.
-                Iterator<ASTNode> itpairs=pairs.get(pair1).iterator();
+                int id1=term_ids.get(pair1);
+                Iterator<Integer> itpairs=pairs.get(id1).iterator();
                 while(itpairs.hasNext()  && !blocking) {
-                    ASTNode pair2=itpairs.next();
+                    int id2=itpairs.next();
+                    ASTNode pair2=terms.get(id2);
                     
                     //System.out.println("pair2:"+pair2);
                     
@@ -869,14 +910,7 @@ public class ACCSE
                     
                     // Pair2 is outside commonset. Does it appear in a constraint that is not in ls?
                     
-                    ASTNode tmp1=pair1;
-                    ASTNode tmp2=pair2;
-                    if(tmp1.hashCode()>tmp2.hashCode()) {
-                        tmp2=pair1;  tmp1=pair2;
-                    }
-                    
-                    PairASTNode pair12=new PairASTNode(tmp1, tmp2);
-                    ArrayList<ASTNode> ls_other=exp.get(pair12);
+                    ArrayList<ASTNode> ls_other=exp.get(pairKey(id1, id2)).ls;
                     
                     for(int j=0; j<ls_other.size(); j++) {
                         if(! ls.contains(ls_other.get(j))) {
@@ -888,8 +922,8 @@ public class ACCSE
             }
             
             if(! blocking) {
-                //System.out.println("Found non-blocking set:"+extentry.getValue());
-                return extentry.getKey();
+                //System.out.println("Found non-blocking set:"+extentry.ls);
+                return extentry.key;
             }
             
         }
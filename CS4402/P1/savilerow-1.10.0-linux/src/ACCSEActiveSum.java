@@ -48,6 +48,7 @@ public class ACCSEActiveSum
     public boolean active_ac_cs_found;
     
     public void flattenCSEs(Model m) {
+        CompileProfiler.Sample prof=CompileProfiler.begin(m);
         // Statistics
         numcse=0;     //  Number of CSE's
         countcse=0;   //  Total number of expressions replaced with auxvar.
@@ -232,6 +233,8 @@ public class ACCSEActiveSum
         m.constraints.getChild(0).setParent(null);
         new_constraints.add(m.constraints.getChild(0));
         m.constraints.setChild(0, new And(new_constraints));
+        
+        CompileProfiler.endRule(prof, "ACCSEActiveSum", m);
     }
     
     ////////////////////////////////////////////////////////////////////////////
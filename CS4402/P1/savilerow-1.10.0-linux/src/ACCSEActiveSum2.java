@@ -50,6 +50,7 @@ public class ACCSEActiveSum2
     public boolean active_ac_cs_found;
     
     public void flattenCSEs(Model m) {
+        CompileProfiler.Sample prof=CompileProfiler.begin(m);
         // Statistics
         numcse=0;     //  Number of CSE's
         countcse=0;   //  Total number of expressions replaced with auxvar.
@@ -149,6 +150,8 @@ public class ACCSEActiveSum2
         m.constraints.getChild(0).setParent(null);
         new_constraints.add(m.constraints.getChild(0));
         m.constraints.setChild(0, new And(new_constraints));
+        
+        CompileProfiler.endRule(prof, "ACCSEActiveSum2", m);
     }
     
     
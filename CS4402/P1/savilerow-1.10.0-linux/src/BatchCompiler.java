@@ -0,0 +1,236 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+
+//  Batch mode (-batch): compile one model with each parameter file in a list.
+//
+//  The main process only hands out parameter file names. The work is done by
+//  -batch-workers worker processes, each a JVM started with the same
+//  arguments plus -batch-worker. A worker parses the model once, then reads
+//  parameter file names from stdin and compiles each one on a copy of the
+//  model, keeping the JVM warm and sharing tabulated tables between
+//  instances. Each instance writes the same output files as a normal run with
+//  that parameter file. If a worker exits (an error or -timelimit), the
+//  instance is reported as failed and a new worker is started for the rest. 
+
+public final class BatchCompiler {
+    private static final String DONE="SRBATCH done ";
+    
+    private ArrayList<String> params;
+    private int next=0;
+    private String[] result;
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //  Main process
+    
+    //  Returns true if every instance was compiled.
+    public static boolean runBatch() {
+        BatchCompiler b=new BatchCompiler();
+        return b.run();
+    }
+    
+    private boolean run() {
+        params=new ArrayList<String>();
+        try {
+            BufferedReader r=new BufferedReader(new FileReader(CmdFlags.batchfile));
+            String line;
+            while((line=r.readLine())!=null) {
+                line=line.trim();
+                if(line.length()>0 && !line.startsWith("#")) {
+                    params.add(line);
+                }
+            }
+            r.close();
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("Could not read batch file "+CmdFlags.batchfile+": "+e);
+        }
+        result=new String[params.size()];
+        
+        long start=System.currentTimeMillis();
+        int numworkers=Math.min(CmdFlags.batch_workers, Math.max(params.size(), 1));
+        Thread[] threads=new Thread[numworkers];
+        for(int i=0; i<numworkers; i++) {
+            threads[i]=new Thread(() -> manageWorker());
+            threads[i].start();
+        }
+        for(int i=0; i<numworkers; i++) {
+            try {
+                threads[i].join();
+            }
+            catch(InterruptedException e) {
+            }
+        }
+        
+        int failed=0;
+        for(int i=0; i<params.size(); i++) {
+            if(result[i]==null || !result[i].startsWith("ok")) {
+                failed++;
+                System.err.println("Batch: "+params.get(i)+" failed"+(result[i]==null ? "" : ": "+result[i]));
+            }
+        }
+        System.out.println("Batch: "+(params.size()-failed)+" of "+params.size()+" instances compiled in "
+            +(((double) System.currentTimeMillis()-start)/1000.0)+" s with "+numworkers+" worker(s).");
+        return failed==0;
+    }
+    
+    private synchronized int nextInstance() {
+        return (next<params.size()) ? next++ : -1;
+    }
+    
+    //  Runs in a thread of the main process, feeding instances to one worker
+    //  process and starting a new worker when it exits. 
+    private void manageWorker() {
+        int inst=nextInstance();
+        while(inst>=0) {
+            Process p;
+            try {
+                ProcessBuilder pb=new ProcessBuilder(workerCommand());
+                pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+                p=pb.start();
+            }
+            catch(IOException e) {
+                result[inst]="could not start worker: "+e;
+                inst=nextInstance();
+                continue;
+            }
+            
+            BufferedWriter toWorker=new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
+            BufferedReader fromWorker=new BufferedReader(new InputStreamReader(p.getInputStream()));
+            try {
+                while(inst>=0) {
+                    toWorker.write(params.get(inst));
+                    toWorker.newLine();
+                    toWorker.flush();
+                    
+                    String line;
+                    while((line=fromWorker.readLine())!=null && !line.startsWith(DONE)) {
+                        synchronized(System.out) {
+                            System.out.println(line);
+                        }
+                    }
+                    if(line==null) {
+                        break;    // Worker exited while compiling inst.
+                    }
+                    result[inst]="ok "+line.substring(DONE.length());
+                    inst=nextInstance();
+                }
+                toWorker.close();
+            }
+            catch(IOException e) {
+                // Worker has gone; find out how below.
+            }
+            
+            try {
+                int code=p.waitFor();
+                if(inst>=0) {
+                    result[inst]="worker exited with code "+code;
+                    inst=nextInstance();
+                }
+            }
+            catch(InterruptedException e) {
+                p.destroy();
+                return;
+            }
+        }
+    }
+    
+    //  Same JVM, classpath and arguments as this process, as a worker.
+    private static ArrayList<String> workerCommand() {
+        ArrayList<String> cmd=new ArrayList<String>();
+        cmd.add(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java");
+        cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add("savilerow.EPrimeTailor");
+        String[] args=CmdFlags.cmdargs;
+        for(int i=0; i<args.length; i++) {
+            if(args[i].equals("-batch") || args[i].equals("-batch-workers")) {
+                i++;   // Skip the argument as well. 
+            }
+            else {
+                cmd.add(args[i]);
+            }
+        }
+        cmd.add("-batch-worker");
+        return cmd;
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //  Worker process
+    
+    public static void runWorker() {
+        CmdFlags.saveState();
+        TabulationUtils.enableSharedCache();
+        
+        EPrimeReader reader = new EPrimeReader(CmdFlags.eprimefile, true);
+        Model m=reader.readModel();
+        assert m.constraints != null;
+        ModelContainer prepared=new ModelContainer(m, new ArrayList<ASTNode>());
+        
+        try {
+            BufferedReader in=new BufferedReader(new InputStreamReader(System.in));
+            String param;
+            while((param=in.readLine())!=null) {
+                CmdFlags.restoreState();
+                CmdFlags.setInstance(param);
+                resetStatics();
+                
+                ModelContainer mc=prepared.copy();
+                mc.parameters=FastParamReader.readParameterFile(param, mc.m);
+                
+                CmdFlags.startTime=System.currentTimeMillis();
+                if(CmdFlags.make_tab) {
+                    mc.makeTableScopes();
+                }
+                else {
+                    mc.process();
+                }
+                CompileProfiler.write();
+                
+                System.out.println(DONE+(((double) System.currentTimeMillis()-CmdFlags.startTime)/1000.0)+" s");
+                System.out.flush();
+            }
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("Batch worker could not read from the main process: "+e);
+        }
+    }
+    
+    //  State outside CmdFlags that is left behind by compiling an instance. 
+    static void resetStatics() {
+        SATSolver.solutionNumber=1;
+        TableShort.shorttablecount=1;
+        TransformExtractBoolsInSums.clearCache();
+        AMODetect.mutexDetect=new ArrayList<>();
+        DominanceRelation.sollist=null;
+        DominanceRelation.incl=null;
+        BitVector.bits=64;
+        BitVector.highest=0;
+        BitVector.lowest=0;
+        CompileProfiler.reset();
+    }
+}
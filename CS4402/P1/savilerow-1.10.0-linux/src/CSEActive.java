@@ -38,6 +38,7 @@ public class CSEActive
     public int totallength;
     
     public void flattenCSEs(Model m) {
+        CompileProfiler.Sample prof=CompileProfiler.begin(m);
         // Statistics
         numcse=0;     //  Number of CSE's
         countcse=0;   //  Total number of expressions replaced with auxvar.
@@ -287,6 +288,8 @@ public class CSEActive
         m.constraints.getChild(0).setParent(null);
         new_constraints.add(m.constraints.getChild(0));
         m.constraints.setChild(0, new And(new_constraints));
+        
+        CompileProfiler.endRule(prof, "CSEActive", m);
     }
     
     private void populate_exp(ASTNode a)  {
@@ -45,6 +45,7 @@ public class CSETopLevel
     public int totallength;
     
     public void flattenCSEs(Model m) {
+        CompileProfiler.Sample prof=CompileProfiler.begin(m);
         // Statistics
         numcse=0;     //  Number of CSE's
         countcse=0;   //  Total number of expressions replaced with auxvar.
@@ -107,6 +108,8 @@ public class CSETopLevel
                 totallength+=ls.get(0).treesize();
             }
         }
+        
+        CompileProfiler.endRule(prof, "CSETopLevel", m);
     }
     
     private void populate_exp(ASTNode a)  {
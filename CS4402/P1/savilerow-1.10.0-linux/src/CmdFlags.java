@@ -99,6 +99,11 @@ public final class CmdFlags {
     public static boolean sat_element_gac=false;
     
     public static boolean short_tab_sat_extra=false;   // Extra clauses in short table encoding to make the aux SAT variables functional.
+    
+    private static boolean sat_binary_output=false;    // Write clauses in the compact binary format instead of DIMACS.
+    public static int sat_threads=1;                   // Number of threads used to encode constraints to SAT.
+    public static ArrayList<String> sat_portfolio=null;   // Solver configurations raced by PortfolioSATSolver (-sat-portfolio). 
+    public static boolean sat_incremental=false;      // Keep one in-process solver across the solver calls of a run.
     //  End SAT encoding options. 
     
     public static ArrayList<Integer> make_tables_scope;
@@ -122,6 +127,9 @@ public final class CmdFlags {
     public static boolean tabulate2=false;
     public static boolean tabulate_diagnostics=false;
     public static boolean tabulate_nolimit=false;    ///   Remove the usual 300000 node limit. 
+    public static boolean tabulate_diskcache=false;  ///   Store tables in the on-disk cache shared between runs.
+    public static long tabulate_cache_size=256L<<20;  ///   Size limit of the on-disk table cache, in bytes.
+    public static int tabulate_threads=1;   ///   Number of threads used to generate tables in -tabulate2.
     
     public static double tabtime=-1.0;
     
@@ -131,13 +139,22 @@ public final class CmdFlags {
     private static boolean graph_col_sym_break=false;
     
     public static int accse_heuristic=1;   // Default is most occurrences first. 
+    public static long accse_limit=-1;     // Budget of pair occurrences indexed by AC-CSE, -1 for no limit. 
     
     // Do dry runs to warm up the JVM
     public static boolean dryruns=false;
     
+    // Batch mode: compile the model with each parameter file listed in batchfile.
+    public static String batchfile=null;
+    public static int batch_workers=1;          // Number of worker processes.
+    public static boolean batch_worker=false;   // This process is a worker, reading parameter file names from stdin. 
+    public static String[] cmdargs;             // Command-line arguments as given, used to start workers. 
+    
     // Extra presolving of model. 
     private static boolean use_delete_vars=true;   // Delete variables by unifying or assigning. Default is -O2 with this switched on. 
-    private static boolean use_propagate=true;     // Reduce domains by running Minion with SACBounds. On by default.
+    private static boolean use_propagate=true;     // Reduce domains by propagation with SACBounds. On by default.
+    public static boolean reduce_domains_minion=false;   // Run Minion for domain filtering instead of DomainPropagator. 
+    public static boolean incremental_simplify=true;   // Simplify only the changed parts of the model after each rule. 
     private static boolean use_propagate_extend=false;   // Extended propagate- filters aux vars as well as find vars. 
     private static boolean use_propagate_extend2=false;  // ... and tightens getBounds (in addition to above). 
     
@@ -151,7 +168,8 @@ public final class CmdFlags {
                                                          //  find an easy solution to bound the optimisation variable. 
     private static String opt_strategy="bisect";         //  "linear" has an incumbent solution and gradually improves it 
                                                          //  "unsat" assigns the opt var from the best value up/downwards so the first solution is optimal
-                                                         //  "bisect" is dichotomic search. 
+                                                         //  "bisect" is dichotomic search, "parallel" tests several bounds at once.
+    private static int opt_probes=0;                     //  Solvers run at once by the "parallel" strategy, 0 for one per core.
     
     private static long find_num_solutions=1;            //  Find 1 solution by default.
     private static boolean solutions_to_stdout_one_line=false;
@@ -166,6 +184,7 @@ public final class CmdFlags {
     public static boolean test_solutions=false; // Store the model and check the solver solution satisfies all constraints. 
     
     private static boolean param_to_json=false;  // Just dump the parameter file to JSON.
+    private static boolean param_to_binary=false;  // Just dump the parameter file to the binary format.
     
     private static boolean expand_short_tab=false;
     
@@ -227,6 +246,7 @@ public final class CmdFlags {
     public static FileWriter recordIntermediateObjectiveValues=null;        // if not null, record intermediate objective values to file
     public static long timelimit=0;
     public static long cnflimit=0;
+    public static boolean profile=false;    // Write a profile of the compilation, see CompileProfiler
     public static volatile boolean runningSolver=false;
     private static boolean bvTraversal=false;
 
@@ -267,6 +287,23 @@ public final class CmdFlags {
     public static String getSatSolver() {
         return satsolverpath;
     }
+    //  Binary to run for a SAT family when none is given. 
+    public static String defaultSatSolverPath(String family) {
+        if(family.equals("kissat")) {
+            return (kissatpath==null)?"kissat":kissatpath;
+        }
+        else if(family.equals("minisat") || family.equals("lingeling") || family.equals("glucose") || family.equals("cadical")) {
+            return family;  // Default value of sat solver is same as sat family. 
+        }
+        else if(family.equals("nbc_minisat_all") || family.equals("bc_minisat_all")) {
+            return family+"_release";
+        }
+        else {
+            //  This should not be reachable. 
+            cmdLineExit("Unknown SAT solver family: "+family);
+            return null;
+        }
+    }
     public static boolean usingBoolector() {
         return smtsolver==SMTSOL.BOOLECTOR;
     }
@@ -405,6 +442,12 @@ public final class CmdFlags {
     public static boolean getParamToJSON() {
         return param_to_json;
     }
+    public static void setParamToBinary() {
+        param_to_binary=true;
+    }
+    public static boolean getParamToBinary() {
+        return param_to_binary;
+    }
     public static boolean getWarnUndef() {
         return warn_undef;
     }
@@ -586,6 +629,9 @@ public final class CmdFlags {
     public static boolean getMaxsattrans() {
         return soltype==SolEnum.MAXSAT;
     }
+    public static boolean getSatBinaryOutput() {
+        return sat_binary_output;
+    }
     public static SumEnc getSatPBEnc() {
         return pb_encoding;
     }
@@ -673,6 +719,10 @@ public final class CmdFlags {
     public static String getOptStrategy() {
         return opt_strategy;
     }
+    //  Number of solvers run at once by -opt-strategy parallel; by default one per core.
+    public static int getOptProbes() {
+        return (opt_probes>0) ? opt_probes : Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
     public static boolean getGraphColSymBreak() {
         return graph_col_sym_break;
     }
@@ -728,7 +778,137 @@ public final class CmdFlags {
         System.exit(1);
     }
     
+    //  Defaults for minion and other output files, and solution file name,
+    //  derived from the parameter file name if there is one.
+    private static void setDefaultFileNames() {
+        if(CmdFlags.minionfile==null) {
+            if(CmdFlags.paramfile!=null)
+                CmdFlags.minionfile=CmdFlags.paramfile+".minion";
+            else
+                CmdFlags.minionfile=CmdFlags.eprimefile+".minion";
+        }
+        if(satfile==null) {
+            if(paramfile!=null) {
+                satfile=paramfile+".dimacs";
+            }
+            else {
+                satfile=eprimefile+".dimacs";
+            }
+        }
+        if(smtfile==null) {
+            if(paramfile!=null) {
+                smtfile=paramfile+".smt2";
+            }
+            else {
+                smtfile=eprimefile+".smt2";
+            }
+        }
+        if(CmdFlags.auxfile==null) {
+            if(CmdFlags.paramfile!=null)
+                CmdFlags.auxfile=CmdFlags.paramfile+".aux";
+            else
+                CmdFlags.auxfile=CmdFlags.eprimefile+".aux";
+        }
+        if(CmdFlags.fznfile==null) {
+            if(CmdFlags.paramfile!=null)
+                CmdFlags.fznfile=CmdFlags.paramfile+".fzn";
+            else
+                CmdFlags.fznfile=CmdFlags.eprimefile+".fzn";
+        }
+        if(CmdFlags.solutionfile==null) {
+            if(CmdFlags.paramfile!=null)
+                CmdFlags.solutionfile=CmdFlags.paramfile+".solution";
+            else
+                CmdFlags.solutionfile=CmdFlags.eprimefile+".solution";
+        }
+        if(infofile==null) {
+            if(paramfile!=null)
+                infofile=paramfile+".info";
+            else
+                infofile=eprimefile+".info";
+        }
+        if(CmdFlags.minizincfile==null) {
+            if(CmdFlags.paramfile!=null)
+                CmdFlags.minizincfile=CmdFlags.paramfile+".mzn";
+            else
+                CmdFlags.minizincfile=CmdFlags.eprimefile+".mzn";
+        }
+        if(CmdFlags.mipfile==null) {
+            if(CmdFlags.paramfile!=null)
+                CmdFlags.mipfile=CmdFlags.paramfile+".lp";
+            else
+                CmdFlags.mipfile=CmdFlags.eprimefile+".lp";
+        }
+        
+    }
+    
+    //  Values of the flags after parsing the command line. Compiling an instance
+    //  changes some of them, so batch mode restores them before each instance.
+    private static HashMap<java.lang.reflect.Field, Object> savedState;
+    
+    public static void saveState() {
+        savedState=new HashMap<java.lang.reflect.Field, Object>();
+        try {
+            for(java.lang.reflect.Field f : CmdFlags.class.getDeclaredFields()) {
+                int mod=f.getModifiers();
+                if(java.lang.reflect.Modifier.isStatic(mod) && !java.lang.reflect.Modifier.isFinal(mod) && !f.getName().equals("savedState")) {
+                    f.setAccessible(true);
+                    savedState.put(f, copyValue(f.get(null)));
+                }
+            }
+        }
+        catch(IllegalAccessException e) {
+            CmdFlags.errorExit("Could not save command-line flags: "+e);
+        }
+    }
+    
+    public static void restoreState() {
+        try {
+            for(Map.Entry<java.lang.reflect.Field, Object> e : savedState.entrySet()) {
+                e.getKey().set(null, copyValue(e.getValue()));
+            }
+        }
+        catch(IllegalAccessException e) {
+            CmdFlags.errorExit("Could not restore command-line flags: "+e);
+        }
+    }
+    
+    //  Collections are copied so that changes to them are not saved as well.
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object o) {
+        if(o instanceof ArrayList) {
+            return new ArrayList<Object>((ArrayList<Object>) o);
+        }
+        if(o instanceof LinkedHashMap) {
+            return new LinkedHashMap<Object, Object>((LinkedHashMap<Object, Object>) o);
+        }
+        if(o instanceof HashMap) {
+            return new HashMap<Object, Object>((HashMap<Object, Object>) o);
+        }
+        if(o instanceof HashSet) {
+            return new HashSet<Object>((HashSet<Object>) o);
+        }
+        return o;
+    }
+    
+    //  Batch mode: compile the next instance, with parameter file param. All 
+    //  output file names are derived from it.
+    public static void setInstance(String param) {
+        paramfile=param;
+        minionfile=null;
+        satfile=null;
+        smtfile=null;
+        auxfile=null;
+        fznfile=null;
+        solutionfile=null;
+        infofile=null;
+        minizincfile=null;
+        mipfile=null;
+        setDefaultFileNames();
+    }
+    
     public static void parseArguments(String[] args) {
+        cmdargs=args.clone();
         ArrayList<String> arglist=new ArrayList<String>();
         // The default optimisation level is -O2 so put this on the start of the list 
         arglist.add("-O2");
@@ -849,6 +1029,10 @@ public final class CmdFlags {
                 CmdFlags.verbose_make_short = true;
             }
             
+            else if(cur.equals("-no-incremental-simplify")) {
+                incremental_simplify=false;
+            }
+            
             // Reformulation options -- CSE
             else if(cur.equals("-no-cse")) {
                 // Switch off all kinds of CSE.
@@ -877,6 +1061,10 @@ public final class CmdFlags {
                 if(arglist.size()==0) CmdFlags.cmdLineExit("AC-CSE heuristic integer missing");
                 accse_heuristic=Integer.parseInt(arglist.remove(0));
             }
+            else if(cur.equals("-ac-cse-limit")) {
+                if(arglist.size()==0) CmdFlags.cmdLineExit("AC-CSE limit integer missing");
+                accse_limit=Long.parseLong(arglist.remove(0));
+            }
             else if(cur.equals("-ac-cse-alt")) {
                 CmdFlags.setUseACCSEAlt(true);
             }
@@ -954,6 +1142,9 @@ public final class CmdFlags {
                 setUsePropagate(true);
                 setUsePropagateExtend(true);
             }
+            else if(cur.equals("-reduce-domains-minion")) {
+                reduce_domains_minion=true;
+            }
             else if(cur.equals("-remove-redundant-vars")) {
                 setRemoveRedundantVars(true);
             }
@@ -970,7 +1161,12 @@ public final class CmdFlags {
                 if(arglist.size()==0) CmdFlags.cmdLineExit("Optimisation strategy missing after -opt-strategy flag");
                 opt_strategy=arglist.remove(0);
                 
-                if(! (opt_strategy.equals("linear") || opt_strategy.equals("unsat") || opt_strategy.equals("bisect"))) CmdFlags.cmdLineExit("Optimisation strategy must be linear, unsat or bisect.");
+                if(! (opt_strategy.equals("linear") || opt_strategy.equals("unsat") || opt_strategy.equals("bisect") || opt_strategy.equals("parallel"))) CmdFlags.cmdLineExit("Optimisation strategy must be linear, unsat, bisect or parallel.");
+            }
+            else if(cur.equals("-opt-probes")) {
+                if(arglist.size()==0) CmdFlags.cmdLineExit("-opt-probes expects an integer argument.");
+                opt_probes=Integer.parseInt(arglist.remove(0));
+                if(opt_probes<1) CmdFlags.cmdLineExit("Argument to -opt-probes is less than one.");
             }
             else if(cur.equals("-make-tab")) {
                 make_tab=true;
@@ -996,12 +1192,32 @@ public final class CmdFlags {
                 if(arglist.size()==0) CmdFlags.cmdLineExit("-cnflimit expects an integer argument.");
                 CmdFlags.setCNFLimit(Integer.parseInt(arglist.remove(0)));
             }
+            else if(cur.equals("-profile")) {
+                profile=true;
+            }
             
             // For experiments -- prime the virtual machine by running the translation 
             // a few times before taking a timing. 
             else if(cur.equals("-dryruns")) {
                 dryruns=true;
             }
+            else if(cur.equals("-batch")) {
+                if(arglist.size()==0) CmdFlags.cmdLineExit("Missing file name after -batch");
+                batchfile=arglist.remove(0);
+            }
+            else if(cur.equals("-batch-workers")) {
+                if(arglist.size()==0) CmdFlags.cmdLineExit("Missing number of workers after -batch-workers");
+                try {
+                    batch_workers=Integer.parseInt(arglist.remove(0));
+                }
+                catch(NumberFormatException e) {
+                    CmdFlags.cmdLineExit("Number after -batch-workers must be an integer.");
+                }
+                if(batch_workers<1) CmdFlags.cmdLineExit("Number after -batch-workers must be at least 1.");
+            }
+            else if(cur.equals("-batch-worker")) {
+                batch_worker=true;
+            }
             else if(cur.equals("-test-solutions")) {
                 test_solutions=true;
             }
@@ -1074,6 +1290,30 @@ public final class CmdFlags {
             else if(cur.equals("-tab-nolimit")) {
                 tabulate_nolimit=true;
             }
+            else if(cur.equals("-tabulate-threads")) {
+                if(arglist.size()==0) CmdFlags.cmdLineExit("Missing number of threads after -tabulate-threads");
+                try {
+                    tabulate_threads=Integer.parseInt(arglist.remove(0));
+                }
+                catch(NumberFormatException e) {
+                    CmdFlags.cmdLineExit("Number after -tabulate-threads must be an integer.");
+                }
+                if(tabulate_threads<1) CmdFlags.cmdLineExit("Number after -tabulate-threads must be at least 1.");
+            }
+            else if(cur.equals("-tabulate-cache")) {
+                tabulate_diskcache=true;
+            }
+            else if(cur.equals("-tabulate-cache-size")) {
+                if(arglist.size()==0) CmdFlags.cmdLineExit("Missing size in megabytes after -tabulate-cache-size");
+                try {
+                    tabulate_cache_size=Long.parseLong(arglist.remove(0))<<20;
+                }
+                catch(NumberFormatException e) {
+                    CmdFlags.cmdLineExit("Size after -tabulate-cache-size must be an integer.");
+                }
+                if(tabulate_cache_size<0) CmdFlags.cmdLineExit("Size after -tabulate-cache-size must not be negative.");
+                tabulate_diskcache=true;
+            }
             else if(cur.equals("-factor-encoding")) {
                 factor_encoding=true;
                 if(arglist.size()>0) {
@@ -1283,11 +1523,36 @@ public final class CmdFlags {
             else if(cur.equals("-sat-output-mapping")) {
                 satoutputmapping=true;
             }
+            else if(cur.equals("-sat-binary-output")) {
+                sat_binary_output=true;
+            }
+            else if(cur.equals("-sat-threads")) {
+                if(arglist.size()==0) CmdFlags.cmdLineExit("-sat-threads expects an integer argument.");
+                sat_threads=Integer.parseInt(arglist.remove(0));
+                if(sat_threads<1) CmdFlags.cmdLineExit("Argument to -sat-threads is less than one.");
+            }
 
+            else if(cur.equals("-sat-incremental")) {
+                sat_incremental=true;
+            }
+            else if(cur.equals("-sat-portfolio")) {
+                if(arglist.size()==0) CmdFlags.cmdLineExit("Missing portfolio string following -sat-portfolio");
+                sat_portfolio=new ArrayList<String>();
+                for(String entry : arglist.remove(0).split(";")) {
+                    if(!entry.trim().equals("")) {
+                        String sf=PortfolioSATSolver.family(entry);
+                        if(! (sf.equals("cadical") || sf.equals("kissat") || sf.equals("glucose") || sf.equals("lingeling"))) {
+                            CmdFlags.cmdLineExit("SAT family "+sf+" cannot be used in -sat-portfolio.");
+                        }
+                        sat_portfolio.add(entry.trim());
+                    }
+                }
+                if(sat_portfolio.size()==0) CmdFlags.cmdLineExit("-sat-portfolio is empty.");
+            }
             else if(cur.equals("-sat-family")) {
                 if(arglist.size()==0) CmdFlags.cmdLineExit("Missing SAT family name following -sat-family");
                 String sf=arglist.remove(0);
-                if(! ( sf.equals("minisat") || sf.equals("lingeling") || sf.equals("glucose") || sf.equals("cadical") || sf.equals("kissat")
+                if(! ( sf.equals("minisat") || sf.equals("lingeling") || sf.equals("glucose") || sf.equals("cadical") || sf.equals("kissat") || sf.equals("java")
                         || sf.equals("nbc_minisat_all") || sf.equals("bc_minisat_all"))) {
                             CmdFlags.cmdLineExit("SAT family "+sf+" not supported.");
                 }
@@ -1415,6 +1680,9 @@ public final class CmdFlags {
             else if(cur.equals("-param-to-json")) {
                 CmdFlags.setParamToJSON();
             }
+            else if(cur.equals("-param-to-binary")) {
+                CmdFlags.setParamToBinary();
+            }
             else if(cur.equals("-save-symbols")) {
                 CmdFlags.setSaveSymbols();
             }
@@ -1531,65 +1799,17 @@ public final class CmdFlags {
             if(sum_encoding==SumEnc.DEFAULT) {
                 sum_encoding=SumEnc.TREE;
             }
-            // defaults for minion and other output files, and solution file name.
-            if(CmdFlags.minionfile==null) {
-                if(CmdFlags.paramfile!=null)
-                    CmdFlags.minionfile=CmdFlags.paramfile+".minion";
-                else
-                    CmdFlags.minionfile=CmdFlags.eprimefile+".minion";
-            }
-            if(satfile==null) {
-                if(paramfile!=null) {
-                    satfile=paramfile+".dimacs";
-                }
-                else {
-                    satfile=eprimefile+".dimacs";
-                }
-            }
-            if(smtfile==null) {
-                if(paramfile!=null) {
-                    smtfile=paramfile+".smt2";
+            if(batchfile!=null || batch_worker) {
+                if(paramfile!=null || paramstring!=null) {
+                    CmdFlags.cmdLineExit("A parameter file cannot be given with -batch.");
                 }
-                else {
-                    smtfile=eprimefile+".smt2";
+                if(minionfile!=null || satfile!=null || smtfile!=null || auxfile!=null || fznfile!=null
+                    || solutionfile!=null || infofile!=null || minizincfile!=null || mipfile!=null) {
+                    CmdFlags.cmdLineExit("Output file names cannot be given with -batch; they are derived from each parameter file.");
                 }
             }
-            if(CmdFlags.auxfile==null) {
-                if(CmdFlags.paramfile!=null)
-                    CmdFlags.auxfile=CmdFlags.paramfile+".aux";
-                else
-                    CmdFlags.auxfile=CmdFlags.eprimefile+".aux";
-            }
-            if(CmdFlags.fznfile==null) {
-                if(CmdFlags.paramfile!=null)
-                    CmdFlags.fznfile=CmdFlags.paramfile+".fzn";
-                else
-                    CmdFlags.fznfile=CmdFlags.eprimefile+".fzn";
-            }
-            if(CmdFlags.solutionfile==null) {
-                if(CmdFlags.paramfile!=null)
-                    CmdFlags.solutionfile=CmdFlags.paramfile+".solution";
-                else
-                    CmdFlags.solutionfile=CmdFlags.eprimefile+".solution";
-            }
-            if(infofile==null) {
-                if(paramfile!=null)
-                    infofile=paramfile+".info";
-                else
-                    infofile=eprimefile+".info";
-            }
-            if(CmdFlags.minizincfile==null) {
-                if(CmdFlags.paramfile!=null)
-                    CmdFlags.minizincfile=CmdFlags.paramfile+".mzn";
-                else
-                    CmdFlags.minizincfile=CmdFlags.eprimefile+".mzn";
-            }
-            if(CmdFlags.mipfile==null) {
-                if(CmdFlags.paramfile!=null)
-                    CmdFlags.mipfile=CmdFlags.paramfile+".lp";
-                else
-                    CmdFlags.mipfile=CmdFlags.eprimefile+".lp";
-            }
+            // defaults for minion and other output files, and solution file name.
+            setDefaultFileNames();
             
             ///  Check and fill in missing parts of SAT configuration.
             if(getSattrans() && !getSMTtrans()) {
@@ -1601,7 +1821,21 @@ public final class CmdFlags {
                 }
                 else {
                     //  Pure SAT, not MaxSAT or SMT
-                    if(satfamily==null) {
+                    if(sat_portfolio!=null && satfamily==null && satsolverpath==null) {
+                        //  The first member of the portfolio stands in for -sat-family. 
+                        satfamily=PortfolioSATSolver.family(sat_portfolio.get(0));
+                    }
+                    if(satfamily==null && interactiveSolver && satsolverpath==null && kissatpath==null) {
+                        //  Built-in solver, no binary needed.
+                        satfamily="java";
+                    }
+                    if(satfamily!=null && satfamily.equals("java")) {
+                        //  The built-in solver can only be used interactively.
+                        if(runsolver) {
+                            interactiveSolver=true;
+                        }
+                    }
+                    else if(satfamily==null) {
                         if(satsolverpath==null) {
                             // Set defaults.
                             if(kissatpath!=null) {
@@ -1609,9 +1843,12 @@ public final class CmdFlags {
                                 satsolverpath=kissatpath;
                             }
                             else {
-                                if(runsolver) {
+                                if(runsolver && !sat_incremental) {
                                     cmdLineExit("No SAT solver specified, and default solver (kissat) not found.");
                                 }
+                                if(sat_incremental) {
+                                    satfamily="kissat";   //  Not run with -sat-incremental.
+                                }
                             }
                         }
                         else {
@@ -1620,24 +1857,30 @@ public final class CmdFlags {
                     }
                     else if(satsolverpath==null) {
                         // satfamily is set but satsolverpath is not. 
-                        // Case split for satfamily
-                        if(satfamily.equals("kissat")) {
-                            satsolverpath=(kissatpath==null)?"kissat":kissatpath;
-                        }
-                        else if(satfamily.equals("minisat") || satfamily.equals("lingeling") || satfamily.equals("glucose") || satfamily.equals("cadical")) {
-                            satsolverpath=satfamily;  // Default value of sat solver is same as sat family. 
-                        }
-                        else if(satfamily.equals("nbc_minisat_all") || satfamily.equals("bc_minisat_all")) {
-                            satsolverpath=satfamily+"_release";
-                        }
-                        else {
-                            //  This should not be reachable. 
-                            cmdLineExit("Unknown SAT solver family: "+satfamily);
-                        }
+                        satsolverpath=defaultSatSolverPath(satfamily);
                     }
                 }
             }
             
+            if(sat_incremental && (interactiveSolver || getSMTtrans() || getMaxsattrans() || !getSattrans()
+                || satfamily.equals("nbc_minisat_all") || satfamily.equals("bc_minisat_all"))) {
+                cmdLineExit("-sat-incremental can only be used with -sat and a SAT solver that is not interactive or an _all solver.");
+            }
+            
+            if(sat_portfolio!=null && (interactiveSolver || sat_incremental || getSMTtrans() || getMaxsattrans() || !getSattrans()
+                || satfamily.equals("nbc_minisat_all") || satfamily.equals("bc_minisat_all"))) {
+                cmdLineExit("-sat-portfolio can only be used with -sat and a SAT solver that is not interactive or an _all solver, and not with -sat-incremental.");
+            }
+            
+            if(opt_strategy.equals("parallel") && runsolver && getSattrans() && (interactiveSolver || sat_incremental || sat_portfolio!=null || getSMTtrans() || getMaxsattrans()
+                || satfamily==null || !(satfamily.equals("kissat") || satfamily.equals("cadical") || satfamily.equals("glucose") || satfamily.equals("lingeling")))) {
+                cmdLineExit("-opt-strategy parallel can only be used with -sat and the kissat, cadical, glucose or lingeling SAT families, and not with -sat-incremental or -sat-portfolio.");
+            }
+            
+            if(sat_binary_output && (runsolver || interactiveSolver || getSMTtrans())) {
+                cmdLineExit("-sat-binary-output writes a file that SAT solvers cannot read, so it cannot be used with -run-solver, -interactive-solver or -smt.");
+            }
+            
             ///  Check and fill in missing parts of SMT configuration
             if(getSMTtrans()) {
                 if(logic == LOGIC.NULL) {
@@ -0,0 +1,224 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+//  Records where the time goes during a compile (-profile). Each pipeline
+//  phase and each rule applied with Model.transform gets a record of wall
+//  time, CPU time, bytes allocated, the size of the constraint tree before
+//  and after, and the number of calls to simplify. The records are written
+//  as JSON next to the .info file. 
+//
+//  CPU time and allocation are those of the compiling thread plus any work
+//  done inside worker tasks (parallel tabulation and parallel SAT encoding) 
+//  that wrap their work in beginWorker/endWorker. 
+
+public final class CompileProfiler {
+    //  Counts calls to ASTNode.simplify made by TransformSimplify, from any thread. 
+    private static final LongAdder simplifyCalls=new LongAdder();
+    
+    //  CPU time and bytes allocated by finished worker tasks. 
+    private static final LongAdder workerCpu=new LongAdder();
+    private static final LongAdder workerAlloc=new LongAdder();
+    
+    private static LinkedHashMap<String, Record> phases=new LinkedHashMap<String, Record>();
+    private static LinkedHashMap<String, Record> rules=new LinkedHashMap<String, Record>();
+    private static long startTime=System.nanoTime();
+    
+    private static final ThreadMXBean threads=ManagementFactory.getThreadMXBean();
+    
+    private static final class Record {
+        long calls, wall, cpu, alloc, nodesBefore, nodesAfter, simplify;
+    }
+    
+    //  Measurements at the start of a phase or rule. 
+    public static final class Sample {
+        final long wall, cpu, alloc, nodes, simplify;
+        Sample(long _wall, long _cpu, long _alloc, long _nodes, long _simplify) {
+            wall=_wall;
+            cpu=_cpu;
+            alloc=_alloc;
+            nodes=_nodes;
+            simplify=_simplify;
+        }
+    }
+    
+    public static void reset() {
+        phases=new LinkedHashMap<String, Record>();
+        rules=new LinkedHashMap<String, Record>();
+        simplifyCalls.reset();
+        workerCpu.reset();
+        workerAlloc.reset();
+        startTime=System.nanoTime();
+    }
+    
+    //  Returns null when not profiling, and end ignores a null sample. 
+    public static Sample begin(Model m) {
+        if(!CmdFlags.profile) {
+            return null;
+        }
+        long nodes=treeSize(m);
+        return new Sample(System.nanoTime(), cpuTime(), allocated(), nodes, simplifyCalls.sum());
+    }
+    
+    public static void countSimplify() {
+        if(CmdFlags.profile) {
+            simplifyCalls.increment();
+        }
+    }
+    
+    //  Called by a worker task at its start and end, on the worker thread, so
+    //  that its CPU time and allocation are included in the enclosing phase. 
+    public static Sample beginWorker() {
+        if(!CmdFlags.profile) {
+            return null;
+        }
+        return new Sample(0, threadCpuTime(), threadAllocated(), 0, 0);
+    }
+    
+    public static void endWorker(Sample s) {
+        if(s==null) {
+            return;
+        }
+        workerCpu.add(threadCpuTime()-s.cpu);
+        workerAlloc.add(threadAllocated()-s.alloc);
+    }
+    
+    public static void endPhase(Sample s, String name, Model m) {
+        end(s, phases, name, m);
+    }
+    
+    public static void endRule(Sample s, String name, Model m) {
+        end(s, rules, name, m);
+    }
+    
+    private static void end(Sample s, LinkedHashMap<String, Record> records, String name, Model m) {
+        if(s==null) {
+            return;
+        }
+        long wall=System.nanoTime()-s.wall;
+        long cpu=cpuTime()-s.cpu;
+        long alloc=allocated()-s.alloc;
+        long simp=simplifyCalls.sum()-s.simplify;
+        
+        Record r=records.get(name);
+        if(r==null) {
+            r=new Record();
+            records.put(name, r);
+        }
+        r.calls++;
+        r.wall+=wall;
+        r.cpu+=cpu;
+        r.alloc+=alloc;
+        r.nodesBefore+=s.nodes;
+        r.nodesAfter+=treeSize(m);
+        r.simplify+=simp;
+    }
+    
+    private static long treeSize(Model m) {
+        return (m==null || m.constraints==null) ? 0 : m.constraints.treesize();
+    }
+    
+    private static long cpuTime() {
+        return threadCpuTime()+workerCpu.sum();
+    }
+    
+    private static long allocated() {
+        return threadAllocated()+workerAlloc.sum();
+    }
+    
+    private static long threadCpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+    
+    private static long threadAllocated() {
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //  Output
+    
+    //  x.info becomes x.profile.json
+    public static String profileFileName() {
+        String stem=CmdFlags.infofile;
+        if(stem.endsWith(".info")) {
+            stem=stem.substring(0, stem.length()-5);
+        }
+        return stem+".profile.json";
+    }
+    
+    public static void write() {
+        if(!CmdFlags.profile) {
+            return;
+        }
+        String filename=profileFileName();
+        try {
+            BufferedWriter o=new BufferedWriter(new FileWriter(filename));
+            o.write("{\n");
+            o.write("\"total_wall_ms\" : "+ms(System.nanoTime()-startTime)+",\n");
+            o.write("\"phases\" : ");
+            writeRecords(o, phases, false);
+            o.write(",\n\"rules\" : ");
+            writeRecords(o, rules, true);
+            o.write("\n}\n");
+            o.close();
+            CmdFlags.println("Created profile file "+filename);
+        }
+        catch(IOException e) {
+            CmdFlags.warning("Could not write profile file "+filename+": "+e);
+        }
+    }
+    
+    //  Rules are listed slowest first, phases in the order they ran. 
+    private static void writeRecords(BufferedWriter o, LinkedHashMap<String, Record> records, boolean sort) throws IOException {
+        ArrayList<Map.Entry<String, Record>> ls=new ArrayList<Map.Entry<String, Record>>(records.entrySet());
+        if(sort) {
+            Collections.sort(ls, new Comparator<Map.Entry<String, Record>>() {
+                public int compare(Map.Entry<String, Record> a, Map.Entry<String, Record> b) {
+                    return Long.compare(b.getValue().wall, a.getValue().wall);
+                }
+            });
+        }
+        o.write("[");
+        for(int i=0; i<ls.size(); i++) {
+            Record r=ls.get(i).getValue();
+            o.write(i==0 ? "\n" : ",\n");
+            o.write("  {\"name\" : \""+ls.get(i).getKey()+"\", \"calls\" : "+r.calls);
+            o.write(", \"wall_ms\" : "+ms(r.wall)+", \"cpu_ms\" : "+ms(r.cpu)+", \"alloc_bytes\" : "+r.alloc);
+            o.write(", \"nodes_before\" : "+r.nodesBefore+", \"nodes_after\" : "+r.nodesAfter);
+            o.write(", \"simplify_calls\" : "+r.simplify+"}");
+        }
+        o.write("\n]");
+    }
+    
+    private static String ms(long ns) {
+        return String.format(Locale.ROOT, "%.3f", ns/1000000.0);
+    }
+}
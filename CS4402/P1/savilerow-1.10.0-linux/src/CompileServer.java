@@ -0,0 +1,609 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.lang.management.ManagementFactory;
+
+//  Compile server (-server <port>) and its client (-connect <port>).
+//
+//  The server listens on a localhost TCP port and keeps a pool of
+//  -server-workers warm worker processes, each a JVM started with
+//  -server-worker. A client sends its command-line arguments together with
+//  the contents of the model and parameter files. The server copies the input
+//  files into a fresh temporary directory, points the file arguments (inputs
+//  and -out-* files) into that directory and passes the arguments to an idle
+//  worker. The worker restores the default CmdFlags state, parses the
+//  arguments and compiles exactly as a normal run would. Standard output and
+//  standard error of the worker are relayed to the client while it runs, then
+//  every file the run wrote into the directory is sent back and written by
+//  the client where a normal run would have written it. 
+//
+//  Requests are isolated from each other by running each one in a worker
+//  process with restored CmdFlags state, rather than by making the global
+//  flags per request. A worker that exits (an error or -timelimit) ends its
+//  request with the worker's exit code and is replaced by a new worker. 
+//
+//  Only clients that can read the token file written by the server (readable
+//  by its owner only) may connect. 
+
+public final class CompileServer {
+    private static final int VERSION=1;
+    private static final String DONE="SRSERVER done";
+    
+    //  Flags followed by an output file name. 
+    private static final List<String> outflags=Arrays.asList("-out-minion", "-out-sat", "-out-smt", "-out-minizinc",
+        "-out-solution", "-out-info", "-out-aux", "-out-gecode", "-out-chuffed", "-out-flatzinc", "-minion-sol-file");
+    
+    public static void main(String[] args) {
+        if(args[0].equals("-server-worker")) {
+            runWorker();
+            System.exit(0);
+        }
+        else if(args[0].equals("-connect")) {
+            System.exit(runClient(args));
+        }
+        else {
+            int port=-1;
+            int workers=Runtime.getRuntime().availableProcessors();
+            for(int i=0; i<args.length; i++) {
+                try {
+                    if(args[i].equals("-server") && i+1<args.length) {
+                        port=Integer.parseInt(args[++i]);
+                    }
+                    else if(args[i].equals("-server-workers") && i+1<args.length) {
+                        workers=Integer.parseInt(args[++i]);
+                    }
+                    else {
+                        CmdFlags.cmdLineExit("Unexpected argument in server mode: "+args[i]);
+                    }
+                }
+                catch(NumberFormatException e) {
+                    CmdFlags.cmdLineExit("Expected an integer following "+args[i-1]);
+                }
+            }
+            if(port<=0 || port>65535) CmdFlags.cmdLineExit("-server expects a port number between 1 and 65535.");
+            if(workers<1) CmdFlags.cmdLineExit("-server-workers must be at least 1.");
+            new CompileServer().runServer(port, workers);
+        }
+    }
+    
+    private static File tokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".savilerow-server-"+port);
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //  Server
+    
+    private String token;
+    private LinkedBlockingQueue<Worker> idle=new LinkedBlockingQueue<Worker>();
+    
+    private void runServer(int port, int numworkers) {
+        ServerSocket ss=null;
+        try {
+            ss=new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("Could not listen on port "+port+": "+e);
+        }
+        
+        byte[] rnd=new byte[24];
+        new SecureRandom().nextBytes(rnd);
+        StringBuilder sb=new StringBuilder();
+        for(byte b : rnd) {
+            sb.append(String.format("%02x", b));
+        }
+        token=sb.toString();
+        final File tf=tokenFile(port);
+        try {
+            tf.delete();
+            tf.createNewFile();
+            tf.setReadable(false, false);
+            tf.setWritable(false, false);
+            tf.setReadable(true, true);
+            tf.setWritable(true, true);
+            PrintWriter w=new PrintWriter(tf);
+            w.println(token);
+            w.close();
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("Could not write token file "+tf+": "+e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> tf.delete()));
+        
+        for(int i=0; i<numworkers; i++) {
+            try {
+                idle.add(new Worker());
+            }
+            catch(IOException e) {
+                CmdFlags.errorExit("Could not start server worker: "+e);
+            }
+        }
+        System.out.println("Savile Row server listening on localhost port "+port+" with "+numworkers+" worker(s).");
+        System.out.flush();
+        
+        while(true) {
+            try {
+                final Socket s=ss.accept();
+                Thread t=new Thread(() -> handle(s));
+                t.setDaemon(true);
+                t.start();
+            }
+            catch(IOException e) {
+                CmdFlags.warning("Server could not accept connection: "+e);
+            }
+        }
+    }
+    
+    //  A worker process, with readers that persist across requests. 
+    private static final class Worker {
+        Process p;
+        DataOutputStream in;
+        BufferedReader out;
+        BufferedReader err;
+        
+        Worker() throws IOException {
+            p=new ProcessBuilder(workerCommand()).start();
+            in=new DataOutputStream(new BufferedOutputStream(p.getOutputStream()));
+            out=new BufferedReader(new InputStreamReader(p.getInputStream()));
+            err=new BufferedReader(new InputStreamReader(p.getErrorStream()));
+        }
+    }
+    
+    private static ArrayList<String> workerCommand() {
+        ArrayList<String> cmd=new ArrayList<String>();
+        cmd.add(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java");
+        cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add("savilerow.EPrimeTailor");
+        cmd.add("-server-worker");
+        return cmd;
+    }
+    
+    private void handle(Socket s) {
+        File dir=null;
+        try {
+            DataInputStream cin=new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream cout=new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            
+            if(cin.readInt()!=VERSION || !cin.readUTF().equals(token)) {
+                sendText(cout, 'E', "ERROR: Savile Row server refused the request: wrong version or token.\n");
+                sendExit(cout, 1);
+                return;
+            }
+            
+            //  Read the request, with file arguments relative to the working directory. 
+            dir=Files.createTempDirectory("savilerow-server").toFile();
+            synchronized(cout) {
+                cout.writeByte('D');
+                cout.writeUTF(dir.getPath()+File.separator);
+            }
+            int nargs=cin.readInt();
+            String[] args=new String[nargs];
+            for(int i=0; i<nargs; i++) {
+                boolean isfile=cin.readBoolean();
+                String a=cin.readUTF();
+                if(isfile) {
+                    if(!new File(a).getName().equals(a)) {
+                        throw new IOException("bad file name in request: "+a);
+                    }
+                    a=new File(dir, a).getPath();
+                }
+                args[i]=a;
+            }
+            HashSet<String> inputs=new HashSet<String>();
+            int nfiles=cin.readInt();
+            for(int i=0; i<nfiles; i++) {
+                String name=cin.readUTF();
+                if(!new File(name).getName().equals(name)) {
+                    throw new IOException("bad file name in request: "+name);
+                }
+                byte[] b=new byte[cin.readInt()];
+                cin.readFully(b);
+                Files.write(new File(dir, name).toPath(), b);
+                inputs.add(name);
+            }
+            
+            int code=runOnWorker(args, cout);
+            
+            //  Send back everything the run wrote. 
+            File[] outfiles=dir.listFiles();
+            Arrays.sort(outfiles);
+            for(File f : outfiles) {
+                if(f.isFile() && !inputs.contains(f.getName())) {
+                    byte[] b=Files.readAllBytes(f.toPath());
+                    synchronized(cout) {
+                        cout.writeByte('F');
+                        cout.writeUTF(f.getName());
+                        cout.writeInt(b.length);
+                        cout.write(b);
+                    }
+                }
+            }
+            sendExit(cout, code);
+        }
+        catch(IOException e) {
+            // Client has gone or sent a bad request; nothing to report to. 
+        }
+        finally {
+            try {
+                s.close();
+            }
+            catch(IOException e) {
+            }
+            if(dir!=null) {
+                for(File f : dir.listFiles()) {
+                    f.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+    
+    //  Returns the exit code of the request: 0, or the exit code of the worker
+    //  if it exited. 
+    private int runOnWorker(String[] args, final DataOutputStream cout) throws IOException {
+        Worker w;
+        try {
+            w=idle.take();
+        }
+        catch(InterruptedException e) {
+            return 1;
+        }
+        
+        boolean done=false;
+        try {
+            w.in.writeInt(args.length);
+            for(String a : args) {
+                w.in.writeUTF(a);
+            }
+            w.in.flush();
+            
+            final Worker fw=w;
+            final boolean[] errdone=new boolean[1];
+            Thread t=new Thread(() -> { errdone[0]=relay(fw.err, cout, 'E'); });
+            t.start();
+            done=relay(w.out, cout, 'O');
+            try {
+                t.join();
+            }
+            catch(InterruptedException e) {
+            }
+            done=done && errdone[0];
+        }
+        catch(IOException e) {
+            // Worker has gone; find out how below.
+        }
+        
+        if(done) {
+            idle.add(w);
+            return 0;
+        }
+        
+        int code=1;
+        try {
+            w.in.close();
+            code=w.p.waitFor();
+        }
+        catch(IOException | InterruptedException e) {
+            w.p.destroy();
+        }
+        try {
+            idle.add(new Worker());
+        }
+        catch(IOException e) {
+            CmdFlags.warning("Server could not replace a worker: "+e);
+        }
+        return code==0 ? 1 : code;
+    }
+    
+    //  Copy lines to the client until the end of the request. Returns false if the worker exited. 
+    private static boolean relay(BufferedReader r, DataOutputStream cout, char type) {
+        try {
+            String line;
+            while((line=r.readLine())!=null) {
+                if(line.equals(DONE)) {
+                    return true;
+                }
+                try {
+                    sendText(cout, type, line+"\n");
+                }
+                catch(IOException e) {
+                    // Client has gone: keep reading so the worker is ready for the next request.
+                }
+            }
+        }
+        catch(IOException e) {
+        }
+        return false;
+    }
+    
+    private static void sendText(DataOutputStream cout, char type, String text) throws IOException {
+        byte[] b=text.getBytes();
+        synchronized(cout) {
+            cout.writeByte(type);
+            cout.writeInt(b.length);
+            cout.write(b);
+            cout.flush();
+        }
+    }
+    
+    private static void sendExit(DataOutputStream cout, int code) throws IOException {
+        synchronized(cout) {
+            cout.writeByte('X');
+            cout.writeInt(code);
+            cout.flush();
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //  Worker process
+    
+    private static void runWorker() {
+        CmdFlags.saveState();    //  Defaults, before any arguments are parsed. 
+        TabulationUtils.enableSharedCache();
+        
+        DataInputStream in=new DataInputStream(new BufferedInputStream(System.in));
+        while(true) {
+            String[] args;
+            try {
+                args=new String[in.readInt()];
+                for(int i=0; i<args.length; i++) {
+                    args[i]=in.readUTF();
+                }
+            }
+            catch(EOFException e) {
+                return;   // Server has closed the connection. 
+            }
+            catch(IOException e) {
+                CmdFlags.errorExit("Server worker could not read from the server: "+e);
+                return;
+            }
+            
+            CmdFlags.restoreState();
+            BatchCompiler.resetStatics();
+            CmdFlags.parseArguments(args);
+            if(CmdFlags.batchfile!=null || CmdFlags.getMode()!=CmdFlags.Normal) {
+                CmdFlags.cmdLineExit("The compile server only runs Normal mode without -batch.");
+            }
+            CmdFlags.startTime=System.currentTimeMillis();
+            
+            Thread t=new Thread(() -> SRWorkThread.compile());
+            t.setUncaughtExceptionHandler((th, ex) -> {
+                ex.printStackTrace();
+                CmdFlags.exit();
+            });
+            t.start();
+            waitFor(t);
+            
+            System.out.println(DONE);
+            System.out.flush();
+            System.err.println(DONE);
+            System.err.flush();
+        }
+    }
+    
+    //  As the main thread in EPrimeTailor, but returns when t finishes. 
+    private static void waitFor(Thread t) {
+        while(t.isAlive()) {
+            try {
+                if(CmdFlags.getTimeLimit()>0) {
+                    long sleepTime=CmdFlags.getTimeLimit()-(System.currentTimeMillis()-CmdFlags.startTime);
+                    if(sleepTime<=0L) {
+                        if(!CmdFlags.runningSolver) {
+                            EPrimeTailor.timeOut();
+                        }
+                        t.join();
+                    }
+                    else {
+                        t.join(sleepTime);
+                    }
+                }
+                else {
+                    t.join();
+                }
+            }
+            catch(InterruptedException e) {
+            }
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //  Client
+    
+    //  Returns the exit code. 
+    private static int runClient(String[] args) {
+        if(args.length<2) CmdFlags.cmdLineExit("-connect expects a port number.");
+        int port=0;
+        try {
+            port=Integer.parseInt(args[1]);
+        }
+        catch(NumberFormatException e) {
+            CmdFlags.cmdLineExit("-connect expects a port number.");
+        }
+        
+        String tok=null;
+        try {
+            BufferedReader r=new BufferedReader(new FileReader(tokenFile(port)));
+            tok=r.readLine();
+            r.close();
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("No Savile Row server found on port "+port+" (could not read "+tokenFile(port)+").");
+        }
+        
+        //  Find the file arguments. Inputs are sent with the request; outputs
+        //  come back by name and are written to the path given on the command
+        //  line, or next to the parameter file (or model file) by default.
+        ArrayList<String> rest=new ArrayList<String>(Arrays.asList(args).subList(2, args.length));
+        boolean[] isfile=new boolean[rest.size()];
+        ArrayList<String> inputs=new ArrayList<String>();
+        HashMap<String, String> outpaths=new HashMap<String, String>();
+        HashSet<String> names=new HashSet<String>();
+        String model=null;
+        String param=null;
+        String prefix=null;
+        for(int i=0; i<rest.size(); i++) {
+            String a=rest.get(i);
+            if(a.equals("-batch") || a.equals("-server") || a.equals("-connect")) {
+                CmdFlags.cmdLineExit(a+" cannot be sent to the compile server.");
+            }
+            else if((a.equals("-in-eprime") || a.equals("-in-param")) && i+1<rest.size()) {
+                i++;
+                if(a.equals("-in-eprime")) model=rest.get(i); else param=rest.get(i);
+                inputs.add(rest.get(i));
+                isfile[i]=true;
+            }
+            else if((outflags.contains(a) || a.equals("-out-prefix")) && i+1<rest.size()) {
+                i++;
+                String name=uniqueName(new File(rest.get(i)).getName(), names);
+                if(a.equals("-out-prefix")) {
+                    prefix=rest.get(i);
+                }
+                else {
+                    outpaths.put(name, rest.get(i));
+                }
+                rest.set(i, name);
+                isfile[i]=true;
+            }
+            else if(a.endsWith("-bin") && i+1<rest.size()) {
+                //  Solver executables are run by the worker; resolve paths here. 
+                i++;
+                if(rest.get(i).contains(File.separator)) {
+                    rest.set(i, new File(rest.get(i)).getAbsolutePath());
+                }
+            }
+            else if(a.endsWith(".eprime") && model==null) {
+                model=a;
+                inputs.add(a);
+                isfile[i]=true;
+            }
+            else if((a.endsWith(".param") || a.endsWith(".eprime-param")) && param==null) {
+                param=a;
+                inputs.add(a);
+                isfile[i]=true;
+            }
+        }
+        HashMap<String, String> innames=new HashMap<String, String>();
+        for(int i=0; i<rest.size(); i++) {
+            if(isfile[i] && inputs.contains(rest.get(i))) {
+                String path=rest.get(i);
+                if(!innames.containsKey(path)) {
+                    innames.put(path, uniqueName(new File(path).getName(), names));
+                }
+                rest.set(i, innames.get(path));
+            }
+        }
+        String base=(param!=null) ? param : model;
+        String defaultdir=new File((prefix!=null) ? prefix : (base==null ? "." : base)).getAbsoluteFile().getParent();
+        
+        //  Paths to show in place of paths in the working directory. 
+        HashMap<String, String> display=new HashMap<String, String>(outpaths);
+        for(Map.Entry<String, String> e : innames.entrySet()) {
+            display.put(e.getValue(), e.getKey());
+        }
+        String displayparent=(prefix!=null) ? new File(prefix).getParent() : (base==null ? null : new File(base).getParent());
+        String displaydir=(displayparent==null) ? "" : displayparent+File.separator;
+        
+        try {
+            Socket s=new Socket(InetAddress.getLoopbackAddress(), port);
+            DataOutputStream sout=new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            DataInputStream sin=new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            
+            sout.writeInt(VERSION);
+            sout.writeUTF(tok);
+            sout.writeInt(rest.size());
+            for(int i=0; i<rest.size(); i++) {
+                sout.writeBoolean(isfile[i]);
+                sout.writeUTF(rest.get(i));
+            }
+            sout.writeInt(innames.size());
+            for(Map.Entry<String, String> e : innames.entrySet()) {
+                byte[] b=Files.readAllBytes(Paths.get(e.getKey()));
+                sout.writeUTF(e.getValue());
+                sout.writeInt(b.length);
+                sout.write(b);
+            }
+            sout.flush();
+            
+            String workdir=null;
+            while(true) {
+                int type=sin.readByte();
+                if(type=='D') {
+                    workdir=sin.readUTF();
+                }
+                else if(type=='O' || type=='E') {
+                    byte[] b=new byte[sin.readInt()];
+                    sin.readFully(b);
+                    String text=new String(b);
+                    if(workdir!=null && text.contains(workdir)) {
+                        for(Map.Entry<String, String> e : display.entrySet()) {
+                            text=text.replace(workdir+e.getKey(), e.getValue());
+                        }
+                        text=text.replace(workdir, displaydir);
+                    }
+                    PrintStream ps=(type=='O') ? System.out : System.err;
+                    ps.print(text);
+                    ps.flush();
+                }
+                else if(type=='F') {
+                    String name=sin.readUTF();
+                    byte[] b=new byte[sin.readInt()];
+                    sin.readFully(b);
+                    String path=outpaths.containsKey(name) ? outpaths.get(name) : new File(defaultdir, name).getPath();
+                    Files.write(Paths.get(path), b);
+                }
+                else if(type=='X') {
+                    int code=sin.readInt();
+                    s.close();
+                    return code;
+                }
+                else {
+                    throw new IOException("unexpected message from server");
+                }
+            }
+        }
+        catch(NoSuchFileException e) {
+            CmdFlags.errorExit("File not found: "+e.getFile());
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("Lost connection to Savile Row server on port "+port+": "+e);
+        }
+        return 1;
+    }
+    
+    //  File names in the request must be distinct. 
+    private static String uniqueName(String name, HashSet<String> names) {
+        String n=name;
+        for(int i=1; names.contains(n); i++) {
+            n=i+"_"+name;
+        }
+        names.add(n);
+        return n;
+    }
+}
@@ -39,6 +39,12 @@ public final class EPrimeTailor {
      main
     ==================================================================== */ 
     public static void main(String[] args) {
+        if(args.length>0 && (args[0].equals("-server") || args[0].equals("-server-worker") || args[0].equals("-connect"))) {
+            //  Compile server and its client take their own arguments.
+            CompileServer.main(args);
+            return;
+        }
+        
         // Parse the command-line arguments
         CmdFlags.parseArguments(args);
         
@@ -46,7 +52,7 @@ public final class EPrimeTailor {
         
         t.start();
         
-        if(CmdFlags.getTimeLimit()>0) {
+        if(CmdFlags.getTimeLimit()>0 && CmdFlags.batchfile==null) {   //  In batch mode the time limit applies in each worker. 
             //   Loop until enough time has passed relative to CmdFlags.startTime
             //   CmdFlags.startTime can be reset by the other thread, in particular following each dry run.  Therefore SR can in total take much longer than the time limit when dry runs are switched on. 
             //   Does not check whether a  dry run is happening, therefore SR /can/ time out if one of the dry runs takes longer than the time limit.  
@@ -64,16 +70,19 @@ public final class EPrimeTailor {
             if(!CmdFlags.runningSolver) {
                 // If we have not reached the point where the solver is running (to search, not just filter domains)
                 // then exit. 
-                
-                // Create .info and .infor files.
-                Stats stats=new Stats();
-                stats.putValue("SavileRowTotalTime", String.valueOf(((double) System.currentTimeMillis() - CmdFlags.startTime) / 1000));
-                stats.putValue("SavileRowTimeOut", "1");
-                stats.makeInfoFiles();
-                
-                CmdFlags.errorExit("Savile Row timed out.");
+                timeOut();
             }
         }
     }
+    
+    public static void timeOut() {
+        // Create .info and .infor files.
+        Stats stats=new Stats();
+        stats.putValue("SavileRowTotalTime", String.valueOf(((double) System.currentTimeMillis() - CmdFlags.startTime) / 1000));
+        stats.putValue("SavileRowTimeOut", "1");
+        stats.makeInfoFiles();
+        
+        CmdFlags.errorExit("Savile Row timed out.");
+    }
 }
 
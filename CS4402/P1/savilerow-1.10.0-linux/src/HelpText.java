@@ -37,6 +37,15 @@ public class HelpText {
         +"                               \"letting identifier be value\". For example:\n"
         +"                                 -params \"letting n_nurses=4 letting \\\n"
         +"                                 Demand=[[1,0,1,0],[0,2,1,0]]\"\n"
+        +"                               The parameter file may also be JSON (as written\n"
+        +"                               by -param-to-json) or the binary format written\n"
+        +"                               by -param-to-binary. Both are read directly,\n"
+        +"                               which is much faster for large matrices.\n"
+        +" -param-to-json                Write the parameter file as JSON to\n"
+        +"                               <paramfile>.json and exit.\n"
+        +" -param-to-binary              Write the parameter file in binary format to\n"
+        +"                               <paramfile>.bin and exit. Matrices must be \n"
+        +"                               regular, with contiguous index domains.\n"
         +"\n"
         +"Specifying output format:\n"
         +" -minion  (default)            Minion 3 format, flat for numerical expressions\n"
@@ -106,6 +115,10 @@ public class HelpText {
         +" -ac-cse                       Perform Associative-Commutative CSE for\n"
         +"                               operators And (/\\), Or (\\/), Product and Sum;\n"
         +"                               exploits associativity and commutativity.\n"
+        +" -ac-cse-limit <N>             Bound the work done by AC-CSE: once N pairs of\n"
+        +"                               terms have been indexed, further expressions\n"
+        +"                               are not considered for AC-CSE. No limit by\n"
+        +"                               default.\n"
         +" -active-ac-cse                Perform Active AC-CSE; extends AC-CSE on sums\n"
         +"                               by matching a subexpression with its negation.\n"
         +"                               For example it can extract x+y from the two\n"
@@ -113,14 +126,16 @@ public class HelpText {
         +"                               Identical to AC-CSE on And, Or and Product.\n"
         +" -deletevars                   Switch on variable deletion for variables that\n"
         +"                               equal a constant or another decision variable.\n"
-        +" -reduce-domains               Filter domains of 'find' decision variables if\n"
-        +"                               Minion is available. Calls Minion using \n"
+        +" -reduce-domains               Filter domains of 'find' decision variables \n"
+        +"                               using Savile Row's built-in propagator with\n"
         +"                               SACBounds_limit preprocessing, a restricted \n"
         +"                               form of SAC where the SAC test is applied to \n"
         +"                               the upper and lower bound of each variable and\n"
         +"                               the number of iterations is bounded. \n"
         +" -reduce-domains-extend        Extension of -reduce-domains that filters\n"
         +"                               domains of auxiliary and 'find' variables.\n"
+        +" -reduce-domains-minion        Filter domains by calling Minion instead of\n"
+        +"                               the built-in propagator (requires Minion).\n"
         +" -aggregate                    Collect constraints into global constraints.\n"
         +"                               Currently performs two types of aggregation:\n"
         +"                               constructing GCC constraints from atleast and \n"
@@ -130,6 +145,13 @@ public class HelpText {
         +"                               constraints to improve propagation. Candidate\n"
         +"                               expressions are identified by a set of \n"
         +"                               heuristics. See documentation for more detail.\n"
+        +" -tabulate-cache               Store tables generated by -tabulate in an \n"
+        +"                               on-disk cache in ~/.savilerow/tablecache and\n"
+        +"                               reuse them in later runs. The cache may be \n"
+        +"                               shared by concurrent runs. \n"
+        +" -tabulate-cache-size <n>      Limit the table cache to n megabytes, removing\n"
+        +"                               the least recently used tables when it grows \n"
+        +"                               larger (default 256). Implies -tabulate-cache.\n"
         +" -factor-encoding              Apply the factor encoding to strengthen \n"
         +"                               propagation of overlapping table constraints.\n"
         +" -no-bound-vars                When translating to Minion, never use BOUND\n"
@@ -138,6 +160,9 @@ public class HelpText {
         +"                               to 10,000, BOUND for larger domains. Using\n"
         +"                               BOUND type variables can reduce the level of\n"
         +"                               consistency enforced for some constraints.\n"
+        +" -no-incremental-simplify      After each reformulation rule, simplify the \n"
+        +"                               whole model instead of only the parts of it \n"
+        +"                               that the rule changed. \n"
         +" -remove-redundant-vars        Remove redundant variables by adding constraint\n"
         +"                               assigning variables that are not mentioned in\n"
         +"                               some constraint or the objective function.\n"
@@ -153,6 +178,16 @@ public class HelpText {
         +"\n"
         +"SAT Encoding Options:\n"
         +" -sat-polarity                 Use half-reification when flattening for SAT.\n"
+        +" -sat-binary-output            Write the SAT or MaxSAT output in a compact \n"
+        +"                               binary clause format instead of DIMACS (see\n"
+        +"                               BinaryClauseSink.java for the layout). Cannot\n"
+        +"                               be used with -run-solver.\n"
+        +" -sat-threads <n>              Encode constraints to SAT using <n> threads.\n"
+        +"                               The output is identical to the output with one\n"
+        +"                               thread. Some encodings (MDD, GPW, LPW, SWC, \n"
+        +"                               GGT, RGGT, GGTh, GMTO, -amo-detect) and any \n"
+        +"                               model containing amopb or eopb constraints \n"
+        +"                               are always encoded with a single thread.\n"
         +" -amo-detect                   Detect AMO and EO relations as in CP 2019 paper\n"
         +"                               (see documentation for details). Detected\n"
         +"                               AMOs and EOs are used with MDD, GPW, LPW, SWC, \n"
@@ -221,8 +256,36 @@ public class HelpText {
         +"                               running. To apply a time limit to a solver, use\n"
         +"                               -solver-options.\n"
         +" -cnflimit <max>               Limit SAT output to at most <max> clauses.\n"
+        +" -profile                      Record the time, CPU time, memory allocated and\n"
+        +"                               constraint tree size for each phase and\n"
+        +"                               transformation, and write them in JSON format\n"
+        +"                               to a .profile.json file next to the .info file.\n"
+        +"                               CPU time and memory include the worker threads\n"
+        +"                               of parallel tabulation and -sat-threads.\n"
+        +"                               Measuring tree sizes slows down compilation.\n"
         +" -seed <integer>               Some transformations use a pseudorandom number\n"
         +"                               generator; this sets the seed value.\n"
+        +" -batch <filename>             Compile the model with each parameter file\n"
+        +"                               listed in <filename>, one per line. Output \n"
+        +"                               files are named after each parameter file as\n"
+        +"                               usual. The model is parsed once per worker\n"
+        +"                               process, and tables made by -tabulate are \n"
+        +"                               shared between instances. With -timelimit, \n"
+        +"                               the limit applies to each instance. \n"
+        +" -batch-workers <n>            Number of worker processes for -batch\n"
+        +"                               (default 1).\n"
+        +" -server <port>                Run as a compile server on localhost <port>,\n"
+        +"                               keeping warm worker processes. Must be the \n"
+        +"                               first flag; only -server-workers may follow. \n"
+        +"                               Writes a token file ~/.savilerow-server-<port>\n"
+        +"                               readable only by the user, which clients need.\n"
+        +" -server-workers <n>           Number of worker processes for -server \n"
+        +"                               (default the number of processors).\n"
+        +" -connect <port> <flags...>    Send this compilation to the server on <port>\n"
+        +"                               instead of running it here. Must be the first \n"
+        +"                               flag. The model and parameter files are sent to \n"
+        +"                               the server, and output files are written where\n"
+        +"                               a normal run would write them. \n"
         +"Solver control:\n"
         +" -run-solver                   Run the backend solver. Also parse solver output.\n"
         +" -all-solutions                Output all solutions, to a sequence of numbered\n"
@@ -240,9 +303,12 @@ public class HelpText {
         +" -minion-bin <filename>        Specify where the Minion binary is. Default: use\n"
         +"                               the one included in the Savile Row distribution.\n"
         +" -preprocess                   Strength of preprocessing. Passed to Minion both \n"
-        +"                               for solving (when using -run-solver) and for \n"
-        +"                               domain filtering (when using -reduce-domains or \n"
-        +"                               -O2 or higher). Possible values: None, GAC, \n"
+        +"                               for solving (when using -run-solver) and used \n"
+        +"                               for domain filtering (when using -reduce-domains \n"
+        +"                               or -O2 or higher; the built-in propagator \n"
+        +"                               performs SACBounds_limit for any value containing \n"
+        +"                               SAC and propagation alone otherwise).\n"
+        +"                               Possible values: None, GAC, \n"
         +"                               SACBounds, SACBounds_limit, SAC, SAC_limit, SSAC, \n"
         +"                               SSAC_limit, SSACBounds, SSACBounds_limit. \n"
         +"                               Default is SACBounds_limit.\n"
@@ -259,24 +325,51 @@ public class HelpText {
         +"Solver control -- SAT solver:\n"
         +" -sat-family <name>            Family of solver: \"cadical\", \"kissat\", \n"
         +"                               \"minisat\", \"glucose\", \"lingeling\", \n"
-        +"                               \"nbc_minisat_all\", \"bc_minisat_all\". Allows \n"
-        +"                               parsing output when using the -run-solver flag. \n"
-        +"                               Default is \"kissat\". The _all values imply the \n"
-        +"                               -all-solutions flag. \n"
+        +"                               \"nbc_minisat_all\", \"bc_minisat_all\", \"java\". \n"
+        +"                               Allows parsing output when using the \n"
+        +"                               -run-solver flag. Default is \"kissat\". The _all \n"
+        +"                               values imply the -all-solutions flag. \"java\" is\n"
+        +"                               the built-in solver, which needs no binary and\n"
+        +"                               implies -interactive-solver with -run-solver.\n"
         +" -satsolver-bin <filename>     Name of SAT solver binary. Default is\n"
         +"                               to use bundled Kissat solver, otherwise set\n"
         +"                               to \"minisat\", \"glucose\", \"lingeling\", \n"
         +"                               \"nbc_minisat_all_release\", or \n"
         +"                               \"bc_minisat_all_release\" based on -sat-family.\n"
         +" -interactive-solver           Enables interactive usage of the supported \n"
-        +"                               solvers when Savile Row built with this \n"
-        +"                               feature. Supported SAT solvers are used \n"
-        +"                               incrementally via JNI calls. Currently \n"
-        +"                               supported: \"glucose\", \"cadical\" and \n"
-        +"                               \"nbc_minisat_all\".\n"
+        +"                               solvers. Supported SAT solvers are used \n"
+        +"                               incrementally, either via JNI calls when \n"
+        +"                               Savile Row is built with this feature \n"
+        +"                               (\"glucose\", \"cadical\" and \"nbc_minisat_all\") \n"
+        +"                               or in-process (\"java\", the default).\n"
+        +" -sat-incremental              With -run-solver, load the SAT file once into\n"
+        +"                               the built-in solver and keep it between solver\n"
+        +"                               calls (optimisation and -all-solutions), \n"
+        +"                               adding each new clause to it instead of \n"
+        +"                               re-running the solver binary on the file.\n"
+        +" -sat-portfolio <string>       With -run-solver, race several SAT solvers on\n"
+        +"                               the same file and use the first to prove SAT\n"
+        +"                               or UNSAT; the others are killed. Entries are\n"
+        +"                               separated by \";\". Each is a SAT family\n"
+        +"                               (kissat, cadical, glucose or lingeling),\n"
+        +"                               optionally followed by :<filename> of the\n"
+        +"                               binary, then options for that solver. E.g.:\n"
+        +"                                 -sat-portfolio \"kissat --seed=1; \\\n"
+        +"                                 kissat --seed=2; cadical:./cadical\"\n"
         +" -opt-strategy <name>          Controls optimisation for SAT and SMT solvers.\n"
         +"                               May be linear, unsat, or bisect (default) as\n"
-        +"                               described in the manual.\n"
+        +"                               described in the manual, or parallel. Parallel\n"
+        +"                               runs several SAT solvers at once, each testing\n"
+        +"                               a different bound on the objective, and kills\n"
+        +"                               those made redundant by a new solution or\n"
+        +"                               unsat bound. Only for -sat with kissat, \n"
+        +"                               cadical, glucose or lingeling. Each running \n"
+        +"                               solver reads its own copy of the SAT file, so\n"
+        +"                               up to -opt-probes extra copies are kept next \n"
+        +"                               to the output while optimising.\n"
+        +" -opt-probes <n>               Number of solvers run at once by\n"
+        +"                               -opt-strategy parallel. Default is the number\n"
+        +"                               of cores.\n"
         +"                               \n"
         +"Solver control -- SMT solver:\n"
         +" -boolector-bin <filename>     Name of Boolector solver binary. \n"
@@ -49,8 +49,11 @@ public class ICSEProduct
     ///  If sums contain another operator that contains a sum, this CSE will almost certainly blow up horribly.  
     
     public void flattenCSEs(Model m) {
+        CompileProfiler.Sample prof=CompileProfiler.begin(m);
         ASTNode newcons=flattenCSEs(m.constraints, m.global_symbols, m);
         m.constraints=newcons;
+        
+        CompileProfiler.endRule(prof, "ICSEProduct", m);
     }
     
     public ASTNode flattenCSEs(ASTNode constraints, SymbolTable st, Model m) {
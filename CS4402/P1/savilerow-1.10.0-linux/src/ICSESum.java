@@ -54,8 +54,11 @@ public class ICSESum
     ///  If sums contain another operator that contains a sum, this CSE will almost certainly blow up horribly.  
     
     public void flattenCSEs(Model m) {
+        CompileProfiler.Sample prof=CompileProfiler.begin(m);
         ASTNode newcons=flattenCSEs(m.constraints, m.global_symbols, m);
         m.constraints=newcons;
+        
+        CompileProfiler.endRule(prof, "ICSESum", m);
     }
     
     public ASTNode flattenCSEs(ASTNode constraints, SymbolTable st, Model m) {
@@ -0,0 +1,165 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+
+//  Generates long tables for a batch of tabulation candidates on a pool of 
+//  worker threads (-tabulate-threads). The candidates are collected (on the main thread) by walking
+//  the tree in the same order as the sequential tabulation pass, but without 
+//  changing it. The search for each candidate only reads the model, so all
+//  searches run while the main thread waits. The results are keyed by 
+//  TabulationKey, and Tabulation.tabulate uses them in place of its own 
+//  search. Replacements, aux variables and the constant matrix store are 
+//  still updated only by the sequential pass, in its usual order, so the 
+//  output does not depend on the number of threads. 
+
+public class ParallelTabulation
+{
+    public static class Result {
+        public final ASTNode tuples;    //  null if the node limit was hit.
+        public final long nodecount;
+        public final long nodelimit;
+        
+        Result(ASTNode _tuples, long _nodecount, long _nodelimit) {
+            tuples=_tuples;
+            nodecount=_nodecount;
+            nodelimit=_nodelimit;
+        }
+    }
+    
+    private class Job implements Callable<Result> {
+        final TabulationKey key;
+        final ASTNode exp;
+        final ArrayList<ASTNode> varlist;
+        final ArrayList<ArrayList<Intpair>> vardoms;
+        
+        Job(TabulationKey _key, ASTNode _exp, ArrayList<ASTNode> _varlist, ArrayList<ArrayList<Intpair>> _vardoms) {
+            key=_key;
+            exp=_exp;
+            varlist=_varlist;
+            vardoms=_vardoms;
+        }
+        
+        public Result call() {
+            CompileProfiler.Sample prof=CompileProfiler.beginWorker();
+            try {
+                TabulationUtils wtu=new TabulationUtils(m, false);
+                ASTNode tuples=wtu.makeTupleListLong(exp, varlist, vardoms, nodelimit);
+                return new Result(tuples, wtu.nodecount, nodelimit);
+            }
+            finally {
+                CompileProfiler.endWorker(prof);
+            }
+        }
+    }
+    
+    private Model m;
+    private TabulationUtils tu;      //  Caches of the sequential pass.
+    private TabulationUtils prep;    //  Normalises candidates, which belong to m. 
+    private long nodelimit;
+    
+    private ArrayList<Job> jobs=new ArrayList<Job>();
+    private HashSet<TabulationKey> queued=new HashSet<TabulationKey>();
+    
+    //  Candidates belong to _m, which may be a scratch copy of the model being
+    //  tabulated by _tu. 
+    public ParallelTabulation(Model _m, TabulationUtils _tu, long _nodelimit) {
+        m=_m;
+        tu=_tu;
+        prep=new TabulationUtils(m, false);
+        nodelimit=_nodelimit;
+    }
+    
+    //  Queue a candidate for long-table generation. totab is not changed. 
+    public void add(ASTNode totab) {
+        if(!searchIsReadOnly(totab)) {
+            return;
+        }
+        ASTNode a=prep.normalise(totab);
+        TabulationKey key=prep.makeKey(a, false);
+        if(queued.contains(key) || tu.inMemCache(key)) {
+            return;
+        }
+        queued.add(key);
+        
+        //  Same preparation as makeTableLong. 
+        TransformQuantifiedExpression tqe=new TransformQuantifiedExpression(m);
+        a=tqe.transform(a);
+        ArrayList<ASTNode> varlist=TabulationUtils.getVariablesOrdered(a);
+        jobs.add(new Job(key, a, varlist, prep.getDomainsConcrete(varlist)));
+    }
+    
+    //  Simplifying these expression types during search may add constant
+    //  matrices or aux variables to the model, so candidates containing them 
+    //  are left to the sequential pass. 
+    private static boolean searchIsReadOnly(ASTNode a) {
+        if(a instanceof Table || a instanceof TableShort || a instanceof NegativeTable
+            || a instanceof MatrixSlice || a instanceof IsMatrixSliceDefined 
+            || a instanceof ComprehensionMatrix || a instanceof SNSIncumbentMapping || a instanceof AMOPB) {
+            return false;
+        }
+        for(int i=0; i<a.numChildren(); i++) {
+            if(!searchIsReadOnly(a.getChild(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public int size() {
+        return jobs.size();
+    }
+    
+    //  Run all queued searches and wait for them to finish. If a search throws,
+    //  it is left out of the results and the sequential pass will repeat it. 
+    public HashMap<TabulationKey, Result> run(int numthreads) {
+        HashMap<TabulationKey, Result> results=new HashMap<TabulationKey, Result>();
+        if(jobs.isEmpty()) {
+            return results;
+        }
+        
+        ForkJoinPool pool=new ForkJoinPool(numthreads);
+        try {
+            List<Future<Result>> futures=pool.invokeAll(jobs);
+            for(int i=0; i<jobs.size(); i++) {
+                try {
+                    results.put(jobs.get(i).key, futures.get(i).get());
+                }
+                catch(ExecutionException e) {
+                    CmdFlags.printlnIfVerbose("Parallel tabulation failed for "+jobs.get(i).exp+": "+e.getCause());
+                }
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            pool.shutdown();
+        }
+        
+        jobs.clear();
+        queued.clear();
+        return results;
+    }
+}
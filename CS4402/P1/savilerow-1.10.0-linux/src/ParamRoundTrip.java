@@ -0,0 +1,103 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.* ;
+import java.io.* ;
+
+// Simple class with main method to check the JSON and binary parameter writers.
+// Usage: ParamRoundTrip <model.eprime> <file.param>
+// Writes the parameters as JSON, reads that back and writes it as binary, 
+// then reads the binary back. The values read from each file must match the
+// E' parameters. JSON has no index domains, so the JSON and the binary written
+// from it are compared on values only. The binary written directly from the
+// E' parameters must match exactly, index domains included. 
+
+public final class ParamRoundTrip {
+    
+    private static boolean ok=true;
+    
+    public static void main(String[] args) throws IOException {
+        if(args.length!=2) {
+            System.err.println("Usage: ParamRoundTrip <model.eprime> <file.param>");
+            System.exit(1);
+        }
+        String modelfile=args[0];
+        String paramfile=args[1];
+        
+        File json=File.createTempFile("srparam", ".json");
+        File bin=File.createTempFile("srparam", ".bin");
+        File bin2=File.createTempFile("srparam", ".bin");
+        json.deleteOnExit();
+        bin.deleteOnExit();
+        bin2.deleteOnExit();
+        
+        ArrayList<ASTNode> eprime=read(modelfile, paramfile);
+        
+        //  E' -> JSON -> binary
+        FastParamReader.writeJSON(eprime, json.getPath());
+        ArrayList<ASTNode> fromjson=read(modelfile, json.getPath());
+        compare(eprime, fromjson, false, "JSON");
+        FastParamReader.writeBinary(fromjson, bin.getPath());
+        ArrayList<ASTNode> frombin=read(modelfile, bin.getPath());
+        compare(fromjson, frombin, true, "binary from JSON");
+        
+        //  E' -> binary
+        FastParamReader.writeBinary(eprime, bin2.getPath());
+        compare(eprime, read(modelfile, bin2.getPath()), true, "binary");
+        
+        if(!ok) {
+            System.exit(1);
+        }
+        System.out.println("Parameters match: "+eprime.size());
+    }
+    
+    private static ArrayList<ASTNode> read(String modelfile, String paramfile) {
+        EPrimeReader reader = new EPrimeReader(modelfile, true);
+        Model m=reader.readModel();
+        return FastParamReader.readParameterFile(paramfile, m);
+    }
+    
+    private static void compare(ArrayList<ASTNode> expected, ArrayList<ASTNode> found, boolean exact, String what) {
+        if(expected.size()!=found.size()) {
+            System.out.println(what+": expected "+expected.size()+" parameters, found "+found.size());
+            ok=false;
+            return;
+        }
+        for(int i=0; i<expected.size(); i++) {
+            String name=expected.get(i).getChild(0).toString();
+            String a=show(FastParamReader.constantValue(expected.get(i).getChild(1)), exact);
+            String b=show(FastParamReader.constantValue(found.get(i).getChild(1)), exact);
+            if(!name.equals(found.get(i).getChild(0).toString()) || !a.equals(b)) {
+                System.out.println(what+": parameter "+name+" expected "+a+" found "+b);
+                ok=false;
+            }
+        }
+    }
+    
+    private static String show(ASTNode a, boolean exact) {
+        if(!exact && a instanceof CompoundMatrix) {
+            return ((CompoundMatrix)a).toStringSimpleMatrix();
+        }
+        return a.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.* ;
+import java.io.* ;
+
+// Simple class with main method to measure parser throughput.
+// Usage: ParseBenchmark <model.eprime> [<file.param>] [<repeats>]
+// The parameter file may be E', JSON or binary (see FastParamReader).
+// Parses the model (and parameter file) repeatedly and reports the best time
+// and throughput for each, so the first runs can warm up the JIT.
+
+public final class ParseBenchmark {
+    
+    public static void main(String[] args) {
+        if(args.length<1) {
+            System.err.println("Usage: ParseBenchmark <model.eprime> [<file.param>] [<repeats>]");
+            System.exit(1);
+        }
+        
+        String modelfile=args[0];
+        String paramfile=null;
+        int repeats=10;
+        if(args.length>=2) {
+            if(args[1].matches("[0-9]+")) {
+                repeats=Integer.parseInt(args[1]);
+            }
+            else {
+                paramfile=args[1];
+                if(args.length>=3) {
+                    repeats=Integer.parseInt(args[2]);
+                }
+            }
+        }
+        
+        long bestModel=Long.MAX_VALUE;
+        long bestParam=Long.MAX_VALUE;
+        int numParams=0;
+        
+        for(int i=0; i<repeats; i++) {
+            long t0=System.nanoTime();
+            EPrimeReader reader = new EPrimeReader(modelfile, true);
+            Model m=reader.readModel();
+            long t1=System.nanoTime();
+            bestModel=Math.min(bestModel, t1-t0);
+            
+            if(paramfile!=null) {
+                ArrayList<ASTNode> params=FastParamReader.readParameterFile(paramfile, m);
+                long t2=System.nanoTime();
+                bestParam=Math.min(bestParam, t2-t1);
+                numParams=params.size();
+            }
+        }
+        
+        report(modelfile, bestModel);
+        if(paramfile!=null) {
+            report(paramfile, bestParam);
+            System.out.println("Parameters read: "+numParams);
+        }
+    }
+    
+    private static void report(String fn, long nanos) {
+        long bytes=new File(fn).length();
+        double secs=nanos/1.0e9;
+        System.out.println(fn+": "+bytes+" bytes, best "+String.format("%.3f", secs*1000.0)+" ms, "
+            +String.format("%.2f", (bytes/1048576.0)/secs)+" MB/s");
+    }
+}
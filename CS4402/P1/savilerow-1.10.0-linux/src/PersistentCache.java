@@ -22,81 +22,394 @@ package savilerow;
 */
 
 import java.util.*;
+import java.util.zip.*;
 import java.io.*;
-import java.security.*;
-import java.math.BigInteger;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+//  On-disk cache of tables produced by tabulation, shared between processes. 
+//
+//  Entries are addressed by the 128-bit structural key of the tabulated 
+//  expression (TabulationKey), one file per entry in 256 subdirectories 
+//  named by the first two hex digits. Each entry
+//  is written to a temporary file and renamed into place, so a reader never sees
+//  a partial entry and concurrent writers of the same key are harmless.
+//
+//  An entry is the magic bytes "SRTC0002", the canonical expression string of
+//  the key (TabulationKey.exp, as UTF-8 preceded by its length), which is
+//  compared with the key on each hit to detect fingerprint collisions, 
+//  then the table as a deflated sequence of varints: the nesting depth of the
+//  matrix, then for each matrix its length followed by its elements. Innermost
+//  matrices (tuples) also record whether they are byte, int, integer or boolean
+//  rows, and their values are zigzag-encoded. This is read directly into the
+//  same primitive-backed matrix literal that tabulation creates, without going
+//  through the parser.
+//
+//  The last-modified time of an entry is updated on each hit. When the 
+//  total size exceeds the limit, the least recently used entries are deleted 
+//  until it is below 3/4 of the limit. Eviction is done by one process at a
+//  time, holding a lock on the file "lock" in the cache directory. Within a
+//  process (e.g. -batch or -server workers, each with their own instance) it
+//  is also serialised on EVICTLOCK, because FileChannel locks are held by the
+//  whole JVM and cannot be taken twice. Temporary files still being written
+//  by another process are left alone, only those older than TMPGRACE (left 
+//  behind by a process that died while writing) are deleted. 
 
 public class PersistentCache {
 
     static File basedir = new File(System.getProperty("user.home") + "/.savilerow/tablecache/" + RepositoryVersion.repositoryVersion);
-
+    
+    private static final byte[] MAGIC={'S', 'R', 'T', 'C', '0', '0', '0', '2'};
+    
+    //  Check the size of the cache after this many entries are written.
+    private static final int EVICTCHECK=64;
+    
+    //  Temporary files younger than this (ms) may still be being written. 
+    private static final long TMPGRACE=10*60*1000L;
+    
+    private static final Object EVICTLOCK=new Object();
+    
+    private final long maxBytes;
+    private int writesSinceCheck=0;
+    
+    private static boolean checkedSize=false;   //  Size is checked once per process on startup.
+    
     public PersistentCache() {
         if(!basedir.exists()) {
             boolean create = basedir.mkdirs();
-            if(!create) {
+            if(!create && !basedir.exists()) {    //  Another process may have created it.
                 CmdFlags.errorExit("Unable to create table cache");
             }
         }
+        maxBytes=CmdFlags.tabulate_cache_size;
+        synchronized(PersistentCache.class) {
+            if(!checkedSize) {
+                checkedSize=true;
+                evict();
+            }
+        }
     }
     
+    private static File entryFile(TabulationKey key) {
+        String hex=key.toString();
+        return new File(new File(basedir, hex.substring(0, 2)), hex.substring(2));
+    }
     
-    public static String getHash(String name) {
+    //  table must be a matrix literal of integer or boolean constants, 
+    //  all nested to the same depth. Anything else is not cached. 
+    public void addToCache(TabulationKey key, ASTNode table) {
+        File filename = entryFile(key);
+        if(filename.exists()) {
+            return;
+        }
+        
+        ByteArrayOutputStream payload=new ByteArrayOutputStream();
+        try(DataOutputStream out=new DataOutputStream(new DeflaterOutputStream(payload, new Deflater(Deflater.BEST_SPEED)))) {
+            int depth=depth(table);
+            writeVarint(out, depth);
+            if(!writeMatrix(out, table, depth)) {
+                CmdFlags.printlnIfVerbose("Table not cached: not a regular constant matrix");
+                return;
+            }
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("Unable to encode table for cache");
+        }
+        
+        CmdFlags.printlnIfVerbose("adding to cache");
+        File dir=filename.getParentFile();
+        dir.mkdirs();
+        File tmp=null;
+        try {
+            tmp=File.createTempFile("entry", ".tmp", dir);
+            try(DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.write(MAGIC);
+                byte[] exp=key.exp.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(exp.length);
+                out.write(exp);
+                payload.writeTo(out);
+            }
             try {
-                MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
-                messageDigest.update(name.getBytes());
-                return new BigInteger(1, messageDigest.digest()).toString(16);
+                Files.move(tmp.toPath(), filename.toPath(), StandardCopyOption.ATOMIC_MOVE);
             }
-            catch(NoSuchAlgorithmException e)
-            {
-                CmdFlags.errorExit("SHA-256 doesn't exist");
+            catch(AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), filename.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
-            return null;
-    }
-    
-    public void addToCache(String name, String input) {
-        CmdFlags.printlnIfVerbose("adding to cache");
-        File filename = new File(basedir, getHash(name));
-        try(PrintWriter out = new PrintWriter(filename)) {
-            out.print("# ");
-            out.println(name);
-            out.println(input);
+            tmp=null;
         }
-        catch(FileNotFoundException e) {
-            CmdFlags.errorExit("Unable to write cache file: " + filename);
+        catch(IOException e) {
+            CmdFlags.warning("Unable to write table cache entry: " + filename);
+        }
+        finally {
+            if(tmp!=null) {
+                tmp.delete();
+            }
+        }
+        
+        writesSinceCheck++;
+        if(writesSinceCheck>=EVICTCHECK) {
+            evict();
         }
     }
     
-    public String findInCache(String name) {
-        File filename = new File(basedir, getHash(name));
-        if(!filename.exists()) {
+    //  Returns a matrix literal, or null on a cache miss. 
+    public ASTNode findInCache(TabulationKey key) {
+        File filename = entryFile(key);
+        byte[] entry;
+        try {
+            entry=Files.readAllBytes(filename.toPath());
+        }
+        catch(NoSuchFileException e) {
             CmdFlags.printlnIfVerbose("Cache miss");
             return null;
         }
-        else {
+        catch(IOException e) {
+            CmdFlags.printlnIfVerbose("Cache miss: unable to read "+filename);
+            return null;
+        }
+        
+        try(DataInputStream in=new DataInputStream(new ByteArrayInputStream(entry))) {
+            byte[] magic=new byte[MAGIC.length];
+            in.readFully(magic);
+            if(!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("bad magic");
+            }
+            int explen=in.readInt();
+            if(explen<0 || explen>entry.length) {
+                throw new IOException("bad expression length");
+            }
+            byte[] storedexp=new byte[explen];
+            in.readFully(storedexp);
+            if(!new String(storedexp, StandardCharsets.UTF_8).equals(key.exp)) {
+                //  A different expression with the same fingerprint. Leave the 
+                //  entry alone and tabulate this one. 
+                CmdFlags.warning("Cache hash collision: "+filename);
+                return null;
+            }
+            
+            DataInputStream tab=new DataInputStream(new InflaterInputStream(in));
+            int depth=(int)readVarint(tab);
+            ASTNode mat=readMatrix(tab, depth);
+            
+            filename.setLastModified(System.currentTimeMillis());   //  For LRU eviction. 
             CmdFlags.printlnIfVerbose("Cache hit");
+            return mat;
+        }
+        catch(IOException e) {
+            //  Corrupt entry (e.g. written by an incompatible version). Remove it.
+            CmdFlags.printlnIfVerbose("Cache miss: removing unreadable entry "+filename);
+            filename.delete();
+            return null;
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //  Eviction
+    
+    private void evict() {
+        writesSinceCheck=0;
+        synchronized(EVICTLOCK) {
+            evictLocked();
+        }
+    }
+    
+    private void evictLocked() {
+        File[] dirs=basedir.listFiles(File::isDirectory);
+        if(dirs==null) {
+            return;
+        }
+        ArrayList<File> entries=new ArrayList<File>();
+        long total=0L;
+        long tmpcutoff=System.currentTimeMillis()-TMPGRACE;
+        for(File dir : dirs) {
+            File[] files=dir.listFiles();
+            if(files!=null) {
+                for(File f : files) {
+                    if(f.getName().endsWith(".tmp") && f.lastModified()>tmpcutoff) {
+                        continue;   //  Probably still being written. 
+                    }
+                    entries.add(f);
+                    total+=f.length();
+                }
+            }
+        }
+        if(total<=maxBytes) {
+            return;
+        }
+        
+        try(FileChannel lockch=FileChannel.open(new File(basedir, "lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock=lockch.tryLock();
+            if(lock==null) {
+                return;   //  Another process is evicting. 
+            }
             try {
-                BufferedReader brTest = new BufferedReader(new FileReader(filename));
-                String firstLine = brTest.readLine();
-                if(!firstLine.equals("# " + name)) {
-                    System.out.println("ERROR: Cache hash collision");
-                    System.out.println(filename);
-                    System.out.println("E: '# " + name + "'");
-                    System.out.println("G: '" + firstLine +"'");
-                    CmdFlags.exit();
+                //  Sort by last-modified time, oldest first. Read each time once 
+                //  because other processes may touch entries during the sort. 
+                final HashMap<File, Long> mtime=new HashMap<File, Long>();
+                for(File f : entries) {
+                    mtime.put(f, f.lastModified());
+                }
+                entries.sort((a, b) -> Long.compare(mtime.get(a), mtime.get(b)));
+                
+                long target=maxBytes-maxBytes/4;
+                for(int i=0; i<entries.size() && total>target; i++) {
+                    File f=entries.get(i);
+                    long len=f.length();
+                    if(f.delete()) {
+                        total-=len;
+                    }
                 }
-                StringBuilder otherLines = new StringBuilder();
-                String line;
-                while( (line = brTest.readLine()) != null) {
-            otherLines.append(line);
             }
-                brTest.close();
-            return otherLines.toString();
+            finally {
+                lock.release();
             }
-            catch(IOException io) {
-                CmdFlags.errorExit("Unable to read cache file");
+        }
+        catch(OverlappingFileLockException e) {
+            //  Should not happen with EVICTLOCK held, but skip eviction rather 
+            //  than fail the compile if it does. 
+            return;
+        }
+        catch(IOException e) {
+            CmdFlags.printlnIfVerbose("Unable to lock table cache for eviction");
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //  Binary encoding of matrix literals
+    
+    //  Innermost matrices (depth 1) start with one of these, to recreate 
+    //  the same kind of node as tabulation does. 
+    private static final int ROW_COMPOUND=0;
+    private static final int ROW_BOOLEAN=1;
+    private static final int ROW_BYTE=2;
+    private static final int ROW_INT=3;
+    
+    private static int depth(ASTNode a) {
+        int d=0;
+        while(a instanceof CompoundMatrix) {
+            d++;
+            if(a.numChildren()==1) {
+                return d;   //  Empty matrix
+            }
+            a=a.getChild(1);
+        }
+        if(a instanceof CompoundMatrixByte1D || a instanceof CompoundMatrixInt1D) {
+            d++;
+        }
+        return d;
+    }
+    
+    //  Returns false if the matrix is not regular or contains non-constants. 
+    private static boolean writeMatrix(DataOutputStream out, ASTNode a, int depth) throws IOException {
+        if(depth==1 && a instanceof CompoundMatrixByte1D) {
+            byte[] values=((CompoundMatrixByte1D)a).values;
+            writeVarint(out, ROW_BYTE);
+            writeVarint(out, values.length);
+            for(int i=0; i<values.length; i++) {
+                writeVarint(out, zigzag(values[i]));
+            }
+            return true;
+        }
+        if(depth==1 && a instanceof CompoundMatrixInt1D) {
+            int[] values=((CompoundMatrixInt1D)a).values;
+            writeVarint(out, ROW_INT);
+            writeVarint(out, values.length);
+            for(int i=0; i<values.length; i++) {
+                writeVarint(out, zigzag(values[i]));
+            }
+            return true;
+        }
+        if(depth==0 || !(a instanceof CompoundMatrix)) {
+            return false;
+        }
+        if(depth==1) {
+            boolean bool=a.isRelation();
+            writeVarint(out, bool ? ROW_BOOLEAN : ROW_COMPOUND);
+            writeVarint(out, a.numChildren()-1);
+            for(int i=1; i<a.numChildren(); i++) {
+                ASTNode e=a.getChild(i);
+                if(!(e instanceof NumberConstant || e instanceof BooleanConstant)) {
+                    return false;
+                }
+                writeVarint(out, zigzag(e.getValue()));
+            }
+            return true;
+        }
+        writeVarint(out, a.numChildren()-1);
+        for(int i=1; i<a.numChildren(); i++) {
+            if(!writeMatrix(out, a.getChild(i), depth-1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static ASTNode readMatrix(DataInputStream in, int depth) throws IOException {
+        if(depth==1) {
+            int kind=(int)readVarint(in);
+            int len=(int)readVarint(in);
+            if(kind==ROW_BYTE) {
+                byte[] values=new byte[len];
+                for(int i=0; i<len; i++) {
+                    values[i]=(byte)unzigzag(readVarint(in));
+                }
+                return new CompoundMatrixByte1D(values);
+            }
+            else if(kind==ROW_INT) {
+                int[] values=new int[len];
+                for(int i=0; i<len; i++) {
+                    values[i]=(int)unzigzag(readVarint(in));
+                }
+                return new CompoundMatrixInt1D(values);
+            }
+            else if(kind==ROW_COMPOUND || kind==ROW_BOOLEAN) {
+                ArrayList<ASTNode> elements=new ArrayList<ASTNode>(len);
+                for(int i=0; i<len; i++) {
+                    long v=unzigzag(readVarint(in));
+                    elements.add(kind==ROW_BOOLEAN ? new BooleanConstant(v==1) : NumberConstant.make(v));
+                }
+                return CompoundMatrix.make(elements);
+            }
+            throw new IOException("bad row kind");
+        }
+        int len=(int)readVarint(in);
+        ArrayList<ASTNode> elements=new ArrayList<ASTNode>(len);
+        for(int i=0; i<len; i++) {
+            elements.add(readMatrix(in, depth-1));
+        }
+        return CompoundMatrix.make(elements);
+    }
+    
+    private static long zigzag(long v) {
+        return (v<<1)^(v>>63);
+    }
+    
+    private static long unzigzag(long u) {
+        return (u>>>1)^(-(u&1));
+    }
+    
+    private static void writeVarint(DataOutputStream out, long u) throws IOException {
+        while((u & ~0x7FL) != 0) {
+            out.writeByte((int)((u & 0x7F) | 0x80));
+            u=u>>>7;
+        }
+        out.writeByte((int)u);
+    }
+    
+    private static long readVarint(DataInputStream in) throws IOException {
+        long u=0L;
+        int shift=0;
+        while(true) {
+            int b=in.readUnsignedByte();
+            u|=((long)(b & 0x7F))<<shift;
+            if((b & 0x80)==0) {
+                return u;
+            }
+            shift+=7;
+            if(shift>63) {
+                throw new IOException("bad varint");
             }
         }
-        return null; // should never be reached
     }
-
 }
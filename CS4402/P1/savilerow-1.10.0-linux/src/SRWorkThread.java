@@ -40,6 +40,23 @@ public final class SRWorkThread extends Thread {
             return;
         }
         
+        if(CmdFlags.batchfile!=null) {
+            System.exit(BatchCompiler.runBatch() ? 0 : 1);
+        }
+        if(CmdFlags.batch_worker) {
+            BatchCompiler.runWorker();
+            System.exit(0);
+        }
+        
+        compile();
+        
+        System.exit(0);  // This is needed otherwise the other thread (Main thread) will continue to 
+        // sleep and SR will not exit when it has finished. 
+    }
+    
+    //  Read the model and parameters named in CmdFlags and translate them. 
+    //  Also used by each request in a compile server worker. 
+    public static void compile() {
         //  Read the files.
         EPrimeReader reader = new EPrimeReader(CmdFlags.eprimefile, true);
         Model m=reader.readModel() ;
@@ -48,8 +65,7 @@ public final class SRWorkThread extends Thread {
         // Get the parameters
         ArrayList<ASTNode> parameters=new ArrayList<ASTNode>();
         if(CmdFlags.paramfile!=null) {
-            EPrimeReader paramfile = new EPrimeReader(CmdFlags.paramfile, true);
-            parameters=paramfile.readParameterFile(m);
+            parameters=FastParamReader.readParameterFile(CmdFlags.paramfile, m);
         }
         if(CmdFlags.paramstring!=null) {
             EPrimeReader paramfile = new EPrimeReader(CmdFlags.paramstring, false);
@@ -62,6 +78,10 @@ public final class SRWorkThread extends Thread {
             paramToJSON(parameters);
             System.exit(0);
         }
+        if(CmdFlags.getParamToBinary()) {
+            FastParamReader.writeBinary(parameters, CmdFlags.paramfile+".bin");
+            System.exit(0);
+        }
         
         if(CmdFlags.dryruns) {
             //  Three dry runs.  Reset the clock after each one; if there is a timeout during a dryrun then SR will exit.
@@ -81,6 +101,7 @@ public final class SRWorkThread extends Thread {
         }
         
         CmdFlags.startTime=System.currentTimeMillis();
+        CompileProfiler.reset();
         
         if(CmdFlags.make_tab) {
             mc.makeTableScopes();
@@ -89,41 +110,12 @@ public final class SRWorkThread extends Thread {
             mc.process();
         }
         
-        System.exit(0);  // This is needed otherwise the other thread (Main thread) will continue to 
-        // sleep and SR will not exit when it has finished. 
+        CompileProfiler.write();
     }
     
-    // This should really be somewhere else -- dump JSON version of param file.
-    public void paramToJSON(ArrayList<ASTNode> parameters) {
-        try {
-            BufferedWriter o=new BufferedWriter(new FileWriter(CmdFlags.paramfile+".json"));
-            
-            o.write("{\n");
-            for(int i=0; i< parameters.size(); i++) {
-                o.write("\"");
-                o.write(parameters.get(i).getChild(0).toString());
-                o.write("\" : ");
-                ASTNode a=parameters.get(i).getChild(1);
-                if(a instanceof BooleanConstant || a instanceof NumberConstant) {
-                    o.write(a.toString());
-                }
-                else if(a instanceof EmptyMatrix) {
-                    o.write("[ ]");
-                }
-                else {
-                    o.write(((CompoundMatrix)a).toStringSimpleMatrix());
-                }
-                if(i<parameters.size()-1) {
-                    o.write(",");
-                }
-                o.write("\n");
-            }
-            
-            o.write("}\n");
-            o.close();
-        }
-        catch(IOException blah) {
-        }
+    // Dump JSON version of param file.
+    public static void paramToJSON(ArrayList<ASTNode> parameters) {
+        FastParamReader.writeJSON(parameters, CmdFlags.paramfile+".json");
     }
 }
 
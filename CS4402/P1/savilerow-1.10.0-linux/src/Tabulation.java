@@ -41,6 +41,9 @@ public class Tabulation
     
     private long nodelimit;
     
+    //  Long tables generated in parallel ahead of the sequential pass (-tabulate-threads).
+    private HashMap<TabulationKey, ParallelTabulation.Result> prefetched=null;
+    
     public Tabulation(Model _m) {
         m=_m;
         tu=new TabulationUtils(m);
@@ -89,9 +92,16 @@ public class Tabulation
                 //  Apply heuristics to top-level constraints and boolean subexpressions.
                 //  Also do a variation of identical scopes where a boolean subexpression has an
                 //  identical scope to a top-level ct. 
+                if(CmdFlags.tabulate_threads>1) {
+                    prefetchBool2(m.constraints, scopeslist);
+                }
                 applyHeuristicsBool2(m.constraints, scopeslist);
                 
+                if(CmdFlags.tabulate_threads>1) {
+                    prefetchNumerical2(m.constraints);
+                }
                 applyHeuristicsNumerical2(m.constraints, scopeslist);
+                prefetched=null;
                 
                 CmdFlags.make_short_tab=tmp;
                 
@@ -340,20 +350,9 @@ public class Tabulation
                 
                 //  First check for identical scope with a top-level constraint
                 //  (when curnode is not top-level)
-                if(curnode.isRelation() && curnode.getDimension()==0
-                    && !(curnode instanceof Table) && !(curnode instanceof TableShort) && !(curnode instanceof NegativeTable)
-                    && !(curnode instanceof BooleanConstant)
-                    && !curnode.getParent().inTopAnd()) {
-                    
-                    // Get the scope. 
-                    ArrayList<ASTNode> scope=TabulationUtils.getVariablesOrdered(curnode);
-                    ASTNode.sortByAlpha(scope);  //  Sort alphabetically
-                    //  Check if there is a top-level with the same scope
-                    //  and either there is more than one such top-level constraint, or
-                    //  it does not contain curnode. 
-                    if(scopeslist.containsKey(scope) && (scopeslist.get(scope).size()>1 || !contains(scopeslist.get(scope).get(0), curnode)) ) {
-                        ASTNode toplevelcts=new And(scopeslist.get(scope));
-                        
+                if(isBool2Candidate(curnode) && !curnode.getParent().inTopAnd()) {
+                    ASTNode toplevelcts=identicalScopeContext(curnode, scopeslist);
+                    if(toplevelcts!=null) {
                         if(applyHeuristicsBool2Attempt(curnode, toplevelcts, "IdenticalScopesNested")) {
                             continue;
                         }
@@ -361,9 +360,7 @@ public class Tabulation
                 }
                 
                 //  Check it's a candidate, then apply the three heuristics. 
-                if(curnode.isRelation() && curnode.getDimension()==0
-                    && !(curnode instanceof Table) && !(curnode instanceof TableShort) && !(curnode instanceof NegativeTable)
-                    && !(curnode instanceof BooleanConstant)) {
+                if(isBool2Candidate(curnode)) {
                     String h=heuristic(curnode);
                     if(h!=null) {
                         if(applyHeuristicsBool2Attempt(curnode, null, curnode.getParent().inTopAnd()?h:(h+"Nested"))) {
@@ -382,13 +379,28 @@ public class Tabulation
         }
     }
     
-    //  When a bool heuristic fires, attempt tabulation either in place or extracted to a 
-    //  variable (if not top-level, and not using Gecode or Minion). 
+    private boolean isBool2Candidate(ASTNode curnode) {
+        return curnode.isRelation() && curnode.getDimension()==0
+            && !(curnode instanceof Table) && !(curnode instanceof TableShort) && !(curnode instanceof NegativeTable)
+            && !(curnode instanceof BooleanConstant);
+    }
     
-    private boolean applyHeuristicsBool2Attempt(ASTNode curnode, ASTNode context, String heuristic) {
-        //  If targeting Minion or Gecode, reified table is supported so always do it in place with ordinary limit.
-        //  Else, apply an extra limit because it will be extracted then full d^n table generated. 
-        
+    //  Top-level constraints with an identical scope to curnode (when curnode 
+    //  is not top-level), provided there is more than one such top-level 
+    //  constraint, or it does not contain curnode. Otherwise null. 
+    private ASTNode identicalScopeContext(ASTNode curnode, HashMap<ArrayList<ASTNode>, ArrayList<ASTNode>> scopeslist) {
+        // Get the scope. 
+        ArrayList<ASTNode> scope=TabulationUtils.getVariablesOrdered(curnode);
+        ASTNode.sortByAlpha(scope);  //  Sort alphabetically
+        if(scopeslist.containsKey(scope) && (scopeslist.get(scope).size()>1 || !contains(scopeslist.get(scope).get(0), curnode)) ) {
+            return new And(scopeslist.get(scope));
+        }
+        return null;
+    }
+    
+    //  If targeting Minion or Gecode, reified table is supported so always do it in place with ordinary limit.
+    //  Else, apply an extra limit because it will be extracted then full d^n table generated. 
+    private boolean reifiedTableTooLarge(ASTNode curnode) {
         if(!CmdFlags.getMiniontrans() && !CmdFlags.getGecodetrans() && !CmdFlags.getSattrans() && !curnode.getParent().inTopAnd()) {
             // Not top-level, and solver does not support reified table. 
             // Limit product of domains. 
@@ -398,8 +410,47 @@ public class Tabulation
                 domprod=domprod*Intpair.numValues(scope.get(i).getIntervalSetExp());
             }
             if(domprod>((double)nodelimit)) {
-                return false;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    //  Queue every table that applyHeuristicsBool2 could generate, without 
+    //  changing the tree, and generate them in parallel. Candidates below a 
+    //  node that is later replaced by a table are searched needlessly. 
+    private void prefetchBool2(ASTNode top, HashMap<ArrayList<ASTNode>, ArrayList<ASTNode>> scopeslist) {
+        if(top.getChild(0) instanceof And) {
+            ParallelTabulation pt=new ParallelTabulation(m, tu, nodelimit);
+            ArrayDeque<ASTNode> deque=new ArrayDeque<>(top.getChild(0).getChildren());
+            
+            while(!deque.isEmpty()) {
+                ASTNode curnode=deque.poll();
+                
+                if(isBool2Candidate(curnode) && !reifiedTableTooLarge(curnode)) {
+                    if(!curnode.getParent().inTopAnd()) {
+                        ASTNode toplevelcts=identicalScopeContext(curnode, scopeslist);
+                        if(toplevelcts!=null) {
+                            pt.add(new And(toplevelcts, curnode.copy()));
+                        }
+                    }
+                    if(heuristic(curnode)!=null) {
+                        pt.add(curnode.copy());
+                    }
+                }
+                deque.addAll(curnode.getChildren());
             }
+            
+            prefetched=pt.run(CmdFlags.tabulate_threads);
+        }
+    }
+    
+    //  When a bool heuristic fires, attempt tabulation either in place or extracted to a 
+    //  variable (if not top-level, and not using Gecode or Minion). 
+    
+    private boolean applyHeuristicsBool2Attempt(ASTNode curnode, ASTNode context, String heuristic) {
+        if(reifiedTableTooLarge(curnode)) {
+            return false;
         }
         //  Attempt tabulation in-place
         //  Very conservative -- make sure everything is copied. 
@@ -422,6 +473,75 @@ public class Tabulation
     /////////////////////////////////////////////////////////////////////////
     //  Numerical expressions
     
+    private boolean isNumerical2Candidate(ASTNode curnode) {
+        //  If curnode is a numerical expression, and it will be extracted by
+        //  general flattening, then it's a candidate for tabulation.
+        ASTNode par=curnode.getParent();
+        return curnode.isNumerical() 
+            && !(curnode instanceof Identifier)
+            && !(curnode instanceof NumberConstant)
+            && !(curnode instanceof Mapping)
+            && curnode.getDimension()==0 
+            && curnode.toFlatten(false)
+            && !(par instanceof ToVariable || par instanceof Equals);
+    }
+    
+    private boolean strongPropWithAux(ASTNode outer_ct, ASTNode curnode, ASTNode tmpaux) {
+        // Temporarily replace curnode with tmpaux so that calling strongProp on outer_ct produces the appropriate answer. 
+        ASTNode p=curnode.getParent();
+        p.setChild(curnode.getChildNo(), tmpaux);
+        boolean outer_ct_strong=outer_ct.strongProp();
+        // Restore
+        curnode.setParent(null);
+        p.setChild(curnode.getChildNo(), curnode);
+        return outer_ct_strong;
+    }
+    
+    //  Queue every table that applyHeuristicsNumerical2 could generate and 
+    //  generate them in parallel. Each candidate needs an aux variable, so the
+    //  candidates are collected from a scratch copy of the constraints with its
+    //  own symbol table, and the model itself is not changed. Tables are keyed 
+    //  by normalised expression, so the scratch aux names do not matter. 
+    private void prefetchNumerical2(ASTNode top) {
+        if(top.getChild(0) instanceof And) {
+            Model pm=new Model();
+            pm.global_symbols=m.global_symbols.copy(pm);
+            pm.filt=m.filt.copy(pm.global_symbols);
+            pm.cmstore=m.cmstore;   //  Only read. 
+            pm.constraints=top.copy(pm);
+            
+            HashMap<ArrayList<ASTNode>, ArrayList<ASTNode>> scopeslist=buildScopesList(pm.constraints);
+            ParallelTabulation pt=new ParallelTabulation(pm, tu, nodelimit);
+            
+            ASTNode a=pm.constraints.getChild(0);
+            for(int i=0; i<a.numChildren(); i++) {
+                ASTNode outer_ct=a.getChild(i);
+                ArrayDeque<ASTNode> deque=new ArrayDeque<>(outer_ct.getChildren());
+                
+                while(!deque.isEmpty()) {
+                    ASTNode curnode=deque.poll();
+                    
+                    if(isNumerical2Candidate(curnode)) {
+                        ASTNode tmpaux=pm.global_symbols.newAuxHelper(curnode);
+                        ASTNode ct=new Equals(curnode.copy(), tmpaux);
+                        
+                        ASTNode toplevelcts=identicalScopeContext(curnode, scopeslist);
+                        if(toplevelcts!=null) {
+                            pt.add(new And(ct.copy(), toplevelcts));
+                        }
+                        
+                        if((strongPropWithAux(outer_ct, curnode, tmpaux) && !ct.strongProp()) || heuristic(ct)!=null) {
+                            pt.add(ct);
+                        }
+                    }
+                    deque.addAll(curnode.getChildren());
+                }
+            }
+            
+            prefetched=pt.run(CmdFlags.tabulate_threads);
+        }
+    }
+    
     private void applyHeuristicsNumerical2(ASTNode top, HashMap<ArrayList<ASTNode>, ArrayList<ASTNode>> scopeslist) {
         //  Iterate through every numerical decision expression 
         ArrayList<ASTNode> newCts=new ArrayList<>();
@@ -443,15 +563,7 @@ public class Tabulation
                     
                     //  If curnode is a numerical expression, and it will be extracted by
                     //  general flattening, then it's a candidate for tabulation.
-                    ASTNode par=curnode.getParent();
-                    if(curnode.isNumerical() 
-                        && !(curnode instanceof Identifier)
-                        && !(curnode instanceof NumberConstant)
-                        && !(curnode instanceof Mapping)
-                        && curnode.getDimension()==0 
-                        && curnode.toFlatten(false)
-                        && !(par instanceof ToVariable || par instanceof Equals)
-                        ) {
+                    if(isNumerical2Candidate(curnode)) {
                         
                         //  First check the cache -- have we already tabulated this numerical expression?
                         //  If so, use the aux variable we already made. 
@@ -467,14 +579,8 @@ public class Tabulation
                         
                         //  First do identical scopes heuristic. 
                         
-                        ArrayList<ASTNode> scope=TabulationUtils.getVariablesOrdered(curnode);
-                        ASTNode.sortByAlpha(scope);  //  Sort alphabetically
-                        
-                        //  Check if there is a top-level with the same scope
-                        //  and either there is more than one such top-level constraint, or
-                        //  it does not contain curnode. 
-                        if(scopeslist.containsKey(scope) && (scopeslist.get(scope).size()>1 || !contains(scopeslist.get(scope).get(0), curnode)) ) {
-                            ASTNode toplevelcts=new And(scopeslist.get(scope));
+                        ASTNode toplevelcts=identicalScopeContext(curnode, scopeslist);
+                        if(toplevelcts!=null) {
                             ASTNode newTable=tabulate(new And(ct, toplevelcts), nodelimit, false, "IdenticalScopesNestedNum");
                             
                             if(newTable!=null) {
@@ -489,16 +595,8 @@ public class Tabulation
                             }
                         }
                         
-                        // Temporarily replace curnode with tmpaux so that calling strongProp on outer_ct produces the appropriate answer. 
-                        ASTNode p=curnode.getParent();
-                        p.setChild(curnode.getChildNo(), tmpaux);
-                        boolean outer_ct_strong=outer_ct.strongProp();
-                        // Restore
-                        curnode.setParent(null);
-                        p.setChild(curnode.getChildNo(), curnode);
-                        
                         //  Special case of strong prop heuristic, plus other two heuristics. 
-                        boolean stprop=outer_ct_strong && !ct.strongProp();
+                        boolean stprop=strongPropWithAux(outer_ct, curnode, tmpaux) && !ct.strongProp();
                         String h=heuristic(ct);
                         if(stprop || h!=null) {
                             ASTNode newTable=tabulate(ct, nodelimit, false, stprop?"WeakPropagation1NestedNum":h+"NestedNum");
@@ -868,7 +966,14 @@ public class Tabulation
         ASTNode newTable;
         long nodecount=-1;
         
-        if(!shorttable) {
+        ParallelTabulation.Result pre=(prefetched==null || shorttable) ? null : prefetched.get(ret.key);
+        
+        if(pre!=null && pre.nodelimit==nodelimit) {
+            //  Table was generated by prefetchBool2 or prefetchNumerical2. 
+            newTable = (pre.tuples==null) ? null : tu.tableFromTupleList(a, pre.tuples);
+            nodecount=pre.nodecount;
+        }
+        else if(!shorttable) {
             newTable = tu.makeTableLong(a, nodelimit);
             nodecount=tu.nodecount;
         }
@@ -884,14 +989,14 @@ public class Tabulation
         }
         
         if(newTable==null) {
-            tu.saveToFailCache(ret.expstring);
+            tu.saveToFailCache(ret.key);
             if(verbose) {
-                System.out.println("Adding to failCache:"+ret.expstring);
+                System.out.println("Adding to failCache:"+ret.key);
             }
         }
         else {
             // Save in the cache
-            tu.saveToCacheNormalised(ret.expstring, a, newTable);
+            tu.saveToCacheNormalised(ret.key, a, newTable);
             
             if(CmdFlags.tabulate_diagnostics) {
                 CmdFlags.println(ANSI_GREEN+"Tabulated"+ANSI_RESET+" in nodes:"+nodecount);
@@ -0,0 +1,910 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+
+//  Compiled form of a tabulation candidate for the long-table DFS in TabulationUtils. 
+//  The expression is lowered once to a tree of primitive nodes over long[] 
+//  variable slots. Each node computes an interval [lo,hi] from the current 
+//  bounds of the slots (a single value for assigned variables, the domain
+//  bounds otherwise), so a partial assignment is pruned when the root can no 
+//  longer be true. Assignments are recorded on an int trail and undone in 
+//  reverse order. Nothing is allocated during the search. 
+//
+//  Only a fixed set of expression types is supported; compile returns null
+//  for anything else and the caller falls back to substituting into the AST. 
+
+public final class TabulationEvaluator {
+    //  All variable domains, constants and intermediate bounds must be within
+    //  +/-LIMIT, so that no operation below can overflow a long. 
+    private static final long LIMIT=1L<<24;
+    private static final int MAXTERMS=1<<14;
+    private static final long MAXTABLE=1L<<22;
+    
+    private final long[] slotlo;
+    private final long[] slothi;
+    private final long[] domlo;
+    private final long[] domhi;
+    
+    private final int[] trail;
+    private int trailsize;
+    
+    private final Node root;
+    
+    //  Domain of each variable as a sorted array of values. Null when
+    //  compiled with compileBounds. 
+    public final long[][] vals;
+    
+    private TabulationEvaluator(long[][] _vals, long[] lo, long[] hi) {
+        vals=_vals;
+        int n=lo.length;
+        slotlo=lo.clone();
+        slothi=hi.clone();
+        domlo=lo.clone();
+        domhi=hi.clone();
+        trail=new int[n];
+        root=null;
+    }
+    
+    private TabulationEvaluator(TabulationEvaluator t, Node r) {
+        vals=t.vals;
+        slotlo=t.slotlo;
+        slothi=t.slothi;
+        domlo=t.domlo;
+        domhi=t.domhi;
+        trail=t.trail;
+        root=r;
+    }
+    
+    //  Returns null if the expression or domains are not supported. 
+    public static TabulationEvaluator compile(ASTNode exp, ArrayList<ASTNode> varlist, ArrayList<ArrayList<Intpair>> vardoms) {
+        long[][] vals=new long[varlist.size()][];
+        for(int i=0; i<varlist.size(); i++) {
+            ArrayList<Intpair> d=vardoms.get(i);
+            if(d.size()==0 || d.get(0).lower<-LIMIT || d.get(d.size()-1).upper>LIMIT) {
+                return null;
+            }
+            long n=Intpair.numValues(d);
+            if(n>LIMIT) {
+                return null;
+            }
+            long[] v=new long[(int)n];
+            int idx=0;
+            for(int j=0; j<d.size(); j++) {
+                for(long val=d.get(j).lower; val<=d.get(j).upper; val++) {
+                    v[idx++]=val;
+                }
+            }
+            vals[i]=v;
+        }
+        
+        long[] lo=new long[vals.length];
+        long[] hi=new long[vals.length];
+        for(int i=0; i<vals.length; i++) {
+            lo[i]=vals[i][0];
+            hi[i]=vals[i][vals[i].length-1];
+        }
+        return compile(exp, varlist, new TabulationEvaluator(vals, lo, hi));
+    }
+    
+    //  As compile, but only the bounds of each variable are given and vals is
+    //  not built. Used by DomainPropagator, which narrows the bounds with setBounds. 
+    public static TabulationEvaluator compileBounds(ASTNode exp, ArrayList<ASTNode> varlist, long[] lo, long[] hi) {
+        for(int i=0; i<lo.length; i++) {
+            if(lo[i]>hi[i] || lo[i]<-LIMIT || hi[i]>LIMIT) {
+                return null;
+            }
+        }
+        return compile(exp, varlist, new TabulationEvaluator(null, lo, hi));
+    }
+    
+    private static TabulationEvaluator compile(ASTNode exp, ArrayList<ASTNode> varlist, TabulationEvaluator t) {
+        HashMap<ASTNode, Integer> varidx=new HashMap<ASTNode, Integer>();
+        for(int i=0; i<varlist.size(); i++) {
+            varidx.put(varlist.get(i), i);
+        }
+        Node r=t.build(exp, varidx);
+        if(r==null) {
+            return null;
+        }
+        return new TabulationEvaluator(t, r);
+    }
+    
+    public int numVars() {
+        return domlo.length;
+    }
+    
+    //  Set the domain bounds of an unassigned variable. The new bounds must
+    //  be within the ones given when compiling. 
+    public void setBounds(int var, long lo, long hi) {
+        domlo[var]=lo;
+        domhi[var]=hi;
+        slotlo[var]=lo;
+        slothi[var]=hi;
+    }
+    
+    public void assign(int var, long val) {
+        slotlo[var]=val;
+        slothi[var]=val;
+        trail[trailsize++]=var;
+    }
+    
+    public void unassign() {
+        int var=trail[--trailsize];
+        slotlo[var]=domlo[var];
+        slothi[var]=domhi[var];
+    }
+    
+    //  Evaluate under the current assignment. 
+    //  Returns 0 if the expression is false, 1 if true, and -1 if not yet known.
+    public int check() {
+        root.eval();
+        if(root.hi==0) {
+            return 0;
+        }
+        if(root.lo==1) {
+            return 1;
+        }
+        return -1;
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  Lowering from AST. Each node is evaluated once with no variables
+    //  assigned to check its bounds are within LIMIT. Interval evaluation is 
+    //  monotone, so bounds during search are always within the initial ones. 
+    
+    private Node build(ASTNode e, HashMap<ASTNode, Integer> varidx) {
+        Node n=buildInner(e, varidx);
+        if(n==null) {
+            return null;
+        }
+        n.eval();
+        if(n.lo<-LIMIT || n.hi>LIMIT) {
+            return null;
+        }
+        return n;
+    }
+    
+    private Node[] buildChildren(ASTNode e, int from, HashMap<ASTNode, Integer> varidx) {
+        Node[] ch=new Node[e.numChildren()-from];
+        for(int i=from; i<e.numChildren(); i++) {
+            ch[i-from]=build(e.getChild(i), varidx);
+            if(ch[i-from]==null) {
+                return null;
+            }
+        }
+        return ch;
+    }
+    
+    private Node buildInner(ASTNode e, HashMap<ASTNode, Integer> varidx) {
+        if(e instanceof Identifier) {
+            Integer idx=varidx.get(e);
+            return (idx==null) ? null : new Var(idx, slotlo, slothi);
+        }
+        if(e.isConstant()) {
+            return new Const(e.getValue());
+        }
+        
+        if(e instanceof WeightedSum) {
+            if(e.numChildren()>MAXTERMS) {
+                return null;
+            }
+            long[] w=((WeightedSum)e).getWeightsArray();
+            for(int i=0; i<w.length; i++) {
+                if(w[i]<-LIMIT || w[i]>LIMIT) {
+                    return null;
+                }
+            }
+            Node[] ch=buildChildren(e, 0, varidx);
+            return (ch==null) ? null : new Sum(ch, w);
+        }
+        if(e instanceof Times) {
+            //  Fold to binary products so that every partial product is bounds-checked.
+            Node[] ch=buildChildren(e, 0, varidx);
+            if(ch==null) {
+                return null;
+            }
+            Node acc=ch[0];
+            for(int i=1; i<ch.length; i++) {
+                acc=new Mul(acc, ch[i]);
+                acc.eval();
+                if(acc.lo<-LIMIT || acc.hi>LIMIT) {
+                    return null;
+                }
+            }
+            return acc;
+        }
+        if(e instanceof And || e instanceof Or || e instanceof Xor || e instanceof Min || e instanceof Max) {
+            Node[] ch=buildChildren(e, 0, varidx);
+            if(ch==null) {
+                return null;
+            }
+            if(e instanceof And) return new AndNode(ch);
+            if(e instanceof Or) return new OrNode(ch);
+            if(e instanceof Xor) return new XorNode(ch);
+            return new MinMax(ch, e instanceof Max);
+        }
+        if(e instanceof AllDifferent) {
+            if(!(e.getChild(0) instanceof CompoundMatrix)) {
+                return null;
+            }
+            Node[] ch=buildChildren(e.getChild(0), 1, varidx);
+            return (ch==null) ? null : new AllDiff(ch);
+        }
+        
+        if(e instanceof Negate || e instanceof UnaryMinus || e instanceof Absolute) {
+            Node a=build(e.getChild(0), varidx);
+            if(a==null) {
+                return null;
+            }
+            if(e instanceof Negate) return new Not(a);
+            if(e instanceof UnaryMinus) return new Neg(a);
+            return new Abs(a);
+        }
+        
+        if(e instanceof SafeElementOne || e instanceof ElementOne) {
+            ASTNode mat=e.getChildConst(0);
+            if(!mat.isTuple()) {
+                return null;
+            }
+            long[] tab=new long[mat.getTupleLength()];
+            for(int i=0; i<tab.length; i++) {
+                tab[i]=mat.getValueIdx(i+1);
+                if(tab[i]<-LIMIT || tab[i]>LIMIT) {
+                    return null;
+                }
+            }
+            Node idx=build(e.getChild(1), varidx);
+            if(idx==null) {
+                return null;
+            }
+            //  ElementOne is undefined out of bounds, so only accept it when the index cannot be. 
+            if(e instanceof ElementOne && (idx.lo<1 || idx.hi>tab.length)) {
+                return null;
+            }
+            return new Element(tab, idx);
+        }
+        
+        if(e instanceof LexLess || e instanceof LexLessEqual) {
+            if(!(e.getChild(0) instanceof CompoundMatrix) || !(e.getChild(1) instanceof CompoundMatrix)
+                || e.getChild(0).numChildren()!=e.getChild(1).numChildren()) {
+                return null;
+            }
+            Node[] l=buildChildren(e.getChild(0), 1, varidx);
+            if(l==null) {
+                return null;
+            }
+            Node[] r=buildChildren(e.getChild(1), 1, varidx);
+            return (r==null) ? null : new Lex(l, r, e instanceof LexLess);
+        }
+        
+        if(e instanceof Table || e instanceof NegativeTable) {
+            if(!(e.getChild(0) instanceof CompoundMatrix)) {
+                return null;
+            }
+            Node[] scope=buildChildren(e.getChild(0), 1, varidx);
+            if(scope==null) {
+                return null;
+            }
+            ASTNode tab=e.getChildConst(1);
+            if(!(tab instanceof CompoundMatrix || tab instanceof EmptyMatrix) || (long)(tab.numChildren()-1)*scope.length>MAXTABLE) {
+                return null;
+            }
+            long[][] tups=new long[tab.numChildren()-1][];
+            for(int i=1; i<tab.numChildren(); i++) {
+                ASTNode row=tab.getChildConst(i);
+                if(!row.isTuple() || row.getTupleLength()!=scope.length) {
+                    return null;
+                }
+                long[] tup=new long[scope.length];
+                for(int j=1; j<=scope.length; j++) {
+                    tup[j-1]=row.getValueIdx(j);
+                }
+                tups[i-1]=tup;
+            }
+            return new TableNode(scope, tups, e instanceof NegativeTable);
+        }
+        
+        if(e instanceof InSet) {
+            if(e.getChild(1).getCategory()!=ASTNode.Constant) {
+                return null;
+            }
+            ArrayList<Intpair> set=e.getChild(1).getIntervalSet();
+            if(set==null) {
+                return null;
+            }
+            Node a=build(e.getChild(0), varidx);
+            if(a==null) {
+                return null;
+            }
+            long[] setlo=new long[set.size()];
+            long[] sethi=new long[set.size()];
+            for(int i=0; i<set.size(); i++) {
+                setlo[i]=set.get(i).lower;
+                sethi[i]=set.get(i).upper;
+            }
+            return new In(a, setlo, sethi);
+        }
+        
+        if(e instanceof Equals || e instanceof ToVariable || e instanceof NotEqual || e instanceof Iff
+            || e instanceof Less || e instanceof LessEqual || e instanceof Implies
+            || e instanceof SafeDivide || e instanceof SafeMod || e instanceof Divide || e instanceof Mod) {
+            Node a=build(e.getChild(0), varidx);
+            if(a==null) {
+                return null;
+            }
+            Node b=build(e.getChild(1), varidx);
+            if(b==null) {
+                return null;
+            }
+            if(e instanceof Equals || e instanceof ToVariable || e instanceof Iff) return new Eq(a, b, false);
+            if(e instanceof NotEqual) return new Eq(a, b, true);
+            if(e instanceof Less) return new Lt(a, b, true);
+            if(e instanceof LessEqual) return new Lt(a, b, false);
+            if(e instanceof Implies) return new Imp(a, b);
+            //  Divide and Mod are undefined when dividing by 0; the safe versions are 0.
+            if((e instanceof Divide || e instanceof Mod) && b.lo<=0 && b.hi>=0) {
+                return null;
+            }
+            if(e instanceof SafeDivide || e instanceof Divide) return new Div(a, b);
+            return new ModNode(a, b);
+        }
+        return null;
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  Node types. Boolean nodes have bounds within [0,1]. 
+    
+    private static abstract class Node {
+        long lo;
+        long hi;
+        abstract void eval();
+    }
+    
+    private static final class Const extends Node {
+        Const(long v) {
+            lo=v;
+            hi=v;
+        }
+        void eval() {
+        }
+    }
+    
+    private static final class Var extends Node {
+        final int idx;
+        final long[] slotlo;
+        final long[] slothi;
+        Var(int _idx, long[] _slotlo, long[] _slothi) {
+            idx=_idx;
+            slotlo=_slotlo;
+            slothi=_slothi;
+        }
+        void eval() {
+            lo=slotlo[idx];
+            hi=slothi[idx];
+        }
+    }
+    
+    private static final class Sum extends Node {
+        final Node[] ch;
+        final long[] w;
+        Sum(Node[] _ch, long[] _w) {
+            ch=_ch;
+            w=_w;
+        }
+        void eval() {
+            long l=0;
+            long h=0;
+            for(int i=0; i<ch.length; i++) {
+                Node c=ch[i];
+                c.eval();
+                if(w[i]>=0) {
+                    l+=w[i]*c.lo;
+                    h+=w[i]*c.hi;
+                }
+                else {
+                    l+=w[i]*c.hi;
+                    h+=w[i]*c.lo;
+                }
+            }
+            lo=l;
+            hi=h;
+        }
+    }
+    
+    private static final class Mul extends Node {
+        final Node a;
+        final Node b;
+        Mul(Node _a, Node _b) {
+            a=_a;
+            b=_b;
+        }
+        void eval() {
+            a.eval();
+            b.eval();
+            long p1=a.lo*b.lo;
+            long p2=a.lo*b.hi;
+            long p3=a.hi*b.lo;
+            long p4=a.hi*b.hi;
+            lo=Math.min(Math.min(p1, p2), Math.min(p3, p4));
+            hi=Math.max(Math.max(p1, p2), Math.max(p3, p4));
+        }
+    }
+    
+    private static final class Neg extends Node {
+        final Node a;
+        Neg(Node _a) {
+            a=_a;
+        }
+        void eval() {
+            a.eval();
+            lo=-a.hi;
+            hi=-a.lo;
+        }
+    }
+    
+    private static final class Abs extends Node {
+        final Node a;
+        Abs(Node _a) {
+            a=_a;
+        }
+        void eval() {
+            a.eval();
+            if(a.lo>=0) {
+                lo=a.lo;
+                hi=a.hi;
+            }
+            else if(a.hi<=0) {
+                lo=-a.hi;
+                hi=-a.lo;
+            }
+            else {
+                lo=0;
+                hi=Math.max(-a.lo, a.hi);
+            }
+        }
+    }
+    
+    private static final class MinMax extends Node {
+        final Node[] ch;
+        final boolean max;
+        MinMax(Node[] _ch, boolean _max) {
+            ch=_ch;
+            max=_max;
+        }
+        void eval() {
+            ch[0].eval();
+            long l=ch[0].lo;
+            long h=ch[0].hi;
+            for(int i=1; i<ch.length; i++) {
+                Node c=ch[i];
+                c.eval();
+                if(max) {
+                    l=Math.max(l, c.lo);
+                    h=Math.max(h, c.hi);
+                }
+                else {
+                    l=Math.min(l, c.lo);
+                    h=Math.min(h, c.hi);
+                }
+            }
+            lo=l;
+            hi=h;
+        }
+    }
+    
+    //  Floor division with x/0=0, as SafeDivide. 
+    private static final class Div extends Node {
+        final Node a;
+        final Node b;
+        Div(Node _a, Node _b) {
+            a=_a;
+            b=_b;
+        }
+        void eval() {
+            a.eval();
+            b.eval();
+            if(b.lo==b.hi) {
+                long d=b.lo;
+                if(d==0) {
+                    lo=0;
+                    hi=0;
+                }
+                else if(d>0) {
+                    lo=Math.floorDiv(a.lo, d);
+                    hi=Math.floorDiv(a.hi, d);
+                }
+                else {
+                    lo=Math.floorDiv(a.hi, d);
+                    hi=Math.floorDiv(a.lo, d);
+                }
+            }
+            else {
+                //  |a/b| <= |a| for any non-zero b, and the default value is 0. 
+                long m=Math.max(Math.abs(a.lo), Math.abs(a.hi));
+                lo=-m;
+                hi=m;
+            }
+        }
+    }
+    
+    //  a - floor(a/b)*b with x%0=0, as SafeMod. 
+    private static final class ModNode extends Node {
+        final Node a;
+        final Node b;
+        ModNode(Node _a, Node _b) {
+            a=_a;
+            b=_b;
+        }
+        void eval() {
+            a.eval();
+            b.eval();
+            if(a.lo==a.hi && b.lo==b.hi) {
+                long v=(b.lo==0) ? 0 : Math.floorMod(a.lo, b.lo);
+                lo=v;
+                hi=v;
+            }
+            else {
+                lo=Math.min(0, b.lo+1);
+                hi=Math.max(0, b.hi-1);
+            }
+        }
+    }
+    
+    //  Index from 1, 0 when out of bounds (as SafeElementOne).
+    private static final class Element extends Node {
+        final long[] tab;
+        final Node idx;
+        Element(long[] _tab, Node _idx) {
+            tab=_tab;
+            idx=_idx;
+        }
+        void eval() {
+            idx.eval();
+            long l=Long.MAX_VALUE;
+            long h=Long.MIN_VALUE;
+            if(idx.lo<1 || idx.hi>tab.length) {
+                l=0;
+                h=0;
+            }
+            long from=Math.max(idx.lo, 1);
+            long to=Math.min(idx.hi, tab.length);
+            for(long i=from; i<=to; i++) {
+                long v=tab[(int)i-1];
+                if(v<l) l=v;
+                if(v>h) h=v;
+            }
+            lo=l;
+            hi=h;
+        }
+    }
+    
+    private static final class AndNode extends Node {
+        final Node[] ch;
+        AndNode(Node[] _ch) {
+            ch=_ch;
+        }
+        void eval() {
+            lo=1;
+            hi=1;
+            for(int i=0; i<ch.length; i++) {
+                Node c=ch[i];
+                c.eval();
+                if(c.hi==0) {
+                    lo=0;
+                    hi=0;
+                    return;
+                }
+                if(c.lo==0) {
+                    lo=0;
+                }
+            }
+        }
+    }
+    
+    private static final class OrNode extends Node {
+        final Node[] ch;
+        OrNode(Node[] _ch) {
+            ch=_ch;
+        }
+        void eval() {
+            lo=0;
+            hi=0;
+            for(int i=0; i<ch.length; i++) {
+                Node c=ch[i];
+                c.eval();
+                if(c.lo==1) {
+                    lo=1;
+                    hi=1;
+                    return;
+                }
+                if(c.hi==1) {
+                    hi=1;
+                }
+            }
+        }
+    }
+    
+    private static final class XorNode extends Node {
+        final Node[] ch;
+        XorNode(Node[] _ch) {
+            ch=_ch;
+        }
+        void eval() {
+            long parity=0;
+            boolean fixed=true;
+            for(int i=0; i<ch.length; i++) {
+                Node c=ch[i];
+                c.eval();
+                if(c.lo!=c.hi) {
+                    fixed=false;
+                }
+                parity^=c.lo;
+            }
+            lo=fixed ? parity : 0;
+            hi=fixed ? parity : 1;
+        }
+    }
+    
+    private static final class Not extends Node {
+        final Node a;
+        Not(Node _a) {
+            a=_a;
+        }
+        void eval() {
+            a.eval();
+            lo=1-a.hi;
+            hi=1-a.lo;
+        }
+    }
+    
+    private static final class Imp extends Node {
+        final Node a;
+        final Node b;
+        Imp(Node _a, Node _b) {
+            a=_a;
+            b=_b;
+        }
+        void eval() {
+            a.eval();
+            if(a.hi==0) {
+                lo=1;
+                hi=1;
+                return;
+            }
+            b.eval();
+            lo=Math.max(1-a.hi, b.lo);
+            hi=Math.max(1-a.lo, b.hi);
+        }
+    }
+    
+    //  Equality (or disequality when neg is set) of two integer or boolean nodes.
+    private static final class Eq extends Node {
+        final Node a;
+        final Node b;
+        final boolean neg;
+        Eq(Node _a, Node _b, boolean _neg) {
+            a=_a;
+            b=_b;
+            neg=_neg;
+        }
+        void eval() {
+            a.eval();
+            b.eval();
+            long v;
+            if(a.hi<b.lo || b.hi<a.lo) {
+                v=0;
+            }
+            else if(a.lo==a.hi && b.lo==b.hi) {
+                v=1;
+            }
+            else {
+                lo=0;
+                hi=1;
+                return;
+            }
+            if(neg) {
+                v=1-v;
+            }
+            lo=v;
+            hi=v;
+        }
+    }
+    
+    //  a<b when strict is set, otherwise a<=b.
+    private static final class Lt extends Node {
+        final Node a;
+        final Node b;
+        final boolean strict;
+        Lt(Node _a, Node _b, boolean _strict) {
+            a=_a;
+            b=_b;
+            strict=_strict;
+        }
+        void eval() {
+            a.eval();
+            b.eval();
+            long bl=strict ? b.lo-1 : b.lo;
+            long bh=strict ? b.hi-1 : b.hi;
+            if(a.hi<=bl) {
+                lo=1;
+                hi=1;
+            }
+            else if(a.lo>bh) {
+                lo=0;
+                hi=0;
+            }
+            else {
+                lo=0;
+                hi=1;
+            }
+        }
+    }
+    
+    //  Lexicographic ordering of two vectors of the same length.
+    private static final class Lex extends Node {
+        final Node[] l;
+        final Node[] r;
+        final boolean strict;
+        Lex(Node[] _l, Node[] _r, boolean _strict) {
+            l=_l;
+            r=_r;
+            strict=_strict;
+        }
+        void eval() {
+            for(int i=0; i<l.length; i++) {
+                Node a=l[i];
+                Node b=r[i];
+                a.eval();
+                b.eval();
+                if(a.hi<b.lo) {
+                    lo=1;
+                    hi=1;
+                    return;
+                }
+                if(a.lo>b.hi) {
+                    lo=0;
+                    hi=0;
+                    return;
+                }
+                if(a.lo!=a.hi || b.lo!=b.hi) {
+                    //  Not yet decided at position i. 
+                    lo=0;
+                    hi=1;
+                    return;
+                }
+            }
+            //  Vectors are equal.
+            lo=strict ? 0 : 1;
+            hi=lo;
+        }
+    }
+    
+    //  Positive or negative table. Compares the bounds of the scope with each tuple. 
+    private static final class TableNode extends Node {
+        final Node[] scope;
+        final long[][] tups;
+        final boolean negative;
+        TableNode(Node[] _scope, long[][] _tups, boolean _negative) {
+            scope=_scope;
+            tups=_tups;
+            negative=_negative;
+        }
+        void eval() {
+            boolean fixed=true;
+            for(int i=0; i<scope.length; i++) {
+                Node c=scope[i];
+                c.eval();
+                if(c.lo!=c.hi) {
+                    fixed=false;
+                }
+            }
+            boolean found=false;
+            for(int t=0; t<tups.length && !found; t++) {
+                long[] tup=tups[t];
+                boolean match=true;
+                for(int i=0; i<tup.length; i++) {
+                    if(tup[i]<scope[i].lo || tup[i]>scope[i].hi) {
+                        match=false;
+                        break;
+                    }
+                }
+                found=match;
+            }
+            if(!found) {
+                //  No tuple is possible. 
+                lo=negative ? 1 : 0;
+                hi=lo;
+            }
+            else if(fixed) {
+                lo=negative ? 0 : 1;
+                hi=lo;
+            }
+            else {
+                lo=0;
+                hi=1;
+            }
+        }
+    }
+    
+    //  Membership of a constant set given as sorted disjoint intervals.
+    private static final class In extends Node {
+        final Node a;
+        final long[] setlo;
+        final long[] sethi;
+        In(Node _a, long[] _setlo, long[] _sethi) {
+            a=_a;
+            setlo=_setlo;
+            sethi=_sethi;
+        }
+        void eval() {
+            a.eval();
+            lo=0;
+            hi=0;
+            for(int i=0; i<setlo.length; i++) {
+                if(a.hi<setlo[i] || a.lo>sethi[i]) {
+                    continue;
+                }
+                //  Overlaps interval i.
+                hi=1;
+                if(a.lo>=setlo[i] && a.hi<=sethi[i]) {
+                    lo=1;
+                }
+                return;
+            }
+        }
+    }
+    
+    //  False as soon as two fixed children are equal, true when all pairs have disjoint bounds.
+    private static final class AllDiff extends Node {
+        final Node[] ch;
+        AllDiff(Node[] _ch) {
+            ch=_ch;
+        }
+        void eval() {
+            for(int i=0; i<ch.length; i++) {
+                ch[i].eval();
+            }
+            boolean disjoint=true;
+            for(int i=0; i<ch.length; i++) {
+                Node c=ch[i];
+                for(int j=i+1; j<ch.length; j++) {
+                    Node d=ch[j];
+                    if(c.hi<d.lo || d.hi<c.lo) {
+                        continue;
+                    }
+                    if(c.lo==c.hi && d.lo==d.hi) {
+                        lo=0;
+                        hi=0;
+                        return;
+                    }
+                    disjoint=false;
+                }
+            }
+            lo=disjoint ? 1 : 0;
+            hi=1;
+        }
+    }
+}
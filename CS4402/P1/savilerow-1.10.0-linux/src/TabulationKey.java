@@ -0,0 +1,251 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+//  128-bit structural fingerprint of a tabulation candidate, used as the key of
+//  the in-memory and on-disk table caches. It is computed in one pre-order pass
+//  over the expression, mixing in the class of each node, its number of 
+//  children and any data held outside its children (constants, weights etc).
+//  Decision variables are replaced by their position in the ordered variable 
+//  list, so expressions that differ only by variable names have the same key.
+//  The interval set of the domain of each variable and the kind of table 
+//  (long or short) are also included. 
+//
+//  The same pass also writes the hashed values out as a canonical string of 
+//  the normalised expression (with class names in place of class ids). Keys
+//  are only equal when these strings are equal, so a fingerprint collision 
+//  cannot make one expression reuse the table of another. The disk cache 
+//  stores the string in each entry and checks it on a hit. 
+
+public final class TabulationKey
+{
+    public final long hi;
+    public final long lo;
+    public final String exp;   //  Canonical form of the normalised expression. 
+    
+    private TabulationKey(long _hi, long _lo, String _exp) {
+        hi=_hi;
+        lo=_lo;
+        exp=_exp;
+    }
+    
+    //  exp must already be normalised, varlist is in the order given by 
+    //  TabulationUtils.getVariablesOrdered and doms are the domains of varlist. 
+    public static TabulationKey make(ASTNode exp, ArrayList<ASTNode> varlist, ArrayList<ASTNode> doms, boolean shorttable) {
+        HashMap<ASTNode, Integer> varidx=new HashMap<ASTNode, Integer>();
+        for(int i=0; i<varlist.size(); i++) {
+            varidx.put(varlist.get(i), i);
+        }
+        
+        Hasher h=new Hasher();
+        h.mix(shorttable ? 1 : 0);
+        hashNode(exp, varidx, h);
+        
+        h.mix(doms.size());
+        for(ASTNode dom : doms) {
+            h.mixClass(dom);
+            ArrayList<Intpair> intervals=dom.getIntervalSet();
+            if(intervals==null) {
+                h.mix(dom.toString());
+            }
+            else {
+                h.mix(intervals.size());
+                for(Intpair p : intervals) {
+                    h.mix(p.lower);
+                    h.mix(p.upper);
+                }
+            }
+        }
+        return h.finish();
+    }
+    
+    private static void hashNode(ASTNode a, HashMap<ASTNode, Integer> varidx, Hasher h) {
+        if(a instanceof Identifier) {
+            Integer idx=varidx.get(a);
+            if(idx!=null) {
+                h.mix(VARTAG);
+                h.mix(idx);
+            }
+            else {
+                //  Reference to a constant matrix or other named constant.
+                h.mixClass(a);
+                h.mix(a.toString());
+            }
+            return;
+        }
+        
+        h.mixClass(a);
+        int n=a.numChildren();
+        h.mix(n);
+        
+        if(a instanceof NumberConstant || a instanceof BooleanConstant) {
+            h.mix(a.getValue());
+        }
+        else if(a instanceof CompoundMatrixByte1D) {
+            byte[] v=((CompoundMatrixByte1D)a).values;
+            h.mix(v.length);
+            for(int i=0; i<v.length; i++) {
+                h.mix(v[i]);
+            }
+        }
+        else if(a instanceof CompoundMatrixInt1D) {
+            int[] v=((CompoundMatrixInt1D)a).values;
+            h.mix(v.length);
+            for(int i=0; i<v.length; i++) {
+                h.mix(v[i]);
+            }
+        }
+        else if(a instanceof WeightedSum) {
+            long[] w=((WeightedSum)a).weights;
+            h.mix(w.length);
+            for(int i=0; i<w.length; i++) {
+                h.mix(w[i]);
+            }
+        }
+        else if(a instanceof Mapping) {
+            TreeMap<Long, Long> map=new TreeMap<Long, Long>(((Mapping)a).map);
+            h.mix(map.size());
+            for(Map.Entry<Long, Long> e : map.entrySet()) {
+                h.mix(e.getKey());
+                h.mix(e.getValue());
+            }
+            h.mix(((Mapping)a).defaultval);
+        }
+        else if(a instanceof SATLiteral) {
+            h.mix(((SATLiteral)a).getLit());
+        }
+        else if(n==0) {
+            //  Any other leaf (e.g. a concrete domain) may hold data that is 
+            //  only visible in its string form. 
+            h.mix(a.toString());
+        }
+        
+        for(int i=0; i<n; i++) {
+            hashNode(a.getChild(i), varidx, h);
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //  Mixing
+    
+    private static final long VARTAG=0x5641525f5641525fL;
+    
+    //  Class names are hashed once. String.hashCode is specified, so keys
+    //  are the same in every run and can be used for the disk cache.
+    private static final ConcurrentHashMap<Class<?>, Long> classIds=new ConcurrentHashMap<Class<?>, Long>();
+    
+    private static long classId(ASTNode a) {
+        Long id=classIds.get(a.getClass());
+        if(id==null) {
+            Hasher h=new Hasher();
+            h.mix(a.getClass().getName());
+            id=h.finishLanes()[1];
+            classIds.put(a.getClass(), id);
+        }
+        return id;
+    }
+    
+    //  Two 64-bit lanes with different multipliers, each finalised with
+    //  the MurmurHash3 fmix64 function. Every value mixed in is also appended
+    //  to the canonical string, separated by commas. Strings are written with
+    //  their length first, so the canonical string is unambiguous. 
+    private static final class Hasher {
+        long h1=0x9E3779B97F4A7C15L;
+        long h2=0xC2B2AE3D27D4EB4FL;
+        long len=0;
+        StringBuilder exp=new StringBuilder();
+        
+        void mix(long v) {
+            mixHash(v);
+            exp.append(v).append(',');
+        }
+        
+        void mix(String s) {
+            mixHashString(s);
+            exp.append(s.length()).append(':').append(s).append(',');
+        }
+        
+        //  The class id goes into the hash, the class name into the string. 
+        void mixClass(ASTNode a) {
+            mixHash(classId(a));
+            exp.append(a.getClass().getSimpleName()).append(',');
+        }
+        
+        private void mixHash(long v) {
+            h1^=v*0x87C37B91114253D5L;
+            h1=Long.rotateLeft(h1, 31)*0x4CF5AD432745937FL;
+            h2+=v^(h1>>>17);
+            h2=Long.rotateLeft(h2, 27)*0x52DCE729L+0x38495AB5L;
+            len++;
+        }
+        
+        private void mixHashString(String s) {
+            mixHash(s.length());
+            for(int i=0; i<s.length(); i++) {
+                mixHash(s.charAt(i));
+            }
+        }
+        
+        long[] finishLanes() {
+            return new long[]{fmix64(h1^len), fmix64(h2^len)};
+        }
+        
+        TabulationKey finish() {
+            long[] l=finishLanes();
+            return new TabulationKey(l[0], l[1], exp.toString());
+        }
+        
+        private static long fmix64(long k) {
+            k^=k>>>33;
+            k*=0xFF51AFD7ED558CCDL;
+            k^=k>>>33;
+            k*=0xC4CEB9FE1A85EC53L;
+            k^=k>>>33;
+            return k;
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    
+    @Override
+    public boolean equals(Object b) {
+        if(!(b instanceof TabulationKey)) {
+            return false;
+        }
+        TabulationKey k=(TabulationKey)b;
+        return k.hi==hi && k.lo==lo && k.exp.equals(exp);
+    }
+    
+    @Override
+    public int hashCode() {
+        return (int)(lo^(lo>>>32));
+    }
+    
+    //  32 hex digits of the fingerprint, used as the name of the disk cache entry. 
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", hi, lo);
+    }
+}
@@ -31,33 +31,73 @@ public class TabulationUtils {
     
     private static boolean twowatchedlits=false;
     
-    private static boolean diskcache=false;   //  Whether to use the persistent cache.
+    //  Use TabulationEvaluator for the long-table searches when the expression is supported. 
+    private static boolean compiled=true;
+    
+    private boolean diskcache;   //  Whether to use the persistent cache.
     
     PersistentCache pcache;      // On-disk cache of successful conversions.
-    HashSet<String> failCache;   // In-memory cache of failed conversions.
-    HashMap<String, ASTNode> memCache;   // In-memory cache of successful conversions, either read from disk or done in this process. 
+    HashSet<TabulationKey> failCache;   // In-memory cache of failed conversions.
+    HashMap<TabulationKey, ASTNode> memCache;   // In-memory cache of successful conversions, either read from disk or done in this process. 
     
     private Model m;
     
+    //  Tables shared by all instances compiled by this process in batch mode,
+    //  stored as table literals that do not belong to any model. 
+    private static HashMap<TabulationKey, ASTNode> sharedTables=null;
+    private static long sharedCells=0;
+    private static final long MAXSHAREDCELLS=1L<<24;   // Stop adding tables beyond this many values. 
+    
     public TabulationUtils(Model _m) {
+        this(_m, CmdFlags.tabulate_diskcache);
+    }
+    
+    //  Worker threads of ParallelTabulation use their own instance, without the disk cache.
+    public TabulationUtils(Model _m, boolean _diskcache) {
         m=_m;
         
+        diskcache=_diskcache;
         if(diskcache) {
             pcache = new PersistentCache();
         }
-        failCache=new HashSet<String>();
-        memCache=new HashMap<String,ASTNode>();
+        failCache=new HashSet<TabulationKey>();
+        memCache=new HashMap<TabulationKey,ASTNode>();
     }
     
     /////////////////////////////////////////////////////////////////////////
     //  Cache handling
     
-    public void saveToCache(String node, ASTNode curnode, ASTNode newTable) {
-        // node must be the string containing the expression, domains etc. We pass it in because we already
-        // know it, and it is expensive to recalculate
-        
-        StringBuilder eprime = new StringBuilder();
-        eprime.append("letting tab" + PersistentCache.getHash(node) + " = ");
+    public static synchronized void enableSharedCache() {
+        if(sharedTables==null) {
+            sharedTables=new HashMap<TabulationKey, ASTNode>();
+        }
+    }
+    
+    private static synchronized ASTNode getShared(TabulationKey key) {
+        if(sharedTables==null) {
+            return null;
+        }
+        ASTNode tab=sharedTables.get(key);
+        return (tab==null) ? null : tab.copy();
+    }
+    
+    private static synchronized void putShared(TabulationKey key, ASTNode table) {
+        if(sharedTables==null || sharedTables.containsKey(key)) {
+            return;
+        }
+        long cells=table.numChildren()-1;
+        if(cells>0) {
+            cells=cells*(table.getChild(1).numChildren()-1);
+        }
+        if(sharedCells+cells<=MAXSHAREDCELLS) {
+            sharedCells+=cells;
+            sharedTables.put(key, table.copy());
+        }
+    }
+    
+    public void saveToCache(TabulationKey node, ASTNode curnode, ASTNode newTable) {
+        // node must be the key of the expression, domains etc. We pass it in because we already
+        // know it.
         
         ASTNode table=newTable.getChildConst(1);
         if(!(table.isMatrixLiteral())) {
@@ -65,61 +105,32 @@ public class TabulationUtils {
             CmdFlags.errorExit("Confused ShortTable");
         }
         
-        eprime.append(table.toString());
         if(diskcache) {
-            pcache.addToCache(node, eprime.toString());
+            pcache.addToCache(node, table);
         }
     }
     
     public class RetPair {
-        public String expstring;
+        public TabulationKey key;
         public NodeReplacement nodereplace;
     }
     
-    private String decorateExpressionString(ASTNode curnode, boolean shorttable, ArrayList<ASTNode> doms) {
-        StringBuilder expbuf = new StringBuilder();
-        
-        if(!shorttable) {
-            expbuf.append("Long|||");
-        }
-        else {
-            expbuf.append("Short|||");
-        }
-        
-        expbuf.append(curnode.toString());
-        for(ASTNode a : doms) {
-            expbuf.append("|||");
-            expbuf.append(a);
-        }
-        
-        return expbuf.toString();
-    }
-    
     public RetPair tryCache(ASTNode curnode, boolean shorttable) {
         ArrayList<ASTNode> varlist = getVariablesOrdered(curnode);
         ArrayList<ASTNode> domains = getDomains(varlist);
         
         RetPair ret = new RetPair();
         
-        ret.expstring = decorateExpressionString(curnode, shorttable, domains);
+        ret.key = TabulationKey.make(curnode, varlist, domains, shorttable);
         
-        String cache = null;
+        ASTNode tab = null;
         if(diskcache) {
-            cache=pcache.findInCache(ret.expstring);
+            tab=pcache.findInCache(ret.key);
         }
-        if(cache != null) {
+        if(tab != null) {
             if(verbose) {
                 System.out.println("Cache match!");
             }
-            EPrimeReader epr = new EPrimeReader(cache, false);
-            ArrayList<ASTNode> parsed = epr.readParameterFile(m);
-            if (verbose) {
-                System.out.println("Cache read!");
-            }
-            ASTNode tab = parsed.get(0).getChild(1);
-            
-            TransformSimplify ts=new TransformSimplify();
-            tab=ts.transform(tab);
             
             tab=m.cmstore.newConstantMatrixDedup(tab);
             
@@ -270,10 +281,29 @@ public class TabulationUtils {
         ArrayList<ASTNode> varlist=getVariablesOrdered(curnode);
         ArrayList<ArrayList<Intpair>> vardoms=getDomainsConcrete(varlist);
         
+        ASTNode tab=makeTupleListLong(curnode, varlist, vardoms, nodelimit);
+        if(tab==null) return null;
+        
+        tab=m.cmstore.newConstantMatrixDedup(tab);
+        
+        return new Table(m, CompoundMatrix.make(varlist), tab);
+    }
+    
+    //  The search part of makeTableLong. Returns the matrix of tuples, or null if
+    //  the node limit is hit. Does not change the model, so it may be run on a 
+    //  worker thread (with its own TabulationUtils) while the model is not changing. 
+    public ASTNode makeTupleListLong(ASTNode curnode, ArrayList<ASTNode> varlist, ArrayList<ArrayList<Intpair>> vardoms, long nodelimit) {
         setupShortSupports(varlist.size());
         
         nodecount=0L;
-        boolean flag=DFSfull(varlist, vardoms, curnode, new ArrayList<Long>(), nodelimit, false, false);
+        TabulationEvaluator ev=compiled ? TabulationEvaluator.compile(curnode, varlist, vardoms) : null;
+        boolean flag;
+        if(ev!=null) {
+            flag=DFSfullCompiled(ev, 0, new long[varlist.size()], new int[varlist.size()], nodelimit, false, false);
+        }
+        else {
+            flag=DFSfull(varlist, vardoms, curnode, new ArrayList<Long>(), nodelimit, false, false);
+        }
         if(verbose && !flag) {
             System.out.println("DFS hit the node limit.");
         }
@@ -287,7 +317,16 @@ public class TabulationUtils {
             shortsups2.add(makeTableTuple(shortsupold));
         }
         
-        ASTNode tab=CompoundMatrix.make(shortsups2);
+        return CompoundMatrix.make(shortsups2);
+    }
+    
+    //  Make a long table for curnode from a matrix of tuples generated by 
+    //  makeTupleListLong for an expression with the same TabulationKey. 
+    public ASTNode tableFromTupleList(ASTNode curnode, ASTNode tab) {
+        TransformQuantifiedExpression tqe=new TransformQuantifiedExpression(m);
+        curnode=tqe.transform(curnode);
+        
+        ArrayList<ASTNode> varlist=getVariablesOrdered(curnode);
         
         tab=m.cmstore.newConstantMatrixDedup(tab);
         
@@ -322,7 +361,14 @@ public class TabulationUtils {
         setupShortSupports(varlist.size());
         
         nodecount=0L;
-        boolean flag=DFSfull(varlist, vardoms, curnode, new ArrayList<Long>(), nodelimit, true, minimising);
+        TabulationEvaluator ev=compiled ? TabulationEvaluator.compile(curnode, varlist, vardoms) : null;
+        boolean flag;
+        if(ev!=null) {
+            flag=DFSfullCompiled(ev, 0, new long[varlist.size()], new int[varlist.size()], nodelimit, true, minimising);
+        }
+        else {
+            flag=DFSfull(varlist, vardoms, curnode, new ArrayList<Long>(), nodelimit, true, minimising);
+        }
         if(verbose && !flag) {
             System.out.println("DFS hit the node limit.");
         }
@@ -365,6 +411,8 @@ public class TabulationUtils {
         
         double coverage=0.0;
         
+        TabulationEvaluator ev=compiled ? TabulationEvaluator.compile(curnode, varlist, vardoms) : null;
+        
         for(int i=0; i<numProbes; i++) {
             
             // Start from n fixed assignments. 
@@ -391,7 +439,17 @@ public class TabulationUtils {
             //System.out.println(assignment);
             
             nodecount=0L;
-            ArrayList<Long> finalAssignment=DFSprobe(varlist, vardoms, curnode, new ArrayList<Long>(), assignment, nodelim);
+            ArrayList<Long> finalAssignment;
+            if(ev!=null) {
+                long[] start=new long[assignment.size()];
+                for(int j=0; j<start.length; j++) {
+                    start[j]=assignment.get(j);
+                }
+                finalAssignment=DFSprobeCompiled(ev, new long[varlist.size()], 0, start, nodelim);
+            }
+            else {
+                finalAssignment=DFSprobe(varlist, vardoms, curnode, new ArrayList<Long>(), assignment, nodelim);
+            }
             if(finalAssignment==null) {
                 //  Reached the end of the search
                 finalAssignment=new ArrayList<Long>();
@@ -508,6 +566,12 @@ public class TabulationUtils {
         return b;
     }
     
+    //  Cache key of an expression that is already normalised. 
+    public TabulationKey makeKey(ASTNode a, boolean shorttable) {
+        ArrayList<ASTNode> varlist=getVariablesOrdered(a);
+        return TabulationKey.make(a, varlist, getDomains(varlist), shorttable);
+    }
+    
     // Normalise method to be used with the persistent cache.
     // Renames variables as a1, a2, a3
     public RetPair tryCacheNormalised(ASTNode b, boolean shorttable) {
@@ -523,20 +587,16 @@ public class TabulationUtils {
         ArrayList<ASTNode> varlist=getVariablesOrdered(a);
         ArrayList<ASTNode> domains=getDomains(varlist);
         
-        for(int i=0; i<varlist.size(); i++) {
-            ReplaceASTNode r=new ReplaceASTNode(varlist.get(i), new Identifier(m, "xxxx_"+i));
-            a=r.transform(a);
-        }
-        
         RetPair ret = new RetPair();
         
-        ret.expstring = decorateExpressionString(a, shorttable, domains);
+        //  Variables are identified by position in varlist, not by name. 
+        ret.key = TabulationKey.make(a, varlist, domains, shorttable);
         
         ////////////////////////////////////////////////////////////////////////
         //
         //   Memory cache lookup
         
-        ASTNode lookupMemCache=memCache.get(ret.expstring);
+        ASTNode lookupMemCache=memCache.get(ret.key);
         if(lookupMemCache != null) {
             assert lookupMemCache instanceof Identifier;  //  Already stored in CM store. 
             if(verbose) {
@@ -553,29 +613,23 @@ public class TabulationUtils {
         
         ////////////////////////////////////////////////////////////////////////
         //
-        //  Disc cache lookup
+        //  Shared (batch mode) and disc cache lookup
         
-        String cache = null;
-        if(diskcache) {
-            cache=pcache.findInCache(ret.expstring);
+        ASTNode tab = getShared(ret.key);
+        if(tab==null && diskcache) {
+            tab=pcache.findInCache(ret.key);
+            if(tab!=null) {
+                putShared(ret.key, tab);
+            }
         }
-        if(cache != null) {
+        if(tab != null) {
             if(verbose) {
                 System.out.println("Cache match!");
             }
-            EPrimeReader epr = new EPrimeReader(cache, false);
-            ArrayList<ASTNode> parsed = epr.readParameterFile(m);
-            if (verbose) {
-                System.out.println("Cache read!");
-            }
-            ASTNode tab = parsed.get(0).getChild(1);
-            
-            TransformSimplify ts=new TransformSimplify();
-            tab=ts.transform(tab);
             
             tab=m.cmstore.newConstantMatrixDedup(tab);
             
-            memCache.put(ret.expstring, tab);
+            memCache.put(ret.key, tab);
             
             if(!shorttable) {
                 ret.nodereplace = new NodeReplacement(new Table(m, CompoundMatrix.make(varlist), tab));
@@ -595,51 +649,44 @@ public class TabulationUtils {
     
     //   Save to cache. curnode MUST be already normalised using the normalise function, 
     //   AND newTable MUST have its columns in the normalised order.
-    public void saveToCacheNormalised(String node, ASTNode curnode, ASTNode newTable) {
+    public void saveToCacheNormalised(TabulationKey node, ASTNode curnode, ASTNode newTable) {
         saveToCacheNormalised(node, curnode, newTable, null);
     }
     
-    public void saveToCacheNormalised(String node, ASTNode curnode, ASTNode newTable, ASTNode auxvar) {
-        // node is the string containing the expression and domains. We pass it in because we already
-        // know it, and it is expensive to recalculate
-        
-        ArrayList<ASTNode> varlist=getVariablesOrdered(curnode);
-        ArrayList<ASTNode> domains=getDomains(varlist);
-        
-        ASTNode a_copy=curnode.copy();
-        
-        for(int i=0; i<varlist.size(); i++) {
-            ReplaceASTNode r=new ReplaceASTNode(varlist.get(i), new Identifier(m, "xxxx_"+i));
-            a_copy=r.transform(a_copy);
-        }
+    public void saveToCacheNormalised(TabulationKey node, ASTNode curnode, ASTNode newTable, ASTNode auxvar) {
+        // node is the key of the expression and domains. We pass it in because we already
+        // know it.
         
         if(node==null) {
-            node = decorateExpressionString(a_copy, (newTable instanceof TableShort), domains);
+            ArrayList<ASTNode> varlist=getVariablesOrdered(curnode);
+            node = TabulationKey.make(curnode, varlist, getDomains(varlist), (newTable instanceof TableShort));
         }
         
-        StringBuilder eprime = new StringBuilder();
-        eprime.append("letting tab" + PersistentCache.getHash(node) + " = ");
-        
         ASTNode table=newTable.getChildConst(1);
         if(!(table.isMatrixLiteral())) {
             System.out.println(table.toString());
             CmdFlags.errorExit("Confused ShortTable");
         }
         
-        eprime.append(table.toString());
         if(diskcache) {
-            pcache.addToCache(node, eprime.toString());
+            pcache.addToCache(node, table);
         }
+        putShared(node, table);
         
         //  Save to memory cache as well. 
         assert newTable.getChild(1) instanceof Identifier;
         memCache.put(node, newTable.getChild(1));
     }
     
-    public void saveToFailCache(String node) {
+    //  Is there a table for this key in the memory cache? 
+    public boolean inMemCache(TabulationKey node) {
+        return memCache.containsKey(node);
+    }
+    
+    public void saveToFailCache(TabulationKey node) {
         failCache.add(node);
     }
-    public boolean tryFailCache(String node) {
+    public boolean tryFailCache(TabulationKey node) {
         return failCache.contains(node);
     }
     
@@ -1477,6 +1524,134 @@ public class TabulationUtils {
         return null;
     }
     
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //    Versions of DFSfull and DFSprobe over a compiled expression. 
+    //    The assignment is held in a long array, with the index of each value
+    //    in its domain in location (used for the progress check). 
+    
+    private boolean DFSfullCompiled(TabulationEvaluator ev, int depth, long[] assignment, int[] location, long nodelimit, boolean dominance, boolean minimising) {
+        nodecount++;
+        long[][] vals=ev.vals;
+        int numvars=vals.length;
+        
+        // Check if sufficient progress is being made through the state space.
+        if(nodecount==1000 || (nodecount%10000)==0) {
+            // How far through the assignment space is it? Unassigned variables take their smallest value. 
+            double an=(depth>0) ? location[0] : 0;
+            double finalan=vals[0].length-1;
+            for(int i=1; i<numvars; i++) {
+                an = an*vals[i].length + ((i<depth) ? location[i] : 0);
+                finalan = finalan*vals[i].length + (vals[i].length-1);
+            }
+            
+            double prop=(an*nodelimit)/(finalan*nodecount);
+            
+            if(prop<3.0) {
+                //  Bail out.
+                System.out.println("Failed progress check at node: "+nodecount);
+                return false;
+            }
+        }
+        
+        if(nodecount>nodelimit) {
+            if(verbose) {
+                System.out.println("DFSfull hit node limit");
+            }
+            return false;
+        }
+        
+        int status=ev.check();
+        if(status==1 && depth==numvars) {
+            // Copy the current assignment into shortsups.
+            ArrayList<Long> sup=new ArrayList<Long>(numvars);
+            for(int i=0; i<numvars; i++) {
+                sup.add(assignment[i]);
+            }
+            shortsups.add(sup);
+            return true;
+        }
+        else if(status==0) {
+            return true;
+        }
+        // When the expression evaluates to true but assignment is not long enough, continue forwardtracking.
+        
+        long[] dom=vals[depth];
+        
+        if(!dominance || depth<numvars-1) {
+            ///  Not using dominance, or not the last variable. 
+            for(int i=0; i<dom.length; i++) {
+                assignment[depth]=dom[i];
+                location[depth]=i;
+                ev.assign(depth, dom[i]);
+                boolean flag=DFSfullCompiled(ev, depth+1, assignment, location, nodelimit, dominance, minimising);
+                ev.unassign();
+                if(!flag) return false;
+            }
+        }
+        else {
+            ///  Last variable, take least value when minimising, greatest value when maximising. 
+            int suplistlength=shortsups.size();  // Store length of support list
+            for(int j=0; j<dom.length; j++) {
+                int i=minimising ? j : dom.length-1-j;
+                assignment[depth]=dom[i];
+                location[depth]=i;
+                ev.assign(depth, dom[i]);
+                boolean flag=DFSfullCompiled(ev, depth+1, assignment, location, nodelimit, dominance, minimising);
+                ev.unassign();
+                if(!flag) return false;
+                if(shortsups.size()>suplistlength) {
+                    return true;  //   The rest of the values must be dominated by this one. 
+                }
+            }
+        }
+        return true;
+    }
+    
+    private ArrayList<Long> DFSprobeCompiled(TabulationEvaluator ev, long[] assignment, int depth, long[] startAssignment, long nodelimit) {
+        nodecount++;
+        long[][] vals=ev.vals;
+        
+        if(nodecount>nodelimit) {
+            ArrayList<Long> probeFinalAssignment=new ArrayList<Long>(vals.length);
+            for(int i=0; i<depth; i++) {
+                probeFinalAssignment.add(assignment[i]);
+            }
+            // Fill in with smallest value for each remaining variable.  
+            for(int i=depth; i<vals.length; i++) {
+                probeFinalAssignment.add(vals[i][0]);
+            }
+            return probeFinalAssignment;
+        }
+        
+        int status=ev.check();
+        if(status==0 || (status==1 && depth==vals.length)) {
+            return null;  // continue search
+        }
+        
+        //  Check if still setting up initial assignment. 
+        boolean checkDive=true;
+        for(int i=depth-1; i>=0; i--) {
+            if(assignment[i]!=startAssignment[i]) {
+                checkDive=false;
+                break;
+            }
+        }
+        
+        long[] dom=vals[depth];
+        for(int i=0; i<dom.length; i++) {
+            if(checkDive && dom[i]<startAssignment[depth]) {
+                continue;
+            }
+            assignment[depth]=dom[i];
+            ev.assign(depth, dom[i]);
+            ArrayList<Long> ret=DFSprobeCompiled(ev, assignment, depth+1, startAssignment, nodelimit);
+            ev.unassign();
+            if(ret!=null) return ret;
+        }
+        return null;
+    }
+    
     public static ASTNode makeTableTuple(ArrayList<Long> tup) {
         // Temporary solution -- check here if values fit in a byte. 
         boolean bytefit=true;
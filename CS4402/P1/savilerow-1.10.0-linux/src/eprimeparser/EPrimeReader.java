@@ -474,12 +474,12 @@ public final class EPrimeReader {
             // Optimisation -- first try the quick parser for big matrices of ints
             ASTNode eq = null;
 
-            try {
-                tokens.mark("quick");
-                eq = readQuickConstantMatrixNotDeref();
-                tokens.eraseMark("quick");
-            } catch (EPrimeSyntaxException e1) {
+            tokens.mark("quick");
+            eq = readQuickConstantMatrixNotDeref();
+            if (eq == null) {
                 tokens.reset("quick");
+            } else {
+                tokens.eraseMark("quick");
             }
 
             if (eq == null) {
@@ -826,7 +826,7 @@ public final class EPrimeReader {
                 tokens.eraseMark();
             } catch (EPrimeSyntaxException e2) {
                 tokens.reset();
-                throw new EPrimeSyntaxException("Expected objective, found: "+tokens.token);
+                throw new EPrimeSyntaxException("Expected objective, found: "+tokens.token());
             }
         }
         if (VB_MTDS) {
@@ -1813,26 +1813,18 @@ public final class EPrimeReader {
     ////////////////////////////////////////////////////////////////////////////// 
     // 
     // Optimisation -- reading large matrices of numbers typically in a letting.
-    // Fails if it is anything other than a matrix of numbers.
-    // Also fails if the matrix is followed by a "[" because this case should
-    // be read somewhere else.
+    // Returns null if it is anything other than a matrix of numbers (or 
+    // booleans), or if the matrix is followed by a "[" because this case should
+    // be read somewhere else. Uses one character of lookahead rather than 
+    // marks and exceptions, so the caller must reset the tokenizer on null.
 
     private ASTNode readQuickConstantMatrixNotDeref() throws EPrimeSyntaxException {
 
         ASTNode m = readQuickConstantMatrix();
 
         // check there is no "[" following.
-        tokens.mark("brac");
-        boolean flag = false;
-        try {
-            readTerminalString("[");
-            flag = true;
-        } catch (EPrimeSyntaxException e) { }
-
-        tokens.reset("brac");
-
-        if (flag) {
-            throw new EPrimeSyntaxException("Expected simple matrix, found matrix deref");
+        if (m == null || tokens.peek() == '[') {
+            return null;
         } else {
             return m;
         }
@@ -1840,43 +1832,60 @@ public final class EPrimeReader {
 
     private ASTNode readQuickConstantMatrix() throws EPrimeSyntaxException {
         // read some number of [
-        readTerminalString("[");
+        if (tokens.peek() != '[') {
+            return null;
+        }
+        tokens.nextToken();
 
         ArrayList<ASTNode> l = new ArrayList<ASTNode>();
         while (true) {
 
-            // read a nested matrix or an integer.
-            try {
-                tokens.mark();
-                long a = readPositiveInt();
-                tokens.eraseMark();
-                l.add(NumberConstant.make(a));
-
-            } catch (EPrimeSyntaxException e2) {
-                tokens.reset();
-                try {
-                    tokens.mark("nested");
-                    ASTNode a = readQuickConstantMatrix();
-                    tokens.eraseMark("nested");
-                    l.add(a);
-                } catch (EPrimeSyntaxException e3) {
-                    tokens.reset("nested");
-                    break;
+            // read a nested matrix or a constant.
+            int c = tokens.peek();
+            if (c >= '0' && c <= '9') {
+                tokens.nextToken();
+                l.add(NumberConstant.make(tokens.intToken));
+            } else if (c == '-') {
+                tokens.nextToken();
+                c = tokens.peek();
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+                tokens.nextToken();
+                l.add(NumberConstant.make(-tokens.intToken));
+            } else if (c == 't' || c == 'f') {
+                tokens.nextToken();
+                if (tokens.tokenType != EPrimeTokenizer.TT_WORD) {
+                    return null;
+                }
+                if (tokens.wordToken.equals("true")) {
+                    l.add(new BooleanConstant(true));
+                } else if (tokens.wordToken.equals("false")) {
+                    l.add(new BooleanConstant(false));
+                } else {
+                    return null;
+                }
+            } else if (c == '[') {
+                ASTNode a = readQuickConstantMatrix();
+                if (a == null) {
+                    return null;
                 }
+                l.add(a);
+            } else {
+                break;
             }
 
             // read a comma
-            try {
-                tokens.mark();
-                readTerminalString(",");
-                tokens.eraseMark();
-            } catch (EPrimeSyntaxException e2) {
-                tokens.reset();
+            if (tokens.peek() != ',') {
                 break;
             }
+            tokens.nextToken();
         }
 
-        readTerminalString("]");
+        if (tokens.peek() != ']') {
+            return null;
+        }
+        tokens.nextToken();
         // Compound Matrices are indexed from 1 by default.
         return CompoundMatrix.make(l);
     }
@@ -1961,13 +1970,13 @@ public final class EPrimeReader {
     private ASTNode readBinOp() throws EPrimeSyntaxException {
         tokens.nextToken();
         if (tokens.tokenType != EPrimeTokenizer.TT_WORD && tokens.tokenType != EPrimeTokenizer.TT_OTHER) {
-            throw new EPrimeSyntaxException("Expected binary operator, found: "+tokens.token);
+            throw new EPrimeSyntaxException("Expected binary operator, found: "+tokens.token());
         }
         
-        if (!binops.contains(tokens.token)) {
-            throw new EPrimeSyntaxException("Expected binary operator, found: "+tokens.token);
+        if (!binops.contains(tokens.token())) {
+            throw new EPrimeSyntaxException("Expected binary operator, found: "+tokens.token());
         }
-        return new BinOpPlaceholder(tokens.token);
+        return new BinOpPlaceholder(tokens.token());
     }
     
     // Identifiers %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
@@ -2210,24 +2219,15 @@ public final class EPrimeReader {
         if (VB_MTDS) {
             System.out.println("attempting to read constant");
         }
-        try {
-            tokens.mark();
-            long a = readPositiveInt();
-            tokens.eraseMark();
-            return NumberConstant.make(a);
-        } catch (EPrimeSyntaxException e1) {
-            tokens.reset();
-            try {
-                tokens.mark();
-                readTerminalString("true");
-                tokens.eraseMark();
-                return new BooleanConstant(true);
-            } catch (EPrimeSyntaxException e2) {
-                tokens.reset();
-                readTerminalString("false");
-                return new BooleanConstant(false);
-            }
+        int c = tokens.peek();
+        if (c >= '0' && c <= '9') {
+            return NumberConstant.make(readPositiveInt());
         }
+        if (tryReadTerminalString("true")) {
+            return new BooleanConstant(true);
+        }
+        readTerminalString("false");
+        return new BooleanConstant(false);
         // if (VB_MTDS) System.out.println("constant read successfully") ;
     }
     
@@ -2257,12 +2257,17 @@ public final class EPrimeReader {
     ==================================================================== */
     
     private boolean tryReadTerminalString(String t) {
+        tokens.mark("trts");
         try {
-            tokens.mark("trts");
-            readTerminalString(t);
+            tokens.nextToken();
+        } catch (EPrimeSyntaxException e1) {
+            tokens.reset("trts");
+            return false;
+        }
+        if (isTerminalString(t)) {
             tokens.eraseMark("trts");
             return true;
-        } catch (EPrimeSyntaxException e1) {
+        } else {
             tokens.reset("trts");
             return false;
         }
@@ -2273,13 +2278,7 @@ public final class EPrimeReader {
             System.out.println("Attempting to read Terminal: " + terminal);
         }
         tokens.nextToken();
-        if ((tokens.tokenType != EPrimeTokenizer.TT_WORD) && (tokens.tokenType != EPrimeTokenizer.TT_OTHER)) {
-            throw new EPrimeSyntaxException("Expected "+terminal+", found "+tokens.toString());
-        }
-        if ((tokens.tokenType == EPrimeTokenizer.TT_WORD) && (!tokens.wordToken.equals(terminal))) {
-            throw new EPrimeSyntaxException("Expected "+terminal+", found "+tokens.toString());
-        }
-        if ((tokens.tokenType == EPrimeTokenizer.TT_OTHER) && (!tokens.otherToken.equals(terminal))) {
+        if (!isTerminalString(terminal)) {
             throw new EPrimeSyntaxException("Expected "+terminal+", found "+tokens.toString());
         }
         if (VB_MTDS) {
@@ -2287,6 +2286,17 @@ public final class EPrimeReader {
         }
     }
     
+    //  Is the current token the given terminal? 
+    private boolean isTerminalString(String terminal) {
+        if (tokens.tokenType == EPrimeTokenizer.TT_WORD) {
+            return tokens.wordToken.equals(terminal);
+        }
+        if (tokens.tokenType == EPrimeTokenizer.TT_OTHER) {
+            return tokens.otherToken.equals(terminal);
+        }
+        return false;
+    }
+    
     //  Read a given terminal string containing a prime character.
     private void readTerminalStringPrime(String terminal) throws EPrimeSyntaxException {
         if (VB_MTDS) {
@@ -35,5 +35,12 @@ public class EPrimeSyntaxException extends Exception {
   	super(error) ;
   }
   
+  // The parser backtracks by throwing and catching these, so filling in the
+  // stack trace is skipped; only the message is ever reported.
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this ;
+  }
+  
   private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -46,7 +46,9 @@ public final class EPrimeTokenizer {
     public String wordToken;
     public String otherToken;
     public long intToken;
-    public String token;   //  Any token type stored here. 
+    private String token;   //  Any token type stored here. Built on demand for TT_INT.
+    private int intStart;   //  Position of the digits of the last TT_INT token.
+    private int intEnd;
     
     // Switches for verbose operation
     static final boolean VB_TOKENS = false;
@@ -58,25 +60,22 @@ public final class EPrimeTokenizer {
         if(isfilename) {
             // Treat fn as a file name
             File f = new File(fn);
-            ln = (int) f.length();
+            int flen = (int) f.length();
             if (VB_TOKENS) {
-                System.out.println("Reading " + fn + ", " + ln + " chars");
+                System.out.println("Reading " + fn + ", " + flen + " bytes");
             }
-            file = new char[ln];
+            byte[] bytes = new byte[flen];
+            int numread = 0;
             try {
-                FileReader fr = new FileReader(fn);
-                int numread = fr.read(file,0, ln);            // NOT WORKING PROPERLY IN GCJ
-                
-                /*   Use this code for GCJ:
-                int numread=0;
-                int tmp=fr.read();
-                while(tmp!=-1) {
-                    file[numread]=(char)tmp;
-                    numread++;
-                    tmp=fr.read();
-                }*/
-                
-                fr.close();
+                FileInputStream fis = new FileInputStream(fn);
+                while (numread < flen) {
+                    int r = fis.read(bytes, numread, flen - numread);
+                    if (r < 0) {
+                        break;
+                    }
+                    numread += r;
+                }
+                fis.close();
             }
             catch (FileNotFoundException e) {
                 CmdFlags.errorExit("File not found: "+fn);
@@ -84,15 +83,33 @@ public final class EPrimeTokenizer {
             catch (IOException e) {
                 CmdFlags.errorExit("Unable to read file: "+fn); 
             }
+            
+            // Plain ASCII (the usual case for large parameter files) is widened
+            // byte by byte. Anything else is decoded with the default charset
+            // as FileReader would.
+            boolean ascii = true;
+            for (int i = 0; i < numread; i++) {
+                if (bytes[i] < 0) {
+                    ascii = false;
+                    break;
+                }
+            }
+            if (ascii) {
+                ln = numread;
+                file = new char[ln];
+                for (int i = 0; i < ln; i++) {
+                    file[i] = (char) bytes[i];
+                }
+            }
+            else {
+                file = new String(bytes, 0, numread).toCharArray();
+                ln = file.length;
+            }
         }
         else {
             // Treat fn as the E' to be parsed
-            ln = fn.length();
-            file = new char[ln];
-            
-            for (int i =0; i < ln; i++) {
-                file[i] = fn.charAt(i);
-            }
+            file = fn.toCharArray();
+            ln = file.length;
         }
         
         if (VB_TOKENS) {
@@ -173,6 +190,40 @@ public final class EPrimeTokenizer {
         }
     }
 
+    /* ====================================================================
+     token()
+     Text of the current token, whatever its type.
+    ==================================================================== */
+    public String token() {
+        if (token == null) {
+            token = new String(file, intStart, intEnd - intStart);
+        }
+        return token;
+    }
+    
+    /* ====================================================================
+     peek()
+     First character of the next token, without consuming anything. 
+     Returns -1 at EOF. Lets the parser choose a production from one 
+     character of lookahead instead of trying each one under a mark.
+    ==================================================================== */
+    public int peek() {
+        int i = idx;
+        while (i < ln) {
+            char c = file[i];
+            if (c == '$') {
+                while (i < ln && file[i] != '\n' && file[i] != '\r') {
+                    i++;
+                }
+            } else if (c > ' ') {
+                return c;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+    
     /* ====================================================================
      lineNumber()
      Find the line and column numbers of the current position in the file.
@@ -242,7 +293,7 @@ public final class EPrimeTokenizer {
      character is a-z or A-Z)
     ==================================================================== */
     private void nextWordToken() {
-        StringBuilder result = new StringBuilder();
+        int start = idx;
         boolean prime=false; // Does it contain a prime?
         for(; idx<ln && (
             ((file[idx] >= '0') && (file[idx] <= '9')) ||
@@ -252,12 +303,11 @@ public final class EPrimeTokenizer {
             (file[idx] == '\'') );
             idx++)
         {
-            result.append(file[idx]);
             if(file[idx]=='\'') {
                 prime=true;
             }
         }
-        wordToken = result.toString();
+        wordToken = new String(file, start, idx - start);
         token=wordToken;
         if(!prime) {
             //  Conventional word
@@ -279,19 +329,26 @@ public final class EPrimeTokenizer {
      Also assumes that, if -ve, we have at least 2 chars.
     ==================================================================== */
     private void nextIntToken() {
-        StringBuilder result = new StringBuilder();
+        // Accumulate the value in place; the token text is only built if asked for. 
+        intStart = idx;
+        long val = 0;
+        boolean overflow = false;
         for(; idx<ln && (file[idx] >= '0') && (file[idx] <= '9'); idx++) {
-            result.append(file[idx]);
-        }
-        try {
-            token=result.toString();
-            intToken = Long.parseLong(result.toString());
-            tokenType = TT_INT;
-            if (VB_TOKENS) {
-                System.out.println(toString());
+            int d = file[idx] - '0';
+            if (val > (Long.MAX_VALUE - d) / 10) {
+                overflow = true;
             }
-        } catch (NumberFormatException e) {
-            CmdFlags.errorExit("Number exceeds 64-bit integer range: "+result.toString());
+            val = val * 10 + d;
+        }
+        intEnd = idx;
+        token = null;
+        if (overflow) {
+            CmdFlags.errorExit("Number exceeds 64-bit integer range: "+token());
+        }
+        intToken = val;
+        tokenType = TT_INT;
+        if (VB_TOKENS) {
+            System.out.println(toString());
         }
     }
     
@@ -0,0 +1,663 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Loads parameter files that are not Essence Prime text, bypassing the
+// tokenizer. Two formats are recognised from the first bytes of the file: 
+//
+// JSON, as written by -param-to-json: an object mapping each parameter name 
+// to an integer, true/false, or (nested) arrays of these. 
+//
+// Binary, as written by -param-to-binary (all values big-endian):
+//   "SRPB"  int version  int count
+//   then for each parameter:
+//   int namelength  name (UTF-8)  byte kind
+//     kind 0 (int):       long value
+//     kind 1 (bool):      byte value
+//     kind 2/3 (int/bool matrix):  int dims  dims*(int lower, int length)
+//                         byte width (1,2,4 or 8)  values in row-major order
+//
+// The file is memory-mapped and numbers are read straight into primitive 
+// arrays before the matrix literals are built, so there is no intermediate 
+// text or token for each entry. Matrix literals are built exactly as the E' 
+// parser builds them (CompoundMatrix indexed from 1, or from the stored lower 
+// bound in the binary format).
+
+public final class FastParamReader {
+    
+    private static final byte[] MAGIC = {'S', 'R', 'P', 'B'};
+    private static final int VERSION = 1;
+    
+    private static final byte KIND_INT = 0;
+    private static final byte KIND_BOOL = 1;
+    private static final byte KIND_INT_MATRIX = 2;
+    private static final byte KIND_BOOL_MATRIX = 3;
+    
+    private final String fn;
+    private final Model m;
+    private ByteBuffer buf;
+    private int pos;
+    
+    private FastParamReader(String _fn, Model _m) {
+        fn=_fn;
+        m=_m;
+    }
+    
+    /* ====================================================================
+     readParameterFile()
+     Reads a parameter file in any supported format. 
+    ==================================================================== */
+    public static ArrayList<ASTNode> readParameterFile(String fn, Model m) {
+        int first=firstByte(fn);
+        if(first=='{' || first==MAGIC[0]) {
+            FastParamReader r=new FastParamReader(fn, m);
+            r.map();
+            if(first=='{') {
+                return r.readJSON();
+            }
+            else if(r.isBinary()) {
+                return r.readBinary();
+            }
+        }
+        EPrimeReader reader = new EPrimeReader(fn, true);
+        return reader.readParameterFile(m);
+    }
+    
+    //  First non-whitespace byte of the file, or -1.
+    private static int firstByte(String fn) {
+        try {
+            InputStream in=new BufferedInputStream(new FileInputStream(fn));
+            try {
+                int c=in.read();
+                while(c==' ' || c=='\t' || c=='\n' || c=='\r') {
+                    c=in.read();
+                }
+                return c;
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch(FileNotFoundException e) {
+            CmdFlags.errorExit("File not found: "+fn);
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("Unable to read file: "+fn);
+        }
+        return -1;
+    }
+    
+    private void map() {
+        try {
+            RandomAccessFile raf=new RandomAccessFile(fn, "r");
+            try {
+                FileChannel ch=raf.getChannel();
+                // The mapping stays valid after the channel is closed.
+                buf=ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+            finally {
+                raf.close();
+            }
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("Unable to read file: "+fn);
+        }
+        pos=0;
+    }
+    
+    private void error(String msg) {
+        CmdFlags.errorExit("Failed to read parameter file "+fn+" at byte "+pos+": "+msg);
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //   JSON
+    
+    private ArrayList<ASTNode> readJSON() {
+        ArrayList<ASTNode> paramlist=new ArrayList<ASTNode>();
+        expect('{');
+        if(peek()=='}') {
+            pos++;
+        }
+        else {
+            while(true) {
+                String name=readString();
+                expect(':');
+                paramlist.add(new Letting(new Identifier(m, name), readValue()));
+                int c=peek();
+                pos++;
+                if(c=='}') {
+                    break;
+                }
+                if(c!=',') {
+                    pos--;
+                    error("expected , or }");
+                }
+            }
+        }
+        if(peek()!=-1) {
+            error("unexpected text after end of object");
+        }
+        return paramlist;
+    }
+    
+    //  Skip whitespace and return the next byte without consuming it, or -1 at the end. 
+    private int peek() {
+        int lim=buf.limit();
+        while(pos<lim) {
+            byte c=buf.get(pos);
+            if(c!=' ' && c!='\t' && c!='\n' && c!='\r') {
+                return c;
+            }
+            pos++;
+        }
+        return -1;
+    }
+    
+    private void expect(char c) {
+        if(peek()!=c) {
+            error("expected "+c);
+        }
+        pos++;
+    }
+    
+    private String readString() {
+        expect('"');
+        int start=pos;
+        int lim=buf.limit();
+        while(pos<lim && buf.get(pos)!='"') {
+            if(buf.get(pos)=='\\') {
+                error("escapes are not allowed in parameter names");
+            }
+            pos++;
+        }
+        if(pos>=lim) {
+            error("unterminated string");
+        }
+        byte[] b=new byte[pos-start];
+        for(int i=0; i<b.length; i++) {
+            b[i]=buf.get(start+i);
+        }
+        pos++;
+        return new String(b, StandardCharsets.UTF_8);
+    }
+    
+    private ASTNode readValue() {
+        int c=peek();
+        if(c=='[') {
+            return readArray();
+        }
+        else if(c=='-' || (c>='0' && c<='9')) {
+            return NumberConstant.make(readLong());
+        }
+        else if(matchWord("true")) {
+            return new BooleanConstant(true);
+        }
+        else if(matchWord("false")) {
+            return new BooleanConstant(false);
+        }
+        error("expected a number, true, false or an array");
+        return null;
+    }
+    
+    private boolean matchWord(String w) {
+        if(pos+w.length()>buf.limit()) {
+            return false;
+        }
+        for(int i=0; i<w.length(); i++) {
+            if(buf.get(pos+i)!=w.charAt(i)) {
+                return false;
+            }
+        }
+        pos+=w.length();
+        return true;
+    }
+    
+    //  Scans the digits in place. 
+    private long readLong() {
+        boolean neg=false;
+        if(buf.get(pos)=='-') {
+            neg=true;
+            pos++;
+        }
+        int start=pos;
+        int lim=buf.limit();
+        long val=0;
+        while(pos<lim) {
+            int d=buf.get(pos)-'0';
+            if(d<0 || d>9) {
+                break;
+            }
+            // Accumulate negatively so that Long.MIN_VALUE can be read.
+            if(val < (Long.MIN_VALUE+d)/10) {
+                error("number exceeds 64-bit integer range");
+            }
+            val=val*10-d;
+            pos++;
+        }
+        if(pos==start) {
+            error("expected digits");
+        }
+        if(!neg) {
+            if(val==Long.MIN_VALUE) {
+                error("number exceeds 64-bit integer range");
+            }
+            val=-val;
+        }
+        return val;
+    }
+    
+    //  A run of plain integers is collected into a long[] first; anything 
+    //  else (booleans, nested arrays) is read element by element. 
+    private ASTNode readArray() {
+        expect('[');
+        ArrayList<ASTNode> l=new ArrayList<ASTNode>();
+        if(peek()==']') {
+            pos++;
+            return CompoundMatrix.make(l);
+        }
+        long[] ints=new long[16];
+        int numints=0;
+        boolean allints=true;
+        while(true) {
+            int c=peek();
+            if(allints && (c=='-' || (c>='0' && c<='9'))) {
+                if(numints==ints.length) {
+                    ints=Arrays.copyOf(ints, ints.length*2);
+                }
+                ints[numints++]=readLong();
+            }
+            else {
+                if(allints) {
+                    allints=false;
+                    for(int i=0; i<numints; i++) {
+                        l.add(NumberConstant.make(ints[i]));
+                    }
+                }
+                l.add(readValue());
+            }
+            c=peek();
+            pos++;
+            if(c==']') {
+                break;
+            }
+            if(c!=',') {
+                pos--;
+                error("expected , or ]");
+            }
+        }
+        if(allints) {
+            l.ensureCapacity(numints);
+            for(int i=0; i<numints; i++) {
+                l.add(NumberConstant.make(ints[i]));
+            }
+        }
+        return CompoundMatrix.make(l);
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //   Binary
+    
+    private boolean isBinary() {
+        if(buf.limit()<MAGIC.length) {
+            return false;
+        }
+        for(int i=0; i<MAGIC.length; i++) {
+            if(buf.get(i)!=MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private ArrayList<ASTNode> readBinary() {
+        try {
+            buf.order(ByteOrder.BIG_ENDIAN);
+            pos=MAGIC.length;
+            buf.position(pos);
+            int version=buf.getInt();
+            if(version!=VERSION) {
+                error("unsupported binary parameter format version "+version);
+            }
+            int count=buf.getInt();
+            ArrayList<ASTNode> paramlist=new ArrayList<ASTNode>(count);
+            for(int p=0; p<count; p++) {
+                byte[] nam=new byte[buf.getInt()];
+                buf.get(nam);
+                String name=new String(nam, StandardCharsets.UTF_8);
+                
+                byte kind=buf.get();
+                ASTNode val;
+                if(kind==KIND_INT) {
+                    val=NumberConstant.make(buf.getLong());
+                }
+                else if(kind==KIND_BOOL) {
+                    val=new BooleanConstant(buf.get()!=0);
+                }
+                else if(kind==KIND_INT_MATRIX || kind==KIND_BOOL_MATRIX) {
+                    int dims=buf.getInt();
+                    int[] lower=new int[dims];
+                    int[] len=new int[dims];
+                    long total=1;
+                    for(int i=0; i<dims; i++) {
+                        lower[i]=buf.getInt();
+                        len[i]=buf.getInt();
+                        total=total*len[i];
+                    }
+                    long[] values=readValues(buf.get(), total);
+                    val=buildMatrix(values, lower, len, 0, 0, kind==KIND_BOOL_MATRIX);
+                }
+                else {
+                    pos=buf.position();
+                    error("unknown parameter kind "+kind);
+                    return null;
+                }
+                paramlist.add(new Letting(new Identifier(m, name), val));
+            }
+            pos=buf.position();
+            if(buf.hasRemaining()) {
+                error("unexpected data after last parameter");
+            }
+            return paramlist;
+        }
+        catch(BufferUnderflowException e) {
+            pos=buf.position();
+            error("file is truncated");
+            return null;
+        }
+    }
+    
+    private long[] readValues(byte width, long total) {
+        if(total>Integer.MAX_VALUE) {
+            error("matrix too large");
+        }
+        long[] values=new long[(int) total];
+        if(width==1) {
+            for(int i=0; i<values.length; i++) values[i]=buf.get();
+        }
+        else if(width==2) {
+            ShortBuffer sb=buf.asShortBuffer();
+            for(int i=0; i<values.length; i++) values[i]=sb.get(i);
+            buf.position(buf.position()+2*values.length);
+        }
+        else if(width==4) {
+            IntBuffer ib=buf.asIntBuffer();
+            for(int i=0; i<values.length; i++) values[i]=ib.get(i);
+            buf.position(buf.position()+4*values.length);
+        }
+        else if(width==8) {
+            LongBuffer lb=buf.asLongBuffer();
+            for(int i=0; i<values.length; i++) values[i]=lb.get(i);
+            buf.position(buf.position()+8*values.length);
+        }
+        else {
+            pos=buf.position();
+            error("unsupported value width "+width);
+        }
+        return values;
+    }
+    
+    //  Build the sub-matrix at dimension d starting at offset off in values. 
+    private static ASTNode buildMatrix(long[] values, int[] lower, int[] len, int d, int off, boolean bool) {
+        ArrayList<ASTNode> l=new ArrayList<ASTNode>(len[d]);
+        if(d==len.length-1) {
+            for(int i=0; i<len[d]; i++) {
+                long v=values[off+i];
+                l.add(bool ? new BooleanConstant(v!=0) : NumberConstant.make(v));
+            }
+        }
+        else {
+            int stride=1;
+            for(int i=d+1; i<len.length; i++) {
+                stride=stride*len[i];
+            }
+            for(int i=0; i<len[d]; i++) {
+                l.add(buildMatrix(values, lower, len, d+1, off+i*stride, bool));
+            }
+        }
+        if(l.size()==0 || lower[d]==1) {
+            return CompoundMatrix.make(l);
+        }
+        return CompoundMatrix.make(new IntegerDomain(new Range(NumberConstant.make(lower[d]), NumberConstant.make(lower[d]+len[d]-1))), l, bool);
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //   Writers
+    
+    //  Parameter values as the E' parser leaves them may be constant 
+    //  expressions rather than constants; -3 is UnaryMinus(3), for example.
+    public static ASTNode constantValue(ASTNode a) {
+        TransformSimplify ts=new TransformSimplify();
+        return ts.transform(a.copy());
+    }
+    
+    /* ====================================================================
+     writeJSON()
+     Writes the parameters as a JSON object. Matrix index domains are not
+     written; the reader indexes matrices from 1. 
+    ==================================================================== */
+    public static void writeJSON(ArrayList<ASTNode> parameters, String outfile) {
+        //  Build the whole text first so that nothing is written if a
+        //  parameter cannot be represented. 
+        StringBuilder o=new StringBuilder();
+        o.append("{\n");
+        for(int i=0; i< parameters.size(); i++) {
+            String name=parameters.get(i).getChild(0).toString();
+            o.append("\"");
+            o.append(name);
+            o.append("\" : ");
+            ASTNode a=constantValue(parameters.get(i).getChild(1));
+            if(a instanceof BooleanConstant || a instanceof NumberConstant) {
+                o.append(a.toString());
+            }
+            else if(a instanceof EmptyMatrix) {
+                o.append("[ ]");
+            }
+            else if(a instanceof CompoundMatrix && isConstantMatrix(a)) {
+                o.append(((CompoundMatrix)a).toStringSimpleMatrix());
+            }
+            else {
+                CmdFlags.errorExit("Cannot write parameter "+name+" as JSON: it is not an integer, boolean or matrix of these.");
+            }
+            if(i<parameters.size()-1) {
+                o.append(",");
+            }
+            o.append("\n");
+        }
+        o.append("}\n");
+        
+        try {
+            BufferedWriter w=new BufferedWriter(new FileWriter(outfile));
+            w.write(o.toString());
+            w.close();
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("Unable to write file: "+outfile);
+        }
+    }
+    
+    private static boolean isConstantMatrix(ASTNode a) {
+        if(a instanceof CompoundMatrix) {
+            for(int i=1; i<a.numChildren(); i++) {
+                if(!isConstantMatrix(a.getChild(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return a instanceof NumberConstant || a instanceof BooleanConstant || a instanceof EmptyMatrix;
+    }
+    
+    //  One parameter, checked and flattened, ready to be written. 
+    private static class BinaryParam {
+        byte[] name;
+        byte kind;
+        long value;       //  For scalars.
+        ArrayList<Intpair> shape;
+        long[] values;
+        int num;
+    }
+    
+    /* ====================================================================
+     writeBinary()
+     Writes the parameters in the binary format read above. Every parameter
+     must be an integer, a boolean, or a regular matrix of one of these with 
+     contiguous index domains. All are checked before the file is created.
+    ==================================================================== */
+    public static void writeBinary(ArrayList<ASTNode> parameters, String outfile) {
+        ArrayList<BinaryParam> bps=new ArrayList<BinaryParam>();
+        for(ASTNode param : parameters) {
+            String name=param.getChild(0).toString();
+            BinaryParam bp=new BinaryParam();
+            bp.name=name.getBytes(StandardCharsets.UTF_8);
+            
+            ASTNode a=constantValue(param.getChild(1));
+            if(a instanceof NumberConstant) {
+                bp.kind=KIND_INT;
+                bp.value=a.getValue();
+            }
+            else if(a instanceof BooleanConstant) {
+                bp.kind=KIND_BOOL;
+                bp.value=a.getValue();
+            }
+            else if(a instanceof CompoundMatrix || a instanceof EmptyMatrix) {
+                bp.shape=new ArrayList<Intpair>();
+                matrixShape(a, bp.shape);
+                int[] num=new int[1];
+                boolean[] kinds=new boolean[2];   //  Seen integer, seen boolean.
+                bp.values=flatten(a, bp.shape, 0, new long[16], num, kinds, name);
+                bp.num=num[0];
+                if(kinds[0] && kinds[1]) {
+                    CmdFlags.errorExit("Cannot write parameter "+name+" in binary format: it mixes integers and booleans.");
+                }
+                bp.kind=kinds[1] ? KIND_BOOL_MATRIX : KIND_INT_MATRIX;
+            }
+            else {
+                CmdFlags.errorExit("Cannot write parameter "+name+" in binary format: it is not an integer, boolean or matrix.");
+            }
+            bps.add(bp);
+        }
+        
+        try {
+            DataOutputStream o=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outfile)));
+            o.write(MAGIC);
+            o.writeInt(VERSION);
+            o.writeInt(bps.size());
+            for(BinaryParam bp : bps) {
+                o.writeInt(bp.name.length);
+                o.write(bp.name);
+                o.writeByte(bp.kind);
+                if(bp.kind==KIND_INT) {
+                    o.writeLong(bp.value);
+                }
+                else if(bp.kind==KIND_BOOL) {
+                    o.writeByte((int) bp.value);
+                }
+                else {
+                    o.writeInt(bp.shape.size());
+                    for(Intpair p : bp.shape) {
+                        o.writeInt((int) p.lower);
+                        o.writeInt((int) p.upper);
+                    }
+                    long lo=0;
+                    long hi=0;
+                    for(int i=0; i<bp.num; i++) {
+                        lo=Math.min(lo, bp.values[i]);
+                        hi=Math.max(hi, bp.values[i]);
+                    }
+                    int width=(lo>=Byte.MIN_VALUE && hi<=Byte.MAX_VALUE) ? 1 :
+                        (lo>=Short.MIN_VALUE && hi<=Short.MAX_VALUE) ? 2 :
+                        (lo>=Integer.MIN_VALUE && hi<=Integer.MAX_VALUE) ? 4 : 8;
+                    o.writeByte(width);
+                    for(int i=0; i<bp.num; i++) {
+                        if(width==1) o.writeByte((int) bp.values[i]);
+                        else if(width==2) o.writeShort((int) bp.values[i]);
+                        else if(width==4) o.writeInt((int) bp.values[i]);
+                        else o.writeLong(bp.values[i]);
+                    }
+                }
+            }
+            o.close();
+        }
+        catch(IOException e) {
+            CmdFlags.errorExit("Unable to write file: "+outfile);
+        }
+    }
+    
+    //  Lower bound and length of the index domain of each dimension, taken
+    //  from the first entry at each level. flatten checks the rest match. 
+    private static void matrixShape(ASTNode a, ArrayList<Intpair> shape) {
+        if(a instanceof EmptyMatrix) {
+            shape.add(new Intpair(1, 0));
+        }
+        else if(a instanceof CompoundMatrix) {
+            Intpair b=a.getChild(0).getBounds();
+            shape.add(new Intpair(b.lower, a.numChildren()-1));
+            matrixShape(a.getChild(1), shape);
+        }
+    }
+    
+    private static long[] flatten(ASTNode a, ArrayList<Intpair> shape, int d, long[] values, int[] num, boolean[] kinds, String name) {
+        if(d==shape.size()) {
+            if(a instanceof NumberConstant) {
+                kinds[0]=true;
+            }
+            else if(a instanceof BooleanConstant) {
+                kinds[1]=true;
+            }
+            else {
+                CmdFlags.errorExit("Cannot write parameter "+name+" in binary format: it contains "+a+".");
+            }
+            if(num[0]==values.length) {
+                values=Arrays.copyOf(values, values.length*2);
+            }
+            values[num[0]++]=a.getValue();
+            return values;
+        }
+        int len=(int) shape.get(d).upper;
+        if(len==0) {
+            if(!(a instanceof EmptyMatrix)) {
+                CmdFlags.errorExit("Cannot write parameter "+name+" in binary format: it is not a regular matrix.");
+            }
+            return values;
+        }
+        if(!(a instanceof CompoundMatrix) || a.numChildren()-1!=len) {
+            CmdFlags.errorExit("Cannot write parameter "+name+" in binary format: it is not a regular matrix.");
+        }
+        Intpair b=a.getChild(0).getBounds();
+        if(b.lower!=shape.get(d).lower || b.upper-b.lower+1!=len) {
+            CmdFlags.errorExit("Cannot write parameter "+name+" in binary format: its index domains are not contiguous and the same throughout.");
+        }
+        for(int i=1; i<a.numChildren(); i++) {
+            values=flatten(a.getChild(i), shape, d+1, values, num, kinds, name);
+        }
+        return values;
+    }
+}
@@ -672,6 +672,7 @@ public class AMOPB extends ASTNodeC {
         
         try {
             solver.findSolutions("open-wbo", CmdFlags.satfile, cliquem);
+            cliquem.satModel.closeOutput();
         } catch (Exception e) {
             CmdFlags.errorExit("Borken: " + e);
         }
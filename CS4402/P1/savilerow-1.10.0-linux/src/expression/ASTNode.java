@@ -125,6 +125,16 @@ public abstract class ASTNode implements Serializable {
      copy()
     ==================================================================== */
     public abstract ASTNode copy();
+    
+    //  Copy for a new model: as copy(), with every node that refers to a model
+    //  (Identifier, table etc) pointing to new_m instead, in a single pass. 
+    public ASTNode copy(Model new_m) {
+        ASTNode c=copy();
+        if(c.hasModel()) {
+            c.setModel(new_m);
+        }
+        return c;
+    }
 
     /* ====================================================================
      equals()
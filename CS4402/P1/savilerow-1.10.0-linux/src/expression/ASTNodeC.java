@@ -200,6 +200,24 @@ public abstract class ASTNodeC extends ASTNode {
         return ch;
     }
     
+    //  Copies the children for the new model first, then builds this node on
+    //  top of them with copyWithChildren so no child is copied twice. 
+    @Override
+    public ASTNode copy(Model new_m) {
+        if(children==null) {
+            return super.copy(new_m);
+        }
+        ASTNode[] ch=new ASTNode[children.length];
+        for(int i=0; i<children.length; i++) {
+            ch[i]=children[i].copy(new_m);
+        }
+        ASTNode c=copyWithChildren(ch);
+        if(c.hasModel()) {
+            c.setModel(new_m);
+        }
+        return c;
+    }
+    
     /* ====================================================================
      setChildren  --  these should be removed eventually. 
     ==================================================================== */
@@ -219,6 +237,21 @@ public abstract class ASTNodeC extends ASTNode {
         setChildren(ch.toArray(new ASTNode[ch.size()]));
     }
     
+    //  A copy of this node with the children ch in place of its own. The
+    //  nodes in ch must have no parent; they become the children of the copy
+    //  without being copied themselves. 
+    public final ASTNode copyWithChildren(ASTNode[] ch) {
+        assert ch.length==children.length;
+        ASTNode[] own=children;
+        children=ch;
+        try {
+            return copy();
+        }
+        finally {
+            children=own;
+        }
+    }
+    
     /* ====================================================================
      Get and set individual children -- must be used instead of accessing
      the 'children' array directly.
@@ -238,6 +271,9 @@ public abstract class ASTNodeC extends ASTNode {
                 children[i].setParent(this);
                 children[i].childno = i;
             }
+            if(IncrementalSimplify.recording) {
+                IncrementalSimplify.record(this, children[i]);
+            }
         }
         
         // Reset hashCache values 
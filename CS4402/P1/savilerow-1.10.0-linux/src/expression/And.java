@@ -296,16 +296,20 @@ public class And extends ASTNodeC {
     
     public void toSAT(Sat satModel) throws IOException {
         for(int i=0; i<numChildren(); i++) {
-            ASTNode child=getChild(i);
-            satModel.addComment(String.valueOf(child).replaceAll("\n", " "));
-            if (child instanceof Negate) {
-                satModel.addClause(child.getChild(0).directEncode(satModel,0));
-            } else if (child instanceof Identifier) {
-                satModel.addClause(child.directEncode(satModel, 1));
-            } else {
-                // Any constraint
-                child.toSAT(satModel);
-            }
+            conjunctToSAT(satModel, getChild(i));
+        }
+    }
+    
+    //  Encode one conjunct of a top-level And. Also used by ParallelSatEncoder. 
+    public static void conjunctToSAT(Sat satModel, ASTNode child) throws IOException {
+        satModel.addComment(String.valueOf(child).replaceAll("\n", " "));
+        if (child instanceof Negate) {
+            satModel.addClause(child.getChild(0).directEncode(satModel,0));
+        } else if (child instanceof Identifier) {
+            satModel.addClause(child.directEncode(satModel, 1));
+        } else {
+            // Any constraint
+            child.toSAT(satModel);
         }
     }
 
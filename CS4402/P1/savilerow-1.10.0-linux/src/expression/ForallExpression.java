@@ -64,14 +64,12 @@ public class ForallExpression extends Quantifier
                 
                 ArrayList<Intpair> qvals=getChild(1).getIntervalSet();
                 ArrayList<ASTNode> expansion=new ArrayList<ASTNode>();
+                SubstitutionTemplate body=new SubstitutionTemplate(getChild(2), getChild(0));
                 for(int i=0; i<qvals.size(); i++)
                 {
                     for(long val=qvals.get(i).lower; val<=qvals.get(i).upper; val++) {
-                        ASTNode unfoldedExpression=getChild(2).copy();
-                        
                         // Sub in the value. 
-                        ReplaceASTNode t=new ReplaceASTNode(getChild(0), NumberConstant.make(val));
-                        unfoldedExpression=t.transform(unfoldedExpression);
+                        ASTNode unfoldedExpression=body.instantiate(NumberConstant.make(val));
                         
                         expansion.add(unfoldedExpression);
                     }
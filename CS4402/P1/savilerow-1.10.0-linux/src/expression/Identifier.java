@@ -37,6 +37,13 @@ public class Identifier extends ASTNode {
         m=_m;
     }
     
+    //  For copies: the name is already interned so share it directly. 
+    private Identifier(String id, Model _m) {
+        super();
+        name = id;
+        m=_m;
+    }
+    
     public boolean hasModel() {
         return true;
     }
@@ -52,7 +59,12 @@ public class Identifier extends ASTNode {
     }
 
     public ASTNode copy() {
-        return new Identifier(m, name);
+        return new Identifier(name, m);
+    }
+    
+    @Override
+    public ASTNode copy(Model new_m) {
+        return new Identifier(name, new_m);
     }
 
     public String getName() {
@@ -147,7 +147,7 @@ public class ToVariable extends ASTNodeC
                     
                     ASTNode newTable = tu.makeTableLong(a);
                     
-                    tu.saveToCacheNormalised(ret.expstring, a, newTable);
+                    tu.saveToCacheNormalised(ret.key, a, newTable);
                     
                     return newTable;
                 }
@@ -0,0 +1,105 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+//  Compact binary clause format, for use when the CNF is consumed by another
+//  program rather than a standard SAT solver. 
+//
+//  The file starts with a 32-byte header: the magic bytes "SRBCNF01" followed by
+//  the number of variables, number of clauses and the MaxSAT top weight as 
+//  big-endian 64-bit integers. Each clause follows as a sequence of literals 
+//  terminated by a 0 byte. A literal l is mapped to 2|l| (positive) or 2|l|+1 
+//  (negative) and written as an unsigned LEB128 varint, as in binary DRAT.
+//  For MaxSAT the first entry of a clause is its weight, mapped in the same way. 
+//  Comments are not written. 
+
+public class BinaryClauseSink extends FileClauseSink
+{
+    public static final byte[] MAGIC={'S', 'R', 'B', 'C', 'N', 'F', '0', '1'};
+    public static final int HEADERSIZE=32;
+    
+    //  Longest varint for a 64-bit value is 10 bytes. 
+    private static final int MAXLITLEN=10;
+    
+    public BinaryClauseSink(String fname, boolean append) throws IOException {
+        super(fname, append);
+    }
+    
+    public void reserveHeader() throws IOException {
+        buf.put(MAGIC);
+        for(int i=MAGIC.length; i<HEADERSIZE; i++) {
+            buf.put((byte)0);
+        }
+    }
+    
+    public void addClause(long[] lits, int len) throws IOException {
+        for(int i=0; i<len; i++) {
+            if(buf.remaining()<MAXLITLEN) {
+                flushBuffer();
+            }
+            putLiteral(lits[i]);
+        }
+        if(!buf.hasRemaining()) {
+            flushBuffer();
+        }
+        buf.put((byte)0);
+    }
+    
+    public void addClause(int[] lits, int len) throws IOException {
+        for(int i=0; i<len; i++) {
+            if(buf.remaining()<MAXLITLEN) {
+                flushBuffer();
+            }
+            putLiteral(lits[i]);
+        }
+        if(!buf.hasRemaining()) {
+            flushBuffer();
+        }
+        buf.put((byte)0);
+    }
+    
+    public void addComment(String comment) throws IOException {
+    }
+    
+    public void finalise(long numVars, long numClauses, long top) throws IOException {
+        flushBuffer();
+        ByteBuffer counts=ByteBuffer.allocate(HEADERSIZE-MAGIC.length);  // big-endian by default
+        counts.putLong(numVars);
+        counts.putLong(numClauses);
+        counts.putLong(CmdFlags.getMaxsattrans() ? top : 0L);
+        writeAt(counts.array(), MAGIC.length);
+    }
+    
+    private void putLiteral(long lit) {
+        long u=(lit<0) ? ((-lit)<<1)|1L : lit<<1;
+        while((u & ~0x7FL) != 0) {
+            buf.put((byte)((u & 0x7F) | 0x80));
+            u=u>>>7;
+        }
+        buf.put((byte)u);
+    }
+}
@@ -0,0 +1,99 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+
+//  Holds clauses and comments in memory, in the order they were added. 
+//  Used by ParallelSatEncoder: each chunk of constraints is encoded into one
+//  of these, then copied to the real output in order. 
+//
+//  Clauses are stored as their literals followed by 0. A comment is stored 
+//  as the single entry COMMENT, with its text in the comments list. 
+
+public class BufferClauseSink extends ClauseSink
+{
+    public static final long COMMENT=Long.MIN_VALUE;
+    
+    long[] data=new long[1024];
+    int size=0;
+    
+    ArrayList<String> comments=new ArrayList<String>();
+    
+    public void reserveHeader() {
+    }
+    
+    public void addClause(long[] lits, int len) {
+        ensureCapacity(len+1);
+        System.arraycopy(lits, 0, data, size, len);
+        size+=len;
+        data[size++]=0;
+    }
+    
+    public void addClause(int[] lits, int len) {
+        ensureCapacity(len+1);
+        for(int i=0; i<len; i++) {
+            data[size++]=lits[i];
+        }
+        data[size++]=0;
+    }
+    
+    public void addComment(String comment) {
+        ensureCapacity(1);
+        data[size++]=COMMENT;
+        comments.add(comment);
+    }
+    
+    public long position() {
+        return size;
+    }
+    
+    public boolean canTruncate() {
+        return true;
+    }
+    
+    public void truncate(long pos) {
+        assert pos>=0 && pos<=size;
+        // Drop the text of any comments that are cut off.
+        int numComments=comments.size();
+        for(int i=(int) pos; i<size; i++) {
+            if(data[i]==COMMENT) {
+                numComments--;
+            }
+        }
+        comments.subList(numComments, comments.size()).clear();
+        size=(int) pos;
+    }
+    
+    public void finalise(long numVars, long numClauses, long top) {
+    }
+    
+    public void close() {
+    }
+    
+    private void ensureCapacity(int extra) {
+        if(size+extra>data.length) {
+            data=Arrays.copyOf(data, Math.max(data.length*2, size+extra));
+        }
+    }
+}
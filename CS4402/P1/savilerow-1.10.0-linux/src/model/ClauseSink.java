@@ -0,0 +1,80 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+
+//  Destination for the clauses generated by Sat. Clauses are passed in as 
+//  primitive arrays (without the terminating 0) so that encoding a clause
+//  does not need to box or stringify the literals. 
+
+public abstract class ClauseSink
+{
+    //  Called once at the start of a new output file, to leave space
+    //  for a header that is filled in by finalise. 
+    public abstract void reserveHeader() throws IOException;
+    
+    //  Write the first len literals in lits as one clause. 
+    public abstract void addClause(long[] lits, int len) throws IOException;
+    
+    public abstract void addClause(int[] lits, int len) throws IOException;
+    
+    public abstract void addComment(String comment) throws IOException;
+    
+    //  Number of bytes in the output, including anything not yet flushed. 
+    //  Used to truncate the output back to an earlier point. 
+    public abstract long position() throws IOException;
+    
+    //  Flush the output and write the header with the final counts of 
+    //  variables and clauses. The sink stays open, and more clauses may be
+    //  added (after reopen) or removed (with truncate) before finalising again. 
+    public abstract void finalise(long numVars, long numClauses, long top) throws IOException;
+    
+    //  Continue writing at the end of the output after finalise. 
+    public void reopen() throws IOException {
+    }
+    
+    //  Whether truncate is supported. Callers check this before relying on
+    //  truncate to remove clauses. 
+    public abstract boolean canTruncate();
+    
+    //  Discard everything from pos (a value returned by position) onwards, 
+    //  and continue writing at pos.
+    public abstract void truncate(long pos) throws IOException;
+    
+    //  Force the output to storage. Called before a solver reads the file. 
+    public void sync() throws IOException {
+    }
+    
+    public abstract void close() throws IOException;
+    
+    //  Open a sink for the file-based output chosen on the command line. 
+    public static ClauseSink open(String fname, boolean append) throws IOException {
+        if(CmdFlags.getSatBinaryOutput()) {
+            return new BinaryClauseSink(fname, append);
+        }
+        else {
+            return new DimacsClauseSink(fname, append);
+        }
+    }
+}
@@ -526,11 +526,14 @@ public class ConstantMatrixStore
         return true;
     }
     
+    //  Stored matrices are never changed in place (they are keys in cm_names, 
+    //  and entries are replaced with setConstantMatrix) so the copy shares them
+    //  with this store, and only the maps are copied. 
     public ConstantMatrixStore copy(Model _m) {
         ConstantMatrixStore cp=new ConstantMatrixStore(_m);
-        for (String name : cm.keySet()) {
-            ASTNode matcp=cm.get(name).copy();
-            cp.addEntry(name, matcp);
+        cp.cm.putAll(cm);
+        for (Map.Entry<ASTNode, HashSet<String>> e : cm_names.entrySet()) {
+            cp.cm_names.put(e.getKey(), new HashSet<String>(e.getValue()));
         }
         return cp;
     }
@@ -0,0 +1,120 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+//  Writes DIMACS (or weighted DIMACS for MaxSAT) directly into a ByteBuffer.
+//  Integers are formatted digit by digit into the buffer so no Strings
+//  are created for literals. 
+
+public class DimacsClauseSink extends FileClauseSink
+{
+    //  Longest literal is 19 digits plus a sign and a space.
+    private static final int MAXLITLEN=21;
+    
+    private final byte[] digits=new byte[20];
+    
+    public DimacsClauseSink(String fname, boolean append) throws IOException {
+        super(fname, append);
+    }
+    
+    public void reserveHeader() throws IOException {
+        // Write 100 spaces at start of file, to leave space for "p cnf" line.
+        for(int i=0; i<100; i++) {
+            buf.put((byte)' ');
+        }
+        buf.put((byte)'\n');
+    }
+    
+    public void addClause(long[] lits, int len) throws IOException {
+        for(int i=0; i<len; i++) {
+            if(buf.remaining()<MAXLITLEN) {
+                flushBuffer();
+            }
+            putLong(lits[i]);
+            buf.put((byte)' ');
+        }
+        if(buf.remaining()<2) {
+            flushBuffer();
+        }
+        buf.put((byte)'0');
+        buf.put((byte)'\n');
+    }
+    
+    public void addClause(int[] lits, int len) throws IOException {
+        for(int i=0; i<len; i++) {
+            if(buf.remaining()<MAXLITLEN) {
+                flushBuffer();
+            }
+            putLong(lits[i]);
+            buf.put((byte)' ');
+        }
+        if(buf.remaining()<2) {
+            flushBuffer();
+        }
+        buf.put((byte)'0');
+        buf.put((byte)'\n');
+    }
+    
+    public void addComment(String comment) throws IOException {
+        putBytes(("c "+comment+"\n").getBytes());
+    }
+    
+    public void finalise(long numVars, long numClauses, long top) throws IOException {
+        flushBuffer();
+        byte[] header=headerLine(numVars, numClauses, top);
+        //  Write some spaces after it in case there was a p cnf line already that was longer.
+        byte[] padded=Arrays.copyOf(header, header.length+10);
+        Arrays.fill(padded, header.length, padded.length, (byte)' ');
+        writeAt(padded, 0);
+    }
+    
+    public static byte[] headerLine(long numVars, long numClauses, long top) {
+        if(CmdFlags.getMaxsattrans()) {
+            return ("p wcnf "+numVars+" "+numClauses+" "+top).getBytes();
+        }
+        else {
+            return ("p cnf "+numVars+" "+numClauses).getBytes();
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //  Buffer management
+    
+    private void putLong(long v) {
+        //  Literals are never Long.MIN_VALUE (trueVar is Long.MAX_VALUE), so negation is safe.
+        if(v<0) {
+            buf.put((byte)'-');
+            v=-v;
+        }
+        int pos=digits.length;
+        do {
+            digits[--pos]=(byte)('0'+(v%10));
+            v=v/10;
+        } while(v!=0);
+        buf.put(digits, pos, digits.length-pos);
+    }
+}
@@ -0,0 +1,813 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+
+//  In-process domain filtering for squashDomains, used instead of running 
+//  Minion on the flattened model. Each domain is a pair of bounds, plus a 
+//  bitmap of values when the initial domain is small enough. 
+//
+//  Linear constraints have a bounds-consistency propagator and AllDifferent
+//  removes the values of assigned variables. Any other constraint that 
+//  TabulationEvaluator can compile is filtered by evaluating it over the 
+//  domain bounds with one variable assigned, for each value of small domains
+//  and for the bounds of large ones. That is weaker than GAC but sound. 
+//  Constraints that cannot be compiled are ignored. 
+//
+//  After the fixpoint, the SAC test is applied to the bounds of each variable
+//  (as Minion's SACBounds_limit), and with -amo-detect each Boolean literal
+//  is probed to find mutexes. 
+
+public final class DomainPropagator
+{
+    private static final long BITMAPSPAN=1L<<16;   //  Largest initial domain span held as a bitmap. 
+    private static final int SHAVEALL=64;           //  Test every value of domains up to this size. 
+    private static final long SACBUDGET=200000000L; //  Work limit for SAC and AMO probing. 
+    
+    private final int numvars;
+    private final String[] names;
+    private final boolean[] isbool;
+    private final boolean[] isdecision;
+    private final HashMap<String, Integer> varnum=new HashMap<String, Integer>();
+    
+    //  Domains. bits[v] is null for a bounds-only domain, otherwise bit i is
+    //  value base[v]+i.
+    private final long[] lo;
+    private final long[] hi;
+    private final long[] base;
+    private final long[][] bits;
+    
+    //  Initial domain of a bounds-only variable if it has holes. They are 
+    //  not used in propagation but are kept out of the filtered domain. 
+    private final ArrayList<ArrayList<Intpair>> holes;
+    
+    //  Trail of domain changes while probing. Slot is -1 for the lower bound,
+    //  -2 for the upper bound, otherwise the index of a bitmap word.
+    private int[] trailvar=new int[1024];
+    private int[] trailslot=new int[1024];
+    private long[] trailold=new long[1024];
+    private int trailsize=0;
+    private boolean trailing=false;
+    
+    private final ArrayList<Prop> props=new ArrayList<Prop>();
+    private int[][] watches;
+    private int[] queue;
+    private boolean[] inqueue;
+    private int qhead=0;
+    private int qsize=0;
+    
+    private long work=0;
+    private int unsupported=0;
+    private boolean failed=false;
+    
+    private DomainPropagator(Model m) {
+        //  Decision variables first, then auxiliaries, in the order they are written for Minion.
+        ArrayList<String> vars=new ArrayList<String>();
+        ArrayList<Boolean> dec=new ArrayList<Boolean>();
+        for(int pass=0; pass<2; pass++) {
+            categoryentry c=m.global_symbols.getCategoryFirst();
+            while(c!=null) {
+                if(c.cat==(pass==0 ? ASTNode.Decision : ASTNode.Auxiliary)) {
+                    vars.add(c.name);
+                    dec.add(pass==0);
+                }
+                c=c.next;
+            }
+        }
+        
+        numvars=vars.size();
+        names=new String[numvars];
+        isbool=new boolean[numvars];
+        isdecision=new boolean[numvars];
+        lo=new long[numvars];
+        hi=new long[numvars];
+        base=new long[numvars];
+        bits=new long[numvars][];
+        holes=new ArrayList<ArrayList<Intpair>>(Collections.nCopies(numvars, (ArrayList<Intpair>) null));
+        
+        for(int v=0; v<numvars; v++) {
+            names[v]=vars.get(v);
+            isdecision[v]=dec.get(v);
+            varnum.put(names[v], v);
+            ASTNode dom=m.global_symbols.getDomain(names[v]);
+            isbool[v]=dom.isBooleanSet();
+            ArrayList<Intpair> set=dom.getIntervalSet();
+            if(set.size()==0) {
+                failed=true;
+                lo[v]=1;
+                hi[v]=0;
+                continue;
+            }
+            lo[v]=set.get(0).lower;
+            hi[v]=set.get(set.size()-1).upper;
+            base[v]=lo[v];
+            if(hi[v]-lo[v]<BITMAPSPAN) {
+                long[] b=new long[(int)((hi[v]-lo[v])/64)+1];
+                for(int i=0; i<set.size(); i++) {
+                    for(long val=set.get(i).lower; val<=set.get(i).upper; val++) {
+                        int off=(int)(val-base[v]);
+                        b[off>>>6]|=1L<<(off&63);
+                    }
+                }
+                bits[v]=b;
+            }
+            else if(set.size()>1) {
+                holes.set(v, set);
+            }
+        }
+        
+        ASTNode top=m.constraints.getChild(0);
+        if(top instanceof And) {
+            for(int i=0; i<top.numChildren(); i++) {
+                addConstraint(top.getChild(i));
+            }
+        }
+        else {
+            addConstraint(top);
+        }
+        
+        //  Watch lists and queue. 
+        int[] count=new int[numvars];
+        for(Prop p : props) {
+            for(int v : p.scope) {
+                count[v]++;
+            }
+        }
+        watches=new int[numvars][];
+        for(int v=0; v<numvars; v++) {
+            watches[v]=new int[count[v]];
+            count[v]=0;
+        }
+        for(int i=0; i<props.size(); i++) {
+            for(int v : props.get(i).scope) {
+                watches[v][count[v]++]=i;
+            }
+        }
+        queue=new int[Math.max(props.size(), 1)];
+        inqueue=new boolean[props.size()];
+    }
+    
+    //  Filter the domains of the flattened model m. Returns a find statement 
+    //  for each variable with its filtered domain, and adds mutexes to 
+    //  AMODetect when -amo-detect is on. 
+    public static ArrayList<ASTNode> reduceDomains(Model m) {
+        DomainPropagator dp=new DomainPropagator(m);
+        
+        String level=CmdFlags.getPreprocess();
+        boolean sac=(level==null || level.contains("SAC"));   //  Default is SACBounds_limit.
+        
+        boolean ok=!dp.failed && dp.propagateAll();
+        if(ok && sac) {
+            ok=dp.sacBounds();
+        }
+        
+        if(CmdFlags.getVerbose()) {
+            System.out.println("Domain filtering: "+dp.props.size()+" propagators, "+dp.unsupported+" constraints not supported.");
+        }
+        
+        if(CmdFlags.amo_detect) {
+            long amo_count=0;
+            if(ok) {
+                amo_count=dp.detectAMO();
+            }
+            System.out.println("Found "+amo_count+" mutexes");
+        }
+        
+        ArrayList<ASTNode> findstatements=new ArrayList<ASTNode>();
+        for(int v=0; v<dp.numvars; v++) {
+            if(!ok) {
+                findstatements.add(new Find(new Identifier(m, dp.names[v]), new IntegerDomain(new EmptyRange())));
+            }
+            else {
+                findstatements.add(new Find(new Identifier(m, dp.names[v]), Intpair.makeDomain(dp.intervals(v), false)));
+            }
+        }
+        return findstatements;
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  Domain operations. Each returns false if the domain becomes empty. 
+    
+    private boolean contains(int v, long val) {
+        if(val<lo[v] || val>hi[v]) {
+            return false;
+        }
+        if(bits[v]==null) {
+            return true;
+        }
+        int off=(int)(val-base[v]);
+        return (bits[v][off>>>6] & (1L<<(off&63)))!=0;
+    }
+    
+    //  Smallest value >= val in the bitmap of v, or hi[v]+1. 
+    private long nextValue(int v, long val) {
+        long[] b=bits[v];
+        for(long x=val; x<=hi[v]; x++) {
+            int off=(int)(x-base[v]);
+            long word=b[off>>>6]>>>(off&63);
+            if(word!=0) {
+                return x+Long.numberOfTrailingZeros(word);
+            }
+            x+=63-(off&63);
+        }
+        return hi[v]+1;
+    }
+    
+    //  Largest value <= val in the bitmap of v, or lo[v]-1. 
+    private long prevValue(int v, long val) {
+        long[] b=bits[v];
+        for(long x=val; x>=lo[v]; x--) {
+            int off=(int)(x-base[v]);
+            long word=b[off>>>6]<<(63-(off&63));
+            if(word!=0) {
+                return x-Long.numberOfLeadingZeros(word);
+            }
+            x-=off&63;
+        }
+        return lo[v]-1;
+    }
+    
+    private boolean setLo(int v, long x) {
+        if(x<=lo[v]) {
+            return true;
+        }
+        if(x>hi[v]) {
+            return false;
+        }
+        if(bits[v]!=null) {
+            x=nextValue(v, x);
+            if(x>hi[v]) {
+                return false;
+            }
+        }
+        save(v, -1, lo[v]);
+        lo[v]=x;
+        changed(v);
+        return true;
+    }
+    
+    private boolean setHi(int v, long x) {
+        if(x>=hi[v]) {
+            return true;
+        }
+        if(x<lo[v]) {
+            return false;
+        }
+        if(bits[v]!=null) {
+            x=prevValue(v, x);
+            if(x<lo[v]) {
+                return false;
+            }
+        }
+        save(v, -2, hi[v]);
+        hi[v]=x;
+        changed(v);
+        return true;
+    }
+    
+    private boolean removeValue(int v, long x) {
+        if(x<lo[v] || x>hi[v]) {
+            return true;
+        }
+        if(x==lo[v]) {
+            return setLo(v, x+1);
+        }
+        if(x==hi[v]) {
+            return setHi(v, x-1);
+        }
+        if(bits[v]!=null) {
+            int off=(int)(x-base[v]);
+            int w=off>>>6;
+            long bit=1L<<(off&63);
+            if((bits[v][w]&bit)!=0) {
+                save(v, w, bits[v][w]);
+                bits[v][w]&=~bit;
+                changed(v);
+            }
+        }
+        return true;
+    }
+    
+    private boolean assign(int v, long x) {
+        return contains(v, x) && setLo(v, x) && setHi(v, x);
+    }
+    
+    //  Number of values in the domain of v, counting no further than limit. 
+    private long size(int v, long limit) {
+        if(bits[v]==null) {
+            return hi[v]-lo[v]+1;
+        }
+        long n=0;
+        for(long x=lo[v]; x<=hi[v] && n<limit; x=nextValue(v, x+1)) {
+            n++;
+        }
+        return n;
+    }
+    
+    private ArrayList<Intpair> intervals(int v) {
+        ArrayList<Intpair> set=new ArrayList<Intpair>();
+        if(bits[v]==null) {
+            set.add(new Intpair(lo[v], hi[v]));
+            return (holes.get(v)==null) ? set : Intpair.intersection(holes.get(v), set);
+        }
+        long x=lo[v];
+        while(x<=hi[v]) {
+            long start=x;
+            while(x+1<=hi[v] && contains(v, x+1)) {
+                x++;
+            }
+            set.add(new Intpair(start, x));
+            x=nextValue(v, x+1);
+        }
+        return set;
+    }
+    
+    private void save(int v, int slot, long old) {
+        if(!trailing) {
+            return;
+        }
+        if(trailsize==trailvar.length) {
+            trailvar=Arrays.copyOf(trailvar, trailsize*2);
+            trailslot=Arrays.copyOf(trailslot, trailsize*2);
+            trailold=Arrays.copyOf(trailold, trailsize*2);
+        }
+        trailvar[trailsize]=v;
+        trailslot[trailsize]=slot;
+        trailold[trailsize]=old;
+        trailsize++;
+    }
+    
+    private void restore(int mark) {
+        while(trailsize>mark) {
+            trailsize--;
+            int v=trailvar[trailsize];
+            int slot=trailslot[trailsize];
+            if(slot==-1) {
+                lo[v]=trailold[trailsize];
+            }
+            else if(slot==-2) {
+                hi[v]=trailold[trailsize];
+            }
+            else {
+                bits[v][slot]=trailold[trailsize];
+            }
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  Propagation queue
+    
+    private void changed(int v) {
+        int[] w=watches[v];
+        for(int i=0; i<w.length; i++) {
+            int p=w[i];
+            if(!inqueue[p]) {
+                inqueue[p]=true;
+                queue[(qhead+qsize)%queue.length]=p;
+                qsize++;
+            }
+        }
+    }
+    
+    private boolean fixpoint() {
+        while(qsize>0) {
+            int p=queue[qhead];
+            qhead=(qhead+1)%queue.length;
+            qsize--;
+            inqueue[p]=false;
+            if(!props.get(p).propagate()) {
+                clearQueue();
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void clearQueue() {
+        while(qsize>0) {
+            inqueue[queue[qhead]]=false;
+            qhead=(qhead+1)%queue.length;
+            qsize--;
+        }
+    }
+    
+    private boolean propagateAll() {
+        for(int p=0; p<props.size(); p++) {
+            inqueue[p]=true;
+            queue[(qhead+qsize)%queue.length]=p;
+            qsize++;
+        }
+        return fixpoint();
+    }
+    
+    //  Assign v=val and propagate, then undo. Returns false if that fails. 
+    //  If fixed is not null, each Boolean variable u assigned by propagation
+    //  is added to it, as u if it was set to 0 and ~u if it was set to 1. 
+    private boolean probe(int v, long val, ArrayList<Integer> fixed) {
+        trailing=true;
+        int mark=trailsize;
+        boolean ok=assign(v, val) && fixpoint();
+        clearQueue();
+        if(ok && fixed!=null) {
+            for(int i=mark; i<trailsize; i++) {
+                int u=trailvar[i];
+                if(u!=v && isbool[u] && trailslot[i]<0) {
+                    fixed.add(lo[u]==0 ? u : ~u);
+                }
+            }
+        }
+        restore(mark);
+        trailing=false;
+        return ok;
+    }
+    
+    //  SAC on the bounds of every variable, repeated until nothing changes 
+    //  or the work budget is used up. 
+    private boolean sacBounds() {
+        boolean changed=true;
+        while(changed && work<SACBUDGET) {
+            changed=false;
+            for(int v=0; v<numvars && work<SACBUDGET; v++) {
+                while(lo[v]<hi[v] && work<SACBUDGET && !probe(v, lo[v], null)) {
+                    if(!removeValue(v, lo[v]) || !fixpoint()) {
+                        return false;
+                    }
+                    changed=true;
+                }
+                while(lo[v]<hi[v] && work<SACBUDGET && !probe(v, hi[v], null)) {
+                    if(!removeValue(v, hi[v]) || !fixpoint()) {
+                        return false;
+                    }
+                    changed=true;
+                }
+            }
+        }
+        return true;
+    }
+    
+    //  Probe each literal of each unassigned Boolean variable. When b=val 
+    //  assigns another Boolean y, the literal b=val is mutex with the opposite
+    //  literal of y. Returns the number of mutexes found. 
+    private long detectAMO() {
+        int[] amonum=new int[numvars];
+        for(int v=0; v<numvars; v++) {
+            if(isbool[v]) {
+                amonum[v]=AMODetect.add_variable_amo(names[v]);
+            }
+        }
+        long amo_count=0;
+        ArrayList<Integer> fixed=new ArrayList<Integer>();
+        for(int v=0; v<numvars && work<SACBUDGET; v++) {
+            if(!isbool[v] || lo[v]==hi[v]) {
+                continue;
+            }
+            for(long val=0; val<=1; val++) {
+                fixed.clear();
+                if(probe(v, val, fixed)) {
+                    int lit1=(val==1) ? amonum[v] : -amonum[v];
+                    for(int i=0; i<fixed.size(); i++) {
+                        int u=fixed.get(i);
+                        int lit2=(u>=0) ? amonum[u] : -amonum[~u];
+                        if(!AMODetect.hasEdge(lit1, lit2)) {
+                            AMODetect.addEdge(lit1, lit2);
+                            amo_count++;
+                        }
+                    }
+                }
+            }
+        }
+        return amo_count;
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  Building propagators from the flattened constraints. 
+    
+    private void addConstraint(ASTNode c) {
+        if(c instanceof BooleanConstant) {
+            if(c.getValue()==0) {
+                failed=true;
+            }
+            return;
+        }
+        
+        //  Sums: bounds consistency. 
+        if((c instanceof LessEqual || c instanceof Less || c instanceof Equals || c instanceof ToVariable)
+            && (c.getChild(0) instanceof WeightedSum || c.getChild(1) instanceof WeightedSum)) {
+            HashMap<Integer, Long> terms=new HashMap<Integer, Long>();
+            long[] constant=new long[1];
+            if(linearTerms(c.getChild(0), 1, terms, constant) && linearTerms(c.getChild(1), -1, terms, constant)) {
+                //  child0 - child1 + constant <= bound
+                long bound=(c instanceof Less) ? -1 : 0;
+                if(addLinear(terms, bound-constant[0], 1)) {
+                    if(c instanceof Equals || c instanceof ToVariable) {
+                        addLinear(terms, constant[0]-bound, -1);
+                    }
+                    return;
+                }
+            }
+        }
+        
+        if(c instanceof AllDifferent && c.getChild(0) instanceof CompoundMatrix) {
+            ASTNode mat=c.getChild(0);
+            ArrayList<Integer> vars=new ArrayList<Integer>();
+            ArrayList<Long> consts=new ArrayList<Long>();
+            boolean ok=true;
+            for(int i=1; i<mat.numChildren() && ok; i++) {
+                ASTNode e=mat.getChild(i);
+                if(e.isConstant()) {
+                    consts.add(e.getValue());
+                }
+                else if(e instanceof Identifier && varnum.containsKey(e.toString())) {
+                    vars.add(varnum.get(e.toString()));
+                }
+                else {
+                    ok=false;
+                }
+            }
+            if(ok) {
+                props.add(new AllDiffProp(vars, consts));
+                return;
+            }
+        }
+        
+        //  Anything else the evaluator can compile. 
+        ArrayList<ASTNode> scope=new ArrayList<ASTNode>();
+        ArrayList<Integer> scopenum=new ArrayList<Integer>();
+        HashSet<String> seen=new HashSet<String>();
+        int nodes=collectVars(c, scope, scopenum, seen);
+        if(scopenum.size()>0) {
+            long[] l=new long[scope.size()];
+            long[] h=new long[scope.size()];
+            for(int i=0; i<scope.size(); i++) {
+                l[i]=lo[scopenum.get(i)];
+                h[i]=hi[scopenum.get(i)];
+            }
+            TabulationEvaluator ev=TabulationEvaluator.compileBounds(c, scope, l, h);
+            if(ev!=null) {
+                props.add(new EvalProp(ev, scopenum, nodes));
+                return;
+            }
+        }
+        unsupported++;
+    }
+    
+    //  Collect the variables in e, and return the number of nodes in e. 
+    private int collectVars(ASTNode e, ArrayList<ASTNode> scope, ArrayList<Integer> scopenum, HashSet<String> seen) {
+        if(e instanceof Identifier) {
+            String n=e.toString();
+            Integer v=varnum.get(n);
+            if(v!=null && !seen.contains(n)) {
+                seen.add(n);
+                scope.add(e);
+                scopenum.add(v);
+            }
+            return 1;
+        }
+        int count=1;
+        for(int i=0; i<e.numChildren(); i++) {
+            count+=collectVars(e.getChild(i), scope, scopenum, seen);
+        }
+        return count;
+    }
+    
+    //  Add mult*e to terms and constant. Returns false if e is not linear. 
+    private boolean linearTerms(ASTNode e, long mult, HashMap<Integer, Long> terms, long[] constant) {
+        if(e.isConstant()) {
+            constant[0]+=mult*e.getValue();
+            return true;
+        }
+        if(e instanceof Identifier) {
+            Integer v=varnum.get(e.toString());
+            if(v==null) {
+                return false;
+            }
+            Long w=terms.get(v);
+            terms.put(v, (w==null ? 0 : w)+mult);
+            return true;
+        }
+        if(e instanceof Negate) {
+            //  Boolean not x is 1-x
+            constant[0]+=mult;
+            return linearTerms(e.getChild(0), -mult, terms, constant);
+        }
+        if(e instanceof UnaryMinus) {
+            return linearTerms(e.getChild(0), -mult, terms, constant);
+        }
+        if(e instanceof WeightedSum) {
+            for(int i=0; i<e.numChildren(); i++) {
+                long w=((WeightedSum)e).getWeight(i);
+                if(Math.abs(w)>LINLIMIT || Math.abs(mult)>LINLIMIT) {
+                    return false;
+                }
+                if(!linearTerms(e.getChild(i), mult*w, terms, constant)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    //  Add sign*(sum of terms) <= bound. Returns false if the sum could overflow. 
+    private boolean addLinear(HashMap<Integer, Long> terms, long bound, long sign) {
+        ArrayList<Integer> vars=new ArrayList<Integer>();
+        ArrayList<Long> coeffs=new ArrayList<Long>();
+        double total=Math.abs((double)bound);
+        for(Map.Entry<Integer, Long> t : terms.entrySet()) {
+            long w=t.getValue();
+            if(w!=0) {
+                int v=t.getKey();
+                vars.add(v);
+                coeffs.add(sign*w);
+                total+=Math.abs((double)w)*Math.max(Math.abs((double)lo[v]), Math.abs((double)hi[v]));
+            }
+        }
+        if(total>(double)(1L<<61)) {
+            return false;
+        }
+        props.add(new LinearProp(vars, coeffs, bound));
+        return true;
+    }
+    
+    private static final long LINLIMIT=1L<<30;
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  Propagators
+    
+    private abstract class Prop {
+        int[] scope;
+        abstract boolean propagate();
+    }
+    
+    //  sum coeff[i]*scope[i] <= bound
+    private final class LinearProp extends Prop {
+        final long[] coeff;
+        final long bound;
+        LinearProp(ArrayList<Integer> vars, ArrayList<Long> coeffs, long _bound) {
+            scope=new int[vars.size()];
+            coeff=new long[vars.size()];
+            for(int i=0; i<scope.length; i++) {
+                scope[i]=vars.get(i);
+                coeff[i]=coeffs.get(i);
+            }
+            bound=_bound;
+        }
+        boolean propagate() {
+            work+=scope.length;
+            long min=0;
+            for(int i=0; i<scope.length; i++) {
+                int v=scope[i];
+                min+=(coeff[i]>0) ? coeff[i]*lo[v] : coeff[i]*hi[v];
+            }
+            if(min>bound) {
+                return false;
+            }
+            long slack=bound-min;
+            for(int i=0; i<scope.length; i++) {
+                int v=scope[i];
+                if(coeff[i]>0) {
+                    long d=slack/coeff[i];
+                    if(d<hi[v]-lo[v] && !setHi(v, lo[v]+d)) {
+                        return false;
+                    }
+                }
+                else {
+                    long d=slack/(-coeff[i]);
+                    if(d<hi[v]-lo[v] && !setLo(v, hi[v]-d)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+    
+    //  Removes the value of each assigned variable (and each constant) from the others. 
+    private final class AllDiffProp extends Prop {
+        final long[] consts;
+        AllDiffProp(ArrayList<Integer> vars, ArrayList<Long> c) {
+            scope=new int[vars.size()];
+            for(int i=0; i<scope.length; i++) {
+                scope[i]=vars.get(i);
+            }
+            consts=new long[c.size()];
+            for(int i=0; i<consts.length; i++) {
+                consts[i]=c.get(i);
+            }
+        }
+        boolean propagate() {
+            work+=scope.length;
+            for(int j=0; j<consts.length; j++) {
+                for(int k=j+1; k<consts.length; k++) {
+                    if(consts[j]==consts[k]) {
+                        return false;
+                    }
+                }
+                for(int i=0; i<scope.length; i++) {
+                    if(!removeValue(scope[i], consts[j])) {
+                        return false;
+                    }
+                }
+            }
+            for(int i=0; i<scope.length; i++) {
+                int v=scope[i];
+                if(lo[v]==hi[v]) {
+                    for(int k=0; k<scope.length; k++) {
+                        if(k!=i && scope[k]!=v && !removeValue(scope[k], lo[v])) {
+                            return false;
+                        }
+                        if(k!=i && scope[k]==v) {
+                            return false;   //  Same variable twice. 
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+    }
+    
+    //  Any constraint compiled by TabulationEvaluator. A value is removed when
+    //  the constraint evaluates to false with the variable assigned to it and
+    //  the other variables ranging over their bounds. 
+    private final class EvalProp extends Prop {
+        final TabulationEvaluator ev;
+        final int cost;
+        EvalProp(TabulationEvaluator _ev, ArrayList<Integer> vars, int nodes) {
+            ev=_ev;
+            scope=new int[vars.size()];
+            for(int i=0; i<scope.length; i++) {
+                scope[i]=vars.get(i);
+            }
+            cost=nodes;
+        }
+        boolean propagate() {
+            for(int i=0; i<scope.length; i++) {
+                ev.setBounds(i, lo[scope[i]], hi[scope[i]]);
+            }
+            work+=cost;
+            if(ev.check()==0) {
+                return false;
+            }
+            for(int i=0; i<scope.length; i++) {
+                int v=scope[i];
+                if(lo[v]==hi[v]) {
+                    continue;
+                }
+                if(size(v, SHAVEALL+1)<=SHAVEALL) {
+                    for(long x=lo[v]; x<=hi[v]; x=(bits[v]==null) ? x+1 : nextValue(v, x+1)) {
+                        if(!test(i, x) && !removeValue(v, x)) {
+                            return false;
+                        }
+                    }
+                }
+                else {
+                    for(int k=0; k<SHAVEALL && lo[v]<hi[v] && !test(i, lo[v]); k++) {
+                        if(!setLo(v, lo[v]+1)) {
+                            return false;
+                        }
+                    }
+                    for(int k=0; k<SHAVEALL && lo[v]<hi[v] && !test(i, hi[v]); k++) {
+                        if(!setHi(v, hi[v]-1)) {
+                            return false;
+                        }
+                    }
+                }
+                ev.setBounds(i, lo[v], hi[v]);
+            }
+            return true;
+        }
+        
+        //  False if the constraint cannot be satisfied with variable i set to x. 
+        private boolean test(int i, long x) {
+            work+=cost;
+            ev.assign(i, x);
+            int r=ev.check();
+            ev.unassign();
+            return r!=0;
+        }
+    }
+}
@@ -65,6 +65,9 @@ public class DominanceModelContainer extends ModelContainer {
             e.printStackTrace();
             CmdFlags.errorExit("Could not process dominance problem: " + e);
         }
+        finally {
+            closeSatOutput();
+        }
     }
 
     private void preprocessIncomparability(){
@@ -435,6 +438,7 @@ public class DominanceModelContainer extends ModelContainer {
             //give var/clause number back
             m.satModel.variableNumber = subModel.satModel.variableNumber;
             m.satModel.numClauses += subModel.satModel.numClauses;
+            closeSubModelOutput(subModel);
         }
         // minion
         else if(solver instanceof MinionSolver) {
@@ -459,6 +463,7 @@ public class DominanceModelContainer extends ModelContainer {
         m = parent;
         if (CmdFlags.getSattrans() && !CmdFlags.getSMTtrans()){
             subModel.toSAT();
+            closeSubModelOutput(subModel);
         }
         else if(solver instanceof MinionSolver) {
             // subModel.branchingon = null;
@@ -471,6 +476,15 @@ public class DominanceModelContainer extends ModelContainer {
         }
     }
 
+    //  A submodel appends to the SAT file through its own Sat object (except 
+    //  with an interactive solver, where it shares the main one). Close it 
+    //  once its constraints have been written. 
+    private void closeSubModelOutput(Model subModel) throws IOException {
+        if(subModel.satModel!=m.satModel) {
+            subModel.satModel.closeOutput();
+        }
+    }
+
     private Model prepareSubModel(ASTNode domConstraint){
         Model subModel = new Model();
         subModel.subModelFlag = true;
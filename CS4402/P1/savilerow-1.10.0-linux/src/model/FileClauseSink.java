@@ -0,0 +1,118 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+//  Common part of the sinks that write to a file. The file is held open on a
+//  FileChannel for the lifetime of the sink: finalise patches the header in
+//  place with a positional write and leaves the channel open, so that adding
+//  and removing clauses after finalise (optimisation, multiple solutions and
+//  mining mode) is a seek or a truncate rather than reopening the file. 
+//  Nothing is forced to disk until sync is called, just before a solver
+//  is run on the file. 
+
+public abstract class FileClauseSink extends ClauseSink
+{
+    private static final int BUFSIZE=1<<16;
+    
+    private RandomAccessFile f;
+    protected FileChannel ch;
+    protected ByteBuffer buf;
+    
+    protected FileClauseSink(String fname, boolean append) throws IOException {
+        f=new RandomAccessFile(fname, "rw");
+        ch=f.getChannel();
+        if(append) {
+            ch.position(ch.size());
+        }
+        else {
+            ch.truncate(0);
+        }
+        buf=ByteBuffer.allocateDirect(BUFSIZE);
+    }
+    
+    public long position() throws IOException {
+        return ch.position()+buf.position();
+    }
+    
+    //  Another Sat object may have appended to the same file since finalise,
+    //  so move to the current end of the file. 
+    public void reopen() throws IOException {
+        flushBuffer();
+        ch.position(ch.size());
+    }
+    
+    public boolean canTruncate() {
+        return true;
+    }
+    
+    public void truncate(long pos) throws IOException {
+        flushBuffer();
+        ch.truncate(pos);
+        ch.position(pos);
+    }
+    
+    public void sync() throws IOException {
+        flushBuffer();
+        ch.force(false);
+    }
+    
+    public void close() throws IOException {
+        flushBuffer();
+        f.close();
+    }
+    
+    //  Overwrite part of the file (i.e. the header) without moving the 
+    //  current write position. 
+    protected void writeAt(byte[] b, long offset) throws IOException {
+        ByteBuffer wrap=ByteBuffer.wrap(b);
+        while(wrap.hasRemaining()) {
+            offset+=ch.write(wrap, offset);
+        }
+    }
+    
+    protected void putBytes(byte[] b) throws IOException {
+        if(b.length>buf.remaining()) {
+            flushBuffer();
+            if(b.length>buf.remaining()) {
+                ByteBuffer wrap=ByteBuffer.wrap(b);
+                while(wrap.hasRemaining()) {
+                    ch.write(wrap);
+                }
+                return;
+            }
+        }
+        buf.put(b);
+    }
+    
+    protected void flushBuffer() throws IOException {
+        buf.flip();
+        while(buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+    }
+}
@@ -82,13 +82,12 @@ public class FilteredDomainStore {
     
     public FilteredDomainStore copy(SymbolTable _st) {
         FilteredDomainStore f=new FilteredDomainStore(_st);
-        TransformFixSTRef tf = new TransformFixSTRef(_st.m);
         
         for (String auxst : aux_to_expression.keySet()) {
-            f.aux_to_expression.put(auxst, tf.transform(aux_to_expression.get(auxst).copy()));
+            f.aux_to_expression.put(auxst, aux_to_expression.get(auxst).copy(_st.m));
         }
         for (ASTNode auxct : aux_filtered_domain.keySet()) {
-            f.aux_filtered_domain.put(tf.transform(auxct.copy()), tf.transform(aux_filtered_domain.get(auxct).copy()));
+            f.aux_filtered_domain.put(auxct.copy(_st.m), aux_filtered_domain.get(auxct).copy(_st.m));
         }
         f.firstPass=firstPass;
         f.storeDomains=storeDomains;
@@ -0,0 +1,280 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+
+//  Incremental simplification of a model after a rule has been applied.
+//  Every node placed into a tree (by ASTNodeC.setChild) on the owning thread
+//  is recorded in a journal, which is restarted each time the owning model
+//  is simplified. Model.transform then simplifies only the subtrees rooted
+//  at the recorded nodes, followed by their ancestors from the deepest up,
+//  instead of walking the whole constraint tree again. 
+//
+//  Simplifying an unchanged expression can still give a different result
+//  when the symbol table changes (domains narrowed, variables assigned or
+//  unified), so in that case, or whenever the journal is not complete, the
+//  caller falls back to simplifying everything.
+//
+//  That includes a symbol table change made by the incremental pass itself,
+//  which is then followed by a full simplify. Model.simplify on its own is a
+//  single pass and does not revisit expressions after such a change, so the
+//  output can be more simplified than with -no-incremental-simplify: e.g.
+//  with -O1 -ac-cse on killerSudoku an AC-CSE aux variable whose domain
+//  became a single value is substituted, giving 3613 SAT variables instead
+//  of 3645.
+//
+//  Only the constraint tree and the symbol table are tracked. Changes to the
+//  constant matrix store (cmstore) or the filtered domain store (filt) do
+//  not mark anything dirty, so an unchanged expression whose simplification
+//  depends on them is not simplified again until the next full simplify.
+
+public final class IncrementalSimplify
+{
+    private static final int MAXJOURNAL=1<<20;   //  Beyond this many changed nodes, give up and simplify everything.
+    
+    public static boolean recording=false;
+    
+    private static ArrayList<ASTNode> journal;
+    private static Model owner;
+    private static Thread ownerThread;
+    private static ASTNode ownerTop;         // constraints root of the owner when the journal was started
+    private static long symbolChanges;       // SymbolTable.getChangeCount() when the journal was started
+    
+    private IncrementalSimplify() {}
+    
+    //  Called from ASTNodeC.setChild when child has been placed into parent.
+    //  Only nodes that are part of a tree are of interest, not nodes under construction.
+    public static void record(ASTNode parent, ASTNode child) {
+        if(Thread.currentThread()!=ownerThread || (parent.getParent()==null && !(parent instanceof Top))) {
+            return;
+        }
+        journal.add(child);
+        if(journal.size()>MAXJOURNAL) {
+            stop();
+        }
+    }
+    
+    //  Start a fresh journal for m, which has just been fully simplified.
+    //  symbolsBefore is the symbol table change count before simplifying;
+    //  if the symbol table changed since, parts of the tree may need to be
+    //  simplified again so the journal is not started. 
+    public static void start(Model m, long symbolsBefore) {
+        stop();
+        if(!CmdFlags.incremental_simplify || m.global_symbols.getChangeCount()!=symbolsBefore) {
+            return;
+        }
+        owner=m;
+        ownerThread=Thread.currentThread();
+        ownerTop=m.constraints;
+        symbolChanges=symbolsBefore;
+        journal=new ArrayList<ASTNode>();
+        recording=true;
+    }
+    
+    public static void stop() {
+        recording=false;
+        journal=null;
+        owner=null;
+        ownerThread=null;
+        ownerTop=null;
+    }
+    
+    //  Simplify m using the journal. Returns false if that is not possible,
+    //  and the caller must simplify the whole model. 
+    public static boolean simplify(Model m) {
+        if(!recording || owner!=m || ownerThread!=Thread.currentThread() || ownerTop!=m.constraints
+            || m.global_symbols.getChangeCount()!=symbolChanges) {
+            stop();
+            return false;
+        }
+        ArrayList<ASTNode> dirty=journal;
+        stop();   // Changes made below are not recorded.
+        
+        long symbolsBefore=m.global_symbols.getChangeCount();
+        if(!m.global_symbols.simplify() || m.global_symbols.getChangeCount()!=symbolsBefore) {
+            return false;
+        }
+        
+        TreeTransformerBottomUpNoWrapper ts;
+        if(CmdFlags.getUseDeleteVars()) {
+            ts=new TransformSimplifyExtended(m);
+        }
+        else {
+            ts=new TransformSimplify();
+        }
+        
+        if(!simplifyConstraints(m, dirty, ts)) {
+            return false;
+        }
+        
+        //  The other parts of the model are small, simplify them as Model.simplify does.
+        TransformSimplify ts2=new TransformSimplify();
+        if(m.objective!=null) {
+            m.objective=ts2.transform(m.objective);
+            if(m.objective.getChild(0).isConstant()) {
+                CmdFlags.println("Dropping objective: "+m.objective);
+                m.objective=null;  // Throw away the objective if the expression inside has become a constant.
+            }
+        }
+        if(m.branchingon!=null) {
+            m.branchingon=ts2.transform(m.branchingon);
+        }
+        if(m.preserveVariables!=null) {
+            m.preserveVariables=ts2.transform(m.preserveVariables);
+        }
+        if(m.sns!=null) {
+            m.sns=ts2.transform(m.sns);
+        }
+        m.filt.simplify();
+        
+        if(m.global_symbols.getChangeCount()!=symbolsBefore) {
+            //  Variables were assigned or unified: other expressions may now simplify.
+            return false;
+        }
+        start(m, symbolsBefore);
+        return true;
+    }
+    
+    private static boolean simplifyConstraints(Model m, ArrayList<ASTNode> dirty, TreeTransformerBottomUpNoWrapper ts) {
+        ASTNode top=m.constraints;
+        
+        //  Keep the changed nodes that are still in the constraint tree.
+        IdentityHashMap<ASTNode, Integer> depth=new IdentityHashMap<ASTNode, Integer>();
+        ArrayList<ASTNode> live=new ArrayList<ASTNode>();
+        for(int i=0; i<dirty.size(); i++) {
+            ASTNode d=dirty.get(i);
+            if(!depth.containsKey(d)) {
+                int dep=depthInTree(d, top);
+                if(dep>0) {
+                    depth.put(d, dep);
+                    live.add(d);
+                }
+            }
+        }
+        
+        //  Levels of ancestors still to be simplified, indexed by depth.
+        ArrayList<ArrayList<ASTNode>> levels=new ArrayList<ArrayList<ASTNode>>();
+        IdentityHashMap<ASTNode, Boolean> queued=new IdentityHashMap<ASTNode, Boolean>();
+        
+        //  Simplify each changed subtree that is not inside another one.
+        for(int i=0; i<live.size(); i++) {
+            ASTNode d=live.get(i);
+            boolean inner=false;
+            for(ASTNode p=d.getParent(); p!=null; p=p.getParent()) {
+                if(depth.containsKey(p)) {
+                    inner=true;
+                    break;
+                }
+            }
+            if(inner) {
+                continue;
+            }
+            
+            ASTNode par=d.getParent();
+            ASTNode rep=ts.transformAttached(d);
+            if(rep!=d) {
+                replaceChild(par, d.getChildNo(), rep);
+            }
+            enqueue(par, depth.get(d)-1, levels, queued);
+        }
+        
+        //  Simplify ancestors, deepest first, so each is seen once with all its
+        //  children already simplified. 
+        for(int dep=levels.size()-1; dep>=0; dep--) {
+            ArrayList<ASTNode> level=levels.get(dep);
+            for(int i=0; i<level.size(); i++) {
+                ASTNode a=level.get(i);
+                ASTNode par=a.getParent();
+                if(par==null) {
+                    //  The root.
+                    if(ts.processNode(a)!=null) {
+                        return false;
+                    }
+                    continue;
+                }
+                if(par.getChild(a.getChildNo())!=a) {
+                    continue;   // Detached.
+                }
+                
+                ASTNode cur=a;
+                NodeReplacement r=ts.processNode(cur);
+                while(r!=null && r.current_node!=null) {
+                    IdentityHashMap<ASTNode, Boolean> oldch=new IdentityHashMap<ASTNode, Boolean>();
+                    for(int j=0; j<cur.numChildren(); j++) {
+                        oldch.put(cur.getChild(j), true);
+                    }
+                    
+                    int chno=cur.getChildNo();
+                    cur=replaceChild(par, chno, r.current_node);
+                    
+                    //  New children have not been simplified in this position.
+                    for(int j=0; j<cur.numChildren(); j++) {
+                        ASTNode c=cur.getChild(j);
+                        if(!oldch.containsKey(c)) {
+                            ASTNode rep=ts.transformAttached(c);
+                            if(rep!=c) {
+                                replaceChild(cur, j, rep);
+                            }
+                        }
+                    }
+                    r=ts.processNode(cur);
+                }
+                enqueue(par, dep-1, levels, queued);
+            }
+        }
+        return true;
+    }
+    
+    //  Depth of node below top, or -1 if it is not attached to top. 
+    private static int depthInTree(ASTNode node, ASTNode top) {
+        int dep=0;
+        ASTNode c=node;
+        ASTNode p=node.getParent();
+        while(p!=null) {
+            if(p.getChild(c.getChildNo())!=c) {
+                return -1;
+            }
+            c=p;
+            p=p.getParent();
+            dep++;
+        }
+        return (c==top) ? dep : -1;
+    }
+    
+    private static void enqueue(ASTNode a, int dep, ArrayList<ArrayList<ASTNode>> levels, IdentityHashMap<ASTNode, Boolean> queued) {
+        if(queued.containsKey(a)) {
+            return;
+        }
+        queued.put(a, true);
+        while(levels.size()<=dep) {
+            levels.add(new ArrayList<ASTNode>());
+        }
+        levels.get(dep).add(a);
+    }
+    
+    private static ASTNode replaceChild(ASTNode par, int chno, ASTNode rep) {
+        rep.setParent(null);  // Clear the junk parent pointer so rep is not copied. 
+        par.setChild(chno, rep);
+        return par.getChild(chno);
+    }
+}
@@ -0,0 +1,74 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+
+//  Passes clauses straight to an interactive (JNI) SAT solver. 
+
+public class InteractiveClauseSink extends ClauseSink
+{
+    private InteractiveSATSolver iSolver;
+    
+    public InteractiveClauseSink(InteractiveSATSolver _iSolver) {
+        iSolver=_iSolver;
+    }
+    
+    public void reserveHeader() {
+    }
+    
+    public void addClause(long[] lits, int len) {
+        int[] clause=new int[len];
+        for(int i=0; i<len; i++) {
+            clause[i]=(int)lits[i];
+        }
+        iSolver.addClauseToISATSolver(clause);
+    }
+    
+    public void addClause(int[] lits, int len) {
+        iSolver.addClauseToISATSolver(Arrays.copyOf(lits, len));
+    }
+    
+    public void addComment(String comment) {
+    }
+    
+    public long position() {
+        return 0L;
+    }
+    
+    //  Clauses are already in the solver and cannot be taken back; removable
+    //  clauses are handled with assumptions instead. 
+    public boolean canTruncate() {
+        return false;
+    }
+    
+    public void truncate(long pos) throws IOException {
+        throw new IOException("Clauses passed to an interactive SAT solver cannot be removed.");
+    }
+    
+    public void finalise(long numVars, long numClauses, long top) {
+    }
+    
+    public void close() {
+    }
+}
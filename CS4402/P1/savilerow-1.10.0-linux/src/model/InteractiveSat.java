@@ -31,9 +31,17 @@ public class InteractiveSat extends Sat{
     public InteractiveSat(Model m){ 
         super(m.global_symbols);
         initInteractiveSolver(m);
+        InteractiveClauseSink isink=new InteractiveClauseSink(iSolver);
+        sink=isink;
         //make true var and add that clause as the true clause.
         trueVar=getNextVariableNumber();
-        addClause(trueVar);
+        if(CmdFlags.getMaxsattrans()) {
+            isink.addClause(new long[]{top, trueVar}, 2);
+        }
+        else {
+            isink.addClause(new long[]{trueVar}, 1);
+        }
+        numClauses++;
     }
 
     private void initInteractiveSolver(Model m){
@@ -46,9 +54,13 @@ public class InteractiveSat extends Sat{
         else if(CmdFlags.getSatFamily().equals("cadical")){
             iSolver=new InteractiveCadicalSATSolver(m);
         }
+        else if(CmdFlags.getSatFamily().equals("java")){
+            iSolver=new InteractiveJavaSATSolver(m);
+        }
         else{
-            CmdFlags.warning("Using default SAT solver: glucose");
-            iSolver = new InteractiveGlucoseSATSolver(m);
+            //  The built-in solver needs no native library.
+            CmdFlags.warning("Using default interactive SAT solver: java");
+            iSolver = new InteractiveJavaSATSolver(m);
         }
         // set rnd seed if it supplied
         for(String flag : CmdFlags.getSolverExtraFlags()){
@@ -68,80 +80,7 @@ public class InteractiveSat extends Sat{
     }  
 
     @Override
-    public void addClause(long lit1) {
-        ArrayList<Long> tempClause = new ArrayList<Long>();
-        if(CmdFlags.getMaxsattrans()) {
-            tempClause.add(top);
-        }
-        if(lit1!=-trueVar) {
-            tempClause.add(lit1);
-        }
-        iSolver.addClauseToISATSolver(tempClause.stream().mapToLong(i -> i).toArray());
-        numClauses++;
-    }
-    @Override
-    public void addClause(long lit1, long lit2){
-        ArrayList<Long> tempClause = new ArrayList<Long>();
-        if(CmdFlags.getMaxsattrans()) {
-            tempClause.add(top);
-        }
-        if(lit1!=-trueVar) {
-            tempClause.add(lit1);
-        }
-        if(lit2!=-trueVar) {
-            tempClause.add(lit2);
-        }
-        iSolver.addClauseToISATSolver(tempClause.stream().mapToLong(i -> i).toArray());
-        numClauses++;
-    }
-    @Override
-    public void addClause(long lit1, long lit2, long lit3){
-        ArrayList<Long> tempClause = new ArrayList<Long>();
-        if(CmdFlags.getMaxsattrans()) {
-            tempClause.add(top);
-        }
-        if(lit1!=-trueVar) {
-            tempClause.add(lit1);
-        }
-        if(lit2!=-trueVar) {
-            tempClause.add(lit2);
-        }
-        if(lit3!=-trueVar) {
-            tempClause.add(lit3);
-        }
-        iSolver.addClauseToISATSolver(tempClause.stream().mapToLong(i -> i).toArray());
-        numClauses++;
-    }
-    @Override
-    public void addClause(ArrayList<Long> literals){
-        if(CmdFlags.getMaxsattrans()) {
-            literals.add(0, top);
-        }
-        literals.remove(-trueVar);
-        iSolver.addClauseToISATSolver(literals.stream().mapToLong(i -> i).toArray());
-        numClauses++;
-    }
-    @Override
-    public void addClauseReified(ArrayList<Long> literals, long auxVar) {
-        // auxVar -> literals
-        ArrayList<Long> t1 = new ArrayList<Long>(literals);
-        t1.add(0, -auxVar);
-        addClause(t1);
-        // For each literal, literal -> auxVar.
-        for(int i=0; i<literals.size(); i++) {
-            t1.clear();
-            t1.add(-literals.get(i));
-            t1.add(auxVar);
-            addClause(t1);
-        }
-    }
-    @Override
-    public void addSoftClause(long lit1, long weight){
-        iSolver.addClauseToISATSolver(new long[]{weight, lit1});
-        numClauses++;
-    }
-    @Override
-    public void addClauseAfterFinalise(long lit1, boolean removable){
+    public void addClauseAfterFinalise(long lit1, boolean removable) throws IOException {
         // Do the same thing as adding a clause if its not removable
         if (removable){
             iSolver.addToAssumptionQueue(lit1);
@@ -152,7 +91,7 @@ public class InteractiveSat extends Sat{
     }
 
     @Override
-    public void addClauseAfterFinalise2(long lit1, long lit2, boolean removable){
+    public void addClauseAfterFinalise2(long lit1, long lit2, boolean removable) throws IOException {
         // Do the same thing as adding a clause if its not removable
         if (removable){
             iSolver.addToAssumptionQueue(lit1);
@@ -165,7 +104,7 @@ public class InteractiveSat extends Sat{
     }
 
     @Override
-    public void addClauseAfterFinalise(ArrayList<Long> literals){
+    public void addClauseAfterFinalise(ArrayList<Long> literals) throws IOException {
         // Do the same thing as adding a clause. We don't need to care about file opening
         // In optimisation problems, this can go to adding an assumption instead.
         addClause(literals);
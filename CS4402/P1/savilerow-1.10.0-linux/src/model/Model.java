@@ -130,6 +130,8 @@ public class Model
     {
         //AuditTreeLinks atl=new AuditTreeLinks();
         TransformSimplify ts=new TransformSimplify();
+        long symbolsBefore=global_symbols.getChangeCount();
+        IncrementalSimplify.stop();
         
         //atl.transform(constraints);
         boolean sat=global_symbols.simplify();   // return value -- true means no empty domains. 
@@ -169,6 +171,8 @@ public class Model
         }
         
         filt.simplify();    //  Allows FilteredDomainStore to get rid of any assigned vars in its stored expressions.
+        
+        IncrementalSimplify.start(this, symbolsBefore);  //  Record changes from here on, for the next transform. 
     }
     
     // Substitute an expression throughout.
@@ -230,6 +234,7 @@ public class Model
         if(CmdFlags.getVerbose()) {
             System.out.println("Rule:"+t.getClass().getName());
         }
+        CompileProfiler.Sample prof=CompileProfiler.begin(this);
         boolean changedModel=false;
         
         assert constraints instanceof Top;
@@ -284,7 +289,10 @@ public class Model
         }
         
         if(changedModel) {
-            simplify();
+            //  Simplify only the parts of the tree that changed, if possible.
+            if(!IncrementalSimplify.simplify(this)) {
+                simplify();
+            }
             
             if(CmdFlags.getVerbose()) {
                 System.out.println("Model after rule application and simplify:\n"+this.toString());
@@ -292,6 +300,7 @@ public class Model
         }
         
         assert constraints instanceof Top;
+        CompileProfiler.endRule(prof, t.getClass().getSimpleName(), this);
         return changedModel;
     }
     
@@ -339,28 +348,27 @@ public class Model
         // Copy symbol table first.
         SymbolTable newst=global_symbols.copy(newmodel);
         FilteredDomainStore f=filt.copy(newst);
-        //  Identifiers have a reference to the original symbol table. Fix it to point to the copy.
-        TransformFixSTRef tf=new TransformFixSTRef(newmodel);
         
-        ASTNode newct=tf.transform(constraints.copy());
+        //  Identifiers have a reference to the model. Copy them pointing to the new one.
+        ASTNode newct=constraints.copy(newmodel);
         
         ASTNode ob=null;
-        if(objective!=null) ob=tf.transform(objective.copy());
+        if(objective!=null) ob=objective.copy(newmodel);
         
-        ASTNode bran=tf.transform(branchingon.copy());
+        ASTNode bran=branchingon.copy(newmodel);
         
         ConstantMatrixStore cmst=cmstore.copy(newmodel);
         
         ASTNode snscopy=null;
-        if(sns!=null) snscopy=tf.transform(sns.copy());
+        if(sns!=null) snscopy=sns.copy(newmodel);
         
         ASTNode presvarscopy=null;
-        if(preserveVariables!=null) presvarscopy=tf.transform(preserveVariables.copy());
+        if(preserveVariables!=null) presvarscopy=preserveVariables.copy(newmodel);
         
         newmodel.setup(newct, newst, f, cmst, ob, bran, heuristic, snscopy, presvarscopy);
         
         if(incumbentSolution!=null) {
-            newmodel.incumbentSolution=tf.transform(incumbentSolution.copy());
+            newmodel.incumbentSolution=incumbentSolution.copy(newmodel);
         }
         
         return newmodel;
@@ -673,7 +681,12 @@ public class Model
         AMOPB.yCache.clear();
         
         try {
-            constraints.toSAT(satModel);
+            if(CmdFlags.sat_threads>1 && ParallelSatEncoder.canEncodeInParallel(this)) {
+                new ParallelSatEncoder(satModel, CmdFlags.sat_threads).encode(constraints.getChild(0));
+            }
+            else {
+                constraints.toSAT(satModel);
+            }
             
             if(CmdFlags.getMaxsattrans() && objective!=null) {
                 //  Encode the optimisation variable with soft clauses.
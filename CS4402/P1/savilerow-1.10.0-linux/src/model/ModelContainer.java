@@ -39,17 +39,31 @@ public class ModelContainer {
     }
     
     public void process() {
+        CompileProfiler.Sample prof=CompileProfiler.begin(m);
         processPreamble();
+        CompileProfiler.endPhase(prof, "processPreamble", m);
         
+        prof=CompileProfiler.begin(m);
         instancePreFlattening1();
+        CompileProfiler.endPhase(prof, "instancePreFlattening1", m);
         
         if (CmdFlags.getUsePropagate()) {
+            prof=CompileProfiler.begin(m);
             squashDomains();
+            CompileProfiler.endPhase(prof, "squashDomains", m);
         }
         
+        prof=CompileProfiler.begin(m);
         instancePreFlattening2(false);
+        CompileProfiler.endPhase(prof, "instancePreFlattening2", m);
+        
+        prof=CompileProfiler.begin(m);
         instanceFlattening(false);
+        CompileProfiler.endPhase(prof, "instanceFlattening", m);
+        
+        prof=CompileProfiler.begin(m);
         postFlattening(false);
+        CompileProfiler.endPhase(prof, "postFlattening", m);
     }
     
     // Same as process except does not run solver at the end.
@@ -79,8 +93,18 @@ public class ModelContainer {
 
         // The next loop will pull things out of the parameter file, so first
         // deal with the parameters -- make undef safe, simplify.
+        ASTNode[] paramIds = new ASTNode[parameters.size()];
+        ASTNode[] paramValues = new ASTNode[parameters.size()];
         for (int i =0; i < parameters.size(); i++) {
             ASTNode a = parameters.get(i);
+            
+            // Sub all earlier parameters into this one.
+            if (i > 0) {
+                SubstitutionTemplate t = new SubstitutionTemplate(a, Arrays.copyOf(paramIds, i));
+                if (t.hasSlots()) {
+                    a = t.instantiate(Arrays.copyOf(paramValues, i));
+                }
+            }
 
             if (!a.typecheck(m.global_symbols)) {
                 CmdFlags.errorExit("Failed type checking in parameter file:" + a);
@@ -108,12 +132,8 @@ public class ModelContainer {
             a = fixIndexDomainsLetting(a);            // Repair any inconsistency between the indices in a matrix and its matrix domain (if there is one).
 
             parameters.set(i, a);
-
-            // Scan forward in the parameters to sub this parameter into future ones.
-            ReplaceASTNode rep = new ReplaceASTNode(a.getChild(0), a.getChild(1));
-            for (int j = i + 1; j < parameters.size(); j++) {
-                parameters.set(j, rep.transform(parameters.get(j)));
-            }
+            paramIds[i] = a.getChild(0);
+            paramValues[i] = a.getChild(1);
         }
 
         // Now go through the preamble in order.
@@ -344,8 +364,10 @@ public class ModelContainer {
         }
         
         m.transform(tn);  //  Normalise to remove any duplicate constraints that would trigger identical scopes heuristic.
+        CompileProfiler.Sample prof=CompileProfiler.begin(m);
         Tabulation t= new Tabulation(m);
         t.process(propagate);
+        CompileProfiler.endPhase(prof, "tabulation", m);
         
         TransformLexAlldiff tla=new TransformLexAlldiff(m);
         m.transform(tla);
@@ -972,6 +994,15 @@ public class ModelContainer {
             }
         }
 
+        //  Domain filtering is done in-process unless Minion is needed. Strong AMO
+        //  detection relies on the mutex section of the Minion file. 
+        if(propagate && !CmdFlags.reduce_domains_minion && !CmdFlags.amo_detect_strong) {
+            CompileProfiler.Sample prof=CompileProfiler.begin(m);
+            ArrayList<ASTNode> reduced=DomainPropagator.reduceDomains(m);
+            CompileProfiler.endPhase(prof, "reduceDomains", m);
+            return reduced;
+        }
+        
         assert CmdFlags.minionfile != null;
 
         String minfilename = CmdFlags.minionfile;
@@ -980,7 +1011,9 @@ public class ModelContainer {
             try {
                 FileOutputStream fw=new FileOutputStream(minfilename);
                 BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fw));
+                CompileProfiler.Sample prof=CompileProfiler.begin(m);
                 m.toMinion(out, propagate);
+                CompileProfiler.endRule(prof, "Minion output", m);
                 out.flush();
                 fw.getFD().sync();
                 out.close();
@@ -1359,7 +1392,9 @@ public class ModelContainer {
         try {
             FileOutputStream fw=new FileOutputStream(CmdFlags.fznfile);
             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fw));
+            CompileProfiler.Sample prof=CompileProfiler.begin(m);
             m.toFlatzinc(out);
+            CompileProfiler.endRule(prof, "FlatZinc output", m);
             out.flush();
             fw.getFD().sync();
             out.close();
@@ -1562,37 +1597,62 @@ public class ModelContainer {
 
     // If the -sat cmdline option given
     private void satOutput() {
-        boolean satenc=m.toSAT();
-        
-        if(!satenc) {
-            createInfoFiles("SAT");
-        }
-        
-        if(!CmdFlags.getRunSolver()) {
-            if(CmdFlags.interactiveSolver){
-                CmdFlags.errorExit("Interactive Solvers only works on run-solver mode");
+        try {
+            CompileProfiler.Sample prof=CompileProfiler.begin(m);
+            boolean satenc=m.toSAT();
+            CompileProfiler.endRule(prof, "SAT encoding", m);
+            
+            if(!satenc) {
+                createInfoFiles("SAT");
             }
-        }
-        else if (!CmdFlags.dominanceRelation) {
-            if(!CmdFlags.interactiveSolver) {
-                CmdFlags.println("Created output SAT file " + CmdFlags.satfile);
+            
+            if(!CmdFlags.getRunSolver()) {
+                if(CmdFlags.interactiveSolver){
+                    CmdFlags.errorExit("Interactive Solvers only works on run-solver mode");
+                }
             }
-            // run solver if no dominance directly
-            SATSolver solver = createSolver();
-            try {
-                solver.findSolutions(CmdFlags.getSatSolver(), CmdFlags.satfile, m);
-            } catch (Exception e) {
-                CmdFlags.errorExit("Could not run SAT solver: " + e);
+            else if (!CmdFlags.dominanceRelation) {
+                if(!CmdFlags.interactiveSolver) {
+                    CmdFlags.println("Created output SAT file " + CmdFlags.satfile);
+                }
+                // run solver if no dominance directly
+                SATSolver solver = createSolver();
+                try {
+                    solver.findSolutions(CmdFlags.getSatSolver(), CmdFlags.satfile, m);
+                } catch (Exception e) {
+                    CmdFlags.errorExit("Could not run SAT solver: " + e);
+                }
             }
-            
+        }
+        finally {
+            closeSatOutput();
+        }
+        
+        if(CmdFlags.getRunSolver() && !CmdFlags.dominanceRelation) {
             //  Delete the dimacs file because it may be very large.
             File f = new File(CmdFlags.satfile);
             if (f.exists()) f.delete();
-        }        
+        }
+    }
+    
+    //  Release the SAT output file. The Sat object is kept by the model after 
+    //  compilation, so without this each compile in a -batch or -server 
+    //  process would keep its file open. 
+    protected void closeSatOutput() {
+        if(m.satModel!=null) {
+            try {
+                m.satModel.closeOutput();
+            }
+            catch(IOException e) {
+                CmdFlags.warning("Failed to close SAT output file: " + e);
+            }
+        }
     }
     
     protected void smtOutput() {
+        CompileProfiler.Sample prof=CompileProfiler.begin(m);
         boolean satenc=m.toSMT();
+        CompileProfiler.endRule(prof, "SMT encoding", m);
         
         if (!satenc) {
             createInfoFiles("SMT");
@@ -1673,6 +1733,9 @@ public class ModelContainer {
                 solver = new YicesSolver(m);
             }
         }
+        else if(CmdFlags.sat_portfolio!=null) {
+            solver=new PortfolioSATSolver(m);
+        }
         else {
             if(CmdFlags.getSatFamily().equals("minisat")) {
                 solver=new MinisatSATSolver(m);
@@ -1838,9 +1901,10 @@ public class ModelContainer {
     public ModelContainer copy() {
         Model mcopy=m.copy();
         ArrayList<ASTNode> paramcopy=new ArrayList<ASTNode>();
-        TransformFixSTRef tf=new TransformFixSTRef(mcopy);
+        //  Copy the parameters too, otherwise they would be shared with (and
+        //  pointed at) the copied model. 
         for(int i=0; i<parameters.size(); i++) {
-            paramcopy.add(tf.transform(parameters.get(i)));
+            paramcopy.add(parameters.get(i).copy(mcopy));
         }
         return new ModelContainer(mcopy, paramcopy);
     }
@@ -0,0 +1,164 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+import java.util.concurrent.*;
+
+//  Encodes the top-level constraints to SAT on a pool of worker threads. 
+//
+//  The conjuncts of the top-level And are split into fixed-size chunks. 
+//  Each chunk is encoded into its own Sat object that shares the variable
+//  encoding tables of the main Sat object (read-only at this point) and 
+//  writes to a BufferClauseSink. Aux SAT variables in a chunk are numbered 
+//  from LOCALBASE upwards. Chunks are then copied to the output in order, 
+//  and each chunk's aux variables are moved to the block that immediately 
+//  follows the previous chunk. The result is exactly the CNF that a 
+//  sequential encoding would produce, whatever the number of threads. 
+
+public class ParallelSatEncoder
+{
+    //  Chunk-local aux variables start here. Well above any real SAT variable.
+    public static final long LOCALBASE=1L<<48;
+    
+    //  Number of top-level constraints in a chunk. 
+    public static final int CHUNKSIZE=256;
+    
+    private Sat satModel;
+    private int numThreads;
+    
+    public ParallelSatEncoder(Sat _satModel, int _numThreads) {
+        satModel=_satModel;
+        numThreads=_numThreads;
+    }
+    
+    //  Can the current model and options be encoded in parallel? Some encodings
+    //  keep state shared between constraints (e.g. the AMOPB y-cache, MDD 
+    //  and RGGT encodings) so they are only encoded sequentially. AMOPB and 
+    //  EOPB constraints (written by the user or made from sums) fill the 
+    //  static y-cache with aux literals during toSAT whatever the encoding 
+    //  options, so any model containing one is encoded sequentially. 
+    public static boolean canEncodeInParallel(Model m) {
+        if(m.satModel.getClass()!=Sat.class) {
+            return false;  //  SMT and interactive solvers write directly.
+        }
+        if(CmdFlags.amo_detect || CmdFlags.sat_table_mdd) {
+            return false;
+        }
+        if(CmdFlags.getMaxsattrans()) {
+            return false;  //  Weights and top are stored with the literals and could be mistaken for chunk-local variables.
+        }
+        if(CmdFlags.getSatPBEnc()!=SumEnc.TREE || CmdFlags.getSatSumEnc()!=SumEnc.TREE) {
+            return false;
+        }
+        if(! (m.constraints.getChild(0) instanceof And)) {
+            return false;
+        }
+        return !containsAMOPB(m.constraints.getChild(0));
+    }
+    
+    //  Search the whole tree (not just the top-level conjuncts) because an 
+    //  AMOPB may appear inside a reified or nested constraint. 
+    private static boolean containsAMOPB(ASTNode a) {
+        if(a instanceof AMOPB) {
+            return true;  //  Includes EOPB.
+        }
+        for(int i=0; i<a.numChildren(); i++) {
+            if(containsAMOPB(a.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public void encode(ASTNode topAnd) throws IOException {
+        ArrayList<ASTNode> conjuncts=topAnd.getChildren();
+        int numChunks=(conjuncts.size()+CHUNKSIZE-1)/CHUNKSIZE;
+        
+        ExecutorService pool=Executors.newFixedThreadPool(numThreads);
+        
+        try {
+            //  Keep a bounded number of chunks in flight so that finished
+            //  chunks do not pile up in memory while an earlier one is encoded.
+            int window=4*numThreads;
+            ArrayDeque<Future<Sat>> inflight=new ArrayDeque<Future<Sat>>();
+            int nextChunk=0;
+            
+            while(nextChunk<numChunks || !inflight.isEmpty()) {
+                while(nextChunk<numChunks && inflight.size()<window) {
+                    int start=nextChunk*CHUNKSIZE;
+                    List<ASTNode> chunk=conjuncts.subList(start, Math.min(start+CHUNKSIZE, conjuncts.size()));
+                    inflight.addLast(pool.submit(new ChunkTask(chunk)));
+                    nextChunk++;
+                }
+                
+                Sat done=waitFor(inflight.removeFirst());
+                satModel.appendChunk(done, LOCALBASE);
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private Sat waitFor(Future<Sat> f) throws IOException {
+        try {
+            return f.get();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch(ExecutionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+    
+    private class ChunkTask implements Callable<Sat> {
+        private List<ASTNode> chunk;
+        
+        ChunkTask(List<ASTNode> _chunk) {
+            chunk=_chunk;
+        }
+        
+        public Sat call() throws IOException {
+            CompileProfiler.Sample prof=CompileProfiler.beginWorker();
+            try {
+                Sat chunkSat=new Sat(satModel, new BufferClauseSink(), LOCALBASE);
+                for(int i=0; i<chunk.size(); i++) {
+                    And.conjunctToSAT(chunkSat, chunk.get(i));
+                }
+                return chunkSat;
+            }
+            finally {
+                CompileProfiler.endWorker(prof);
+            }
+        }
+    }
+}
@@ -59,6 +59,34 @@ public class SMT extends Sat
         integer_aux_variables = otherSMT.integer_aux_variables;
     }
 
+    //  SMT-LIB output is text, so it is written with a BufferedWriter rather than a ClauseSink.
+    protected void openOutput(String fname, boolean append) throws IOException {
+        fw=new FileOutputStream(fname, append);
+        outstream = new BufferedWriter(new OutputStreamWriter(fw));
+    }
+    
+    protected long outputPosition() throws IOException {
+        return fw.getChannel().position();
+    }
+    
+    protected void reopenOutput(String fname) throws IOException {
+        openOutput(fname, true);
+    }
+    
+    protected long outputLength() throws IOException {
+        RandomAccessFile f = new RandomAccessFile(CmdFlags.smtfile, "rws");
+        long len=f.length();
+        f.close();
+        return len;
+    }
+    
+    protected void truncateOutput(long len) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(CmdFlags.smtfile, "rws");
+        f.setLength(len);
+        f.close();
+        openOutput(CmdFlags.smtfile, true);
+    }
+    
     protected void createHeader() throws IOException {
         addInfo("smt-lib-version", "2.6");
         addInfo("source", "| Auto-generated by Savile Row |");
@@ -449,6 +477,13 @@ public class SMT extends Sat
         else { super.addClause(literals); }
     }
 
+    public void addClause(long[] literals, int len) throws IOException
+    {
+        if (len == 0) { addEmptyClause(); }
+        else if (len == 1) { addClause(literals[0]); }
+        else { super.addClause(literals, len); }
+    }
+
     public void addClauseReified(ArrayList<Long> literals, long auxVar) throws IOException
     {
         if (literals.size()==0) { addClause(-auxVar); }
@@ -24,30 +24,24 @@ package savilerow;
 import java.util.*;
 import java.io.*;
 
-import gnu.trove.map.hash.*;
-
 public class Sat
 {
     protected long variableNumber=1;
     
     protected long numClauses=0;
     
-    //Maps the SAT variables (direct only) to SR variable/value.
-    protected TLongObjectHashMap<NumberMap> dimacsMapping;
-    
-    // Just enough info to decode order encoding, for SR vars that have only the order encoding. 
-    public TLongObjectHashMap<NumberMap> orderMappingMin;
-    public TLongObjectHashMap<NumberMap> orderMappingMid;
-    public TLongObjectHashMap<NumberMap> orderMappingMax;
-    
-    //Maps Variable objects to their respective values in CNF form
-    private TObjectLongHashMap<NumberMap> directVarMapping;
+    //  Maps SR variable/value pairs to direct and order SAT literals, and SAT 
+    //  literals back to SR variable/value for decoding solutions. 
+    protected SatVarMap varMap;
     
-    private TObjectLongHashMap<NumberMap> orderVarMapping;
+    //  Last variable looked up in varMap; encoders ask for the same variable many times in a row. 
+    private SatVarMap.VarEnc lastEnc=null;
     
     protected SymbolTable global_symbols;
     
-    protected FileOutputStream fw;
+    protected ClauseSink sink;             //  Destination for clauses (DIMACS, binary or interactive solver).
+    
+    protected FileOutputStream fw;         //  Used only by SMT output.
     protected BufferedWriter outstream;
     
     protected long trueVar=Long.MAX_VALUE;   //  A SAT variable that is true in all solutions.
@@ -58,23 +52,13 @@ public class Sat
     
     public Sat(SymbolTable _global_symbols)
     {
-        dimacsMapping=new TLongObjectHashMap<NumberMap>();
-        
-        directVarMapping=new TObjectLongHashMap<NumberMap>();
-        orderVarMapping=new TObjectLongHashMap<NumberMap>();
-        
-        orderMappingMin=new TLongObjectHashMap<NumberMap>();
-        orderMappingMid=new TLongObjectHashMap<NumberMap>();
-        orderMappingMax=new TLongObjectHashMap<NumberMap>();
+        varMap=new SatVarMap();
         global_symbols=_global_symbols;
         
-        assert directVarMapping.getNoEntryValue()==0L;
-        assert orderVarMapping.getNoEntryValue()==0L;
         if (!CmdFlags.interactiveSolver){
             try {
                 String fname= (CmdFlags.getSMTtrans()) ? CmdFlags.smtfile : CmdFlags.satfile;
-                fw=new FileOutputStream(fname);
-                outstream = new BufferedWriter(new OutputStreamWriter(fw));
+                openOutput(fname, false);
                 createHeader();
             }
             catch ( IOException e ) {
@@ -88,20 +72,14 @@ public class Sat
      * need global symbols to be set later.
      */
     public Sat(Sat satmodel2){
-        dimacsMapping = satmodel2.dimacsMapping;
-        directVarMapping=satmodel2.directVarMapping;
-        orderVarMapping=satmodel2.orderVarMapping;
-        orderMappingMin=satmodel2.orderMappingMin;
-        orderMappingMid=satmodel2.orderMappingMid;
-        orderMappingMax=satmodel2.orderMappingMax;
+        varMap=satmodel2.varMap;
         global_symbols=satmodel2.global_symbols;
         variableNumber=satmodel2.variableNumber;
 
         if (!CmdFlags.interactiveSolver){
             try {
                 String fname= (CmdFlags.getSMTtrans()) ? CmdFlags.smtfile : CmdFlags.satfile;
-                fw=new FileOutputStream(fname, true);
-                outstream = new BufferedWriter(new OutputStreamWriter(fw));
+                openOutput(fname, true);
             }
             catch ( IOException e ) {
                 CmdFlags.errorExit("Failed to open or write to SAT output file.");
@@ -110,12 +88,32 @@ public class Sat
     }
 
     
+    /**
+     * Shares the variable encoding of satParent but writes to _sink, numbering
+     * any new (aux) SAT variables from firstVar. Used by ParallelSatEncoder.
+     */
+    protected Sat(Sat satParent, ClauseSink _sink, long firstVar) {
+        varMap=satParent.varMap;
+        global_symbols=satParent.global_symbols;
+        trueVar=satParent.trueVar;
+        top=satParent.top;
+        contextLits.addAll(satParent.contextLits);
+        sink=_sink;
+        variableNumber=firstVar;
+    }
+    
+    //  Open the output file for writing or appending. Overridden for SMT.
+    protected void openOutput(String fname, boolean append) throws IOException {
+        sink=ClauseSink.open(fname, append);
+    }
+    
+    //  Current length of the output, including anything not yet flushed. 
+    protected long outputPosition() throws IOException {
+        return sink.position();
+    }
+    
     protected void createHeader() throws IOException {
-        // Write 100 spaces at start of file, to leave space for "p cnf" line.
-        for(int i=0; i<10; i++) {
-            outstream.write("          ");
-        }
-        outstream.newLine();
+        sink.reserveHeader();
     }
     
     private long variableNumberBak;
@@ -130,10 +128,7 @@ public class Sat
         numClausesBak=numClauses;
 
         //  Store file size so it can be truncated.
-        String fname= (CmdFlags.getSMTtrans()) ? CmdFlags.smtfile : CmdFlags.satfile;
-        RandomAccessFile f = new RandomAccessFile(fname, "rws");
-        filesizeBak = f.length();
-        f.close();
+        filesizeBak = outputLength();
     }
     public void BTRestore() throws IOException {
         assert !CmdFlags.interactiveSolver;
@@ -141,13 +136,7 @@ public class Sat
         numClauses=numClausesBak;
         
         // Truncate the file.
-        {
-            String fname= (CmdFlags.getSMTtrans()) ? CmdFlags.smtfile : CmdFlags.satfile;
-            RandomAccessFile f = new RandomAccessFile(fname, "rws");
-            f.setLength(filesizeBak);
-            f.close();
-        }
-        reopenFile();
+        truncateOutput(filesizeBak);
         
         if (!CmdFlags.getSMTtrans()){
             finaliseOutput();
@@ -158,8 +147,45 @@ public class Sat
     public void reopenFile() throws IOException {
         assert !CmdFlags.interactiveSolver;
         String fname= (CmdFlags.getSMTtrans()) ? CmdFlags.smtfile : CmdFlags.satfile;
-        fw=new FileOutputStream(fname, true);   ///  true for append.
-        outstream = new BufferedWriter(new OutputStreamWriter(fw));
+        reopenOutput(fname);
+    }
+    
+    //  The sink is kept open after finaliseOutput, so reopening only moves
+    //  to the end of the file. Overridden for SMT, which closes its output.
+    protected void reopenOutput(String fname) throws IOException {
+        sink.reopen();
+    }
+    
+    //  Length of the output file after finaliseOutput. 
+    protected long outputLength() throws IOException {
+        sink.reopen();
+        return sink.position();
+    }
+    
+    //  Cut the output back to len bytes and continue writing from there. 
+    protected void truncateOutput(long len) throws IOException {
+        if(!sink.canTruncate()) {
+            CmdFlags.errorExit("Cannot remove clauses from the SAT output in this mode.");
+        }
+        sink.truncate(len);
+    }
+    
+    //  Called just before a solver is run on the output file. Nothing is
+    //  forced to disk on finaliseOutput, only here. 
+    public void syncOutput() throws IOException {
+        if(sink!=null) {
+            sink.sync();
+        }
+    }
+    
+    //  Close the output once the encoding is complete and any solver runs on 
+    //  it have finished. Releases the file handle and buffer held by the sink. 
+    //  Nothing more can be written after this. 
+    public void closeOutput() throws IOException {
+        if(sink!=null) {
+            sink.close();
+            sink=null;
+        }
     }
     
     //Returns the next available SAT variable number.
@@ -167,76 +193,79 @@ public class Sat
         return variableNumber++;
     }
     
-    public NumberMap getDimacsMapping(long assign) {
-        return dimacsMapping.get(assign);
+    public SatVarMap getVarMap() {
+        return varMap;
+    }
+    
+    private SatVarMap.VarEnc getEncoding(String variableName) {
+        SatVarMap.VarEnc v=lastEnc;
+        if(v==null || (v.name!=variableName && !v.name.equals(variableName))) {
+            v=varMap.get(variableName);
+            if(v!=null) {
+                lastEnc=v;
+            }
+        }
+        return v;
     }
     
     // Create variable for the fact  variableName = value
-    private long createSatVariableDirect(String variableName, long value, boolean satOutputMapping) throws IOException {
-        NumberMap map=new NumberMap(value, variableName);
+    private long createSatVariableDirect(SatVarMap.VarEnc v, long value, boolean satOutputMapping) throws IOException {
         long satvar=getNextVariableNumber();
         if(satOutputMapping) {
-            addComment("Var '" + variableName + "' direct represents '" + value + "' with '" + satvar + "'");
+            addComment("Var '" + v.name + "' direct represents '" + value + "' with '" + satvar + "'");
         }
-        directVarMapping.put(map, satvar);
-        
-        dimacsMapping.put(satvar, map);
-        
+        varMap.setDirect(v, value, satvar);
         return satvar;
     }
     
     // Create variable for the fact  variableName <= value
-    private long createSatVariableOrder(String variableName, long value, boolean satOutputMapping) throws IOException {
-        NumberMap map=new NumberMap(value, variableName);
+    private long createSatVariableOrder(SatVarMap.VarEnc v, long value, boolean satOutputMapping) throws IOException {
         long satvar=getNextVariableNumber();
         if(satOutputMapping) {
-            addComment("Var '" + variableName + "' order represents '" + value + "' with '" + satvar + "'");
+            addComment("Var '" + v.name + "' order represents '" + value + "' with '" + satvar + "'");
         }
-        orderVarMapping.put(map, satvar);
+        varMap.setOrder(v, value, satvar);
         return satvar;
     }
     
     public long getOrderVariable(String variableName, long value) {
-        long l=orderVarMapping.get(new NumberMap(value, variableName));
-        if(l==orderVarMapping.getNoEntryValue()) {
-            Intpair bnds=global_symbols.getDomain(variableName).getBounds();
-            
-            if(value<bnds.lower) {
-                return -trueVar;  // false.
-            }
-            if(value>=bnds.upper) {
-                return trueVar;   // true.
-            }
-            
-            ArrayList<Intpair> intervals=global_symbols.getDomain(variableName).getIntervalSet();
-            for(int i=0; i<intervals.size()-1; i++) {
-                Intpair interval1=intervals.get(i);
-                Intpair interval2=intervals.get(i+1);
-                // Test if the value is between the two intervals. 
-                
-                if(value>interval1.upper && value<interval2.lower) {
-                    long l2=orderVarMapping.get(new NumberMap(interval1.upper, variableName));
-                    assert l2!=orderVarMapping.getNoEntryValue();
-                    return l2;
-                }
-            }
-            
-            assert false;
-            return 1;
+        SatVarMap.VarEnc v=getEncoding(variableName);
+        long min, max;
+        if(v!=null) {
+            min=v.min();
+            max=v.max();
         }
         else {
-            return l;
+            Intpair bnds=global_symbols.getDomain(variableName).getBounds();
+            min=bnds.lower;
+            max=bnds.upper;
+        }
+        if(value<min) {
+            return -trueVar;  // false.
         }
+        if(value>=max) {
+            return trueVar;   // true.
+        }
+        
+        //  If value is between two intervals, use the order variable for the 
+        //  top of the lower interval. 
+        long l=(v==null) ? 0L : v.getOrder(v.floorIndex(value));
+        assert l!=0L;
+        return l==0L ? 1 : l;
     }
     
     public long getDirectVariable(String variableName, long value) {
-        long l=directVarMapping.get(new NumberMap(value, variableName));
-        if(l==directVarMapping.getNoEntryValue()) {
-            return -trueVar;  // false.
-        }
-        else {
-            return l;
+        SatVarMap.VarEnc v=getEncoding(variableName);
+        if(v!=null) {
+            int idx=v.index(value);
+            if(idx>=0) {
+                long l=v.getDirect(idx);
+                if(l!=0L) {
+                    return l;
+                }
+            }
         }
+        return -trueVar;  // false.
     }
     
     public long getTrue() {
@@ -245,7 +274,7 @@ public class Sat
     
     // Create a new SAT variable used as an auxiliary when encoding a 
     // constraint. 
-    // This is represented in the directVarMapping table using the number of the
+    // This is represented in the direct mapping table using the number of the
     // variable as its name, so literals are available for var=1 and var=0
     
     // Should not have any identifiers with the number of the sat variable as their name. Removing from direct mapping table. 
@@ -318,13 +347,10 @@ public class Sat
             addComment("Var represented with SAT variable "+satvar);
         }
 
-        NumberMap val1map=new NumberMap(val1, name);
-        
-        directVarMapping.put(val1map, satvar);
+        SatVarMap.VarEnc v=varMap.newVariable(name, domain.getIntervalSet());
+        varMap.setDirect(v, val1, satvar);
         // Make sure the variable is always true
         addClause(satvar);
-        
-        dimacsMapping.put(satvar, val1map);
     }
     
     // noConstraints is true if this SR variable is mentioned in no constraints. 
@@ -350,20 +376,16 @@ public class Sat
             addComment("Var represented with SAT variable "+satvar);
         }
         
-        NumberMap val1map=new NumberMap(val1, name);
-        NumberMap val2map=new NumberMap(val2, name);
+        SatVarMap.VarEnc v=varMap.newVariable(name, domain.getIntervalSet());
         
-        directVarMapping.put(val2map, satvar);
-        directVarMapping.put(val1map, -satvar);
+        //  Also gives the translation back from SAT solution.
+        varMap.setDirect(v, val2, satvar);
+        varMap.setDirect(v, val1, -satvar);
         
         //  A two-valued variable is always <= val2
-        orderVarMapping.put(val2map, trueVar);
+        varMap.setOrder(v, val2, trueVar);
         // The variable is <=val1 if it is not =val2. 
-        orderVarMapping.put(val1map, -satvar);
-        
-        // For translation back from SAT solution.
-        dimacsMapping.put(satvar, val2map);
-        dimacsMapping.put(-satvar, val1map);
+        varMap.setOrder(v, val1, -satvar);
         
         if(noConstraints) {
             addClause(satvar, -satvar);   // Make sure this sat variable is mentioned in a clause, otherwise the SAT solver will rudely ignore it.
@@ -406,6 +428,7 @@ public class Sat
     {
         ASTNode domain=global_symbols.getDomain(name);
         ArrayList<Intpair> intervalset=domain.getIntervalSet();
+        SatVarMap.VarEnc v=varMap.newVariable(name, intervalset);
         
         // Need to keep track of the previous order variable. Initially false. (x <= lowerbound-1 is false) 
         long prevordervar=-trueVar;
@@ -422,7 +445,7 @@ public class Sat
                 long ordervar=trueVar;
                 
                 if(!lastValue) {
-                    ordervar=createSatVariableOrder(name, i, satOutputMapping);
+                    ordervar=createSatVariableOrder(v, i, satOutputMapping);
                     
                     // Ladder clause   e.g. [x<=5] -> [x<=6]
                     if( prevordervar != -trueVar ) {
@@ -437,9 +460,7 @@ public class Sat
                     }
             
                     // Because no SAT variable is created, need to add some mappings. 
-                    NumberMap directmap=new NumberMap(i, name);
-                    directVarMapping.put(directmap, directvar);
-                    dimacsMapping.put(directvar, directmap);
+                    varMap.setDirect(v, i, directvar);
                 }
                 else if(firstValue) {
                     directvar=ordervar;
@@ -448,12 +469,10 @@ public class Sat
                     }
             
                     // Because no SAT variable is created, need to add some mappings. 
-                    NumberMap directmap=new NumberMap(i, name);
-                    directVarMapping.put(directmap, directvar);
-                    dimacsMapping.put(directvar, directmap);
+                    varMap.setDirect(v, i, directvar);
                 }
                 else {
-                    directvar=createSatVariableDirect(name, i, satOutputMapping);
+                    directvar=createSatVariableDirect(v, i, satOutputMapping);
                 }
                 
                 if(!firstValue && !lastValue) {
@@ -473,15 +492,16 @@ public class Sat
         }
 
         // Optional extra: ALO clause
-        ArrayList<Long> alo=new ArrayList<Long>();
+        long[] alo=new long[(int)Intpair.numValues(intervalset)];
+        int alolen=0;
         for(int intervalidx=0; intervalidx<intervalset.size(); intervalidx++) {
             Intpair bnds=intervalset.get(intervalidx);
             for(long i=bnds.lower; i<=bnds.upper; i++)
             {
-                alo.add(getDirectVariable(name, i));
+                alo[alolen++]=getDirectVariable(name, i);
             }
         }
-        addClause(alo);
+        addClause(alo, alolen);
         
     }
     
@@ -489,6 +509,7 @@ public class Sat
     {
         ASTNode domain=global_symbols.getDomain(name);
         ArrayList<Intpair> intervalset=domain.getIntervalSet();
+        SatVarMap.VarEnc v=varMap.newVariable(name, intervalset);
 
         ArrayList<ASTNode> amo=new ArrayList<ASTNode>();
 
@@ -497,7 +518,7 @@ public class Sat
 
             for (long i=bnds.lower; i<=bnds.upper; i++)
             {
-                long dvar=createSatVariableDirect(name, i, satOutputMapping);
+                long dvar=createSatVariableDirect(v, i, satOutputMapping);
                 amo.add(new SATLiteral(dvar, global_symbols.m));
             }
         }
@@ -527,6 +548,7 @@ public class Sat
     {
         ASTNode domain=global_symbols.getDomain(name);
         ArrayList<Intpair> intervalset=domain.getIntervalSet();
+        SatVarMap.VarEnc v=varMap.newVariable(name, intervalset);
         
         // Need to keep track of the previous order variable. Initially false. (x <= lowerbound-1 is false) 
         long prevordervar=-trueVar;
@@ -538,26 +560,24 @@ public class Sat
             {
                 boolean lastValue= i==bnds.upper && intervalidx==intervalset.size()-1;
                 
-                NumberMap n=new NumberMap(i, name);
-                
                 if(!lastValue) {
-                    long ordervar=createSatVariableOrder(name, i, satOutputMapping);
+                    long ordervar=createSatVariableOrder(v, i, satOutputMapping);
                     
                     // Ladder clause   e.g. [x<=5] -> [x<=6]
                     if( prevordervar != -trueVar ) {
                         addClause( -prevordervar, ordervar);
                         
                         //  Populate tables for mapping back to SR var/val.
-                        orderMappingMid.put(ordervar, n);
+                        varMap.setOrderReverse(v, i, ordervar, SatVarMap.ORDERMID);
                     }
                     else {
-                        orderMappingMin.put(ordervar, n);
+                        varMap.setOrderReverse(v, i, ordervar, SatVarMap.ORDERMIN);
                     }
                     
                     prevordervar=ordervar;  // For next iteration.
                 }
                 else {
-                    orderMappingMax.put(-prevordervar, n);  //  If topmost order var is false, that indicates the max value of the domain is assigned. 
+                    varMap.setOrderReverse(v, i, -prevordervar, SatVarMap.ORDERMAX);  //  If topmost order var is false, that indicates the max value of the domain is assigned. 
                 }
             }
         }
@@ -574,25 +594,44 @@ public class Sat
         contextLits.remove(contextLits.size()-1);
     }
     
+    //  The clause currently being built. clauseStart, writeLiteral and clauseEnd
+    //  fill this buffer and pass it to the sink; SMT overrides all three to 
+    //  write text instead. 
+    protected long[] clauseBuf=new long[16];
+    protected int clauseLen=0;
+    
     protected void clauseStart() throws IOException {
+        clauseLen=0;
         for(int i=0; i<contextLits.size(); i++) {
             writeLiteral(contextLits.get(i));
         }
     }
     
     protected void clauseEnd() throws IOException {
-        outstream.write("0");
-        outstream.newLine();
+        sink.addClause(clauseBuf, clauseLen);
+        if(session!=null) {
+            session.addClause(clauseBuf, clauseLen, sessionRemovable);
+        }
     }
 
     protected void writeLiteral(long lit) throws IOException {
-        outstream.write(String.valueOf(lit));
-        outstream.write(" ");
+        if(clauseLen==clauseBuf.length) {
+            clauseBuf=Arrays.copyOf(clauseBuf, clauseLen*2);
+        }
+        clauseBuf[clauseLen++]=lit;
+    }
+    
+    protected void checkCNFLimit() throws IOException {
+        if(CmdFlags.getCNFLimit()!=0) {
+            if(numClauses>CmdFlags.getCNFLimit()) {
+                CmdFlags.println("ERROR: Reached CNF clause limit.");
+                throw new IOException();
+            }
+        }
     }
     
     public void addClause(long lit1) throws IOException
     {
-        assert !CmdFlags.interactiveSolver || CmdFlags.getSMTtrans();
         if(lit1==trueVar) return;
         
         clauseStart();
@@ -606,18 +645,11 @@ public class Sat
         
         clauseEnd();
         numClauses++;
-        
-        if(CmdFlags.getCNFLimit()!=0) {
-            if(numClauses>CmdFlags.getCNFLimit()) {
-                CmdFlags.println("ERROR: Reached CNF clause limit.");
-                throw new IOException();
-            }
-        }
+        checkCNFLimit();
     }
     
     public void addClause(long lit1, long lit2) throws IOException
     {
-        assert !CmdFlags.interactiveSolver || CmdFlags.getSMTtrans();
         if(lit1==trueVar || lit2==trueVar) return;
 
         clauseStart();
@@ -633,18 +665,11 @@ public class Sat
         }
         clauseEnd();
         numClauses++;
-        
-        if(CmdFlags.getCNFLimit()!=0) {
-            if(numClauses>CmdFlags.getCNFLimit()) {
-                CmdFlags.println("ERROR: Reached CNF clause limit.");
-                throw new IOException();
-            }
-        }
+        checkCNFLimit();
     }
     
     public void addClause(long lit1, long lit2, long lit3) throws IOException
     {
-        assert !CmdFlags.interactiveSolver || CmdFlags.getSMTtrans();
         if(lit1==trueVar || lit2==trueVar || lit3==trueVar) return;
 
         clauseStart();
@@ -663,18 +688,11 @@ public class Sat
         }
         clauseEnd();
         numClauses++;
-        
-        if(CmdFlags.getCNFLimit()!=0) {
-            if(numClauses>CmdFlags.getCNFLimit()) {
-                CmdFlags.println("ERROR: Reached CNF clause limit.");
-                throw new IOException();
-            }
-        }
+        checkCNFLimit();
     }
     
     public void addClause(ArrayList<Long> literals) throws IOException
     {
-        assert !CmdFlags.interactiveSolver || CmdFlags.getSMTtrans();
         for(int i=0; i<literals.size(); i++) {
             if(literals.get(i)==trueVar) {
                 return;
@@ -694,18 +712,73 @@ public class Sat
         clauseEnd();
         
         numClauses++;
+        checkCNFLimit();
+    }
+    
+    //  Clause from the first len entries of a primitive array. 
+    public void addClause(long[] literals, int len) throws IOException
+    {
+        for(int i=0; i<len; i++) {
+            if(literals[i]==trueVar) {
+                return;
+            }
+        }
         
-        if(CmdFlags.getCNFLimit()!=0) {
-            if(numClauses>CmdFlags.getCNFLimit()) {
-                CmdFlags.println("ERROR: Reached CNF clause limit.");
-                throw new IOException();
+        clauseStart();
+        if(CmdFlags.getMaxsattrans()) {
+            writeLiteral(top);
+        }
+        
+        for(int i=0; i<len; i++) {
+            if(literals[i]!=-trueVar) {
+                writeLiteral(literals[i]);
+            }
+        }
+        clauseEnd();
+        
+        numClauses++;
+        checkCNFLimit();
+    }
+    
+    //  Copy the clauses and comments of a chunk encoded by ParallelSatEncoder
+    //  to the output. Aux variables of the chunk (numbered from localBase) are
+    //  renumbered to follow on from the variables already allocated here. 
+    //  Not used for MaxSAT: a chunk buffer holds no weights, only literals.
+    protected void appendChunk(Sat chunk, long localBase) throws IOException
+    {
+        assert !CmdFlags.getMaxsattrans();
+        BufferClauseSink buf=(BufferClauseSink) chunk.sink;
+        long offset=variableNumber-localBase;
+        int commentIdx=0;
+        
+        clauseLen=0;
+        for(int i=0; i<buf.size; i++) {
+            long lit=buf.data[i];
+            if(lit==BufferClauseSink.COMMENT) {
+                addComment(buf.comments.get(commentIdx++));
+            }
+            else if(lit==0) {
+                clauseEnd();
+                clauseLen=0;
+            }
+            else {
+                if(lit>=localBase && lit!=trueVar) {
+                    lit=lit+offset;
+                }
+                else if(lit<=-localBase && lit!=-trueVar) {
+                    lit=lit-offset;
+                }
+                writeLiteral(lit);
             }
         }
+        
+        variableNumber+=chunk.variableNumber-localBase;
+        numClauses+=chunk.numClauses;
+        checkCNFLimit();
     }
     
     public void addClauseReified(ArrayList<Long> literals, long auxVar) throws IOException
     {
-        assert !CmdFlags.interactiveSolver;
         ArrayList<Long> cl1=new ArrayList<Long>(literals);
         cl1.add(-auxVar);
         addClause(cl1);
@@ -718,10 +791,7 @@ public class Sat
     
     public void addComment(String comment) throws IOException
     {
-        assert !CmdFlags.interactiveSolver;
-        outstream.write("c ");
-        outstream.write(comment);
-        outstream.newLine();
+        sink.addComment(comment);
     }
     
     public void addSoftClause(long lit1) throws IOException {
@@ -730,103 +800,130 @@ public class Sat
     }
     
     public void addSoftClause(long lit1, long weight) throws IOException {
-        assert !CmdFlags.interactiveSolver;
         assert CmdFlags.getMaxsattrans();
-        outstream.write(String.valueOf(weight));
-        outstream.write(" ");
-        outstream.write(String.valueOf(lit1));
-        outstream.write(" 0");
-        outstream.newLine();
+        clauseLen=0;
+        writeLiteral(weight);
+        writeLiteral(lit1);
+        clauseEnd();
         numClauses++;
-        
-        if(CmdFlags.getCNFLimit()!=0) {
-            if(numClauses>CmdFlags.getCNFLimit()) {
-                CmdFlags.println("ERROR: Reached CNF clause limit.");
-                throw new IOException();
-            }
-        }
+        checkCNFLimit();
     }
     
     public void finaliseOutput() throws IOException
     {
         assert !CmdFlags.interactiveSolver;
-        outstream.flush();
-        fw.getFD().sync();
-        outstream.close();
-        RandomAccessFile f=new RandomAccessFile(CmdFlags.satfile, "rws");  //  rws to make sure everything is sync'd.
-        f.seek(0);
-        byte[] pcnf;
-        if(CmdFlags.getMaxsattrans()) {
-            pcnf=("p wcnf "+(variableNumber-1)+" "+numClauses+" "+top).getBytes();
-        }
-        else {
-            pcnf=("p cnf "+(variableNumber-1)+" "+numClauses).getBytes();
-        }
-        f.write(pcnf);
-        f.write(("          ").getBytes());  //  Write some spaces in case there was a p cnf line already that was longer.
-        f.close();
+        sink.finalise(variableNumber-1, numClauses, top);
     }
     
     ////////////////////////////////////////////////////////////////////////////
     //
     //   Methods that change the SAT instance after finalise.
-    //   These just re-open the file, pass through the add-clause call then 
-    //   finalise again.
+    //   These just continue writing at the end of the file, pass through the 
+    //   add-clause call then finalise again.
     //   File length and number of clauses prior to the addition are stored in numClausesBackup
     //   and filesizeBackup.
     
     protected long numClausesBackup=0L;
     protected long filesizeBackup=0L;
     
+    //  Solver session kept across solver calls (-sat-incremental). Once attached, 
+    //  clauses are passed to it as well as written to the file. 
+    protected SATSession session=null;
+    private boolean sessionRemovable=false;
+    
+    //  True while the clauses at the end of the file (from filesizeBackup) are 
+    //  removable, i.e. until the next removeFinalClause.
+    private boolean removablePending=false;
+    
+    public void attachSession(SATSession s) {
+        session=s;
+    }
+    
+    //  File position where the removable clauses start, or -1 if there are none. 
+    public long removableStart() {
+        return removablePending ? filesizeBackup : -1L;
+    }
+    
     public void addClauseAfterFinalise(ArrayList<Long> clause) throws IOException
     {
         assert !CmdFlags.interactiveSolver;
-        fw=new FileOutputStream(CmdFlags.satfile, true);   ///  true for append.
+        reopenOutput(CmdFlags.satfile);
         numClausesBackup=numClauses;
-        filesizeBackup=fw.getChannel().position();
-        outstream = new BufferedWriter(new OutputStreamWriter(fw));
+        filesizeBackup=outputPosition();
         addClause(clause);
         finaliseOutput();
     }
     
     public void addClauseAfterFinalise(long lit1, boolean removable) throws IOException {
         assert !CmdFlags.interactiveSolver;
-        fw=new FileOutputStream(CmdFlags.satfile, true);   ///  true for append.
+        reopenOutput(CmdFlags.satfile);
         numClausesBackup=numClauses;
-        filesizeBackup=fw.getChannel().position();
-        outstream = new BufferedWriter(new OutputStreamWriter(fw));
+        filesizeBackup=outputPosition();
+        sessionRemovable=removable;
+        removablePending=removable;
         addClause(lit1);
+        sessionRemovable=false;
         finaliseOutput();
     }
     
     public void addClauseAfterFinalise2(long c1, long c2, boolean removable) throws IOException {
         assert !CmdFlags.interactiveSolver;
-        fw=new FileOutputStream(CmdFlags.satfile, true);   ///  true for append.
+        reopenOutput(CmdFlags.satfile);
         numClausesBackup=numClauses;
-        filesizeBackup=fw.getChannel().position();
-        outstream = new BufferedWriter(new OutputStreamWriter(fw));
+        filesizeBackup=outputPosition();
+        sessionRemovable=removable;
+        removablePending=removable;
         addClause(c1);
         addClause(c2);
+        sessionRemovable=false;
         finaliseOutput();
     }
     
     //  Remove last clause or two clauses added by one of the methods above. 
     
     public void removeFinalClause() throws IOException {
-        {
-            assert !CmdFlags.interactiveSolver;
-            RandomAccessFile f = new RandomAccessFile(CmdFlags.satfile, "rws");
-            f.setLength(filesizeBackup);
-            f.close();
-        }
+        assert !CmdFlags.interactiveSolver;
+        truncateOutput(filesizeBackup);
         numClauses=numClausesBackup;
-        
-        fw=new FileOutputStream(CmdFlags.satfile, true);   ///  true for append.
-        outstream = new BufferedWriter(new OutputStreamWriter(fw));
+        removablePending=false;
+        if(session!=null) {
+            session.clearRemovable();
+        }
         
         finaliseOutput();
     }
     
+    //  Write a copy of the finalised DIMACS file to fname with a unit clause
+    //  for each of units added, leaving the file itself unchanged. Used to run
+    //  several solvers at once on different variants of the instance. 
+    public void writeCopyWithUnits(String fname, long[] units) throws IOException {
+        assert !CmdFlags.interactiveSolver && !CmdFlags.getMaxsattrans();
+        syncOutput();
+        java.nio.file.Files.copy(new File(CmdFlags.satfile).toPath(), new File(fname).toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        
+        StringBuilder tail=new StringBuilder();
+        long extra=0;
+        for(long lit : units) {
+            if(lit!=trueVar) {
+                tail.append((lit==-trueVar) ? "0\n" : lit+" 0\n");   //  -trueVar gives the empty clause.
+                extra++;
+            }
+        }
+        
+        RandomAccessFile f=new RandomAccessFile(fname, "rw");
+        try {
+            //  The header has more digits than before, if anything, so it fits in
+            //  the space reserved at the start of the file. 
+            f.seek(0);
+            f.write(DimacsClauseSink.headerLine(variableNumber-1, numClauses+extra, 0));
+            f.seek(f.length());
+            f.write(tail.toString().getBytes());
+        }
+        finally {
+            f.close();
+        }
+    }
+    
     ////////////////////////////////////////////////////////////////////////////
     //
     //     Methods for SAT encodings, direct & support
@@ -994,13 +1091,14 @@ public class Sat
         // Reverse indicates that the arguments should be swapped for constraint.test(....)
         ArrayList<Intpair> domain1=node1.getIntervalSetExp();
         ArrayList<Intpair> domain2=node2.getIntervalSetExp();
+        long[] clause=new long[(int)Intpair.numValues(domain2)+1];
         
         for(Intpair pair1 : domain1)
         {
             for (long i=pair1.lower; i<=pair1.upper; i++)
             {
-                ArrayList<Long> clause=new ArrayList<Long>();
-                clause.add(-node1.directEncode(this,i));
+                int len=0;
+                clause[len++]=-node1.directEncode(this,i);
                 
                 for (Intpair pair2: domain2)
                 {
@@ -1008,11 +1106,11 @@ public class Sat
                     {
                         if( (!threeargs && ((! reverse && constraint.test(i,j)) || (reverse && constraint.test(j,i)))) ||
                             (threeargs && ((!reverse && constraint.test(i,j,thirdarg)) || (reverse && constraint.test(j,i,thirdarg)))) ) {
-                            clause.add(node2.directEncode(this,j));
+                            clause[len++]=node2.directEncode(this,j);
                         }
                     }
                 }
-                addClause(clause);
+                addClause(clause, len);
             }
         }
     }
@@ -1034,19 +1132,21 @@ public class Sat
         // Reverse indicates that the arguments should be swapped for constraint.test(....)
         ArrayList<Intpair> domain1=node1.getIntervalSetExp();
         ArrayList<Intpair> domain2=node2.getIntervalSetExp();
+        int size2=(int)Intpair.numValues(domain2);
+        long[] supportClause=new long[size2+2];
+        long[] conflictClause=new long[size2+2];
         
         for (Intpair pair1 : domain1)
         {
             for (long i=pair1.lower; i<=pair1.upper; i++)
             {
-                ArrayList<Long> supportClause=new ArrayList<Long>();
-                supportClause.add(auxVarValue);
-                supportClause.add(-node1.directEncode(this,i));
+                int supportLen=0;
+                supportClause[supportLen++]=auxVarValue;
+                supportClause[supportLen++]=-node1.directEncode(this,i);
                 
-                ArrayList<Long> conflictClause=new ArrayList<Long>();
-                
-                conflictClause.add(-auxVarValue);
-                conflictClause.add(-node1.directEncode(this, i));
+                int conflictLen=0;
+                conflictClause[conflictLen++]=-auxVarValue;
+                conflictClause[conflictLen++]=-node1.directEncode(this, i);
                 
                 for (Intpair pair2: domain2)
                 {
@@ -1054,15 +1154,15 @@ public class Sat
                     {
                         if( (!reverse && constraint.test(i,j)) || (reverse && constraint.test(j,i)) )
                         {
-                            conflictClause.add(node2.directEncode(this,j));
+                            conflictClause[conflictLen++]=node2.directEncode(this,j);
                         }
                         else {
-                            supportClause.add(node2.directEncode(this,j));
+                            supportClause[supportLen++]=node2.directEncode(this,j);
                         }
                     }
                 }
-                addClause(supportClause);
-                addClause(conflictClause);
+                addClause(supportClause, supportLen);
+                addClause(conflictClause, conflictLen);
             }
         }
     }
@@ -1113,11 +1213,11 @@ public class Sat
     }
     
     private void alo(ArrayList<ASTNode> ch) throws IOException {
-        ArrayList<Long> clause=new ArrayList<Long>(ch.size());
+        long[] clause=new long[ch.size()];
         for(int j=0; j<ch.size(); j++) {
-            clause.add(ch.get(j).directEncode(this, 1));
+            clause[j]=ch.get(j).directEncode(this, 1);
         }
-        addClause(clause);
+        addClause(clause, clause.length);
     }
     
     /////////////////////////////////////////////////////////////////////////
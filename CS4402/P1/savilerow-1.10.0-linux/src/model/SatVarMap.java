@@ -0,0 +1,211 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+
+//  Maps between Savile Row variable/value pairs and the SAT literals encoding
+//  them. Each SR variable gets an integer id and arrays of direct and order
+//  literals indexed by the position of the value in its domain, so looking up
+//  a literal while encoding needs no allocation. The reverse mapping used when
+//  reading a solution is indexed by SAT literal.
+
+public final class SatVarMap
+{
+    //  Kinds of reverse mapping for a literal. 
+    public static final byte NONE=0;
+    public static final byte DIRECT=1;     //  Literal is true iff var=value.
+    public static final byte ORDERMIN=2;   //  [x<=min(D(x))], positive literal. 
+    public static final byte ORDERMID=3;   //  [x<=value], true with the previous literal false.
+    public static final byte ORDERMAX=4;   //  Negation of the topmost order variable. 
+    
+    public static final class VarEnc {
+        public final String name;
+        public final int id;
+        private final long[] lower;   //  Intervals of the domain when encoded.
+        private final long[] upper;
+        private final int[] start;    //  Index of the first value of each interval.
+        private final int numvals;
+        
+        //  Literal for each value index, 0 if none. Allocated when first set.
+        private long[] direct;
+        private long[] order;
+        
+        VarEnc(String _name, int _id, ArrayList<Intpair> intervals) {
+            name=_name;
+            id=_id;
+            lower=new long[intervals.size()];
+            upper=new long[intervals.size()];
+            start=new int[intervals.size()];
+            long n=0;
+            for(int i=0; i<intervals.size(); i++) {
+                lower[i]=intervals.get(i).lower;
+                upper[i]=intervals.get(i).upper;
+                start[i]=(int)n;
+                n+=upper[i]-lower[i]+1;
+            }
+            assert n<=Integer.MAX_VALUE;
+            numvals=(int)n;
+        }
+        
+        //  Index of the largest domain value <= value, or -1 if there is none. 
+        int floorIndex(long value) {
+            int lo=0;
+            int hi=lower.length-1;
+            if(hi<0 || value<lower[0]) {
+                return -1;
+            }
+            while(lo<hi) {
+                int mid=(lo+hi+1)>>>1;
+                if(lower[mid]<=value) {
+                    lo=mid;
+                }
+                else {
+                    hi=mid-1;
+                }
+            }
+            return start[lo]+(int)(Math.min(value, upper[lo])-lower[lo]);
+        }
+        
+        //  Index of value, or -1 if it is not in the domain. 
+        int index(long value) {
+            int idx=floorIndex(value);
+            return (idx>=0 && valueAt(idx)==value) ? idx : -1;
+        }
+        
+        long valueAt(int idx) {
+            int lo=0;
+            int hi=start.length-1;
+            while(lo<hi) {
+                int mid=(lo+hi+1)>>>1;
+                if(start[mid]<=idx) {
+                    lo=mid;
+                }
+                else {
+                    hi=mid-1;
+                }
+            }
+            return lower[lo]+(idx-start[lo]);
+        }
+        
+        long getDirect(int idx) {
+            return direct==null ? 0L : direct[idx];
+        }
+        
+        long getOrder(int idx) {
+            return order==null ? 0L : order[idx];
+        }
+        
+        public long min() {
+            return lower[0];
+        }
+        
+        public long max() {
+            return upper[upper.length-1];
+        }
+    }
+    
+    private HashMap<String, VarEnc> byName=new HashMap<String, VarEnc>();
+    private ArrayList<VarEnc> byId=new ArrayList<VarEnc>();
+    
+    //  Reverse mapping. Literal l is at 2*|l| for positive and 2*|l|+1 for 
+    //  negative l. Owner is id+1 of the SR variable, 0 for none. 
+    private int[] litOwner=new int[0];
+    private int[] litIndex=new int[0];
+    private byte[] litKind=new byte[0];
+    
+    //  Start the encoding of an SR variable with the given domain. 
+    public VarEnc newVariable(String name, ArrayList<Intpair> intervals) {
+        VarEnc v=new VarEnc(name, byId.size(), intervals);
+        byId.add(v);
+        byName.put(name, v);
+        return v;
+    }
+    
+    public VarEnc get(String name) {
+        return byName.get(name);
+    }
+    
+    //  Set the direct literal for var=value and map it back to var/value. 
+    public void setDirect(VarEnc v, long value, long lit) {
+        int idx=v.index(value);
+        assert idx>=0;
+        if(v.direct==null) {
+            v.direct=new long[v.numvals];
+        }
+        v.direct[idx]=lit;
+        setReverse(lit, v, idx, DIRECT);
+    }
+    
+    //  Set the order literal for var<=value. 
+    public void setOrder(VarEnc v, long value, long lit) {
+        int idx=v.index(value);
+        assert idx>=0;
+        if(v.order==null) {
+            v.order=new long[v.numvals];
+        }
+        v.order[idx]=lit;
+    }
+    
+    //  Map lit back to var/value for an order-only encoding. 
+    public void setOrderReverse(VarEnc v, long value, long lit, byte kind) {
+        int idx=v.index(value);
+        assert idx>=0;
+        setReverse(lit, v, idx, kind);
+    }
+    
+    private void setReverse(long lit, VarEnc v, int idx, byte kind) {
+        int pos=litPos(lit);
+        if(pos>=litOwner.length) {
+            int newsize=Math.max(pos+1, litOwner.length*2);
+            litOwner=Arrays.copyOf(litOwner, newsize);
+            litIndex=Arrays.copyOf(litIndex, newsize);
+            litKind=Arrays.copyOf(litKind, newsize);
+        }
+        litOwner[pos]=v.id+1;
+        litIndex[pos]=idx;
+        litKind[pos]=kind;
+    }
+    
+    private static int litPos(long lit) {
+        assert Math.abs(lit)<Integer.MAX_VALUE/2;
+        return lit>0 ? (int)(2*lit) : (int)(-2*lit+1);
+    }
+    
+    //  Reverse mapping queries. 
+    public byte getKind(long lit) {
+        if(lit>=litOwner.length || lit<=-litOwner.length) {
+            return NONE;
+        }
+        int pos=litPos(lit);
+        return (pos<litOwner.length && litOwner[pos]!=0) ? litKind[pos] : NONE;
+    }
+    
+    public String getVariable(long lit) {
+        return byId.get(litOwner[litPos(lit)]-1).name;
+    }
+    
+    public long getValue(long lit) {
+        int pos=litPos(lit);
+        return byId.get(litOwner[pos]-1).valueAt(litIndex[pos]);
+    }
+}
@@ -51,6 +51,12 @@ public class SymbolTable implements Serializable {
     // Domain could be an identifier -- should be defined in a  letting.
     private HashMap<String, ASTNode> domains;
     
+    //  Names whose domain is still shared with a copy of this table (or with
+    //  the table this one was copied from). A shared domain is copied the
+    //  first time it is accessed, so copying the table does not copy every
+    //  domain. null when no domain is shared.
+    private transient volatile HashSet<String> sharedDomains;
+    
     public transient HashMap<String, String> represents_ct;    // String representation of the ct the aux var represents.
     
     // Yet another data structure -- for matrices that have been replaced with
@@ -66,6 +72,10 @@ public class SymbolTable implements Serializable {
     public HashMap<ASTNode, ASTNode> replacements_domains;    // Domains for deleted vars at the point of deletion.
     public HashMap<ASTNode, Integer> replacements_category;    // Category of deleted vars at point of deletion.
     
+    //  Counts changes that can affect how existing expressions simplify:
+    //  domains altered, variables assigned, unified or deleted. 
+    private long changeCount;
+    
     //  Special hash-tables for marking variables as bool, int or both. 
     HashSet<String> boolvar_bool;    // Not included in .equals comparison or copy.
     HashSet<String> boolvar_int;
@@ -206,12 +216,11 @@ public class SymbolTable implements Serializable {
     public SymbolTable copy(Model new_m) {
         SymbolTable st = new SymbolTable();
         st.m=new_m;
-        TransformFixSTRef tf = new TransformFixSTRef(new_m);
         
         // Copy lettings, givens etc in sequence.
         for (Iterator<ASTNode> itr = lettings_givens.iterator(); itr.hasNext();) {
             ASTNode letgiv = itr.next();
-            st.lettings_givens.addLast(tf.transform(letgiv.copy()));
+            st.lettings_givens.addLast(letgiv.copy(new_m));
         }
         
         categoryentry cur = category_first;
@@ -220,13 +229,19 @@ public class SymbolTable implements Serializable {
             cur = cur.next;
         }
         
-        for (String domst : domains.keySet()) {
-            st.domains.put(domst, tf.transform(domains.get(domst).copy()));
+        //  Share the domains. Each table copies a shared domain when it first
+        //  accesses it; the copy also retargets identifiers to its own model.
+        synchronized(this) {
+            st.domains = new HashMap<String, ASTNode>(domains);
+            if(domains.size()>0) {
+                st.sharedDomains = new HashSet<String>(domains.keySet());
+                sharedDomains = new HashSet<String>(domains.keySet());
+            }
         }
         
         st.represents_ct = new HashMap<String, String>(represents_ct);
         for (String delst : deleted_matrices.keySet()) {
-            st.deleted_matrices.put(delst, tf.transform(deleted_matrices.get(delst).copy()));
+            st.deleted_matrices.put(delst, deleted_matrices.get(delst).copy(new_m));
         }
         for (String repmat : replaces_matrix.keySet()) {
             replaces_matrix_entry r1 = new replaces_matrix_entry(replaces_matrix.get(repmat).name, new ArrayList<Long>(replaces_matrix.get(repmat).idx));
@@ -235,13 +250,13 @@ public class SymbolTable implements Serializable {
         st.auxvarcounter = auxvarcounter;
         
         for (ASTNode rep1 : replacements.keySet()) {
-            st.replacements.put(tf.transform(rep1.copy()), tf.transform(replacements.get(rep1).copy()));
+            st.replacements.put(rep1.copy(new_m), replacements.get(rep1).copy(new_m));
         }
         for (ASTNode rep2 : replacements_domains.keySet()) {
-            st.replacements_domains.put(tf.transform(rep2.copy()), tf.transform(replacements_domains.get(rep2).copy()));
+            st.replacements_domains.put(rep2.copy(new_m), replacements_domains.get(rep2).copy(new_m));
         }
         for (ASTNode rep3 : replacements_category.keySet()) {
-            st.replacements_category.put(tf.transform(rep3.copy()), (int) replacements_category.get(rep3));
+            st.replacements_category.put(rep3.copy(new_m), (int) replacements_category.get(rep3));
         }
         
         return st;
@@ -250,14 +265,14 @@ public class SymbolTable implements Serializable {
     // To add parameters
     public void newVariable(String name, ASTNode dom, int cat) {
         assert ! category.containsKey(name);
-        domains.put(name, dom);
+        putDomain(name, dom);
         category_put_end(name, cat);
     }
     
     // To add variables replacing a matrix
     public void newVariable(String name, ASTNode dom, int cat, ASTNode replaces, ArrayList<Long> indices) {
         assert ! category.containsKey(name);
-        domains.put(name, dom);
+        putDomain(name, dom);
         if (dom.getCategory() == ASTNode.Constant) {
             ArrayList<Intpair> set = dom.getIntervalSet();
             if (set.size() == 0) {
@@ -441,18 +456,82 @@ public class SymbolTable implements Serializable {
     }
     
     public ASTNode getDomain(String varid) {
-        return domains.get(varid);
+        if(sharedDomains==null) {
+            return domains.get(varid);
+        }
+        synchronized(this) {
+            HashSet<String> s=sharedDomains;
+            if(s!=null && s.remove(varid)) {
+                domains.put(varid, domains.get(varid).copy(m));
+                if(s.isEmpty()) {
+                    sharedDomains=null;
+                }
+            }
+            return domains.get(varid);
+        }
     }
     
     public void setDomain(String varid, ASTNode d) {
-        domains.put(varid, d);
+        changeCount++;
+        putDomain(varid, d);
+    }
+    
+    private void putDomain(String varid, ASTNode d) {
+        if(sharedDomains==null) {
+            domains.put(varid, d);
+            return;
+        }
+        synchronized(this) {
+            HashSet<String> s=sharedDomains;
+            if(s!=null && s.remove(varid) && s.isEmpty()) {
+                sharedDomains=null;
+            }
+            domains.put(varid, d);
+        }
+    }
+    
+    private void removeDomain(String varid) {
+        if(sharedDomains==null) {
+            domains.remove(varid);
+            return;
+        }
+        synchronized(this) {
+            HashSet<String> s=sharedDomains;
+            if(s!=null && s.remove(varid) && s.isEmpty()) {
+                sharedDomains=null;
+            }
+            domains.remove(varid);
+        }
+    }
+    
+    //  Copy all shared domains, before methods that access the whole map.
+    private void ownAllDomains() {
+        if(sharedDomains==null) {
+            return;
+        }
+        synchronized(this) {
+            HashSet<String> s=sharedDomains;
+            if(s!=null) {
+                for(String name : s) {
+                    domains.put(name, domains.get(name).copy(m));
+                }
+                sharedDomains=null;
+            }
+        }
+    }
+    
+    public long getChangeCount() {
+        return changeCount;
     }
     
     public boolean isAuxiliary(String varid) {
         return category.get(varid).cat==ASTNode.Auxiliary;
     }
     
-    public HashMap<String, ASTNode> getDomains() { return domains; }
+    public HashMap<String, ASTNode> getDomains() {
+        ownAllDomains();
+        return domains;
+    }
     
     public categoryentry getCategoryFirst() { return category_first; }
     
@@ -613,6 +692,7 @@ public class SymbolTable implements Serializable {
         }
         
         boolean emptyDomain=false;  // set true when we see an empty domain.
+        ownAllDomains();
         Iterator<Map.Entry<String, ASTNode>> itr = domains.entrySet().iterator();
         while (itr.hasNext()) {
             Map.Entry<String, ASTNode> d = itr.next();
@@ -653,6 +733,7 @@ public class SymbolTable implements Serializable {
 
     public void transform_all(TreeTransformer t) {
         // Poke into every corner and apply t.
+        changeCount++;
 
         // do lettings_givens
         int size = lettings_givens.size();
@@ -661,6 +742,7 @@ public class SymbolTable implements Serializable {
         }
 
         // Domains
+        ownAllDomains();
         Iterator<Map.Entry<String, ASTNode>> itr = domains.entrySet().iterator();
         while (itr.hasNext()) {
             Map.Entry<String, ASTNode> d = itr.next();
@@ -707,7 +789,9 @@ public class SymbolTable implements Serializable {
 
     public void substitute(ASTNode toreplace, ASTNode replacement) {
         ReplaceASTNode t = new ReplaceASTNode(toreplace, replacement);
-
+        changeCount++;
+        
+        ownAllDomains();
         Iterator<Map.Entry<String, ASTNode>> itr = domains.entrySet().iterator();
         while (itr.hasNext()) {
             Map.Entry<String, ASTNode> d = itr.next();
@@ -729,6 +813,7 @@ public class SymbolTable implements Serializable {
     public boolean typecheck() {
         // At this point, lettings have been substituted in so all things in
         // 'domains' should be of type Domain.
+        ownAllDomains();
         for (String a : domains.keySet()) {
             ASTNode d = domains.get(a);
             if (! (d instanceof Domain)) {
@@ -764,6 +849,7 @@ public class SymbolTable implements Serializable {
     // Delete a symbol from the table for good.
     public void deleteSymbol(String name) {
         assert category.containsKey(name);
+        changeCount++;
         categoryentry c = category.get(name);
         if (c.prev != null) {
             c.prev.next = c.next;
@@ -780,7 +866,7 @@ public class SymbolTable implements Serializable {
         category.remove(name);
         
         if (domains.containsKey(name)) {
-            domains.remove(name);
+            removeDomain(name);
         }
         if (m.cmstore.hasConstantMatrix(name)) {
             m.cmstore.removeConstantMatrix(name);
@@ -791,6 +877,7 @@ public class SymbolTable implements Serializable {
         // This symbol is a matrix of decision vars that has been replaced by individual decision vars
         // Delete until parsing.
         assert category.containsKey(name);
+        changeCount++;
         categoryentry c = category.get(name);
         if (c.prev != null) {
             c.prev.next = c.next;
@@ -805,8 +892,8 @@ public class SymbolTable implements Serializable {
         category.remove(name);
         assert domains.containsKey(name);
 
-        deleted_matrices.put(name, domains.get(name));
-        domains.remove(name);
+        deleted_matrices.put(name, getDomain(name));
+        removeDomain(name);
     }
     
     //////////////////////////////////////////////////////////////////////////// 
@@ -861,6 +948,7 @@ public class SymbolTable implements Serializable {
     
     protected void serialize() {
         mangle_before_serialization();
+        ownAllDomains();
         try {
             FileOutputStream sts = new FileOutputStream(CmdFlags.auxfile);
             ObjectOutputStream out = new ObjectOutputStream(sts);
@@ -889,7 +977,7 @@ public class SymbolTable implements Serializable {
         while (itr != null) {
             // Not auxiliary
             if (itr.cat == ASTNode.Decision && !itr.already_written) {
-                output_variable(b, itr.name, (Domain) domains.get(itr.name));
+                output_variable(b, itr.name, (Domain) getDomain(itr.name));
                 itr.already_written = true;
             }
             itr = itr.next;
@@ -899,7 +987,7 @@ public class SymbolTable implements Serializable {
         itr = category_first;
         while (itr != null) {
             if (itr.cat == ASTNode.Auxiliary && !itr.already_written) {
-                output_variable(b, itr.name, (Domain) domains.get(itr.name));
+                output_variable(b, itr.name, (Domain) getDomain(itr.name));
                 itr.already_written = true;
             }
             itr = itr.next;
@@ -87,7 +87,8 @@ public class AllMinisatSATSolver extends SATSolver
               while (inFromFile.ready())
               {
                   String currentSolutionString=inFromFile.readLine();
-                  ArrayList<String> currentSolution = new ArrayList<String>(Arrays.asList(currentSolutionString.split(" ")));
+                  SatLiterals currentSolution = new SatLiterals();
+                  currentSolution.feed(currentSolutionString);
                   Solution sol=solverSolToAST(currentSolution, m.global_symbols);
                   
                   createSolutionFile(sol, true);
@@ -131,7 +132,7 @@ public class AllMinisatSATSolver extends SATSolver
         }
     }
 
-    public Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException{
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException{
         return null;
     }
 }
\ No newline at end of file
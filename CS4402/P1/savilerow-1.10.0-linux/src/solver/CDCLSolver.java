@@ -0,0 +1,753 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+
+//  A small incremental CDCL SAT solver in the style of MiniSat, used by 
+//  InteractiveJavaSATSolver when no native solver library is available. 
+//
+//  Literals are ints: variable v (from 1) is 2v when positive and 2v+1 when
+//  negated. Clauses are stored in a single int arena as [size, header, lits...]
+//  where the header holds the learnt and deleted flags and the LBD. The first
+//  two literals of each clause are watched; each watch list holds pairs of
+//  (clause offset, blocking literal). 
+//
+//  Clauses may be added between calls to solve, and each call may have a set
+//  of assumptions. Learnt clauses are kept between calls. 
+
+public final class CDCLSolver {
+    public static final int SAT=10;
+    public static final int UNSAT=20;
+    
+    private static final int LEARNT=1;
+    private static final int DELETED=2;
+    
+    private static final int NOREASON=-1;
+    
+    private boolean ok=true;   //  False once the clauses are unsatisfiable without assumptions.
+    private int nvars=0;
+    
+    //  Per variable
+    private int[] level=new int[1];
+    private int[] reason=new int[1];
+    private double[] activity=new double[1];
+    private byte[] polarity=new byte[1];   //  Saved phase, 1 for negative.
+    private byte[] seen=new byte[1];
+    private int[] heappos=new int[1];
+    
+    //  Per literal
+    private byte[] litval=new byte[2];   //  1 true, -1 false, 0 unassigned.
+    private int[][] watches=new int[2][];
+    private int[] watchsz=new int[2];
+    
+    private int[] arena=new int[1024];
+    private int arenasz=0;
+    private int wasted=0;
+    
+    private int[] learnts=new int[64];
+    private int nlearnts=0;
+    
+    private int[] trail=new int[1];
+    private int trailsz=0;
+    private int[] trailLim=new int[1];
+    private int nlevels=0;
+    private int qhead=0;
+    
+    private int[] heap=new int[1];
+    private int heapsz=0;
+    
+    private double varInc=1.0;
+    private static final double VARDECAY=0.95;
+    
+    //  Scratch space for conflict analysis.
+    private int[] learnt=new int[16];
+    private int[] toclear=new int[16];
+    private int[] levelstamp=new int[1];
+    private int stamp=0;
+    
+    private Random rnd=null;
+    
+    private long conflicts=0;
+    private long decisions=0;
+    private long propagations=0;
+    private long nextReduce=2000;
+    private long reduceInc=300;
+    private int restarts=0;
+    
+    private int[] model=new int[0];
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  Public interface
+    
+    public void setSeed(long seed) {
+        rnd=new Random(seed);
+    }
+    
+    public long getDecisions() {
+        return decisions;
+    }
+    public long getConflicts() {
+        return conflicts;
+    }
+    public long getPropagations() {
+        return propagations;
+    }
+    public int getNumLearnts() {
+        return nlearnts;
+    }
+    
+    //  Add a clause of DIMACS literals. Must not be called during solve. 
+    public void addClause(int[] lits) {
+        if(!ok) {
+            return;
+        }
+        assert nlevels==0;
+        int maxvar=0;
+        int[] c=new int[lits.length];
+        for(int i=0; i<lits.length; i++) {
+            int v=Math.abs(lits[i]);
+            assert v>0;
+            if(v>maxvar) maxvar=v;
+            c[i]=(lits[i]>0) ? 2*v : 2*v+1;
+        }
+        ensureVars(maxvar);
+        
+        //  Remove duplicates and literals false at the root; drop the clause
+        //  if it is a tautology or already satisfied.
+        Arrays.sort(c);
+        int j=0;
+        int prev=-1;
+        for(int i=0; i<c.length; i++) {
+            int l=c[i];
+            if(litval[l]==1 || l==(prev^1)) {
+                return;
+            }
+            if(l!=prev && litval[l]==0) {
+                c[j++]=l;
+                prev=l;
+            }
+        }
+        
+        if(j==0) {
+            ok=false;
+        }
+        else if(j==1) {
+            enqueue(c[0], NOREASON);
+            ok=(propagate()==NOREASON);
+        }
+        else {
+            int cref=allocClause(c, j, false, 0);
+            attach(cref);
+        }
+    }
+    
+    //  Solve under the given assumptions (DIMACS literals). Returns SAT or UNSAT. 
+    //  After SAT, getModel returns the assignment. 
+    public int solve(int[] assumptions) {
+        if(!ok) {
+            return UNSAT;
+        }
+        int[] assumps=new int[assumptions.length];
+        for(int i=0; i<assumptions.length; i++) {
+            int v=Math.abs(assumptions[i]);
+            ensureVars(v);
+            assumps[i]=(assumptions[i]>0) ? 2*v : 2*v+1;
+        }
+        
+        int conflictsThisRestart=0;
+        int restartLimit=100*luby(restarts);
+        
+        while(true) {
+            int confl=propagate();
+            if(confl!=NOREASON) {
+                conflicts++;
+                conflictsThisRestart++;
+                if(nlevels==0) {
+                    ok=false;
+                    return UNSAT;
+                }
+                int size=analyze(confl);
+                int btlevel=(size==1) ? 0 : level[learnt[1]>>1];
+                cancelUntil(btlevel);
+                if(size==1) {
+                    enqueue(learnt[0], NOREASON);
+                }
+                else {
+                    int cref=allocClause(learnt, size, true, computeLBD(learnt, size));
+                    attach(cref);
+                    if(nlearnts==learnts.length) {
+                        learnts=Arrays.copyOf(learnts, nlearnts*2);
+                    }
+                    learnts[nlearnts++]=cref;
+                    enqueue(learnt[0], cref);
+                }
+                varInc*=(1/VARDECAY);
+            }
+            else {
+                if(conflictsThisRestart>=restartLimit) {
+                    cancelUntil(0);
+                    restarts++;
+                    conflictsThisRestart=0;
+                    restartLimit=100*luby(restarts);
+                    if(wasted>arenasz/2) {
+                        garbageCollect();
+                    }
+                    continue;
+                }
+                if(conflicts>=nextReduce) {
+                    nextReduce=conflicts+2000+reduceInc;
+                    reduceInc+=300;
+                    reduceDB();
+                }
+                
+                int next=-1;
+                while(nlevels<assumps.length) {
+                    int a=assumps[nlevels];
+                    if(litval[a]==1) {
+                        newDecisionLevel();   //  Already true, dummy level. 
+                    }
+                    else if(litval[a]==-1) {
+                        cancelUntil(0);
+                        return UNSAT;   //  Unsatisfiable under the assumptions.
+                    }
+                    else {
+                        next=a;
+                        break;
+                    }
+                }
+                
+                if(next==-1) {
+                    int v=pickBranchVar();
+                    if(v==0) {
+                        //  All variables assigned. 
+                        model=new int[nvars+1];
+                        for(int i=1; i<=nvars; i++) {
+                            model[i]=(litval[2*i]==1) ? i : -i;
+                        }
+                        cancelUntil(0);
+                        return SAT;
+                    }
+                    decisions++;
+                    next=2*v+polarity[v];
+                }
+                newDecisionLevel();
+                enqueue(next, NOREASON);
+            }
+        }
+    }
+    
+    //  Value of variable v in the last model: v, -v, or -v for variables 
+    //  that were not mentioned before the last call to solve.
+    public int modelValue(int v) {
+        return (v<model.length) ? model[v] : -v;
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  Variables and the decision heap
+    
+    private void ensureVars(int n) {
+        if(n<=nvars) {
+            return;
+        }
+        if(n>=level.length) {
+            int cap=Math.max(n+1, level.length*2);
+            level=Arrays.copyOf(level, cap);
+            reason=Arrays.copyOf(reason, cap);
+            activity=Arrays.copyOf(activity, cap);
+            polarity=Arrays.copyOf(polarity, cap);
+            seen=Arrays.copyOf(seen, cap);
+            heappos=Arrays.copyOf(heappos, cap);
+            trail=Arrays.copyOf(trail, cap);
+            if(trailLim.length<cap) {
+                trailLim=Arrays.copyOf(trailLim, cap);
+                levelstamp=Arrays.copyOf(levelstamp, cap);
+            }
+            heap=Arrays.copyOf(heap, cap);
+            litval=Arrays.copyOf(litval, 2*cap);
+            watches=Arrays.copyOf(watches, 2*cap);
+            watchsz=Arrays.copyOf(watchsz, 2*cap);
+        }
+        for(int v=nvars+1; v<=n; v++) {
+            polarity[v]=1;
+            reason[v]=NOREASON;
+            watches[2*v]=new int[4];
+            watches[2*v+1]=new int[4];
+            heappos[v]=-1;
+            if(rnd!=null) {
+                activity[v]=rnd.nextDouble()*0.00001;
+            }
+            nvars=v;
+            heapInsert(v);
+        }
+    }
+    
+    private int pickBranchVar() {
+        while(heapsz>0) {
+            int v=heapRemoveMax();
+            if(litval[2*v]==0) {
+                return v;
+            }
+        }
+        return 0;
+    }
+    
+    private void bumpVar(int v) {
+        activity[v]+=varInc;
+        if(activity[v]>1e100) {
+            for(int i=1; i<=nvars; i++) {
+                activity[i]*=1e-100;
+            }
+            varInc*=1e-100;
+        }
+        if(heappos[v]>=0) {
+            heapUp(heappos[v]);
+        }
+    }
+    
+    private void heapInsert(int v) {
+        heap[heapsz]=v;
+        heappos[v]=heapsz;
+        heapsz++;
+        heapUp(heapsz-1);
+    }
+    
+    private int heapRemoveMax() {
+        int v=heap[0];
+        heappos[v]=-1;
+        heapsz--;
+        if(heapsz>0) {
+            heap[0]=heap[heapsz];
+            heappos[heap[0]]=0;
+            heapDown(0);
+        }
+        return v;
+    }
+    
+    private void heapUp(int i) {
+        int v=heap[i];
+        double a=activity[v];
+        while(i>0) {
+            int parent=(i-1)>>1;
+            int pv=heap[parent];
+            if(activity[pv]>=a) {
+                break;
+            }
+            heap[i]=pv;
+            heappos[pv]=i;
+            i=parent;
+        }
+        heap[i]=v;
+        heappos[v]=i;
+    }
+    
+    private void heapDown(int i) {
+        int v=heap[i];
+        double a=activity[v];
+        while(true) {
+            int child=2*i+1;
+            if(child>=heapsz) {
+                break;
+            }
+            if(child+1<heapsz && activity[heap[child+1]]>activity[heap[child]]) {
+                child++;
+            }
+            int cv=heap[child];
+            if(activity[cv]<=a) {
+                break;
+            }
+            heap[i]=cv;
+            heappos[cv]=i;
+            i=child;
+        }
+        heap[i]=v;
+        heappos[v]=i;
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  Clause arena and watches
+    
+    private int allocClause(int[] lits, int size, boolean isLearnt, int lbd) {
+        if(arenasz+size+2>arena.length) {
+            arena=Arrays.copyOf(arena, Math.max(arena.length*2, arenasz+size+2));
+        }
+        int cref=arenasz;
+        arena[cref]=size;
+        arena[cref+1]=(lbd<<2) | (isLearnt ? LEARNT : 0);
+        System.arraycopy(lits, 0, arena, cref+2, size);
+        arenasz+=size+2;
+        return cref;
+    }
+    
+    private void attach(int cref) {
+        int l0=arena[cref+2];
+        int l1=arena[cref+3];
+        addWatch(l0^1, cref, l1);
+        addWatch(l1^1, cref, l0);
+    }
+    
+    private void addWatch(int lit, int cref, int blocker) {
+        int[] ws=watches[lit];
+        int n=watchsz[lit];
+        if(n+2>ws.length) {
+            ws=Arrays.copyOf(ws, ws.length*2);
+            watches[lit]=ws;
+        }
+        ws[n]=cref;
+        ws[n+1]=blocker;
+        watchsz[lit]=n+2;
+    }
+    
+    //  Delete the less useful half of the learnt clauses (by LBD then size),
+    //  keeping those that are the reason for a current assignment or have LBD<=2.
+    private void reduceDB() {
+        Integer[] order=new Integer[nlearnts];
+        for(int i=0; i<nlearnts; i++) {
+            order[i]=learnts[i];
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                int la=arena[a+1]>>>2;
+                int lb=arena[b+1]>>>2;
+                if(la!=lb) return (la>lb) ? -1 : 1;
+                return Integer.compare(arena[b], arena[a]);
+            }
+        });
+        int todelete=nlearnts/2;
+        int j=0;
+        for(int i=0; i<order.length; i++) {
+            int cref=order[i];
+            if(i<todelete && (arena[cref+1]>>>2)>2 && !locked(cref)) {
+                arena[cref+1]|=DELETED;
+                wasted+=arena[cref]+2;
+            }
+            else {
+                learnts[j++]=cref;
+            }
+        }
+        nlearnts=j;
+    }
+    
+    private boolean locked(int cref) {
+        int l0=arena[cref+2];
+        return litval[l0]==1 && reason[l0>>1]==cref;
+    }
+    
+    //  Compact the arena and rebuild the watch lists. Only at the root level,
+    //  where no reasons are needed. 
+    private void garbageCollect() {
+        assert nlevels==0;
+        for(int i=0; i<trailsz; i++) {
+            reason[trail[i]>>1]=NOREASON;
+        }
+        for(int l=2; l<=2*nvars+1; l++) {
+            watchsz[l]=0;
+        }
+        int[] old=arena;
+        int oldsz=arenasz;
+        arena=new int[Math.max(1024, oldsz-wasted+1024)];
+        arenasz=0;
+        wasted=0;
+        nlearnts=0;
+        int c=0;
+        while(c<oldsz) {
+            int size=old[c];
+            int hdr=old[c+1];
+            if((hdr & DELETED)==0) {
+                int cref=arenasz;
+                System.arraycopy(old, c, arena, cref, size+2);
+                arenasz+=size+2;
+                attach(cref);
+                if((hdr & LEARNT)!=0) {
+                    if(nlearnts==learnts.length) {
+                        learnts=Arrays.copyOf(learnts, nlearnts*2);
+                    }
+                    learnts[nlearnts++]=cref;
+                }
+            }
+            c+=size+2;
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    //  Search
+    
+    private void newDecisionLevel() {
+        if(nlevels+1>=trailLim.length) {
+            //  Only when there are more assumptions than variables.
+            trailLim=Arrays.copyOf(trailLim, 2*trailLim.length);
+            levelstamp=Arrays.copyOf(levelstamp, 2*levelstamp.length);
+        }
+        trailLim[nlevels++]=trailsz;
+    }
+    
+    private void enqueue(int lit, int from) {
+        litval[lit]=1;
+        litval[lit^1]=-1;
+        int v=lit>>1;
+        level[v]=nlevels;
+        reason[v]=from;
+        trail[trailsz++]=lit;
+    }
+    
+    private void cancelUntil(int lvl) {
+        if(nlevels<=lvl) {
+            return;
+        }
+        int lim=trailLim[lvl];
+        for(int i=trailsz-1; i>=lim; i--) {
+            int lit=trail[i];
+            int v=lit>>1;
+            litval[lit]=0;
+            litval[lit^1]=0;
+            polarity[v]=(byte)(lit&1);
+            if(heappos[v]<0) {
+                heapInsert(v);
+            }
+        }
+        trailsz=lim;
+        qhead=lim;
+        nlevels=lvl;
+    }
+    
+    //  Unit propagation. Returns the conflicting clause or NOREASON.
+    private int propagate() {
+        while(qhead<trailsz) {
+            int p=trail[qhead++];
+            int falseLit=p^1;
+            int[] ws=watches[p];
+            int n=watchsz[p];
+            int i=0;
+            int j=0;
+            propagations++;
+            while(i<n) {
+                int cref=ws[i];
+                int blocker=ws[i+1];
+                i+=2;
+                if(litval[blocker]==1) {
+                    ws[j++]=cref;
+                    ws[j++]=blocker;
+                    continue;
+                }
+                if((arena[cref+1] & DELETED)!=0) {
+                    continue;  //  Drop the watch. 
+                }
+                int c0=cref+2;
+                if(arena[c0]==falseLit) {
+                    arena[c0]=arena[c0+1];
+                    arena[c0+1]=falseLit;
+                }
+                int first=arena[c0];
+                if(first!=blocker && litval[first]==1) {
+                    ws[j++]=cref;
+                    ws[j++]=first;
+                    continue;
+                }
+                
+                //  Look for a new literal to watch. 
+                int size=arena[cref];
+                boolean found=false;
+                for(int k=2; k<size; k++) {
+                    int l=arena[c0+k];
+                    if(litval[l]!=-1) {
+                        arena[c0+1]=l;
+                        arena[c0+k]=falseLit;
+                        addWatch(l^1, cref, first);
+                        found=true;
+                        break;
+                    }
+                }
+                if(found) {
+                    continue;
+                }
+                
+                ws[j++]=cref;
+                ws[j++]=first;
+                if(litval[first]==-1) {
+                    //  Conflict. Keep the remaining watches. 
+                    while(i<n) {
+                        ws[j++]=ws[i++];
+                    }
+                    watchsz[p]=j;
+                    qhead=trailsz;
+                    return cref;
+                }
+                enqueue(first, cref);
+            }
+            watchsz[p]=j;
+        }
+        return NOREASON;
+    }
+    
+    //  First-UIP conflict analysis. The learnt clause is left in learnt[0..size) 
+    //  with the asserting literal first and a literal of the backjump level second.
+    private int analyze(int confl) {
+        int pathC=0;
+        int p=-1;
+        int size=1;
+        int nclear=0;
+        int idx=trailsz-1;
+        
+        do {
+            int c0=confl+2;
+            int csize=arena[confl];
+            for(int k=(p==-1) ? 0 : 1; k<csize; k++) {
+                int q=arena[c0+k];
+                int v=q>>1;
+                if(seen[v]==0 && level[v]>0) {
+                    bumpVar(v);
+                    seen[v]=1;
+                    if(nclear==toclear.length) {
+                        toclear=Arrays.copyOf(toclear, nclear*2);
+                    }
+                    toclear[nclear++]=v;
+                    if(level[v]>=nlevels) {
+                        pathC++;
+                    }
+                    else {
+                        if(size==learnt.length) {
+                            learnt=Arrays.copyOf(learnt, size*2);
+                        }
+                        learnt[size++]=q;
+                    }
+                }
+            }
+            //  Next literal on the trail to expand. 
+            while(seen[trail[idx]>>1]==0) {
+                idx--;
+            }
+            p=trail[idx];
+            idx--;
+            confl=reason[p>>1];
+            pathC--;
+        } while(pathC>0);
+        learnt[0]=p^1;
+        
+        //  Remove literals implied by the rest of the clause (recursive minimisation). 
+        analyzeNClear=nclear;
+        int abstractLevels=0;
+        for(int i=1; i<size; i++) {
+            abstractLevels|=1<<(level[learnt[i]>>1] & 31);
+        }
+        int j=1;
+        for(int i=1; i<size; i++) {
+            if(reason[learnt[i]>>1]==NOREASON || !litRedundant(learnt[i], abstractLevels)) {
+                learnt[j++]=learnt[i];
+            }
+        }
+        size=j;
+        nclear=analyzeNClear;
+        
+        for(int i=0; i<nclear; i++) {
+            seen[toclear[i]]=0;
+        }
+        
+        //  Move a literal of the highest remaining level into position 1.
+        if(size>1) {
+            int maxi=1;
+            for(int i=2; i<size; i++) {
+                if(level[learnt[i]>>1]>level[learnt[maxi]>>1]) {
+                    maxi=i;
+                }
+            }
+            int tmp=learnt[1];
+            learnt[1]=learnt[maxi];
+            learnt[maxi]=tmp;
+        }
+        return size;
+    }
+    
+    private int analyzeNClear;
+    private int[] stack=new int[16];
+    
+    //  True if lit is implied by the literals marked as seen. Marks the
+    //  literals it passes through, and unmarks them again on failure. 
+    private boolean litRedundant(int lit, int abstractLevels) {
+        int top=analyzeNClear;
+        int sp=0;
+        stack[sp++]=lit;
+        while(sp>0) {
+            int q=stack[--sp];
+            int r=reason[q>>1];
+            int rsize=arena[r];
+            for(int k=1; k<rsize; k++) {
+                int l=arena[r+2+k];
+                int v=l>>1;
+                if(seen[v]==0 && level[v]>0) {
+                    if(reason[v]!=NOREASON && ((1<<(level[v] & 31)) & abstractLevels)!=0) {
+                        seen[v]=1;
+                        if(sp==stack.length) {
+                            stack=Arrays.copyOf(stack, sp*2);
+                        }
+                        stack[sp++]=l;
+                        if(analyzeNClear==toclear.length) {
+                            toclear=Arrays.copyOf(toclear, analyzeNClear*2);
+                        }
+                        toclear[analyzeNClear++]=v;
+                    }
+                    else {
+                        for(int i=top; i<analyzeNClear; i++) {
+                            seen[toclear[i]]=0;
+                        }
+                        analyzeNClear=top;
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    //  Number of distinct decision levels in a clause.
+    private int computeLBD(int[] lits, int size) {
+        stamp++;
+        int lbd=0;
+        for(int i=0; i<size; i++) {
+            int l=level[lits[i]>>1];
+            if(levelstamp[l]!=stamp) {
+                levelstamp[l]=stamp;
+                lbd++;
+            }
+        }
+        return lbd;
+    }
+    
+    private static int luby(int x) {
+        //  Luby sequence 1,1,2,1,1,2,4,... (from MiniSat).
+        int size=1;
+        int seq=0;
+        while(size<x+1) {
+            seq++;
+            size=2*size+1;
+        }
+        while(size-1!=x) {
+            size=(size-1)>>1;
+            seq--;
+            x=x%size;
+        }
+        return 1<<seq;
+    }
+}
@@ -33,17 +33,17 @@ public class CadicalSATSolver extends SATSolver
         super(_m);
     }
 
-    public Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
     {
         CmdFlags.runningSolver=true;  // Prevents SR's timeout from kicking in. 
-        boolean kis=CmdFlags.getSatFamily().equals("kissat");
+        boolean kis=satFamily().equals("kissat");
         
         try
         {
             ArrayList<String> command = new ArrayList<String>();
             command.add(satSolverName);
             
-            ArrayList<String> extraflags=new ArrayList<String>(CmdFlags.getSolverExtraFlags());
+            ArrayList<String> extraflags=new ArrayList<String>(solverFlags());
             if(statssofar!=null) {
                 int tlimit=parseTimeLimit(extraflags, kis);  //  If there is a -t timelimit flag, adjust it. 
                 if(tlimit!=-1) {
@@ -65,11 +65,11 @@ public class CadicalSATSolver extends SATSolver
             ArrayList<String> stderr_lines=new ArrayList<String>();
             ArrayList<String> stdout_lines=new ArrayList<String>();
             
-            ReadProcessOutput rpo=new ReadProcessOutput(stdout_lines);
+            ReadSatOutput rpo=new ReadSatOutput(stdout_lines);
 
             double solvertime=System.currentTimeMillis();
 
-            int exitValue=RunCommand.runCommand(true, command, stderr_lines, rpo);
+            int exitValue=RunCommand.runCommand(true, command, stderr_lines, rpo, group);
 
             solvertime=(((double) System.currentTimeMillis() - solvertime) / 1000);
 
@@ -77,28 +77,15 @@ public class CadicalSATSolver extends SATSolver
 
             if(exitValue==10) {
                 // Satisfiable -- for Cadical
-
-                // Find the line beginning "v " in stdout.
-                ArrayList<String> fileContents=new ArrayList<String>();
-
-                for(int i=0; i<stdout_lines.size(); i++) {
-                    if(stdout_lines.get(i).startsWith("v ")) {
-                        // Split on space to get solution literals.
-                        String[] tmp=stdout_lines.get(i).trim().split(" ");
-                        // Trim off the trailing 0 and starting v.
-                        for(int l=1; l<tmp.length; l++) {
-                            fileContents.add(tmp[l]);
-                        }
-                    }
-                }
-
-                return new Pair<ArrayList<String>, Stats>(fileContents, stats);
+                // Solution literals are on the lines beginning "v ", decoded by rpo.
+                SatLiterals model=rpo.getModel();
+                return new Pair<List<String>, Stats>(model!=null ? model : new SatLiterals(), stats);
             }
             else if(exitValue==20) {
                 // Unsat.
-                return new Pair<ArrayList<String>, Stats>(null, stats);
+                return new Pair<List<String>, Stats>(null, stats);
             }
-            else if(stderr_lines.size()!=0 || (exitValue!=10 && exitValue!=20)) {
+            else if(!killed() && (stderr_lines.size()!=0 || (exitValue!=10 && exitValue!=20))) {
                 CmdFlags.println("SAT solver exited with error code:"+exitValue+" and message:");
                 CmdFlags.println(stderr_lines);
                 
@@ -110,18 +97,18 @@ public class CadicalSATSolver extends SATSolver
                     }
                 }
             }
-            return new Pair<ArrayList<String>, Stats>(null, stats);
+            return new Pair<List<String>, Stats>(null, stats);
         }
         catch(IOException e1) {
             System.err.println("IOException");
             e1.printStackTrace();
             CmdFlags.rmTempFiles();
-            return new Pair<ArrayList<String>, Stats>(null, null);
+            return new Pair<List<String>, Stats>(null, null);
         }
         catch(InterruptedException e2) {
             System.out.println("InterruptedException.");
             CmdFlags.rmTempFiles();
-            return new Pair<ArrayList<String>, Stats>(null, null);
+            return new Pair<List<String>, Stats>(null, null);
         }
     }
     
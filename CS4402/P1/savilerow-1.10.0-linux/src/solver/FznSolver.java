@@ -257,7 +257,7 @@ public class FznSolver extends Solver
     
     // Takes a solution printed out by a Flatzinc solver
     // and turns it into a hashmap mapping variable name to value.
-    HashMap<String, Long> readAllAssignments(ArrayList<String> gecodesol, SymbolTable st) {
+    HashMap<String, Long> readAllAssignments(List<String> gecodesol, SymbolTable st) {
         HashMap<String, Long> collect_all_values=new HashMap<String, Long>();
         
         // Each string contains an assignment
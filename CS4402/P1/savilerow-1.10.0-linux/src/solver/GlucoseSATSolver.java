@@ -34,7 +34,7 @@ public class GlucoseSATSolver extends SATSolver
         super(_m);
     }
 
-    public Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
     {
         CmdFlags.runningSolver=true;  // Prevents SR's timeout from kicking in. 
         
@@ -42,18 +42,18 @@ public class GlucoseSATSolver extends SATSolver
         {
             ArrayList<String> command = new ArrayList<String>();
             command.add(satSolverName);
-            command.addAll(CmdFlags.getSolverExtraFlags());
+            command.addAll(solverFlags());
             command.add(filename);
             command.add("-model");
             
             ArrayList<String> stderr_lines=new ArrayList<String>();
             ArrayList<String> stdout_lines=new ArrayList<String>();
             
-            ReadProcessOutput rpo=new ReadProcessOutput(stdout_lines);
+            ReadSatOutput rpo=new ReadSatOutput(stdout_lines);
             
             double solvertime=System.currentTimeMillis();
             
-            int exitValue=RunCommand.runCommand(true, command, stderr_lines, rpo);
+            int exitValue=RunCommand.runCommand(true, command, stderr_lines, rpo, group);
             
             solvertime=(((double) System.currentTimeMillis() - solvertime) / 1000);
             
@@ -61,46 +61,29 @@ public class GlucoseSATSolver extends SATSolver
             
             if(exitValue==10) {
                 // Satisfiable -- for Glucose
-                
-                // Find the line beginning "v " in stdout.
-                ArrayList<String> fileContents=null;
-                
-                for(int i=0; i<stdout_lines.size(); i++) {
-                    if(stdout_lines.get(i).startsWith("v ")) {
-                        // Split on space to get solution literals.
-                        String[] tmp=stdout_lines.get(i).trim().split(" ");
-                        fileContents=new ArrayList<String>(tmp.length-2);
-                        // Trim off the trailing 0 and starting v.
-                        for(int l=1; l<tmp.length-1; l++) {
-                            fileContents.add(tmp[l]);
-                        }
-                        
-                        break;
-                    }
-                }
-                
-                return new Pair<ArrayList<String>, Stats>(fileContents, stats);
+                // Solution literals are on the line beginning "v ", decoded by rpo.
+                return new Pair<List<String>, Stats>(rpo.getModel(), stats);
             }
             else if(exitValue==20) {
                 // Unsat.
-                return new Pair<ArrayList<String>, Stats>(null, stats);
+                return new Pair<List<String>, Stats>(null, stats);
             }
-            else if(stderr_lines.size()!=0 || (exitValue!=10 && exitValue!=20)) {
+            else if(!killed() && (stderr_lines.size()!=0 || (exitValue!=10 && exitValue!=20))) {
                 CmdFlags.println("SAT solver exited with error code:"+exitValue+" and message:");
                 CmdFlags.println(stderr_lines);
             }
-            return new Pair<ArrayList<String>, Stats>(null, stats);
+            return new Pair<List<String>, Stats>(null, stats);
         }
         catch(IOException e1) {
             System.err.println("IOException");
             e1.printStackTrace();
             CmdFlags.rmTempFiles();
-            return new Pair<ArrayList<String>, Stats>(null, null);
+            return new Pair<List<String>, Stats>(null, null);
         }
         catch(InterruptedException e2) {
             System.out.println("InterruptedException.");
             CmdFlags.rmTempFiles();
-            return new Pair<ArrayList<String>, Stats>(null, null);
+            return new Pair<List<String>, Stats>(null, null);
         }
     }
 }
@@ -42,7 +42,7 @@ public class InteractiveAllMinisatSATSolver extends InteractiveSATSolver
     }
 
     @Override
-    public Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar){
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar){
         // give assumptions in the beginning
         finaliseAssumptions();
         addAssumptionsToSolver(nativeSolverPointer, Arrays.stream(assumptions).mapToInt(i -> (int)i).toArray());
@@ -99,13 +99,17 @@ public class InteractiveAllMinisatSATSolver extends InteractiveSATSolver
         addClauseToSolver(nativeSolverPointer, Arrays.stream(clause).mapToInt(i -> (int)i).toArray());
     }
 
+    @Override
+    public void addClauseToISATSolver(int[] clause){
+        addClauseToSolver(nativeSolverPointer, clause);
+    }
+
     public long getNbLearntClausesFromISATSolver(){
         return getNbLearntClauses(nativeSolverPointer);
     }
 
     protected void handleFreshSolution(int[] solution){
-        ArrayList<String> currentSolution = Arrays.stream(solution).mapToObj(Integer::toString).collect(Collectors.toCollection(ArrayList::new));
-        Solution sol = solverSolToAST(currentSolution, m.global_symbols);
+        Solution sol = solverSolToAST(new SatLiterals(solution), m.global_symbols);
         createSolutionFile(sol, true);
         // Garbage collector can clean it maybe, so just in case return this object to rust namespace.
         // return solution;
@@ -41,7 +41,7 @@ public class InteractiveCadicalSATSolver extends InteractiveSATSolver
     }
 
     @Override
-    public Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar){
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar){
         // give assumptions in the beginning
         finaliseAssumptions();
         addAssumptionsToSolver(nativeSolverPointer, Arrays.stream(assumptions).mapToInt(i -> (int)i).toArray());
@@ -58,13 +58,13 @@ public class InteractiveCadicalSATSolver extends InteractiveSATSolver
             //clean assumption queue for a possible run later
             cleanAssumptionQueue();
         }
-        return new Pair<ArrayList<String>, Stats>(ret == 0 ? lastSolution : null, stats);
+        return new Pair<List<String>, Stats>(ret == 0 ? lastSolution : null, stats);
     }
 
     // Implementation of INativeSolver and JNI Business
     private long nativeSolverPointer;
     // Solver sends to solution immediately to SR and Handle solution captures it possibly many purposes. 
-    private ArrayList<String> lastSolution;
+    private SatLiterals lastSolution;
 
     private static native long initSolver();
     private static native long addClauseToSolver(long solver, int[] clause);
@@ -91,13 +91,18 @@ public class InteractiveCadicalSATSolver extends InteractiveSATSolver
         addClauseToSolver(nativeSolverPointer, Arrays.stream(clause).mapToInt(i -> (int)i).toArray());
     }
 
+    @Override
+    public void addClauseToISATSolver(int[] clause){
+        addClauseToSolver(nativeSolverPointer, clause);
+    }
+
     public long getNbLearntClausesFromISATSolver(){
         return getNbLearntClauses(nativeSolverPointer);
     }
 
     protected void handleFreshSolution(int[] solution){
         // set last solution to solution call back.
-        lastSolution = Arrays.stream(solution).mapToObj(Integer::toString).collect(Collectors.toCollection(ArrayList::new));
+        lastSolution = new SatLiterals(solution);
         // Garbage collector can clean it maybe, so just in case return this object to rust namespace.
         // return solution;
     }
@@ -0,0 +1,99 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+
+//  Interactive SAT solver backed by the built-in CDCLSolver, so it needs no
+//  native library or external binary (-sat-family java). 
+
+public class InteractiveJavaSATSolver extends InteractiveSATSolver
+{
+    private CDCLSolver solver;
+    
+    private SatLiterals lastSolution;
+    
+    public InteractiveJavaSATSolver(Model _m) {
+        super(_m);
+    }
+    
+    @Override
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar){
+        finaliseAssumptions();
+        int[] a=new int[assumptions.length];
+        for(int i=0; i<assumptions.length; i++) {
+            a[i]=(int)assumptions[i];
+        }
+        double solverTime = System.currentTimeMillis();
+        int ret=solver.solve(a);
+        solverTime = (System.currentTimeMillis() - solverTime) / 1000;
+        
+        if(ret==CDCLSolver.SAT) {
+            int nbVars=(int)(m.satModel.variableNumber-1);
+            int[] solution=new int[nbVars];
+            for(int i=1; i<=nbVars; i++) {
+                solution[i-1]=solver.modelValue(i);
+            }
+            handleFreshSolution(solution);
+        }
+        
+        double[] statsArray = new double[2];
+        statsArray[0] = solverTime;
+        statsArray[1] = solver.getDecisions();
+        InteractiveStats stats = new InteractiveJavaStats(ret==CDCLSolver.SAT, statsArray);
+        stats.setNbLearnts(getNbLearntClausesFromISATSolver());
+        // Clean the assumptions if we are on optimisation mode, as for the other interactive solvers.
+        if (m.objective != null){
+            cleanAssumptionQueue();
+        }
+        return new Pair<List<String>, Stats>(ret==CDCLSolver.SAT ? lastSolution : null, stats);
+    }
+    
+    protected void initISATSolver(){
+        solver=new CDCLSolver();
+    }
+    
+    public void setRndSeedToISATSolver(long seed) {
+        solver.setSeed(seed);
+    }
+    
+    public void addClauseToISATSolver(long[] clause){
+        int[] c=new int[clause.length];
+        for(int i=0; i<clause.length; i++) {
+            c[i]=(int)clause[i];
+        }
+        solver.addClause(c);
+    }
+    
+    @Override
+    public void addClauseToISATSolver(int[] clause){
+        solver.addClause(clause);
+    }
+    
+    public long getNbLearntClausesFromISATSolver(){
+        return solver.getNumLearnts();
+    }
+    
+    protected void handleFreshSolution(int[] solution){
+        lastSolution=new SatLiterals(solution);
+    }
+}
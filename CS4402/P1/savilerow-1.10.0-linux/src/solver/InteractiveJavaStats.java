@@ -21,24 +21,14 @@ package savilerow;
 
 */
 
-
-
-
-
 import java.util.*;
 
-public class TransformFixSTRef extends TreeTransformerBottomUpNoWrapper
+public class InteractiveJavaStats extends InteractiveStats
 {
-    Model replace_m;
-    public TransformFixSTRef(Model _replace_m) {
-        super(null);
-        replace_m=_replace_m;
+    public InteractiveJavaStats(boolean sat, double[] statsArray){
+        putValue("SolverSatisfiable",    sat ? "1" : "0");
+        //time, decisions;
+        putValue("SolverTotalTime",    String.valueOf(statsArray[0]));
+        putValue("SolverNodes",        String.valueOf(statsArray[1]));
     }
-    
-	protected NodeReplacement processNode(ASTNode curnode) {
-	    if(curnode.hasModel()) {
-	        curnode.setModel(replace_m);
-	    }
-	    return null;
-	}
 }
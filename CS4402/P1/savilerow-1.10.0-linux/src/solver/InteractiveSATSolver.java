@@ -40,6 +40,16 @@ public abstract class InteractiveSATSolver extends SATSolver {
     protected abstract void initISATSolver();
     public abstract void setRndSeedToISATSolver(long seed);
     public abstract void addClauseToISATSolver(long[] clause);
+    
+    //  Literals already narrowed to int. Solvers with an int[] native 
+    //  interface override this to avoid the conversion. 
+    public void addClauseToISATSolver(int[] clause) {
+        long[] c=new long[clause.length];
+        for(int i=0; i<clause.length; i++) {
+            c[i]=clause[i];
+        }
+        addClauseToISATSolver(c);
+    }
     protected abstract void handleFreshSolution(int[] solution);
     public abstract long getNbLearntClausesFromISATSolver();
 
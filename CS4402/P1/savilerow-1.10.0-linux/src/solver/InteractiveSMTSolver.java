@@ -41,7 +41,7 @@ public abstract class InteractiveSMTSolver extends SMTSolver {
     }
 
     @Override
-    public Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException, InterruptedException {
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException, InterruptedException {
         CmdFlags.runningSolver=true;  // Prevents SR's timeout from kicking in.
 
         long solvertime=System.nanoTime();
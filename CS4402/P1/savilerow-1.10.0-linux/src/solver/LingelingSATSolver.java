@@ -39,7 +39,7 @@ public class LingelingSATSolver extends SATSolver
     public LingelingSATSolver(Model _m) {
         super(_m);
     }
-    public Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
     {
         CmdFlags.runningSolver=true;  // Prevents SR's timeout from kicking in. 
         
@@ -47,7 +47,7 @@ public class LingelingSATSolver extends SATSolver
             ArrayList<String> command = new ArrayList<String>();
             command.add(satSolverName);
             
-            ArrayList<String> extraflags=new ArrayList<String>(CmdFlags.getSolverExtraFlags());
+            ArrayList<String> extraflags=new ArrayList<String>(solverFlags());
             if(statssofar!=null) {
                 int idx=extraflags.indexOf("-t");  //  If there is a -t timelimit flag, adjust it. 
                 if(idx!=-1) {
@@ -70,14 +70,14 @@ public class LingelingSATSolver extends SATSolver
             ArrayList<String> stderr_lines=new ArrayList<String>();
             ArrayList<String> stdout_lines=new ArrayList<String>();
             
-            ReadProcessOutput rpo=new ReadProcessOutput(stdout_lines);
+            ReadSatOutput rpo=new ReadSatOutput(stdout_lines);
             
             double solvertime=System.currentTimeMillis();
             
-            int exitValue=RunCommand.runCommand(false, command, stderr_lines, rpo);
+            int exitValue=RunCommand.runCommand(false, command, stderr_lines, rpo, group);
             // lingeling returns 10 for SAT and 20 for UNSAT
             // this does not indicate an error
-            if( stderr_lines.size()!=0 || (exitValue!=0 && exitValue!=10 && exitValue!=20)) {
+            if(!killed() && (stderr_lines.size()!=0 || (exitValue!=0 && exitValue!=10 && exitValue!=20))) {
                 CmdFlags.println("lingeling exited with error code:"+exitValue+" and error message:");
                 CmdFlags.println(stderr_lines);
             }
@@ -128,30 +128,18 @@ public class LingelingSATSolver extends SATSolver
             }
             
             if(satisfiable) {
-                ArrayList<String> fileContents=new ArrayList<String>();
-                
-                for(int i=0; i<stdout_lines.size(); i++) {
-                    String ln=stdout_lines.get(i);
-                    if(ln.indexOf("v ")==0) {
-                        String[] words=ln.trim().split(" ");
-                        fileContents.addAll(Arrays.asList(words).subList(1, words.length));   // Leave the starting v
-                    }
-                }
-                
-                // Take off the trailing 0.
-                fileContents.remove(fileContents.size()-1);
-                
-                return new Pair<ArrayList<String>, Stats>(fileContents, stats);
+                // Solution literals from the lines beginning "v ". 
+                return new Pair<List<String>, Stats>(rpo.getModel(), stats);
             }
             else {
                 // Either unsat or not completed
-                return new Pair<ArrayList<String>, Stats>(null, stats);
+                return new Pair<List<String>, Stats>(null, stats);
             }
         }
         catch(Exception e) {
             System.out.println("Exception."+e);
             CmdFlags.rmTempFiles();
-            return new Pair<ArrayList<String>, Stats>(null, null);
+            return new Pair<List<String>, Stats>(null, null);
         }
     }
 }
@@ -520,7 +520,7 @@ public class MinionSolver extends Solver
     
     // Takes a solution printed out by Minion (in solution table format)
     // and turns it into a hashmap mapping variable name to value.
-    HashMap<String, Long> readAllAssignments(ArrayList<String> minsol, SymbolTable st) {
+    HashMap<String, Long> readAllAssignments(List<String> minsol, SymbolTable st) {
         HashMap<String, Long> collect_all_values=new HashMap<String, Long>();
         
         ArrayDeque<String> minsolvals=new ArrayDeque<String>(Arrays.asList(minsol.get(0).split("\\s")));  // Split by space into individual values.
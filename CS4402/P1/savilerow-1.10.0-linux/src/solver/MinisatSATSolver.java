@@ -39,7 +39,7 @@ public class MinisatSATSolver extends SATSolver
     public MinisatSATSolver(Model _m) {
         super(_m);
     }
-    public Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
     {
         CmdFlags.runningSolver=true;  // Prevents SR's timeout from kicking in. 
         
@@ -68,42 +68,35 @@ public class MinisatSATSolver extends SATSolver
             if(exitValue==10) {
                 // Satisfiable -- for MiniSat
                 BufferedReader inFromFile =new BufferedReader(new FileReader(CmdFlags.getMinionSolsTempFile()));
-                ArrayList<String> fileContents=new ArrayList<String>();
                 
-                while (inFromFile.ready())
-                {
-                    String currentLine=inFromFile.readLine();
-                    fileContents.add(currentLine);
-                }
+                // Line 0 is SAT, the solution literals follow. 
+                inFromFile.readLine();
+                SatLiterals fileContents=new SatLiterals();
+                fileContents.feed(inFromFile);
+                inFromFile.close();
                 
-                // Take only line 1. Split on space to get solution literals. 
-                fileContents=new ArrayList<String>(Arrays.asList(fileContents.get(1).trim().split(" ")));
-                
-                // Trim off the trailing 0.
-                fileContents.remove(fileContents.size()-1);
-                
-                return new Pair<ArrayList<String>, Stats>(fileContents, stats);
+                return new Pair<List<String>, Stats>(fileContents, stats);
             }
             else if(exitValue==20) {
                 // Unsat.
-                return new Pair<ArrayList<String>, Stats>(null, stats);
+                return new Pair<List<String>, Stats>(null, stats);
             }
             else if(stderr_lines.size()!=0 || (exitValue!=10 && exitValue!=20)) {
                 CmdFlags.println("SAT solver exited with error code:"+exitValue+" and message:");
                 CmdFlags.println(stderr_lines);    
             }
-            return new Pair<ArrayList<String>, Stats>(null, stats);
+            return new Pair<List<String>, Stats>(null, stats);
         }
         catch(IOException e1) {
             System.err.println("IOException");
             e1.printStackTrace();
             CmdFlags.rmTempFiles();
-            return new Pair<ArrayList<String>, Stats>(null, null);
+            return new Pair<List<String>, Stats>(null, null);
         }
         catch(InterruptedException e2) {
             System.out.println("InterruptedException.");
             CmdFlags.rmTempFiles();
-            return new Pair<ArrayList<String>, Stats>(null, null);
+            return new Pair<List<String>, Stats>(null, null);
         }
     }
     
@@ -39,7 +39,7 @@ public class OpenWBOSATSolver extends SATSolver
     public OpenWBOSATSolver(Model _m) {
         super(_m);
     }
-    public Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
     {
         CmdFlags.runningSolver=true;  // Prevents SR's timeout from kicking in. 
         
@@ -57,7 +57,7 @@ public class OpenWBOSATSolver extends SATSolver
             ArrayList<String> stderr_lines=new ArrayList<String>();
             ArrayList<String> stdout_lines=new ArrayList<String>();
             
-            ReadProcessOutput rpo=new ReadProcessOutput(stdout_lines);
+            ReadSatOutput rpo=new ReadSatOutput(stdout_lines);
             
             double solvertime=System.currentTimeMillis();
             
@@ -78,27 +78,19 @@ public class OpenWBOSATSolver extends SATSolver
             stats.putValue("SolverTotalTime", String.valueOf(solvertime));
             
             if(satisfiable) {
-                ArrayList<String> fileContents=new ArrayList<String>();
-                
-                for(int i=0; i<stdout_lines.size(); i++) {
-                    String ln=stdout_lines.get(i);
-                    if(ln.indexOf("v ")==0) {
-                        String[] words=ln.trim().split(" ");
-                        fileContents.addAll(Arrays.asList(words).subList(1, words.length));   // Leave the starting v
-                    }
-                }
-                
-                return new Pair<ArrayList<String>, Stats>(fileContents, stats);
+                // Solution literals from the lines beginning "v ". 
+                SatLiterals model=rpo.getModel();
+                return new Pair<List<String>, Stats>(model!=null ? model : new SatLiterals(), stats);
             }
             else {
                 // Either unsat or not completed
-                return new Pair<ArrayList<String>, Stats>(null, stats);
+                return new Pair<List<String>, Stats>(null, stats);
             }
         }
         catch(Exception e) {
             System.out.println("Exception."+e);
             CmdFlags.rmTempFiles();
-            return new Pair<ArrayList<String>, Stats>(null, null);
+            return new Pair<List<String>, Stats>(null, null);
         }
     }
 }
@@ -0,0 +1,141 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+//  Races several SAT solver configurations on the same DIMACS file
+//  (-sat-portfolio). Each entry of the portfolio is a SAT family, optionally
+//  followed by :binary, then any options for the solver, for example
+//  "kissat --seed=1" or "cadical:/opt/bin/cadical --seed=2". The first
+//  member to prove SAT or UNSAT wins, the others are killed, and the
+//  result and Stats of the winner are returned. Since every call to the
+//  solver goes through runSatSolver, this works for the one-solution,
+//  all-solutions and optimisation loops in SATSolver. 
+
+public class PortfolioSATSolver extends SATSolver
+{
+    public PortfolioSATSolver(Model _m) {
+        super(_m);
+    }
+    
+    //  A fresh solver object for each member and each call, so that a killed
+    //  member of one race cannot see the state of the next. 
+    private SATSolver member(String entry, ProcessGroup group) {
+        String family=family(entry);
+        SATSolver s=SATSolver.forFamily(family, m);
+        s.portfolioFamily=family;
+        s.portfolioFlags=options(entry);
+        s.group=group;
+        return s;
+    }
+    
+    //  Parts of a portfolio entry. 
+    public static String family(String entry) {
+        String first=entry.trim().split("\\s+")[0];
+        int colon=first.indexOf(':');
+        return (colon==-1) ? first : first.substring(0, colon);
+    }
+    
+    static String binary(String entry) {
+        String first=entry.trim().split("\\s+")[0];
+        int colon=first.indexOf(':');
+        return (colon==-1) ? CmdFlags.defaultSatSolverPath(first) : first.substring(colon+1);
+    }
+    
+    static ArrayList<String> options(String entry) {
+        String[] words=entry.trim().split("\\s+");
+        return new ArrayList<String>(Arrays.asList(words).subList(1, words.length));
+    }
+    
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException
+    {
+        ProcessGroup group=new ProcessGroup();
+        ArrayList<String> entries=CmdFlags.sat_portfolio;
+        ExecutorService pool=Executors.newFixedThreadPool(entries.size());
+        CompletionService<Pair<List<String>, Stats>> race=new ExecutorCompletionService<Pair<List<String>, Stats>>(pool);
+        HashMap<Future<Pair<List<String>, Stats>>, Integer> memberOf=new HashMap<Future<Pair<List<String>, Stats>>, Integer>();
+        
+        try {
+            for(int i=0; i<entries.size(); i++) {
+                final SATSolver s=member(entries.get(i), group);
+                final String bin=binary(entries.get(i));
+                memberOf.put(race.submit(new Callable<Pair<List<String>, Stats>>() {
+                    public Pair<List<String>, Stats> call() throws Exception {
+                        return s.runSatSolver(bin, filename, m, statssofar);
+                    }
+                }), i);
+            }
+            
+            //  Take results in the order they finish, until one is definitive.
+            //  If none is, return the last (e.g. all members timed out). 
+            Pair<List<String>, Stats> last=new Pair<List<String>, Stats>(null, null);
+            for(int done=0; done<entries.size(); done++) {
+                Future<Pair<List<String>, Stats>> f=race.take();
+                Pair<List<String>, Stats> p=get(f);
+                if(p==null) {
+                    continue;
+                }
+                last=p;
+                if(definitive(p)) {
+                    group.kill();
+                    if(p.getSecond()!=null) {
+                        p.getSecond().putValue("SolverPortfolioWinner", String.valueOf(memberOf.get(f)+1));
+                    }
+                    CmdFlags.printlnIfVerbose("SAT portfolio won by: "+entries.get(memberOf.get(f)));
+                    return p;
+                }
+            }
+            return last;
+        }
+        finally {
+            group.kill();
+            pool.shutdown();
+        }
+    }
+    
+    //  SAT, or UNSAT without a timeout. 
+    private static boolean definitive(Pair<List<String>, Stats> p) {
+        if(p.getFirst()!=null) {
+            return true;
+        }
+        Stats st=p.getSecond();
+        return st!=null && st.getValue("SolverSatisfiable").equals("0") && st.getValue("SolverTimeOut").equals("0");
+    }
+    
+    private static Pair<List<String>, Stats> get(Future<Pair<List<String>, Stats>> f) throws IOException, InterruptedException {
+        try {
+            return f.get();
+        }
+        catch(ExecutionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
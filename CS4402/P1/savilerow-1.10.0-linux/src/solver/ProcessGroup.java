@@ -0,0 +1,54 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+
+//  Solver processes that are racing each other (see PortfolioSATSolver).
+//  Once the race is decided, kill destroys the other processes, and any
+//  process registered later is destroyed as soon as it starts. 
+
+public class ProcessGroup {
+    private final ArrayList<Process> procs=new ArrayList<Process>();
+    private boolean killed=false;
+    
+    public synchronized void add(Process p) {
+        if(killed) {
+            p.destroyForcibly();
+        }
+        else {
+            procs.add(p);
+        }
+    }
+    
+    public synchronized void kill() {
+        killed=true;
+        for(Process p : procs) {
+            p.destroyForcibly();
+        }
+        procs.clear();
+    }
+    
+    public synchronized boolean isKilled() {
+        return killed;
+    }
+}
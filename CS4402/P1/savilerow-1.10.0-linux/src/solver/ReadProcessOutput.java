@@ -34,6 +34,7 @@ public class ReadProcessOutput extends Thread {
     
     BufferedReader br;
     ArrayList<String>   out;
+    ProcessGroup group=null;    //  Set by RunCommand when the process may be killed.
     
     public void giveInputStream(BufferedReader _br) {
         br=_br;
@@ -43,31 +44,29 @@ public class ReadProcessOutput extends Thread {
         try {
             String line=br.readLine();
             
-            if(CmdFlags.recordObjectiveValues()) {
-                while(line != null) {
-                    
-                    // recording intermediate objective values in file
-                    String prefix = "Solution found with Value: ";
-                    //System.out.println(line);
-                    if (line.startsWith(prefix)) {
-                        long value = Long.parseLong(line.substring(prefix.length()));
-                        CmdFlags.recordIntermediateObjectiveValue(value);
-                    }
-                    
-                    out.add(line);
-                    line=br.readLine();
-                }
-            }
-            else {
-                // A simpler loop
-                while(line != null) {
-                    out.add(line);
-                    line=br.readLine();
-                }
+            while(line != null) {
+                addLine(line);
+                line=br.readLine();
             }
         }
         catch(IOException e1) {
-            CmdFlags.errorExit("IO Exception when reading stdout/stderr from sub-process.");
+            //  The stream is closed under us when the process is killed. 
+            if(group==null || !group.isKilled()) {
+                CmdFlags.errorExit("IO Exception when reading stdout/stderr from sub-process.");
+            }
+        }
+    }
+    
+    void addLine(String line) {
+        if(CmdFlags.recordObjectiveValues()) {
+            // recording intermediate objective values in file
+            String prefix = "Solution found with Value: ";
+            if (line.startsWith(prefix)) {
+                long value = Long.parseLong(line.substring(prefix.length()));
+                CmdFlags.recordIntermediateObjectiveValue(value);
+            }
         }
+        
+        out.add(line);
     }
 }
@@ -0,0 +1,117 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+
+//  Reads the stdout of a SAT solver. Lines starting "v " are decoded into a
+//  SatLiterals model as they arrive, without making a String for each line or
+//  literal. All other lines (status and statistics) are stored as usual for
+//  the Stats classes. 
+
+public class ReadSatOutput extends ReadProcessOutput {
+    private SatLiterals model=null;
+    
+    public ReadSatOutput(ArrayList<String> _out) {
+        super(_out);
+    }
+    
+    //  The literals on the v lines, or null if there were no v lines. 
+    public SatLiterals getModel() {
+        return model;
+    }
+    
+    private static final int LINESTART=0, VSTART=1, VLINE=2, OTHER=3;
+    
+    public void run() {
+        try {
+            char[] buf=new char[1<<16];
+            StringBuilder line=new StringBuilder();
+            int state=LINESTART;
+            
+            int n=br.read(buf);
+            while(n!=-1) {
+                int i=0;
+                while(i<n) {
+                    char c=buf[i];
+                    if(state==VLINE) {
+                        //  Feed the rest of the v line in one piece.
+                        int j=i;
+                        while(j<n && buf[j]!='\n') {
+                            j++;
+                        }
+                        model.feed(buf, i, j);
+                        if(j<n) {
+                            model.endToken();
+                            state=LINESTART;
+                            j++;
+                        }
+                        i=j;
+                        continue;
+                    }
+                    
+                    if(c=='\n') {
+                        if(state!=LINESTART) {
+                            addLine(line.toString());
+                            line.setLength(0);
+                        }
+                        else {
+                            addLine("");
+                        }
+                        state=LINESTART;
+                    }
+                    else if(state==LINESTART && c=='v') {
+                        line.append(c);
+                        state=VSTART;
+                    }
+                    else if(state==VSTART && (c==' ' || c=='\t')) {
+                        line.setLength(0);
+                        if(model==null) {
+                            model=new SatLiterals();
+                        }
+                        state=VLINE;
+                    }
+                    else if(c!='\r') {
+                        line.append(c);
+                        state=OTHER;
+                    }
+                    i++;
+                }
+                n=br.read(buf);
+            }
+            
+            if(state==VLINE) {
+                model.endToken();
+            }
+            else if(state!=LINESTART) {
+                addLine(line.toString());
+            }
+        }
+        catch(IOException e1) {
+            //  The stream is closed under us when the process is killed. 
+            if(group==null || !group.isKilled()) {
+                CmdFlags.errorExit("IO Exception when reading stdout/stderr from sub-process.");
+            }
+        }
+    }
+}
@@ -29,12 +29,22 @@ public class RunCommand
 {
     // Returns exit code. 
     public static int runCommand(boolean zeroExitCode, ArrayList<String> command, ArrayList<String> stderr_lines, ReadProcessOutput output_processor) throws IOException,  InterruptedException
+    {
+        return runCommand(zeroExitCode, command, stderr_lines, output_processor, null);
+    }
+    
+    // As above, and if group is not null the process can be killed through it.
+    // A process that is killed does not report an error. 
+    public static int runCommand(boolean zeroExitCode, ArrayList<String> command, ArrayList<String> stderr_lines, ReadProcessOutput output_processor, ProcessGroup group) throws IOException,  InterruptedException
     {
         try {
 
             CmdFlags.printlnIfVerbose("Running command: " + command);
 
             Process process=Runtime.getRuntime().exec(command.toArray(new String[command.size()]));
+            if(group!=null) {
+                group.add(process);
+            }
             
             InputStream inputStream = process.getInputStream();
             InputStream errorStream = process.getErrorStream();
@@ -45,6 +55,8 @@ public class RunCommand
             
             output_processor.giveInputStream(input);
             rpo2.giveInputStream(error);
+            output_processor.group=group;
+            rpo2.group=group;
             
             output_processor.start();
             rpo2.start();
@@ -54,6 +66,10 @@ public class RunCommand
             
             int exitValue=process.waitFor();
             
+            if(group!=null && group.isKilled()) {
+                return exitValue;
+            }
+            
             // Some solvers (for example chuffed) print warning messages with WARNING as prefix.
             // We don't want to report sub-process failure if these are the only messages in stderr.
             // So we check whether stderr_lines_except_warnings is empty or not when deciding below.
@@ -0,0 +1,155 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+
+//  A solver session kept across the solver calls of one run (-sat-incremental).
+//  The SAT file is read once into the built-in CDCLSolver on the first call
+//  (any removable clauses at the end of the file are read as removable).
+//  After that, Sat passes each clause added after finalise to the session as
+//  well as writing it to the file, so the learnt clauses and the parse are kept
+//  from one call to the next. Removable clauses (those later retracted with 
+//  removeFinalClause) become assumptions. 
+
+public class SATSession
+{
+    private CDCLSolver solver;
+    
+    //  Assumptions for removable clauses, cleared by clearRemovable.
+    private ArrayList<Integer> assumptions=new ArrayList<Integer>();
+    
+    //  Selector variables for removable clauses of more than one literal, to be
+    //  switched off permanently by clearRemovable.
+    private ArrayList<Integer> selectors=new ArrayList<Integer>();
+    
+    private Sat satModel;
+    
+    public SATSession(String filename, Sat _satModel) throws IOException {
+        satModel=_satModel;
+        solver=new CDCLSolver();
+        readDimacs(filename, satModel.removableStart());
+    }
+    
+    public void addClause(long[] lits, int len, boolean removable) {
+        if(removable && len==1) {
+            assumptions.add((int)lits[0]);
+            return;
+        }
+        int[] c=new int[removable ? len+1 : len];
+        for(int i=0; i<len; i++) {
+            c[i]=(int)lits[i];
+        }
+        if(removable) {
+            int sel=(int)satModel.getNextVariableNumber();
+            c[len]=-sel;
+            selectors.add(sel);
+            assumptions.add(sel);
+        }
+        solver.addClause(c);
+    }
+    
+    public void clearRemovable() {
+        assumptions.clear();
+        for(int i=0; i<selectors.size(); i++) {
+            solver.addClause(new int[]{-selectors.get(i)});
+        }
+        selectors.clear();
+    }
+    
+    public Pair<List<String>, Stats> solve(long nbVars) {
+        int[] a=new int[assumptions.size()];
+        for(int i=0; i<a.length; i++) {
+            a[i]=assumptions.get(i);
+        }
+        double solverTime = System.currentTimeMillis();
+        int ret=solver.solve(a);
+        solverTime = (System.currentTimeMillis() - solverTime) / 1000;
+        
+        SatLiterals solution=null;
+        if(ret==CDCLSolver.SAT) {
+            solution=new SatLiterals((int)nbVars);
+            for(int i=1; i<=nbVars; i++) {
+                solution.addLiteral(solver.modelValue(i));
+            }
+        }
+        
+        double[] statsArray = new double[2];
+        statsArray[0] = solverTime;
+        statsArray[1] = solver.getDecisions();
+        InteractiveStats stats = new InteractiveJavaStats(ret==CDCLSolver.SAT, statsArray);
+        stats.setNbLearnts(solver.getNumLearnts());
+        return new Pair<List<String>, Stats>(solution, stats);
+    }
+    
+    //  Read clauses from a DIMACS file, skipping the header and comment lines.
+    //  Clauses starting at or after file position removableStart are removable 
+    //  (none if removableStart is negative).
+    private void readDimacs(String filename, long removableStart) throws IOException {
+        long[] clause=new long[16];
+        int len=0;
+        long pos=0L;         // Position of ch in the file.
+        long clauseStart=0L;
+        try(InputStream in=new BufferedInputStream(new FileInputStream(filename), 1<<16)) {
+            int ch=in.read();
+            while(ch!=-1) {
+                if(ch=='c' || ch=='p') {
+                    while(ch!=-1 && ch!='\n') {
+                        ch=in.read();
+                        pos++;
+                    }
+                    continue;
+                }
+                if(ch=='-' || (ch>='0' && ch<='9')) {
+                    if(len==0) {
+                        clauseStart=pos;
+                    }
+                    boolean neg=(ch=='-');
+                    if(neg) {
+                        ch=in.read();
+                        pos++;
+                    }
+                    long val=0;
+                    while(ch>='0' && ch<='9') {
+                        val=val*10+(ch-'0');
+                        ch=in.read();
+                        pos++;
+                    }
+                    if(val==0) {
+                        addClause(clause, len, removableStart>=0 && clauseStart>=removableStart);
+                        len=0;
+                    }
+                    else {
+                        if(len==clause.length) {
+                            clause=Arrays.copyOf(clause, len*2);
+                        }
+                        clause[len++]=neg ? -val : val;
+                    }
+                    continue;
+                }
+                ch=in.read();
+                pos++;
+            }
+        }
+    }
+}
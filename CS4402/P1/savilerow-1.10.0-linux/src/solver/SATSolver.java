@@ -22,6 +22,7 @@ package savilerow;
 */
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 
 
@@ -60,8 +61,59 @@ public abstract class SATSolver extends Solver
         CmdFlags.rmTempFiles();
     }
     
+    //  Set when this solver is one member of a PortfolioSATSolver: the solver
+    //  options for this member, and the group used to kill it when another
+    //  member finishes first. 
+    String portfolioFamily=null;
+    ArrayList<String> portfolioFlags=null;
+    ProcessGroup group=null;
+    
+    String satFamily() {
+        return (portfolioFamily!=null) ? portfolioFamily : CmdFlags.getSatFamily();
+    }
+    
+    ArrayList<String> solverFlags() {
+        return (portfolioFlags!=null) ? portfolioFlags : CmdFlags.getSolverExtraFlags();
+    }
+    
+    boolean killed() {
+        return group!=null && group.isKilled();
+    }
+    
+    //  A new solver object for a SAT family whose model is read from stdout, 
+    //  so that several can run at once (-sat-portfolio, -opt-strategy parallel). 
+    static SATSolver forFamily(String family, Model m) {
+        if(family.equals("glucose")) {
+            return new GlucoseSATSolver(m);
+        }
+        else if(family.equals("lingeling")) {
+            return new LingelingSATSolver(m);
+        }
+        else {
+            assert family.equals("cadical") || family.equals("kissat");
+            return new CadicalSATSolver(m);
+        }
+    }
+    
     // Instantiated for different SAT solver classes. 
-    public abstract Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException;
+    public abstract Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException;
+    
+    //  In-process solver used for every call instead of runSatSolver (-sat-incremental).
+    private SATSession session=null;
+    
+    //  The SAT file is only forced to disk here, not each time it is finalised. 
+    private Pair<List<String>, Stats> runSolverOnFile(String satSolverName, String filename, Model m, Stats statssofar) throws IOException,  InterruptedException {
+        m.satModel.syncOutput();
+        if(CmdFlags.sat_incremental) {
+            if(session==null) {
+                //  Read the file once; later clauses are passed on by Sat. 
+                session=new SATSession(filename, m.satModel);
+                m.satModel.attachSession(session);
+            }
+            return session.solve(m.satModel.variableNumber-1);
+        }
+        return runSatSolver(satSolverName, filename, m, statssofar);
+    }
     
     ////////////////////////////////////////////////////////////////////////////
     //
@@ -82,9 +134,9 @@ public abstract class SATSolver extends Solver
                     break;
                 }
                 
-                Pair<ArrayList<String>, Stats> p=runSatSolver(satSolverName,fileName, m, totalstats);
+                Pair<List<String>, Stats> p=runSolverOnFile(satSolverName,fileName, m, totalstats);
                 
-                ArrayList<String> currentSolution=p.getFirst();
+                List<String> currentSolution=p.getFirst();
                 Stats stats=p.getSecond();
                 
                 if(totalstats==null) {
@@ -171,6 +223,9 @@ public abstract class SATSolver extends Solver
         else if(CmdFlags.getOptStrategy().equals("unsat")) {
             findObjectiveUnsatMethod(satSolverName, fileName, m);
         }
+        else if(CmdFlags.getOptStrategy().equals("parallel")) {
+            findObjectiveParallel(satSolverName, fileName, m);
+        }
         else {
             assert CmdFlags.getOptStrategy().equals("bisect");
             findObjectiveBisect(satSolverName, fileName, m);
@@ -187,14 +242,14 @@ public abstract class SATSolver extends Solver
         //Get the domain of the objective variable
         ArrayList<Intpair> domain=m.global_symbols.getDomain(objectiveNode.getName()).getIntervalSet();
         
-        ArrayList<String> currentSolution=null;
+        List<String> currentSolution=null;
         int solutionNumber=0;
         
         Stats totalstats=null;
         
         try {
             while(true) {
-                Pair<ArrayList<String>, Stats> p=runSatSolver(satSolverName,fileName, m, totalstats);
+                Pair<List<String>, Stats> p=runSolverOnFile(satSolverName,fileName, m, totalstats);
                 
                 if(p.getFirst()!=null) currentSolution=p.getFirst();
                 Stats stats=p.getSecond();
@@ -267,7 +322,7 @@ public abstract class SATSolver extends Solver
         //Get the domain of the objective variable
         ArrayList<Intpair> domain=m.global_symbols.getDomain(objectiveNode.getName()).getIntervalSet();
         
-        ArrayList<String> currentSolution=null;
+        List<String> currentSolution=null;
         int solutionNumber=0;
         
         Stats totalstats=null;
@@ -278,7 +333,7 @@ public abstract class SATSolver extends Solver
                 umloopascending:
                 for(int i=0; i<domain.size(); i++) {
                     for(long j=domain.get(i).lower; j<=domain.get(i).upper; j++) {
-                        Pair<Stats, ArrayList<String>> p=optTestValue(satSolverName, fileName, objectiveNode, j, totalstats);
+                        Pair<Stats, List<String>> p=optTestValue(satSolverName, fileName, objectiveNode, j, totalstats);
                         totalstats=p.getFirst();
                         currentSolution=p.getSecond();
                         if(currentSolution!=null) {
@@ -296,7 +351,7 @@ public abstract class SATSolver extends Solver
                 umloopdescending:
                 for(int i=domain.size()-1; i>=0; i--) {
                     for(long j=domain.get(i).upper; j>=domain.get(i).lower; j--) {
-                        Pair<Stats, ArrayList<String>> p=optTestValue(satSolverName, fileName, objectiveNode, j, totalstats);
+                        Pair<Stats, List<String>> p=optTestValue(satSolverName, fileName, objectiveNode, j, totalstats);
                         totalstats=p.getFirst();
                         currentSolution=p.getSecond();
                         if(currentSolution!=null) {
@@ -337,15 +392,15 @@ public abstract class SATSolver extends Solver
         }
     }
     
-    private Pair<Stats, ArrayList<String>> optTestValue(String satSolverName, String fileName, ASTNode objectiveNode, long val, Stats totalstats) throws IOException, InterruptedException {
+    private Pair<Stats, List<String>> optTestValue(String satSolverName, String fileName, ASTNode objectiveNode, long val, Stats totalstats) throws IOException, InterruptedException {
         System.out.println("Testing value: "+val);
         boundSearchRemovable(objectiveNode, val, val);
         
-        Pair<ArrayList<String>, Stats> p=runSatSolver(satSolverName,fileName, m, totalstats);
+        Pair<List<String>, Stats> p=runSolverOnFile(satSolverName,fileName, m, totalstats);
         m.satModel.removeFinalClause();
         
         //System.out.println(p);
-        ArrayList<String> currentSolution=null;
+        List<String> currentSolution=null;
         if(p.getFirst()!=null) currentSolution=p.getFirst();
         
         Stats stats=p.getSecond();
@@ -356,7 +411,7 @@ public abstract class SATSolver extends Solver
         else {
             totalstats=totalstats.add(stats);
         }
-        return new Pair<Stats, ArrayList<String>>(totalstats, currentSolution);
+        return new Pair<Stats, List<String>>(totalstats, currentSolution);
     }
     
     //  Dichotomic search for the optimal solution.  
@@ -369,7 +424,7 @@ public abstract class SATSolver extends Solver
         //Get the domain of the objective variable
         ArrayList<Intpair> domain=m.global_symbols.getDomain(objectiveNode.getName()).getIntervalSet();
         
-        ArrayList<String> currentSolution=null;
+        List<String> currentSolution=null;
         int solutionNumber=0;
         
         Stats totalstats=null;
@@ -390,7 +445,7 @@ public abstract class SATSolver extends Solver
             //  First search with no constraint on the objective. 
             System.out.println("In dichotomic search, lower: "+lower+" upper: "+upper);
             
-            Pair<ArrayList<String>, Stats> p=runSatSolver(satSolverName,fileName, m, totalstats);
+            Pair<List<String>, Stats> p=runSolverOnFile(satSolverName,fileName, m, totalstats);
             
             if(p.getFirst()!=null) currentSolution=p.getFirst();
             totalstats=p.getSecond();
@@ -437,7 +492,7 @@ public abstract class SATSolver extends Solver
                 System.out.println("In dichotomic search, lower: "+lower+" upper: "+upper+" midpoint: "+mid);
                 dichotomicSearch(objectiveNode, mid);
                 
-                p=runSatSolver(satSolverName,fileName, m, totalstats);
+                p=runSolverOnFile(satSolverName,fileName, m, totalstats);
                 
                 if(p.getFirst()!=null) currentSolution=p.getFirst();
                 Stats stats=p.getSecond();
@@ -508,6 +563,278 @@ public abstract class SATSolver extends Solver
         }
     }
 
+    //  Probe several bounds on the objective at once. Each probe runs its own
+    //  solver on a copy of the SAT file with one bound added: objective<=t when
+    //  minimising, objective>=t when maximising. Each result narrows 
+    //  lower..upper as in the dichotomic search, and probes made irrelevant by
+    //  the new bounds are killed. A free slot probes the middle of the largest
+    //  gap between the bounds and the probes still running. 
+    //  Probe files are as large as the SAT file. Each is deleted when its probe
+    //  finishes, and a shutdown hook deletes any left if the JVM exits early 
+    //  (e.g. on a timeout or a signal). 
+    public void findObjectiveParallel(String satSolverName, String fileName, Model m)
+    {
+        double srtime=(((double) System.currentTimeMillis() - CmdFlags.startTime) / 1000);
+        
+        //Get the ASTNode that is constrained by the objective
+        Identifier objectiveNode=(Identifier) m.objective.getChild(0);
+        //Get the domain of the objective variable
+        ArrayList<Intpair> domain=m.global_symbols.getDomain(objectiveNode.getName()).getIntervalSet();
+        boolean minimising=(m.objective instanceof Minimising);
+        
+        List<String> currentSolution=null;
+        int solutionNumber=0;
+        
+        Stats totalstats=null;
+        
+        int numProbes=CmdFlags.getOptProbes();
+        ExecutorService pool=Executors.newFixedThreadPool(numProbes);
+        CompletionService<Pair<List<String>, Stats>> finished=new ExecutorCompletionService<Pair<List<String>, Stats>>(pool);
+        HashMap<Future<Pair<List<String>, Stats>>, Probe> running=new HashMap<Future<Pair<List<String>, Stats>>, Probe>();
+        
+        final Set<String> probeFiles=ConcurrentHashMap.newKeySet();
+        Thread cleanup=new Thread(() -> deleteProbeFiles(probeFiles));
+        Runtime.getRuntime().addShutdownHook(cleanup);
+        
+        try {
+            long lower;
+            long upper;
+            if(domain.size()==0) {
+                //  Failed already. 
+                lower=0;
+                upper=0;
+            }
+            else {
+                lower=domain.get(0).lower;
+                upper=domain.get(domain.size()-1).upper;
+            }
+            
+            //  First search with no constraint on the objective. 
+            System.out.println("In parallel search, lower: "+lower+" upper: "+upper);
+            
+            Pair<List<String>, Stats> p=runSolverOnFile(satSolverName,fileName, m, totalstats);
+            
+            if(p.getFirst()!=null) currentSolution=p.getFirst();
+            totalstats=p.getSecond();
+            if(p.getFirst()==null) {
+                // No solution
+                if(m.incumbentSolution!=null) {
+                    createSolutionFile(m.incumbentSolution, false);
+                }
+                totalstats.putValue("SavileRowTotalTime", String.valueOf(srtime));
+                writeToFileSolutionStats(totalstats);
+                return;
+            }
+            
+            int probeNumber=0;
+            
+            while(true) {
+                if(p!=null) {
+                    // A solution was found. 
+                    // Get the assignments to SR variables.
+                    HashMap<String, Long> sol=readAllAssignments(currentSolution, m.global_symbols);
+                    
+                    Long objectiveValue=sol.get(m.objective.getChild(0).toString());
+                    
+                    System.out.println("While optimising, found value: "+objectiveValue);
+                    // recording intermediate objective values in file
+                    CmdFlags.recordIntermediateObjectiveValue(objectiveValue);
+                    if(CmdFlags.output_all_sols) {
+                        createSolutionFile(solverSolToAST(currentSolution, m.global_symbols), true);
+                    }
+                    
+                    solutionNumber++;
+                    
+                    // We have a new upper bound (minimising) or lower bound (maximising)
+                    if (minimising) {
+                        upper=Math.min(upper, objectiveValue-1);
+                    }
+                    else {
+                        lower=Math.max(lower, objectiveValue+1);
+                    }
+                    p=null;
+                }
+                
+                if(lower>upper) {
+                    break;
+                }
+                boundSearch(objectiveNode, upper, lower);
+                
+                //  Kill probes outside lower..upper, their answer is already known. 
+                Iterator<Probe> it=running.values().iterator();
+                while(it.hasNext()) {
+                    Probe pr=it.next();
+                    if(pr.bound<lower || pr.bound>upper) {
+                        pr.group.kill();
+                        it.remove();
+                    }
+                }
+                
+                //  Fill the free slots. 
+                while(running.size()<numProbes) {
+                    Long t=nextProbe(lower, upper, running.values());
+                    if(t==null) {
+                        break;
+                    }
+                    System.out.println("In parallel search, lower: "+lower+" upper: "+upper+" probe: "+t);
+                    
+                    final String probeFile=fileName+".probe"+(probeNumber++);
+                    probeFiles.add(probeFile);
+                    if(minimising) {
+                        m.satModel.writeCopyWithUnits(probeFile, new long[]{m.satModel.getOrderVariable(objectiveNode.getName(), t)});
+                    }
+                    else {
+                        m.satModel.writeCopyWithUnits(probeFile, new long[]{-m.satModel.getOrderVariable(objectiveNode.getName(), t-1)});
+                    }
+                    
+                    final Probe pr=new Probe(t, forFamily(CmdFlags.getSatFamily(), m));
+                    final Stats sofar=totalstats;
+                    running.put(finished.submit(new Callable<Pair<List<String>, Stats>>() {
+                        public Pair<List<String>, Stats> call() throws Exception {
+                            try {
+                                return pr.solver.runSatSolver(satSolverName, probeFile, m, sofar);
+                            }
+                            finally {
+                                new File(probeFile).delete();
+                                probeFiles.remove(probeFile);
+                            }
+                        }
+                    }), pr);
+                }
+                
+                if(running.isEmpty()) {
+                    break;
+                }
+                
+                //  Wait for the next probe to finish, ignoring the ones that were killed. 
+                Future<Pair<List<String>, Stats>> f=finished.take();
+                Probe pr=running.remove(f);
+                if(pr==null) {
+                    continue;
+                }
+                Pair<List<String>, Stats> res=getProbe(f);
+                if(res.getSecond()==null) {
+                    //  The solver failed, so the bound is not known to be unsat. 
+                    break;
+                }
+                totalstats=totalstats.add(res.getSecond());
+                
+                if(totalstats.hasValue("SolverTimeOut") && totalstats.getValue("SolverTimeOut").equals("1")) {
+                    //  The solver timed out so stop, assume that it did not find a solution on the timeout run. 
+                    break;
+                }
+                
+                if(res.getFirst()==null) {
+                    // We have a new lower bound (minimising) or upper bound (maximising)
+                    if (minimising) {
+                        lower=Math.max(lower, pr.bound+1);
+                    }
+                    else {
+                        upper=Math.min(upper, pr.bound-1);
+                    }
+                }
+                else {
+                    currentSolution=res.getFirst();
+                    p=res;
+                }
+            }
+            
+            if(solutionNumber>0)
+            {
+                Solution sol=solverSolToAST(currentSolution, m.global_symbols);
+                m.incumbentSolution=sol;
+                if(!CmdFlags.output_all_sols) {  //  If solution has not already been output...
+                    createSolutionFile(sol, false);
+                }
+            }
+            else if(m.incumbentSolution!=null) {
+                createSolutionFile(m.incumbentSolution, CmdFlags.output_all_sols);
+            }
+            totalstats.putValue("SavileRowTotalTime", String.valueOf(srtime));
+            writeToFileSolutionStats(totalstats);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+        finally {
+            for(Probe pr : running.values()) {
+                pr.group.kill();
+            }
+            //  Let the killed probes finish so that their files are deleted. 
+            pool.shutdown();
+            try {
+                pool.awaitTermination(60, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            deleteProbeFiles(probeFiles);
+            try {
+                Runtime.getRuntime().removeShutdownHook(cleanup);
+            }
+            catch(IllegalStateException e) {
+                //  Already shutting down, the hook deletes the files. 
+            }
+        }
+    }
+    
+    private static void deleteProbeFiles(Set<String> probeFiles) {
+        for(String probeFile : probeFiles) {
+            new File(probeFile).delete();
+        }
+    }
+    
+    //  A bound being tested by findObjectiveParallel. 
+    private static final class Probe {
+        final long bound;
+        final SATSolver solver;
+        final ProcessGroup group=new ProcessGroup();
+        Probe(long _bound, SATSolver _solver) {
+            bound=_bound;
+            solver=_solver;
+            solver.group=group;
+        }
+    }
+    
+    //  Middle of the largest gap between lower-1, the running probes and 
+    //  upper+1, or null if every value in lower..upper is being probed. 
+    private static Long nextProbe(long lower, long upper, Collection<Probe> running) {
+        ArrayList<Long> points=new ArrayList<Long>();
+        points.add(lower-1);
+        for(Probe pr : running) {
+            points.add(pr.bound);
+        }
+        points.add(upper+1);
+        Collections.sort(points);
+        
+        Long best=null;
+        long bestgap=1;
+        for(int i=1; i<points.size(); i++) {
+            long gap=points.get(i)-points.get(i-1);
+            if(gap>bestgap) {
+                bestgap=gap;
+                best=points.get(i-1)+gap/2;
+            }
+        }
+        return best;
+    }
+    
+    private static Pair<List<String>, Stats> getProbe(Future<Pair<List<String>, Stats>> f) throws IOException, InterruptedException {
+        try {
+            return f.get();
+        }
+        catch(ExecutionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+    
     protected void dichotomicSearch(Identifier objectiveNode, long mid) throws IOException {
         // Add the clause opt<=mid or opt>=mid
         // Construct the new clause.
@@ -537,9 +864,9 @@ public abstract class SATSolver extends Solver
         double srtime=(((double) System.currentTimeMillis() - CmdFlags.startTime) / 1000);
         
         try {
-            Pair<ArrayList<String>, Stats> p=runSatSolver(satSolverName,fileName, m, null);
+            Pair<List<String>, Stats> p=runSolverOnFile(satSolverName,fileName, m, null);
             
-            ArrayList<String> currentSolution=p.getFirst();
+            List<String> currentSolution=p.getFirst();
             Stats stats=p.getSecond();
             stats.putValue("SavileRowTotalTime", String.valueOf(srtime));
             
@@ -591,61 +918,33 @@ public abstract class SATSolver extends Solver
     
     // Takes a solution as SAT literals
     // and turns it into a hashmap mapping variable name to value.
-    HashMap<String, Long> readAllAssignments(ArrayList<String> satSol, SymbolTable st) {
+    HashMap<String, Long> readAllAssignments(List<String> satSol, SymbolTable st) {
         HashMap<String, Long> collect_all_values=new HashMap<String, Long>();
         
-        Sat satModel=st.m.satModel;
+        SatVarMap varMap=st.m.satModel.getVarMap();
+        
+        //  Models from the SAT solvers are normally SatLiterals, so avoid
+        //  making a String for each literal. 
+        SatLiterals lits=(satSol instanceof SatLiterals) ? (SatLiterals)satSol : null;
         
         long assignprev=0;
         for(int i=0; i<satSol.size(); i++) {
-            long assign=Long.valueOf(satSol.get(i));
-            
-            //  Direct encoding
-            NumberMap n = satModel.getDimacsMapping(assign);
-            
-            if(n!=null) {
-                collect_all_values.put(n.getVariable(), n.getValue());
-                assignprev=assign;
-                continue;
-            }
-            
-            // Order encoding -- for variables that have only order encoding.
-            // Solvers MUST output literals in order for this to work. 
+            long assign=(lits!=null) ? lits.getLiteral(i) : Long.valueOf(satSol.get(i));
             
-            // There are three cases. For the first var in the order enc, i.e. [x<=min(D(x))], 
-            // if the literal is positive we find it in orderMappingMin to get the SR variable and value.
-            
-            if(assign>0) {
-                n=satModel.orderMappingMin.get(assign);
-                if(n!=null) {
-                    collect_all_values.put(n.getVariable(), n.getValue());
-                    assignprev=assign;
-                    continue;
-                }
-            }
-            
-            // For other vars in the order enc, if the var is positive and its
-            // predecessor is negative, then we can find it in orderMappingMid.
-            
-            if(assign>0 && assignprev<0) {
-                n=satModel.orderMappingMid.get(assign);
-                if(n!=null) {
-                    collect_all_values.put(n.getVariable(), n.getValue());
-                    assignprev=assign;
-                    continue;
-                }
-            }
+            //  Direct encoding, or order encoding for variables that have only 
+            //  the order encoding. 
+            // Solvers MUST output literals in order for the order encoding to work. 
             
+            // There are three cases for the order encoding. For the first var, i.e. [x<=min(D(x))], 
+            // the literal is positive and maps to min(D(x)) (ORDERMIN).
+            // For other vars, if the var is positive and its predecessor is negative, 
+            // then it maps to its value (ORDERMID).
             // For the top value in the domain, there is no [x<=max(D(x))] SAT variable
-            // The topmost SAT variable must be false in this case so we use that.
+            // The topmost SAT variable must be false in this case so we use that (ORDERMAX).
             
-            if(assign<0) {
-                n=satModel.orderMappingMax.get(assign);
-                if(n!=null) {
-                    collect_all_values.put(n.getVariable(), n.getValue());
-                    assignprev=assign;
-                    continue;
-                }
+            byte kind=varMap.getKind(assign);
+            if(kind!=SatVarMap.NONE && (kind!=SatVarMap.ORDERMID || assignprev<0)) {
+                collect_all_values.put(varMap.getVariable(assign), varMap.getValue(assign));
             }
             
             assignprev=assign;  // Store for next iteration
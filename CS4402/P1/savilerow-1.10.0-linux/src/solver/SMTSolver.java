@@ -59,7 +59,7 @@ public abstract class SMTSolver extends SATSolver {
     }
 
     @Override
-    public Pair<ArrayList<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException, InterruptedException {
+    public Pair<List<String>, Stats> runSatSolver(String satSolverName, String filename, Model m, Stats statssofar) throws IOException, InterruptedException {
         CmdFlags.runningSolver=true;  // Prevents SR's timeout from kicking in.
         
         ArrayList<String> command = getCommand(satSolverName, filename);
@@ -170,10 +170,10 @@ public abstract class SMTSolver extends SATSolver {
 
     // Takes a solution as SAT literals
     // and turns it into a hashmap mapping variable name to value.
-    HashMap<String, Long> readAllAssignments(ArrayList<String> satSol, SymbolTable st) {
+    HashMap<String, Long> readAllAssignments(List<String> satSol, SymbolTable st) {
         HashMap<String, Long> collect_all_values=new HashMap<String, Long>();
 
-        Sat satModel=st.m.satModel;
+        SatVarMap varMap=st.m.satModel.getVarMap();
 
         long assignprev=0;
 
@@ -200,52 +200,13 @@ public abstract class SMTSolver extends SATSolver {
                 if (value.contains("false"))
                     assign = -assign;
                 
-                //  Direct encoding
-                NumberMap n = satModel.getDimacsMapping(assign);
+                //  Direct encoding, or order encoding for variables that have only 
+                //  the order encoding (see SATSolver.readAllAssignments).
+                // Solvers MUST output literals in order for the order encoding to work.
                 
-                if (n != null) {
-                    collect_all_values.put(n.getVariable(), n.getValue());
-                    assignprev = assign;
-                    continue;
-                }
-
-                // Order encoding -- for variables that have only order encoding.
-                // Solvers MUST output literals in order for this to work.
-
-                // There are three cases. For the first var in the order enc, i.e. [x<=min(D(x))],
-                // if the literal is positive we find it in orderMappingMin to get the SR variable and value.
-
-                if (assign > 0) {
-                    n = satModel.orderMappingMin.get(assign);
-                    if (n != null) {
-                        collect_all_values.put(n.getVariable(), n.getValue());
-                        assignprev = assign;
-                        continue;
-                    }
-                }
-
-                // For other vars in the order enc, if the var is positive and its
-                // predecessor is negative, then we can find it in orderMappingMid.
-
-                if (assign > 0 && assignprev < 0) {
-                    n = satModel.orderMappingMid.get(assign);
-                    if (n != null) {
-                        collect_all_values.put(n.getVariable(), n.getValue());
-                        assignprev = assign;
-                        continue;
-                    }
-                }
-
-                // For the top value in the domain, there is no [x<=max(D(x))] SAT variable
-                // The topmost SAT variable must be false in this case so we use that.
-
-                if (assign < 0) {
-                    n = satModel.orderMappingMax.get(assign);
-                    if (n != null) {
-                        collect_all_values.put(n.getVariable(), n.getValue());
-                        assignprev = assign;
-                        continue;
-                    }
+                byte kind = varMap.getKind(assign);
+                if (kind != SatVarMap.NONE && (kind != SatVarMap.ORDERMID || assignprev < 0)) {
+                    collect_all_values.put(varMap.getVariable(assign), varMap.getValue(assign));
                 }
 
                 assignprev = assign;  // Store for next iteration
@@ -0,0 +1,128 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+import java.io.*;
+
+//  A model found by a SAT solver: the DIMACS literals in the order the solver
+//  printed them, in a long array rather than one String per literal. The
+//  literals can be fed in as text in pieces of any size, so that a model can
+//  be decoded as the solver writes it. The terminating 0 is dropped. 
+//  get returns a literal as a String so that the model can be passed around
+//  as a solver solution like the output of the other solvers. 
+
+public final class SatLiterals extends AbstractList<String> {
+    private long[] lits;
+    private int size=0;
+    
+    //  State of the tokeniser between calls to feed. 
+    private long cur=0;
+    private boolean neg=false;
+    private boolean digits=false;
+    
+    public SatLiterals() {
+        lits=new long[1024];
+    }
+    
+    public SatLiterals(int capacity) {
+        lits=new long[Math.max(capacity, 16)];
+    }
+    
+    //  From a model returned by an in-process solver. 
+    public SatLiterals(int[] solution) {
+        this(solution.length);
+        for(int i=0; i<solution.length; i++) {
+            addLiteral(solution[i]);
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public String get(int i) {
+        if(i>=size) {
+            throw new IndexOutOfBoundsException("Literal "+i+" of "+size);
+        }
+        return String.valueOf(lits[i]);
+    }
+    
+    public long getLiteral(int i) {
+        return lits[i];
+    }
+    
+    public void addLiteral(long lit) {
+        if(lit==0) {
+            return;
+        }
+        if(size==lits.length) {
+            lits=Arrays.copyOf(lits, lits.length*2);
+        }
+        lits[size++]=lit;
+    }
+    
+    //  Tokenise buf[from..to) as whitespace-separated integers. A number may
+    //  be split between two calls. 
+    public void feed(char[] buf, int from, int to) {
+        for(int i=from; i<to; i++) {
+            char c=buf[i];
+            if(c>='0' && c<='9') {
+                cur=cur*10+(c-'0');
+                digits=true;
+            }
+            else if(c=='-') {
+                neg=true;
+            }
+            else {
+                endToken();
+            }
+        }
+    }
+    
+    public void feed(String s) {
+        char[] buf=s.toCharArray();
+        feed(buf, 0, buf.length);
+        endToken();
+    }
+    
+    //  End of the current number, if any. 
+    public void endToken() {
+        if(digits) {
+            addLiteral(neg ? -cur : cur);
+        }
+        cur=0;
+        neg=false;
+        digits=false;
+    }
+    
+    //  Read all the literals from r. 
+    public void feed(Reader r) throws IOException {
+        char[] buf=new char[1<<16];
+        int n=r.read(buf);
+        while(n!=-1) {
+            feed(buf, 0, n);
+            n=r.read(buf);
+        }
+        endToken();
+    }
+}
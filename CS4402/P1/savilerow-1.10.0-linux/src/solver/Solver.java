@@ -223,10 +223,10 @@ public abstract class Solver
     
     // Parse a 'solver solution' (i.e. one solution in the text format output by the solver)
     // into a hashmap. 
-    abstract HashMap<String, Long> readAllAssignments(ArrayList<String> solversolution, SymbolTable st);
+    abstract HashMap<String, Long> readAllAssignments(List<String> solversolution, SymbolTable st);
     
     // Using readAllAssignments, turn a solver solution into a Savile Row solution. 
-    Solution solverSolToAST(ArrayList<String> solversol, SymbolTable st) {
+    Solution solverSolToAST(List<String> solversol, SymbolTable st) {
         ArrayList<ASTNode> solution=new ArrayList<ASTNode>();
         HashMap<String, HashMap<ArrayList<Long>, ASTNode>> collect_matrices=new HashMap<String, HashMap<ArrayList<Long>, ASTNode>>();
         
@@ -0,0 +1,136 @@
+package savilerow;
+/*
+
+    Savile Row http://savilerow.cs.st-andrews.ac.uk/
+    Copyright (C) 2014-2021 Peter Nightingale
+    
+    This file is part of Savile Row.
+    
+    Savile Row is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    Savile Row is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with Savile Row.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+import java.util.*;
+
+//  An expression prepared once for substituting values for some identifiers
+//  (the slots), for example the bound variable of a quantifier that is
+//  unrolled. Each call to instantiate makes a single copy of the expression
+//  with the slots filled from an environment array. Subtrees that contain no
+//  slot are copied as they are; nodes above a slot are rebuilt from their new
+//  children, and those whose children all become constants are simplified as
+//  they are built, so constant folding is done during the copy. 
+//
+//  The result is the same as copying the expression and applying
+//  ReplaceASTNode for each slot, apart from the constant folding, without an
+//  intermediate copy or a traversal per slot. 
+
+public final class SubstitutionTemplate
+{
+    private final ASTNode template;
+    
+    //  Nodes of the template that are slots (value >= 0, the slot number) or
+    //  contain a slot (value -1). 
+    private final IdentityHashMap<ASTNode, Integer> marks=new IdentityHashMap<ASTNode, Integer>();
+    
+    public SubstitutionTemplate(ASTNode e, ASTNode id) {
+        this(e, new ASTNode[]{id});
+    }
+    
+    public SubstitutionTemplate(ASTNode e, ASTNode[] ids) {
+        HashMap<ASTNode, Integer> slots=new HashMap<ASTNode, Integer>();
+        for(int i=0; i<ids.length; i++) {
+            assert ids[i] instanceof Identifier;
+            if(!slots.containsKey(ids[i])) {
+                slots.put(ids[i], i);
+            }
+        }
+        if(mark(e, slots)) {
+            //  Private copy, so it is not changed while it is being instantiated. 
+            marks.clear();
+            e=e.copy();
+            mark(e, slots);
+        }
+        template=e;
+    }
+    
+    private boolean mark(ASTNode a, HashMap<ASTNode, Integer> slots) {
+        if(a instanceof Identifier) {
+            Integer s=slots.get(a);
+            if(s!=null) {
+                marks.put(a, s);
+                return true;
+            }
+            return false;
+        }
+        boolean hasSlot=false;
+        for(int i=0; i<a.numChildren(); i++) {
+            if(mark(a.getChild(i), slots)) {
+                hasSlot=true;
+            }
+        }
+        if(hasSlot) {
+            marks.put(a, -1);
+        }
+        return hasSlot;
+    }
+    
+    //  True if the expression contains any of the slots. 
+    public boolean hasSlots() {
+        return !marks.isEmpty();
+    }
+    
+    //  Instantiate with a single slot.
+    public ASTNode instantiate(ASTNode value) {
+        return instantiate(new ASTNode[]{value});
+    }
+    
+    //  Instantiate with env[i] in place of slot i. The values are copied where
+    //  they are used. 
+    public ASTNode instantiate(ASTNode[] env) {
+        return inst(template, env);
+    }
+    
+    private ASTNode inst(ASTNode a, ASTNode[] env) {
+        Integer s=marks.get(a);
+        if(s==null) {
+            return a.copy();
+        }
+        if(s>=0) {
+            return env[s].copy();
+        }
+        
+        int n=a.numChildren();
+        ASTNode[] ch=new ASTNode[n];
+        boolean allConstant=true;
+        for(int i=0; i<n; i++) {
+            ch[i]=inst(a.getChild(i), env);
+            if(! (ch[i] instanceof NumberConstant || ch[i] instanceof BooleanConstant)) {
+                allConstant=false;
+            }
+        }
+        
+        ASTNode c=((ASTNodeC)a).copyWithChildren(ch);
+        
+        if(allConstant) {
+            ASTNode r=c.simplify();
+            if(r!=null) {
+                if(r.getParent()!=null) {
+                    r=r.copy();
+                }
+                return r;
+            }
+        }
+        return c;
+    }
+}
@@ -37,6 +37,12 @@ public class TransformExtractBoolsInSums extends TreeTransformerBottomUp
     private static HashMap<ASTNode, String> cache = new HashMap<ASTNode, String>();
     public static HashMap<String, ASTNode> inverseCache = new HashMap<String, ASTNode>();
     
+    //  The caches refer to aux variables of one model; cleared between instances in batch mode.
+    public static void clearCache() {
+        cache.clear();
+        inverseCache.clear();
+    }
+    
     protected NodeReplacement processNode(ASTNode curnode) {
         if(curnode.isRelation() && (curnode.getParent() instanceof WeightedSum) 
             && !(curnode instanceof Identifier) 
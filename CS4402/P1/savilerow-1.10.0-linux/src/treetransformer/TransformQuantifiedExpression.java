@@ -36,6 +36,16 @@ public class TransformQuantifiedExpression extends TreeTransformerTopdown
         if(curnode instanceof Quantifier) {
             TransformSimplify ts=new TransformSimplify();
             
+            if(curnode instanceof ForallExpression && curnode.getChild(1) instanceof SimpleDomain
+                && curnode.getParent()!=null && curnode.getParent().inTopAnd() && !CmdFlags.dominanceRelation) {
+                // Forall in the top-level conjunction -- stream its instances into a flat list.
+                ArrayList<ASTNode> out=new ArrayList<ASTNode>();
+                if(!unrollInto(curnode, curnode.getParent(), out, ts)) {
+                    return new NodeReplacement(new BooleanConstant(false));
+                }
+                return new NodeReplacement(new And(out));
+            }
+            
             if(curnode.getChild(1) instanceof SimpleDomain) {
                 ASTNode toexpand=curnode.getChild(2);
                 ASTNode id=curnode.getChild(0);
@@ -55,14 +65,12 @@ public class TransformQuantifiedExpression extends TreeTransformerTopdown
                 if(dombnds.lower+20 >= dombnds.upper) {
                     // Small domain -- unroll it. 
                     ArrayList<Intpair> values=dom.getIntervalSet();
+                    SubstitutionTemplate body=new SubstitutionTemplate(toexpand, id);
                     
                     for(int i=0; i<values.size(); i++) {
                         for(long val=values.get(i).lower; val<=values.get(i).upper; val++) {
-                            ASTNode unfoldedExpression=toexpand.copy();
-                            
                             // Sub in the value. 
-                            ReplaceASTNode t=new ReplaceASTNode(id, NumberConstant.make(val));
-                            unfoldedExpression=t.transform(unfoldedExpression);
+                            ASTNode unfoldedExpression=body.instantiate(NumberConstant.make(val));
                             
                             expansion.add(unfoldedExpression);
                         }
@@ -160,6 +168,68 @@ public class TransformQuantifiedExpression extends TreeTransformerTopdown
         return null;
     }
     
+    //  Unroll constraint e, which is to be conjoined with the top level,
+    //  appending the resulting constraints to out. Foralls (including nested
+    //  ones, and foralls within conjunctions) are expanded one instance at a
+    //  time; each instance is simplified before it is expanded further, so
+    //  entailed instances are dropped straight away and the unsimplified
+    //  expansion of a large forall is never held in memory as a whole, nor is
+    //  a tree of And nodes built for it. Other quantifiers are unrolled as usual
+    //  within each instance. par is the top-level And, to give context for
+    //  simplification. Returns false if some instance simplified to false. 
+    private boolean unrollInto(ASTNode e, ASTNode par, ArrayList<ASTNode> out, TransformSimplify ts) {
+        if(e instanceof ForallExpression && e.getChild(1) instanceof SimpleDomain) {
+            SubstitutionTemplate body=new SubstitutionTemplate(e.getChild(2), e.getChild(0));
+            
+            // Dom may contain a quantifier. Need to unroll that before asking for value set.
+            TransformQuantifiedExpression tqe=new TransformQuantifiedExpression(m);
+            ASTNode dom=ts.transform(tqe.transform(e.getChild(1)));
+            ArrayList<Intpair> values=dom.getIntervalSet();
+            
+            for(int i=0; i<values.size(); i++) {
+                for(long val=values.get(i).lower; val<=values.get(i).upper; val++) {
+                    ASTNode inst=body.instantiate(NumberConstant.make(val));
+                    
+                    inst.setParent(par);
+                    inst=ts.transformAttached(inst);
+                    inst.setParent(null);
+                    
+                    if(!unrollInto(inst, par, out, ts)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        else if(e instanceof And) {
+            ArrayList<ASTNode> ch=e.getChildren();
+            for(int i=0; i<ch.size(); i++) {
+                ch.get(i).setParent(null);   // Recycle the children instead of copying.
+                if(!unrollInto(ch.get(i), par, out, ts)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        // Any other constraint: unroll the quantifiers inside it.
+        e.setParent(par);
+        TransformQuantifiedExpression tqe=new TransformQuantifiedExpression(m);
+        e=tqe.transform(e);
+        e.setParent(par);
+        e=ts.transformAttached(e);
+        e.setParent(null);
+        
+        if(e.isConstant()) {
+            return e.getValue()==1;
+        }
+        if(e instanceof And) {
+            return unrollInto(e, par, out, ts);
+        }
+        out.add(e);
+        return true;
+    }
+    
     public static ASTNode allUnrollComprehension(ASTNode curnode, Model m) {
         TransformSimplify ts=new TransformSimplify();
         // Unlike other quantifiers above, unroll the whole thing because it
@@ -297,6 +367,9 @@ public class TransformQuantifiedExpression extends TreeTransformerTopdown
             // Accumulate stuff to go into CompoundMatrix
             ArrayList<ASTNode> cm=new ArrayList<ASTNode>();
             
+            SubstitutionTemplate innertemplate=new SubstitutionTemplate(innerexp, id);
+            SubstitutionTemplate condtemplate=new SubstitutionTemplate(condition, id);
+            
             for(int i=0; i<vals.size(); i++) {
                 for(long val=vals.get(i).lower; val<=vals.get(i).upper; val++) {
                     ASTNode value;
@@ -309,7 +382,7 @@ public class TransformQuantifiedExpression extends TreeTransformerTopdown
                     
                     ReplaceASTNode r=new ReplaceASTNode(id, value);
                     
-                    ASTNode iexp=r.transform(innerexp.copy());
+                    ASTNode iexp=innertemplate.instantiate(value);
                     ASTNode iquant=quants.copy();
                     iquant.setParent(originalexp);
                     
@@ -322,7 +395,7 @@ public class TransformQuantifiedExpression extends TreeTransformerTopdown
                         iquant.getChild(j).setChild(1, dom);   
                     }
                     
-                    ASTNode icond=r.transform(condition.copy());
+                    ASTNode icond=condtemplate.instantiate(value);
                     
                     // reconnect icond to the original comprehension, so that things like getDomainForId will work. 
                     icond.setParent(originalexp);
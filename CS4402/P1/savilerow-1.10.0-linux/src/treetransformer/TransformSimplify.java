@@ -37,6 +37,7 @@ public class TransformSimplify extends TreeTransformerBottomUpNoWrapper
 	{
 	    // tree nodes are supposed to be immutable (apart from their child pointers), so if it has changed
 	    // then it should be a new node.
+	    CompileProfiler.countSimplify();
 	    ASTNode tmp=curnode.simplify();
 	    if(tmp!=null) {
 	        return new NodeReplacement(tmp);
@@ -82,6 +82,26 @@ public abstract class TreeTransformerBottomUpNoWrapper extends TreeTransformer
         return rep;
     }
     
+    //  As transform, for a node that is attached to a tree, without copying it.
+    //  Changes below e are made in place; returns the replacement for e (or e
+    //  itself) without making the replacement.
+    public ASTNode transformAttached(ASTNode e) {
+        changedTree=false;
+        ASTNode par=e.getParent();
+        int chno=e.getChildNo();
+
+        ASTNode rep=recursiveSearch(e);
+
+        while(rep!=e) {
+            e=rep;
+            changedTree=true;
+            e.setParent(par);
+            e.setChildNo(chno);
+            rep=recursiveSearch(e);
+        }
+        return rep;
+    }
+
     // returns a replacement for curnode. Does not make the replacement itself.
     private ASTNode recursiveSearch(ASTNode curnode) {
         if(curnode instanceof ASTNodeC) {